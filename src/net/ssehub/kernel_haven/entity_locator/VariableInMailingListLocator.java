@@ -15,31 +15,80 @@
  */
 package net.ssehub.kernel_haven.entity_locator;
 
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import net.ssehub.kernel_haven.SetUpException;
 import net.ssehub.kernel_haven.analysis.AnalysisComponent;
 import net.ssehub.kernel_haven.config.Configuration;
+import net.ssehub.kernel_haven.config.EnumSetting;
 import net.ssehub.kernel_haven.config.ListSetting;
 import net.ssehub.kernel_haven.config.Setting;
 import net.ssehub.kernel_haven.config.Setting.Type;
 import net.ssehub.kernel_haven.entity_locator.VariableInMailingListLocator.VariableMailLocation;
+import net.ssehub.kernel_haven.entity_locator.util.ByteMailScanner;
+import net.ssehub.kernel_haven.entity_locator.util.CloneCache;
+import net.ssehub.kernel_haven.entity_locator.util.CloneCache.CachedClone;
+import net.ssehub.kernel_haven.entity_locator.util.CloneType;
+import net.ssehub.kernel_haven.entity_locator.util.CommitDateRange;
+import net.ssehub.kernel_haven.entity_locator.util.CommitOrder;
+import net.ssehub.kernel_haven.entity_locator.util.CrawlCheckpoint;
+import net.ssehub.kernel_haven.entity_locator.util.CrawlCheckpoint.SourcePosition;
+import net.ssehub.kernel_haven.entity_locator.util.CrawlState;
+import net.ssehub.kernel_haven.entity_locator.util.GitBlobReader;
+import net.ssehub.kernel_haven.entity_locator.util.GitChangedBlobs;
 import net.ssehub.kernel_haven.entity_locator.util.GitException;
+import net.ssehub.kernel_haven.entity_locator.util.GitExecution;
+import net.ssehub.kernel_haven.entity_locator.util.GitFileHistory;
+import net.ssehub.kernel_haven.entity_locator.util.GitObjectDatabase;
 import net.ssehub.kernel_haven.entity_locator.util.GitRepository;
+import net.ssehub.kernel_haven.entity_locator.util.IBlobReader;
+import net.ssehub.kernel_haven.entity_locator.util.ICommitIterator;
+import net.ssehub.kernel_haven.entity_locator.util.InvertedIndexWriter;
+import net.ssehub.kernel_haven.entity_locator.util.LiteralPrefilter;
+import net.ssehub.kernel_haven.entity_locator.util.LocatorMetrics;
+import net.ssehub.kernel_haven.entity_locator.util.MatchCounter;
+import net.ssehub.kernel_haven.entity_locator.util.Pipeline;
+import net.ssehub.kernel_haven.entity_locator.util.Pipeline.PipelineException;
+import net.ssehub.kernel_haven.entity_locator.util.PublicInbox;
+import net.ssehub.kernel_haven.entity_locator.util.ScanCache;
+import net.ssehub.kernel_haven.entity_locator.util.SymbolDictionary;
+import net.ssehub.kernel_haven.entity_locator.util.SymbolTable;
+import net.ssehub.kernel_haven.entity_locator.util.VariableStatistics;
 import net.ssehub.kernel_haven.util.ProgressLogger;
 import net.ssehub.kernel_haven.util.Util;
 import net.ssehub.kernel_haven.util.io.TableElement;
 import net.ssehub.kernel_haven.util.io.TableRow;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
 
 /**
  * A component that locates variables in external mailings lists (like the Linux Kernel Mailing List).
@@ -49,13 +98,17 @@ import net.ssehub.kernel_haven.util.null_checks.NonNull;
 public class VariableInMailingListLocator extends AnalysisComponent<VariableMailLocation> {
 
     /**
-     * Represents a variable that was found in a mail from a mailing list.
+     * Represents a variable that was found in a mail from a mailing list. The variable names found by a locator are
+     * interned in the {@link SymbolTable} of its run, so all locations of the same variable share the same name
+     * instance and id.
      */
     @TableRow
     public static class VariableMailLocation {
 
         private String variable;
         
+        private int variableId;
+        
         private String mailIdentifier;
         
         private int numOccurrences;
@@ -69,6 +122,23 @@ public class VariableInMailingListLocator extends AnalysisComponent<VariableMail
          */
         public VariableMailLocation(String variable, String mailIdentifier, int numOccurrences) {
             this.variable = variable;
+            this.variableId = -1;
+            this.mailIdentifier = mailIdentifier;
+            this.numOccurrences = numOccurrences;
+        }
+        
+        /**
+         * Creates a variable-mail mapping for an already interned variable.
+         * 
+         * @param symbols The symbol table that the variable is interned in.
+         * @param variableId The id of the variable in the symbol table.
+         * @param mailIdentifier An identifier for the mail that was found (usually an URL to a web-interface).
+         * @param numOccurrences The number of occurrences of this variable in the mail.
+         */
+        public VariableMailLocation(@NonNull SymbolTable symbols, int variableId, String mailIdentifier,
+                int numOccurrences) {
+            this.variable = symbols.getName(variableId);
+            this.variableId = variableId;
             this.mailIdentifier = mailIdentifier;
             this.numOccurrences = numOccurrences;
         }
@@ -83,6 +153,15 @@ public class VariableInMailingListLocator extends AnalysisComponent<VariableMail
             return variable;
         }
         
+        /**
+         * Returns the id of the variable in the symbol table that it was interned in.
+         * 
+         * @return The id of the variable that was found, or -1 if it was not interned.
+         */
+        public int getVariableId() {
+            return variableId;
+        }
+        
         /**
          * Returns an identifier for the mail where the variable was fond. This is usually an URL to a web-interface
          * displaying the mail.
@@ -106,190 +185,2170 @@ public class VariableInMailingListLocator extends AnalysisComponent<VariableMail
         
     }
     
-    public static final @NonNull ListSetting<@NonNull String> MAIL_SOURCES = new ListSetting<>(
-        "analysis.mail_locator.mail_sources", Type.STRING, true, "List of Git repositories that contain "
-                + "the mails to be searched. These may be remote URLs or local directories. In the first case, the "
-                + "remote will be cloned into a temporary directory. In the second case, the master branch of the "
-                + "existing checkout will be used directly.");
-    
-    public static final @NonNull Setting<@NonNull Pattern> VAR_REGEX = new Setting<>(
-        "analysis.mail_locator.variable_regex", Type.REGEX, true, null, "Specifies the regular expression used to find "
-                + "relevant variables.");
-    
-    public static final @NonNull Setting<@NonNull String> URL_PREFIX = new Setting<>(
-            "analysis.mail_locator.url_prefix", Type.STRING, true, null, "Specifies an URL prefix for the mails. The "
-                    + "message-id of the mail will be appended to this string (with slashes replaced by %2F) to "
-                    + "create the identifier of the mail.");
-    
-    private @NonNull List<@NonNull String> mailSources;
+    /**
+     * The occurrences of a variable, aggregated over all mails that it was found in.
+     */
+    @TableRow
+    public static class VariableMailSummary {
+        
+        private @NonNull String variable;
+        
+        private long numOccurrences;
+        
+        private int numMails;
+        
+        private @NonNull String firstMail;
+        
+        private @NonNull String lastMail;
+        
+        /**
+         * Creates a summary for a variable.
+         * 
+         * @param variable The variable.
+         * @param numOccurrences The number of occurrences of this variable in all mails.
+         * @param numMails The number of mails that the variable was found in.
+         * @param firstMail The identifier of the first mail that the variable was found in.
+         * @param lastMail The identifier of the last mail that the variable was found in.
+         */
+        public VariableMailSummary(@NonNull String variable, long numOccurrences, int numMails,
+                @NonNull String firstMail, @NonNull String lastMail) {
+            this.variable = variable;
+            this.numOccurrences = numOccurrences;
+            this.numMails = numMails;
+            this.firstMail = firstMail;
+            this.lastMail = lastMail;
+        }
+        
+        /**
+         * Returns the variable that this summary is about.
+         * 
+         * @return The variable.
+         */
+        @TableElement(index = 0, name = "Variable")
+        public @NonNull String getVariable() {
+            return variable;
+        }
+        
+        /**
+         * Returns the number of occurrences of the variable in all mails.
+         * 
+         * @return The total number of occurrences.
+         */
+        @TableElement(index = 1, name = "Occurrences")
+        public long getNumOccurrences() {
+            return numOccurrences;
+        }
+        
+        /**
+         * Returns the number of different mails that the variable was found in.
+         * 
+         * @return The number of mails.
+         */
+        @TableElement(index = 2, name = "Mails")
+        public int getNumMails() {
+            return numMails;
+        }
+        
+        /**
+         * Returns the identifier of the first mail that the variable was found in, in the order in which the mails
+         * were processed.
+         * 
+         * @return The identifier of the first mail.
+         */
+        @TableElement(index = 3, name = "First Mail")
+        public @NonNull String getFirstMail() {
+            return firstMail;
+        }
+        
+        /**
+         * Returns the identifier of the last mail that the variable was found in, in the order in which the mails
+         * were processed.
+         * 
+         * @return The identifier of the last mail.
+         */
+        @TableElement(index = 4, name = "Last Mail")
+        public @NonNull String getLastMail() {
+            return lastMail;
+        }
+        
+    }
     
-    private @NonNull Pattern varRegex;
+    /**
+     * The different ways of reading the mails from the git repositories.
+     */
+    public static enum MailReader {
+        
+        /**
+         * Reads the mails through a long-running <code>git cat-file</code> process.
+         */
+        GIT_PROCESS,
+        
+        /**
+         * Reads the mails directly from the packs and loose objects of the repository, without starting any
+         * <code>git</code> process.
+         */
+        IN_PROCESS,
+        
+        /**
+         * Reconstructs all mails from a single <code>git log -p</code> stream, instead of reading each mail
+         * separately.
+         */
+        LOG_STREAM,
+        
+        /**
+         * Finds the blobs that each commit adds or modifies in a single <code>git log --raw</code> stream and reads
+         * only these through a single <code>git cat-file</code> process. This does not depend on the path of the
+         * mail file, so it also supports archives that store each mail in a file of its own.
+         */
+        CHANGED_PATHS,
+        
+    }
     
-    private @NonNull String urlPrefix;
+    /**
+     * The different ways of searching the mails for variables.
+     */
+    public static enum MailScanner {
+        
+        /**
+         * Decodes each line of the mail to a string and runs the regular expression on it.
+         */
+        LINE_READER,
+        
+        /**
+         * Runs the regular expression directly on the raw bytes of each line and only decodes the matches. Much
+         * faster, but only finds the same variables as {@link #LINE_READER} if the regular expression only matches
+         * ASCII text.
+         */
+        BYTES,
+        
+    }
     
     /**
-     * Creates this component.
-     * 
-     * @param config The pipeline configuration.
-     * 
-     * @throws SetUpException If setting up this component fails.
+     * The different kinds of results that are produced.
      */
-    public VariableInMailingListLocator(@NonNull Configuration config) throws SetUpException {
-        super(config);
+    public static enum ResultGranularity {
         
-        config.registerSetting(MAIL_SOURCES);
-        this.mailSources = config.getValue(MAIL_SOURCES);
-        if (mailSources.isEmpty()) {
-            throw new SetUpException("No mail source given in " + MAIL_SOURCES.getKey());
-        }
+        /**
+         * One {@link VariableMailLocation} for each variable in each mail, as the output of this component.
+         */
+        PER_MAIL,
         
-        config.registerSetting(VAR_REGEX);
-        this.varRegex = config.getValue(VAR_REGEX);
+        /**
+         * One {@link VariableMailSummary} for each variable, as the output of {@link #getSummaryOutput()}. This
+         * component itself produces no results.
+         */
+        PER_VARIABLE,
+        
+        /**
+         * Both {@link #PER_MAIL} and {@link #PER_VARIABLE} results.
+         */
+        BOTH,
         
-        config.registerSetting(URL_PREFIX);
-        this.urlPrefix = config.getValue(URL_PREFIX);
     }
-
+    
     /**
-     * Searches the given mail for any relevant variables.
-     * 
-     * @param in The mail to read.
-     * 
-     * @throws IOException If reading the mail fails.
+     * A mail that flows through the stages of the {@link Pipeline}.
      */
-    private void searchInMail(@NonNull BufferedReader in) throws IOException {
-        String messageId = null;
-        String line;
-        while ((line = in.readLine()) != null) {
-            String header = line.toLowerCase();
-            if (header.startsWith("message-id:")) {
-                messageId = line.substring("message-id:".length()).trim();
-                if (!messageId.isEmpty()
-                        && messageId.charAt(0) == '<' && messageId.charAt(messageId.length() - 1) == '>') {
-                    messageId = messageId.substring(1, messageId.length() - 1);
-                }
-            }
-            
-            // only parse the header of the mail
-            if (line.isEmpty()) {
-                break;
-            }
-        }
+    private static final class MailItem {
         
-        if (messageId == null) {
-            // couldn't find any message id...
-            return;
-        }
+        private @NonNull String commit;
         
-        // read the rest of the mail and search for variables
-        Map<String, Integer> foundVars = new HashMap<>();
-        while ((line = in.readLine()) != null) {
-            Matcher m = varRegex.matcher(line);
-            while (m.find()) {
-                foundVars.put(m.group(), foundVars.getOrDefault(m.group(), 0) + 1);
-            }
-        }
+        private byte @NonNull [] content;
         
-        if (!foundVars.isEmpty()) {
-            String mailId = urlPrefix + URLEncoder.encode(messageId, "UTF-8");
-            for (Map.Entry<String, Integer> entry : foundVars.entrySet()) {
-                addResult(new VariableMailLocation(entry.getKey(), mailId, entry.getValue()));
-            }
+        private @Nullable BufferedReader in;
+        
+        private @Nullable ByteBuffer buffer;
+        
+        private @Nullable String messageId;
+        
+        private @NonNull List<@NonNull VariableMailLocation> results;
+        
+        /**
+         * The blob id of the mail, if a scan cache is used. Reset to <code>null</code> if the mail could not be read
+         * completely, so that the incomplete result is not cached.
+         */
+        private @Nullable String blobId;
+        
+        /**
+         * Whether the results of this mail are final already (e.g. taken from the scan cache), so that it does not
+         * have to be searched.
+         */
+        private boolean complete;
+        
+        /**
+         * Creates an item for a mail that was just read.
+         * 
+         * @param commit The commit that contains the mail.
+         * @param content The content of the mail.
+         */
+        MailItem(@NonNull String commit, byte @NonNull [] content) {
+            this.commit = commit;
+            this.content = content;
+            this.results = new ArrayList<>();
         }
+        
     }
     
     /**
-     * Executes this analysis on the given git repository.
-     * 
-     * @param gitRepo The git repository containing the already checked-out mail archive.
+     * Receives the results of a single mail source. The results of the epochs of a public-inbox archive are held back
+     * until all previous epochs are complete, so that the mails of the archive are emitted in chronological order
+     * although the epochs are crawled in parallel. To bound the held results, an epoch is only started once it is at
+     * most {@link #epochsInFlight} epochs after the oldest one that is not complete. All fields are guarded by
+     * {@link #resultLock}.
      */
-    private void execute(@NonNull GitRepository gitRepo) {
-        List<@NonNull String> commits;
-        try {
-            gitRepo.checkout("master");
-            commits = gitRepo.listAllCommits();
-        } catch (GitException e) {
-            LOGGER.logException("Couldn't initialize git repository", e);
-            return;
-        }
+    private final class SourceOutput {
         
-        File m = new File("m");
+        /**
+         * The checkpoint position in the mail source; <code>null</code> if no checkpoints are written.
+         */
+        private @Nullable SourcePosition position;
         
-        ProgressLogger progress = new ProgressLogger("VariableInMailingListLocator (parsing mails)", commits.size());
-        for (String commit : commits) {
-            try {
-                // check out only the relevant file; this is slightly faster than a full checkout
-                gitRepo.checkout(commit, m);
-            } catch (GitException e) {
-                LOGGER.logException("Couldn't check out commit: " + commit, e);
+        /**
+         * The output that is released once this one is finished; <code>null</code> if this is the last one.
+         */
+        private @Nullable SourceOutput next;
+        
+        /**
+         * Whether the results are emitted directly; otherwise, they are held back.
+         */
+        private boolean released;
+        
+        /**
+         * Whether the mail source has been crawled (successfully or not).
+         */
+        private boolean finished;
+        
+        /**
+         * Whether the mail source has been crawled successfully, so that its checkpoint position is done.
+         */
+        private boolean complete;
+        
+        /**
+         * The key of the mail source in the crawl state; <code>null</code> if no crawl state is kept.
+         */
+        private @Nullable String stateKey;
+        
+        /**
+         * The commit that the mail source has been crawled up to, stored in the crawl state once all results are
+         * emitted; <code>null</code> if not crawled successfully (yet).
+         */
+        private @Nullable String head;
+        
+        private @NonNull List<@NonNull List<@NonNull VariableMailLocation>> heldResults = new ArrayList<>();
+        
+        private @NonNull List<@NonNull Integer> heldMails = new ArrayList<>();
+        
+        /**
+         * Starts crawling the mail source of this output; <code>null</code> if it is started already or crawled
+         * directly.
+         */
+        private @Nullable Runnable task;
+        
+        /**
+         * The output whose mail source is started once this one is released; <code>null</code> if there is none.
+         */
+        private @Nullable SourceOutput startOnRelease;
+        
+        /**
+         * Creates an output.
+         * 
+         * @param released Whether the results are emitted directly.
+         */
+        SourceOutput(boolean released) {
+            this.released = released;
+        }
+        
+        /**
+         * Emits the given results, or holds them back until this output is released.
+         * 
+         * @param results The results to emit.
+         * @param numMails The number of mails that the results are from, including the mails without results.
+         */
+        void emit(@NonNull List<@NonNull VariableMailLocation> results, int numMails) {
+            synchronized (resultLock) {
+                if (released) {
+                    emitResults(results, position, numMails);
+                } else {
+                    heldResults.add(results);
+                    heldMails.add(numMails);
+                }
             }
-            
-            try (BufferedReader in = new BufferedReader(new FileReader(new File(gitRepo.getWorkingDirectory(), "m")))) {
-                
-                searchInMail(in);
-                
-            } catch (IOException e) {
-                LOGGER.logException("Couldn't read mail", e);
+        }
+        
+        /**
+         * Marks the mail source as crawled. If this output is released already, the next one is released.
+         */
+        void finish() {
+            synchronized (resultLock) {
+                finished = true;
+                if (released) {
+                    completed();
+                }
             }
-            
-            progress.processedOne();
         }
         
-        progress.close();
-
-        // reset HEAD to master to leave the repository "clean"
-        try {
-            gitRepo.checkout("master");
-        } catch (GitException e) {
-            LOGGER.logExceptionWarning("Couldn't reset HEAD to master (after finishing crawling)", e);
+        /**
+         * Starts crawling the mail source of this output, if this has not happened yet.
+         */
+        void start() {
+            synchronized (resultLock) {
+                Runnable task = this.task;
+                this.task = null;
+                if (task != null) {
+                    task.run();
+                }
+            }
         }
-    }
-    
-    @Override
-    protected void execute() {
-        ProgressLogger progress = new ProgressLogger("VariableInMailingListLocator (crawling mail sources)",
-                this.mailSources.size());
         
-        for (String mailSource : this.mailSources) {
-            File dir = new File(mailSource);
-            if (dir.isDirectory()) {
-                // mailSource is a locally checked-out git repository
-                try {
-                    execute(new GitRepository(dir));
-                } catch (GitException e) {
-                    LOGGER.logException(mailSource + " is not a valid git repository", e);
+        /**
+         * Emits all results that were held back and emits the following results directly. If the mail source is
+         * crawled already, the next output is released as well.
+         */
+        void release() {
+            synchronized (resultLock) {
+                released = true;
+                SourceOutput startOnRelease = this.startOnRelease;
+                if (startOnRelease != null) {
+                    startOnRelease.start();
                 }
-            } else {
-                // mailSource is a remote URL
-                File dest = null;
+                for (int i = 0; i < heldResults.size(); i++) {
+                    emitResults(notNull(heldResults.get(i)), position, notNull(heldMails.get(i)));
+                }
+                heldResults.clear();
+                heldMails.clear();
+                if (finished) {
+                    completed();
+                }
+            }
+        }
+        
+        /**
+         * Called once all results of this output have been emitted.
+         */
+        private void completed() {
+            SourcePosition position = this.position;
+            if (complete && position != null) {
+                position.setDone();
+            }
+            // only now, so that an aborted run never skips held back results in the next run
+            CrawlState crawlState = VariableInMailingListLocator.this.crawlState;
+            String stateKey = this.stateKey;
+            String head = this.head;
+            if (complete && crawlState != null && stateKey != null && head != null) {
                 try {
-                    dest = File.createTempFile("cloned_mail_source", ".git");
-                    dest.delete();
-                    
-                    execute(GitRepository.clone(mailSource, dest));
-                    
-                } catch (IOException | GitException e) {
-                    LOGGER.logException("Could not clone " + mailSource, e);
-                } finally {
-                    if (dest != null) {
-                        try {
-                            Util.deleteFolder(dest);
-                        } catch (IOException e) {
-                            LOGGER.logException("Couldn't clear temporary checkout", e);
-                        }
-                    }
+                    crawlState.setLastCommit(stateKey, head);
+                } catch (IOException e) {
+                    LOGGER.logException("Couldn't store crawl state", e);
                 }
             }
-            
-            progress.processedOne();
+            SourceOutput next = this.next;
+            if (next != null) {
+                next.release();
+            }
         }
         
-        progress.close();
     }
-
+    
+    public static final @NonNull ListSetting<@NonNull String> MAIL_SOURCES = new ListSetting<>(
+        "analysis.mail_locator.mail_sources", Type.STRING, true, "List of Git repositories that contain "
+                + "the mails to be searched. These may be remote URLs or local directories. In the first case, the "
+                + "remote will be cloned into a temporary directory. In the second case, the master branch of the "
+                + "existing repository will be read directly, without modifying its working tree. Public-inbox v2 "
+                + "archives (local directories or URLs of the archive root) are detected automatically; their "
+                + "epochs (git/0.git, git/1.git, ...) are crawled as separate mail sources.");
+    
+    public static final @NonNull Setting<@Nullable Pattern> VAR_REGEX = new Setting<>(
+        "analysis.mail_locator.variable_regex", Type.REGEX, false, null, "Specifies the regular expression used to "
+                + "find relevant variables. Exactly one of this and analysis.mail_locator.variable_dictionary has to "
+                + "be specified.");
+    
+    public static final @NonNull Setting<@Nullable File> VAR_DICTIONARY = new Setting<>(
+        "analysis.mail_locator.variable_dictionary", Type.FILE, false, null, "A file that lists the variables to find, "
+                + "one per line (empty lines and lines starting with # are ignored). Each variable has to be an "
+                + "identifier of the characters [A-Za-z0-9_], and only complete identifiers are matched. All "
+                + "variables are found in a single pass over each mail, independent of their number. Exactly one of "
+                + "this and " + VAR_REGEX.getKey() + " has to be specified.");
+    
+    public static final @NonNull Setting<@NonNull String> URL_PREFIX = new Setting<>(
+            "analysis.mail_locator.url_prefix", Type.STRING, true, null, "Specifies an URL prefix for the mails. The "
+                    + "message-id of the mail will be appended to this string (with slashes replaced by %2F) to "
+                    + "create the identifier of the mail.");
+    
+    public static final @NonNull EnumSetting<@NonNull MailReader> MAIL_READER = new EnumSetting<>(
+            "analysis.mail_locator.mail_reader", MailReader.class, true, MailReader.GIT_PROCESS, "Specifies how the "
+                    + "mails are read from the git repositories:\n"
+                    + " - " + MailReader.GIT_PROCESS + ": Through a single git cat-file process per mail source.\n"
+                    + " - " + MailReader.IN_PROCESS + ": Directly from the object database of the repository, without "
+                    + "any git process.\n"
+                    + " - " + MailReader.LOG_STREAM + ": From the diffs of a single git log process per mail "
+                    + "source.\n"
+                    + " - " + MailReader.CHANGED_PATHS + ": Reads every file that a commit adds or modifies, found "
+                    + "through a single git log --raw process per mail source. For archives that store each mail in "
+                    + "a file of its own (e.g. the public-inbox v1 layout), instead of all mails in the file m.");
+    
+    public static final @NonNull ListSetting<@NonNull String> CHANGED_PATHS = new ListSetting<>(
+        "analysis.mail_locator.changed_paths", Type.STRING, false, "The git pathspecs of the files that are read as "
+                + "mails if " + MAIL_READER.getKey() + " is " + MailReader.CHANGED_PATHS + ". If not specified, the "
+                + "file m and all files in subdirectories are read, except for dotfiles and files in dot directories "
+                + "(i.e. m, */*, :!.* and :!*/.*); other top-level files, like a README or scripts, are no mails.");
+    
+    public static final @NonNull EnumSetting<@NonNull CommitOrder> COMMIT_ORDER = new EnumSetting<>(
+            "analysis.mail_locator.commit_order", CommitOrder.class, true, CommitOrder.AUTHOR_DATE, "Specifies the "
+                    + "order in which the mails (commits) of a mail source are processed:\n"
+                    + " - " + CommitOrder.AUTHOR_DATE + ": Oldest to newest. The complete history has to be read "
+                    + "before the first mail can be processed.\n"
+                    + " - " + CommitOrder.NEWEST_FIRST + ": Newest to oldest. Processing starts immediately.");
+    
+    public static final @NonNull Setting<@Nullable String> SINCE = new Setting<>(
+            "analysis.mail_locator.since", Type.STRING, false, null, "If specified, only the mails that were added to "
+                    + "the mail sources at or after this date are searched. The date is either a day (e.g. 2019-06-04, "
+                    + "in UTC) or a time with offset (e.g. 2019-06-04T13:08:00+02:00). The commit date of the mails "
+                    + "is used; git stops walking the history at the first older commit, so the older mails are "
+                    + "never read.");
+    
+    public static final @NonNull Setting<@Nullable String> UNTIL = new Setting<>(
+            "analysis.mail_locator.until", Type.STRING, false, null, "If specified, only the mails that were added to "
+                    + "the mail sources at or before this date are searched. The format is the same as for "
+                    + SINCE.getKey() + "; a day includes the complete day.");
+    
+    public static final @NonNull Setting<@Nullable File> CRAWL_STATE_FILE = new Setting<>(
+            "analysis.mail_locator.crawl_state_file", Type.PATH, false, null, "If specified, the last processed "
+                    + "commit of each mail source is stored in this file. Subsequent runs only process the mails that "
+                    + "were added since, and thus only produce results for these new mails. The state is kept "
+                    + "separately for each combination of mail source, " + VAR_REGEX.getKey() + " (or "
+                    + VAR_DICTIONARY.getKey() + "), "
+                    + URL_PREFIX.getKey() + ", " + MAIL_READER.getKey() + ", analysis.mail_locator.mail_scanner and "
+                    + "the date range given by " + SINCE.getKey() + " and " + UNTIL.getKey() + ".");
+    
+    public static final @NonNull Setting<@Nullable File> CLONE_CACHE_DIR = new Setting<>(
+            "analysis.mail_locator.clone_cache_dir", Type.PATH, false, null, "If specified, remote mail sources are "
+                    + "cloned into this directory once and updated with git fetch on subsequent runs, instead of being "
+                    + "cloned into a temporary directory on every run. The directory may be shared by concurrent "
+                    + "runs.");
+    
+    public static final @NonNull Setting<@NonNull Integer> CLONE_CACHE_QUOTA = new Setting<>(
+            "analysis.mail_locator.clone_cache_quota", Type.INTEGER, true, "0", "The maximum size of "
+                    + CLONE_CACHE_DIR.getKey() + " in megabytes. If it is exceeded, the least recently used clones are "
+                    + "deleted. 0 means unlimited.");
+    
+    public static final @NonNull EnumSetting<@NonNull CloneType> CLONE_TYPE = new EnumSetting<>(
+            "analysis.mail_locator.clone_type", CloneType.class, true, CloneType.FULL, "Specifies how remote mail "
+                    + "sources are cloned:\n"
+                    + " - " + CloneType.FULL + ": A regular clone with a working tree.\n"
+                    + " - " + CloneType.BARE + ": A bare clone, without a working tree.\n"
+                    + " - " + CloneType.MIRROR + ": A mirror clone, without a working tree.");
+    
+    public static final @NonNull Setting<@Nullable String> CLONE_FILTER = new Setting<>(
+            "analysis.mail_locator.clone_filter", Type.STRING, false, null, "If specified, remote mail sources are "
+                    + "cloned as partial clones with this object filter (e.g. blob:none). The missing mails are "
+                    + "fetched in bulk before they are read. The remote has to support partial clones.");
+    
+    public static final @NonNull Setting<@NonNull Integer> NUM_THREADS = new Setting<>(
+            "analysis.mail_locator.threads", Type.INTEGER, true, "1", "The number of mail sources that are crawled in "
+                    + "parallel. The largest sources are started first. The order of the results is not deterministic "
+                    + "if more than one thread is used, except within a public-inbox archive: the results of its "
+                    + "epochs are emitted in the order of the epochs.");
+    
+    public static final @NonNull Setting<@NonNull Integer> EPOCHS_IN_FLIGHT = new Setting<>(
+            "analysis.mail_locator.epochs_in_flight", Type.INTEGER, true, "4", "The maximum number of epochs of a "
+                    + "public-inbox archive that are crawled at the same time, if more than one thread is used. An "
+                    + "epoch is only started once it is less than this many epochs after the oldest epoch that is not "
+                    + "complete, since the results of later epochs are held in memory until all previous epochs are "
+                    + "complete. Has to be at least 1.");
+    
+    public static final @NonNull Setting<@NonNull Integer> NUM_PARTITIONS = new Setting<>(
+            "analysis.mail_locator.partitions", Type.INTEGER, true, "1", "The number of threads that search the "
+                    + "commits of a single mail source in parallel, each with its own reader. The commits are split "
+                    + "into consecutive chunks of " + VariableInMailingListLocator.PARTITION_CHUNK_SIZE + " commits; "
+                    + "each chunk's results are emitted (and checkpointed) as soon as it and all previous chunks are "
+                    + "done. Not supported by " + MailReader.LOG_STREAM + " and " + MailReader.CHANGED_PATHS
+                    + ", which always read a mail source as a single stream.");
+    
+    public static final @NonNull Setting<@NonNull Integer> PIPELINE_DEPTH = new Setting<>(
+            "analysis.mail_locator.pipeline_depth", Type.INTEGER, true, "0", "If greater than 0, reading the mails, "
+                    + "parsing their headers, searching their bodies and passing on the results run as separate "
+                    + "pipeline stages on their own threads. Each stage buffers at most this many mails; if a stage "
+                    + "(or the next component) is slow, the previous stages wait for it. 0 processes each mail "
+                    + "completely before reading the next one. Not used if " + NUM_PARTITIONS.getKey()
+                    + " is greater than 1.");
+    
+    public static final @NonNull Setting<@NonNull Integer> HEADER_THREADS = new Setting<>(
+            "analysis.mail_locator.header_threads", Type.INTEGER, true, "1", "The number of threads that parse the "
+                    + "mail headers, if " + PIPELINE_DEPTH.getKey() + " is greater than 0. The order of the results is "
+                    + "not deterministic if more than one thread is used.");
+    
+    public static final @NonNull Setting<@NonNull Integer> MATCHER_THREADS = new Setting<>(
+            "analysis.mail_locator.matcher_threads", Type.INTEGER, true, "1", "The number of threads that search the "
+                    + "mail bodies, if " + PIPELINE_DEPTH.getKey() + " is greater than 0. The order of the results is "
+                    + "not deterministic if more than one thread is used.");
+    
+    public static final @NonNull Setting<@NonNull Integer> MAX_GIT_PROCESSES = new Setting<>(
+            "analysis.mail_locator.max_git_processes", Type.INTEGER, true, "0", "The maximum number of threads "
+                    + "that run git processes at the same time. A thread that already runs a git process may start "
+                    + "further ones (e.g. a commit listing and a mail reader), so that it never waits for itself. 0 "
+                    + "means unlimited.");
+    
+    public static final @NonNull Setting<@NonNull Boolean> VIRTUAL_THREADS = new Setting<>(
+            "analysis.mail_locator.virtual_threads", Type.BOOLEAN, true, "false", "If true, the mail sources and "
+                    + "partitions are crawled on virtual threads and all threads that wait for git processes are "
+                    + "virtual threads. " + NUM_THREADS.getKey() + " is ignored in this case; all mail sources are "
+                    + "started at once and limited only by " + MAX_GIT_PROCESSES.getKey() + ". Requires Java 21 or "
+                    + "newer; otherwise, platform threads are used.");
+    
+    public static final @NonNull EnumSetting<@NonNull MailScanner> MAIL_SCANNER = new EnumSetting<>(
+            "analysis.mail_locator.mail_scanner", MailScanner.class, true, MailScanner.LINE_READER, "Specifies how the "
+                    + "mails are searched for variables:\n"
+                    + " - " + MailScanner.LINE_READER + ": Each line is decoded to a string before the regular "
+                    + "expression runs on it.\n"
+                    + " - " + MailScanner.BYTES + ": The regular expression runs directly on the raw bytes and only "
+                    + "the matches are decoded. Only suitable for regular expressions that match ASCII text.");
+    
+    public static final @NonNull EnumSetting<@NonNull ResultGranularity> RESULT_GRANULARITY = new EnumSetting<>(
+            "analysis.mail_locator.result_granularity", ResultGranularity.class, true, ResultGranularity.PER_MAIL,
+            "Specifies which results are produced:\n"
+                    + " - " + ResultGranularity.PER_MAIL + ": One row for each variable in each mail.\n"
+                    + " - " + ResultGranularity.PER_VARIABLE + ": One row for each variable, with the total number of "
+                    + "occurrences, the number of mails and the first and last mail that it was found in. These rows "
+                    + "are the output of the summary helper component; the main output stays empty.\n"
+                    + " - " + ResultGranularity.BOTH + ": Both of the above.\n"
+                    + "If a crawl state is used, the summaries only cover the mails of the current run.");
+    
+    public static final @NonNull Setting<@Nullable File> INDEX_FILE = new Setting<>(
+            "analysis.mail_locator.index_file", Type.PATH, false, null, "If specified, an inverted index from each "
+                    + "variable to the mails that it was found in is written to this file after all mail sources have "
+                    + "been crawled. The index can be queried with the InvertedIndex class without loading it into "
+                    + "memory. If a crawl state is used, the index only covers the mails of the current run.");
+    
+    public static final @NonNull Setting<@Nullable File> SCAN_CACHE_DIR = new Setting<>(
+            "analysis.mail_locator.scan_cache_dir", Type.PATH, false, null, "If specified, the variables found in "
+                    + "each mail are cached in this directory, keyed by the git blob id of the mail. Subsequent runs "
+                    + "with the same " + VAR_REGEX.getKey() + " (or " + VAR_DICTIONARY.getKey() + ") and "
+                    + "mail scanner skip the search for all mails that are cached, even in other clones or mirrors of "
+                    + "the same mail archive. The cache can only be used by one process at a time.");
+    
+    public static final @NonNull Setting<@Nullable File> CHECKPOINT_DIR = new Setting<>(
+            "analysis.mail_locator.checkpoint_dir", Type.PATH, false, null, "If specified, the progress of the crawl "
+                    + "(the number of processed mails of each mail source and the aggregated summaries and index) is "
+                    + "periodically saved in this directory. If a run is aborted, the next run with the same "
+                    + "configuration resumes from the last checkpoint: the mails that were processed before are "
+                    + "skipped, so their per-mail results are not produced again, but the summaries and the index "
+                    + "still include them. The checkpoint is deleted after the crawl has completed. Not supported if "
+                    + "more than one header or matcher thread is used.");
+    
+    public static final @NonNull Setting<@NonNull Integer> CHECKPOINT_INTERVAL = new Setting<>(
+            "analysis.mail_locator.checkpoint_interval", Type.INTEGER, true, "300", "The number of seconds between "
+                    + "two checkpoints, if " + CHECKPOINT_DIR.getKey() + " is specified.");
+    
+    public static final @NonNull Setting<@NonNull Boolean> JMX_METRICS = new Setting<>(
+            "analysis.mail_locator.jmx_metrics", Type.BOOLEAN, true, "false", "If true, live metrics of the crawl "
+                    + "(mails, bytes and matches per second, the time spent reading, searching and emitting the mails, "
+                    + "the current mail sources and the queue depths of the pipelines) are published as an MBean "
+                    + "while the crawl runs, e.g. for JConsole or VisualVM. The MBean is named "
+                    + "net.ssehub.kernel_haven.entity_locator:type=VariableInMailingListLocator,id=<number>.");
+    
+    private static final @NonNull String BRANCH = "master";
+    
+    /**
+     * The number of consecutive commits that are searched as one chunk if {@link #NUM_PARTITIONS} is greater than 1.
+     */
+    private static final int PARTITION_CHUNK_SIZE = 2000;
+    
+    /**
+     * The pathspecs that are used if {@link #CHANGED_PATHS} is not specified.
+     */
+    static final @NonNull List<@NonNull String> DEFAULT_CHANGED_PATHS = notNull(Collections.unmodifiableList(
+            Arrays.asList("m", "*/*", ":!.*", ":!*/.*")));
+    
+    private static final @NonNull AtomicInteger NEXT_METRICS_ID = new AtomicInteger();
+    
+    private @NonNull Configuration config;
+    
+    private @NonNull List<@NonNull String> mailSources;
+    
+    private @Nullable Pattern varRegex;
+    
+    private @Nullable SymbolDictionary dictionary;
+    
+    private @NonNull MailScanner mailScanner;
+    
+    private @Nullable ByteMailScanner byteScanner;
+    
+    private @Nullable LiteralPrefilter prefilter;
+    
+    private @NonNull String urlPrefix;
+    
+    private @NonNull MailReader mailReader;
+    
+    private @NonNull List<@NonNull String> changedPaths;
+    
+    private @NonNull CommitOrder commitOrder;
+    
+    private @NonNull CommitDateRange dateRange;
+    
+    private @Nullable CrawlState crawlState;
+    
+    private volatile @Nullable Consumer<@NonNull String> searchedListener;
+    
+    private @Nullable CloneCache cloneCache;
+    
+    private @NonNull CloneType cloneType;
+    
+    private @Nullable String cloneFilter;
+    
+    private int numThreads;
+    
+    private int epochsInFlight;
+    
+    private int numPartitions;
+    
+    /**
+     * Controls how the git processes of this locator are run; see {@link #VIRTUAL_THREADS} and
+     * {@link #MAX_GIT_PROCESSES}.
+     */
+    private @NonNull GitExecution gitExecution;
+    
+    private int pipelineDepth;
+    
+    private int headerThreads;
+    
+    private int matcherThreads;
+    
+    private final @NonNull Object resultLock = new Object();
+    
+    private @NonNull ResultGranularity resultGranularity;
+    
+    /**
+     * The aggregated results for {@link ResultGranularity#PER_VARIABLE}; <code>null</code> if not required. Guarded by
+     * {@link #resultLock}.
+     */
+    private @Nullable VariableStatistics statistics;
+    
+    private @Nullable SummaryComponent summaryOutput;
+    
+    private @Nullable File indexFile;
+    
+    /**
+     * Collects the postings for {@link #indexFile}; <code>null</code> if no index is written. Guarded by
+     * {@link #resultLock}.
+     */
+    private @Nullable InvertedIndexWriter indexWriter;
+    
+    private @Nullable ScanCache scanCache;
+    
+    private final @NonNull AtomicLong scanCacheHits = new AtomicLong();
+    
+    private final @NonNull AtomicLong scanCacheMisses = new AtomicLong();
+    
+    /**
+     * The checkpoint of the crawl; <code>null</code> if no checkpoints are written. Guarded by {@link #resultLock}.
+     */
+    private @Nullable CrawlCheckpoint checkpoint;
+    
+    private long checkpointInterval;
+    
+    /**
+     * The time of the last checkpoint, in the units of {@link System#nanoTime()}. Guarded by {@link #resultLock}.
+     */
+    private long lastCheckpoint;
+    
+    private final @NonNull LocatorMetrics metrics = new LocatorMetrics();
+    
+    private boolean jmxMetrics;
+    
+    private final @NonNull Object crawlLock = new Object();
+    
+    private boolean crawled;
+    
+    /**
+     * The names of the variables found in this run. Not shared with other locators, so that it is released together
+     * with this locator.
+     */
+    private final @NonNull SymbolTable symbols = new SymbolTable();
+    
+    /**
+     * The counter for the variables of the current mail, re-used for all mails of a thread.
+     */
+    private final @NonNull ThreadLocal<@NonNull MatchCounter> counters
+            = ThreadLocal.withInitial(() -> new MatchCounter(symbols));
+    
+    /**
+     * The matcher for the lines of the current mail, re-used for all lines of a thread. Only used for
+     * {@link MailScanner#LINE_READER} with a regular expression.
+     */
+    private final @NonNull ThreadLocal<@NonNull Matcher> lineMatchers
+            = ThreadLocal.withInitial(() -> notNull(varRegex).matcher(""));
+    
+    /**
+     * Creates this component.
+     * 
+     * @param config The pipeline configuration.
+     * 
+     * @throws SetUpException If setting up this component fails.
+     */
+    public VariableInMailingListLocator(@NonNull Configuration config) throws SetUpException {
+        super(config);
+        this.config = config;
+        
+        config.registerSetting(MAIL_SOURCES);
+        this.mailSources = config.getValue(MAIL_SOURCES);
+        if (mailSources.isEmpty()) {
+            throw new SetUpException("No mail source given in " + MAIL_SOURCES.getKey());
+        }
+        
+        config.registerSetting(VAR_REGEX);
+        config.registerSetting(VAR_DICTIONARY);
+        Pattern varRegex = config.getValue(VAR_REGEX);
+        File dictionaryFile = config.getValue(VAR_DICTIONARY);
+        if ((varRegex == null) == (dictionaryFile == null)) {
+            throw new SetUpException("Exactly one of " + VAR_REGEX.getKey() + " and " + VAR_DICTIONARY.getKey()
+                    + " has to be specified");
+        }
+        if (varRegex != null) {
+            this.varRegex = varRegex;
+            this.byteScanner = new ByteMailScanner(varRegex);
+            this.prefilter = LiteralPrefilter.create(varRegex);
+        } else {
+            try {
+                this.dictionary = SymbolDictionary.load(notNull(dictionaryFile));
+            } catch (IOException e) {
+                throw new SetUpException("Couldn't read variable dictionary " + dictionaryFile, e);
+            }
+        }
+        
+        config.registerSetting(MAIL_SCANNER);
+        this.mailScanner = config.getValue(MAIL_SCANNER);
+        
+        config.registerSetting(RESULT_GRANULARITY);
+        this.resultGranularity = config.getValue(RESULT_GRANULARITY);
+        if (resultGranularity != ResultGranularity.PER_MAIL) {
+            this.statistics = new VariableStatistics(symbols);
+        }
+        
+        config.registerSetting(INDEX_FILE);
+        this.indexFile = config.getValue(INDEX_FILE);
+        if (indexFile != null) {
+            this.indexWriter = new InvertedIndexWriter(symbols);
+        }
+        
+        config.registerSetting(SCAN_CACHE_DIR);
+        File scanCacheDir = config.getValue(SCAN_CACHE_DIR);
+        if (scanCacheDir != null) {
+            // the line reader and the byte scanner may find different variables in non-ASCII text
+            String fingerprint = CrawlState.createKey(getMatcherKey(), mailScanner.name());
+            try {
+                this.scanCache = new ScanCache(scanCacheDir, fingerprint);
+            } catch (IOException e) {
+                LOGGER.logException("Couldn't open scan cache in " + scanCacheDir + "; scanning all mails", e);
+            }
+        }
+        
+        config.registerSetting(URL_PREFIX);
+        this.urlPrefix = config.getValue(URL_PREFIX);
+        
+        config.registerSetting(MAIL_READER);
+        this.mailReader = config.getValue(MAIL_READER);
+        
+        config.registerSetting(CHANGED_PATHS);
+        List<@NonNull String> changedPaths = config.getValue(CHANGED_PATHS);
+        this.changedPaths = changedPaths.isEmpty() ? DEFAULT_CHANGED_PATHS : changedPaths;
+        
+        config.registerSetting(COMMIT_ORDER);
+        this.commitOrder = config.getValue(COMMIT_ORDER);
+        
+        config.registerSetting(SINCE);
+        config.registerSetting(UNTIL);
+        try {
+            this.dateRange = CommitDateRange.parse(config.getValue(SINCE), config.getValue(UNTIL));
+        } catch (IllegalArgumentException e) {
+            throw new SetUpException("Invalid " + SINCE.getKey() + " or " + UNTIL.getKey(), e);
+        }
+        
+        config.registerSetting(CRAWL_STATE_FILE);
+        File crawlStateFile = config.getValue(CRAWL_STATE_FILE);
+        if (crawlStateFile != null) {
+            try {
+                this.crawlState = new CrawlState(crawlStateFile);
+            } catch (IOException e) {
+                throw new SetUpException("Couldn't read crawl state from " + crawlStateFile, e);
+            }
+        }
+        
+        config.registerSetting(NUM_THREADS);
+        this.numThreads = config.getValue(NUM_THREADS);
+        
+        config.registerSetting(EPOCHS_IN_FLIGHT);
+        this.epochsInFlight = config.getValue(EPOCHS_IN_FLIGHT);
+        if (epochsInFlight < 1) {
+            throw new SetUpException(EPOCHS_IN_FLIGHT.getKey() + " has to be at least 1");
+        }
+        
+        config.registerSetting(NUM_PARTITIONS);
+        this.numPartitions = config.getValue(NUM_PARTITIONS);
+        
+        config.registerSetting(VIRTUAL_THREADS);
+        config.registerSetting(MAX_GIT_PROCESSES);
+        this.gitExecution = new GitExecution(config.getValue(VIRTUAL_THREADS), config.getValue(MAX_GIT_PROCESSES));
+        
+        config.registerSetting(PIPELINE_DEPTH);
+        this.pipelineDepth = config.getValue(PIPELINE_DEPTH);
+        
+        config.registerSetting(HEADER_THREADS);
+        this.headerThreads = config.getValue(HEADER_THREADS);
+        
+        config.registerSetting(MATCHER_THREADS);
+        this.matcherThreads = config.getValue(MATCHER_THREADS);
+        
+        config.registerSetting(CLONE_TYPE);
+        this.cloneType = config.getValue(CLONE_TYPE);
+        
+        config.registerSetting(CLONE_FILTER);
+        this.cloneFilter = config.getValue(CLONE_FILTER);
+        
+        config.registerSetting(CLONE_CACHE_DIR);
+        config.registerSetting(CLONE_CACHE_QUOTA);
+        File cloneCacheDir = config.getValue(CLONE_CACHE_DIR);
+        if (cloneCacheDir != null) {
+            try {
+                this.cloneCache = new CloneCache(cloneCacheDir, config.getValue(CLONE_CACHE_QUOTA) * 1024L * 1024L,
+                        cloneType, cloneFilter, gitExecution);
+            } catch (IOException e) {
+                throw new SetUpException("Couldn't create clone cache", e);
+            }
+        }
+        
+        config.registerSetting(CHECKPOINT_DIR);
+        config.registerSetting(CHECKPOINT_INTERVAL);
+        this.checkpointInterval = TimeUnit.SECONDS.toNanos(config.getValue(CHECKPOINT_INTERVAL));
+        File checkpointDir = config.getValue(CHECKPOINT_DIR);
+        if (checkpointDir != null) {
+            if (pipelineDepth > 0 && numPartitions <= 1 && (headerThreads > 1 || matcherThreads > 1)) {
+                // mails may overtake each other, so the processed mails are not a prefix of the commits
+                throw new SetUpException(CHECKPOINT_DIR.getKey() + " is not supported with more than one header or "
+                        + "matcher thread");
+            }
+            try {
+                this.checkpoint = new CrawlCheckpoint(checkpointDir, getCheckpointKey());
+            } catch (IOException e) {
+                throw new SetUpException("Couldn't read checkpoint from " + checkpointDir, e);
+            }
+        }
+        
+        config.registerSetting(JMX_METRICS);
+        this.jmxMetrics = config.getValue(JMX_METRICS);
+    }
+
+    /**
+     * Reads the header of the given mail, up to the first empty line.
+     * 
+     * @param in The mail to read. Afterwards, this is positioned at the start of the body.
+     * 
+     * @return The message-id of the mail, or <code>null</code> if the header does not contain one.
+     * 
+     * @throws IOException If reading the mail fails.
+     */
+    private static @Nullable String parseHeader(@NonNull BufferedReader in) throws IOException {
+        String messageId = null;
+        String line;
+        while ((line = in.readLine()) != null) {
+            String header = line.toLowerCase();
+            if (header.startsWith("message-id:")) {
+                messageId = line.substring("message-id:".length()).trim();
+                if (!messageId.isEmpty()
+                        && messageId.charAt(0) == '<' && messageId.charAt(messageId.length() - 1) == '>') {
+                    messageId = messageId.substring(1, messageId.length() - 1);
+                }
+            }
+            
+            // only parse the header of the mail
+            if (line.isEmpty()) {
+                break;
+            }
+        }
+        return messageId;
+    }
+    
+    /**
+     * Searches the body of the given mail for relevant variables.
+     * 
+     * @param in The mail to read, positioned at the start of the body.
+     * @param messageId The message-id of the mail.
+     * 
+     * @return The locations of the variables found in the mail. Empty if none were found.
+     * 
+     * @throws IOException If reading the mail fails.
+     */
+    private @NonNull List<@NonNull VariableMailLocation> matchBody(@NonNull BufferedReader in,
+            @NonNull String messageId) throws IOException {
+        
+        // read the rest of the mail and search for variables
+        MatchCounter foundVars = notNull(counters.get());
+        foundVars.reset();
+        SymbolDictionary dictionary = this.dictionary;
+        LiteralPrefilter prefilter = this.prefilter;
+        Matcher m = dictionary == null ? notNull(lineMatchers.get()) : null;
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (m == null) {
+                notNull(dictionary).countMatches(line, foundVars);
+                continue;
+            }
+            
+            m.reset(line);
+            if (prefilter != null) {
+                // skip the regex for lines that can't contain a match
+                int candidate = line.indexOf(prefilter.getLiteral());
+                if (candidate == -1) {
+                    continue;
+                }
+                if (prefilter.canStartAtCandidate()) {
+                    m.region(candidate, line.length());
+                }
+            }
+            while (m.find()) {
+                foundVars.add(line, m.start(), m.end());
+            }
+        }
+        
+        return toLocations(foundVars, messageId);
+    }
+    
+    /**
+     * Searches the body of the given mail for relevant variables, directly on its raw bytes.
+     * 
+     * @param mail The mail, with the position of the buffer at the start of the body.
+     * @param messageId The message-id of the mail.
+     * 
+     * @return The locations of the variables found in the mail. Empty if none were found.
+     * 
+     * @throws IOException If encoding the message-id fails.
+     */
+    private @NonNull List<@NonNull VariableMailLocation> matchBody(@NonNull ByteBuffer mail,
+            @NonNull String messageId) throws IOException {
+        
+        MatchCounter foundVars = notNull(counters.get());
+        foundVars.reset();
+        SymbolDictionary dictionary = this.dictionary;
+        if (dictionary != null) {
+            dictionary.countMatches(mail, foundVars);
+        } else {
+            notNull(byteScanner).countMatches(mail, foundVars);
+        }
+        return toLocations(foundVars, messageId);
+    }
+    
+    /**
+     * Creates the result rows for the variables found in a mail.
+     * 
+     * @param foundVars The number of occurrences of each variable found in the mail.
+     * @param messageId The message-id of the mail.
+     * 
+     * @return The locations of the variables, in the order of their first occurrence. Empty if none were found.
+     * 
+     * @throws IOException If encoding the message-id fails.
+     */
+    private @NonNull List<@NonNull VariableMailLocation> toLocations(@NonNull MatchCounter foundVars,
+            @NonNull String messageId) throws IOException {
+        
+        List<@NonNull VariableMailLocation> result = new ArrayList<>(foundVars.size());
+        if (!foundVars.isEmpty()) {
+            String mailId = toMailIdentifier(messageId);
+            for (int i = 0; i < foundVars.size(); i++) {
+                result.add(new VariableMailLocation(symbols, foundVars.getId(i), mailId, foundVars.getCount(i)));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the URL for the given message-id.
+     * 
+     * @param messageId The message-id of a mail.
+     * 
+     * @return The identifier of the mail in the results.
+     * 
+     * @throws IOException If encoding the message-id fails.
+     */
+    private @NonNull String toMailIdentifier(@NonNull String messageId) throws IOException {
+        return urlPrefix + URLEncoder.encode(messageId, "UTF-8");
+    }
+    
+    /**
+     * Reads the header of the given mail, and prepares the body for {@link #matchBody(MailItem)}.
+     * 
+     * @param item The mail to read.
+     * 
+     * @return Whether the mail has a message-id. Mails without one never produce a result.
+     */
+    private boolean readHeader(@NonNull MailItem item) {
+        long start = System.nanoTime();
+        try {
+            if (mailScanner == MailScanner.BYTES) {
+                ByteBuffer buffer = ByteBuffer.wrap(item.content);
+                item.buffer = buffer;
+                item.messageId = ByteMailScanner.parseHeader(buffer);
+            } else {
+                BufferedReader in = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(item.content)));
+                item.in = in;
+                item.messageId = parseHeader(in);
+            }
+        } catch (IOException e) {
+            LOGGER.logException("Couldn't read mail of commit " + item.commit, e);
+            item.blobId = null;
+        }
+        metrics.scanned(System.nanoTime() - start);
+        if (item.messageId == null) {
+            metrics.mailWithoutMessageId();
+        }
+        return item.messageId != null;
+    }
+    
+    /**
+     * Searches the body of a mail whose header was read with {@link #readHeader(MailItem)}, and stores the found
+     * variables in the results of the item.
+     * 
+     * @param item The mail with a message-id.
+     */
+    private void matchBody(@NonNull MailItem item) {
+        long start = System.nanoTime();
+        try {
+            ByteBuffer buffer = item.buffer;
+            if (buffer != null) {
+                item.results = matchBody(buffer, notNull(item.messageId));
+            } else {
+                item.results = matchBody(notNull(item.in), notNull(item.messageId));
+            }
+        } catch (IOException e) {
+            LOGGER.logException("Couldn't read mail of commit " + item.commit, e);
+            item.blobId = null;
+        }
+        metrics.scanned(System.nanoTime() - start);
+    }
+    
+    /**
+     * Takes the results of the given mail from the scan cache, if it is cached.
+     * 
+     * @param item The mail that was just read.
+     * 
+     * @return Whether the results were found in the cache. If <code>true</code>, the mail does not have to be
+     *      searched.
+     */
+    private boolean lookupCache(@NonNull MailItem item) {
+        ScanCache scanCache = this.scanCache;
+        if (scanCache == null) {
+            return false;
+        }
+        
+        String blobId = ScanCache.computeBlobId(item.content);
+        item.blobId = blobId;
+        try {
+            ScanCache.Entry entry = scanCache.get(blobId);
+            if (entry == null) {
+                scanCacheMisses.incrementAndGet();
+                return false;
+            }
+            
+            String messageId = entry.getMessageId();
+            List<@NonNull VariableMailLocation> results = new ArrayList<>(entry.size());
+            if (messageId != null && entry.size() > 0) {
+                String mailId = toMailIdentifier(messageId);
+                for (int i = 0; i < entry.size(); i++) {
+                    results.add(new VariableMailLocation(symbols, symbols.intern(entry.getVariable(i)), mailId,
+                            entry.getCount(i)));
+                }
+            }
+            item.messageId = messageId;
+            item.results = results;
+            item.complete = true;
+            scanCacheHits.incrementAndGet();
+            return true;
+            
+        } catch (IOException e) {
+            LOGGER.logException("Couldn't read scan cache", e);
+            return false;
+        }
+    }
+    
+    /**
+     * Stores the results of the given mail in the scan cache, if one is used.
+     * 
+     * @param item The mail that was just searched.
+     */
+    private void storeCache(@NonNull MailItem item) {
+        ScanCache scanCache = this.scanCache;
+        String blobId = item.blobId;
+        if (scanCache == null || blobId == null) {
+            return;
+        }
+        
+        @NonNull String[] variables = new @NonNull String[item.results.size()];
+        int[] counts = new int[item.results.size()];
+        for (int i = 0; i < variables.length; i++) {
+            variables[i] = item.results.get(i).getVariable();
+            counts[i] = item.results.get(i).getNumOccurrences();
+        }
+        try {
+            scanCache.put(blobId, new ScanCache.Entry(item.messageId, variables, counts));
+        } catch (IOException e) {
+            LOGGER.logException("Couldn't write scan cache", e);
+        }
+    }
+    
+    /**
+     * Passes the given results to the next component.
+     * 
+     * @param results The results to emit.
+     * @param position The checkpoint position in the mail source, or <code>null</code> if no checkpoints are written.
+     * @param numMails The number of mails that the results are from, including the mails without results.
+     */
+    private void emitResults(@NonNull List<@NonNull VariableMailLocation> results,
+            @Nullable SourcePosition position, int numMails) {
+        
+        long start = System.nanoTime();
+        long numMatches = 0;
+        
+        // mails may be processed in parallel; keep the rows of one mail (or partition) together
+        synchronized (resultLock) {
+            VariableStatistics statistics = this.statistics;
+            InvertedIndexWriter indexWriter = this.indexWriter;
+            for (VariableMailLocation result : results) {
+                numMatches += result.getNumOccurrences();
+                if (resultGranularity != ResultGranularity.PER_VARIABLE) {
+                    addResult(result);
+                }
+                if (statistics != null) {
+                    statistics.add(result.getVariableId(), result.getMailIdentifier(), result.getNumOccurrences());
+                }
+                if (indexWriter != null) {
+                    indexWriter.add(result.getVariableId(), result.getMailIdentifier(), result.getNumOccurrences());
+                }
+            }
+            
+            if (position != null) {
+                position.advance(numMails, resultGranularity != ResultGranularity.PER_VARIABLE ? results.size() : 0);
+                if (System.nanoTime() - lastCheckpoint >= checkpointInterval) {
+                    writeCheckpoint();
+                }
+            }
+        }
+        
+        metrics.emitted(numMails, results.size(), numMatches, System.nanoTime() - start);
+    }
+    
+    /**
+     * Saves a checkpoint with the current positions and aggregated results. Has to be called while holding
+     * {@link #resultLock}.
+     */
+    private void writeCheckpoint() {
+        CrawlCheckpoint checkpoint = this.checkpoint;
+        if (checkpoint != null) {
+            try {
+                checkpoint.write(statistics, indexWriter);
+            } catch (IOException e) {
+                LOGGER.logException("Couldn't write checkpoint", e);
+            }
+            lastCheckpoint = System.nanoTime();
+        }
+    }
+    
+    /**
+     * Creates the pipeline that parses, searches and emits the mails read from a mail source. The mails are read by
+     * the thread that submits them into the pipeline.
+     * 
+     * @param mailSource The mail source that is read; used for the thread names.
+     * @param output The output to pass the results to.
+     * 
+     * @return The pipeline. Has to be closed by the caller.
+     */
+    private @NonNull Pipeline<@NonNull MailItem> createPipeline(@NonNull String mailSource,
+            @NonNull SourceOutput output) {
+        
+        Pipeline<@NonNull MailItem> pipeline = new Pipeline<>("VariableInMailingListLocator-"
+                + GitRepository.createRemoteName(mailSource), pipelineDepth, gitExecution);
+        
+        // mails without results are passed on as well, so that the emitter sees every mail for the checkpoint
+        pipeline.addStage("header", headerThreads, (item) -> {
+            if (!lookupCache(item) && !readHeader(item)) {
+                // mails without message-id never produce a result
+                storeCache(item);
+                item.complete = true;
+            }
+            return true;
+        });
+        
+        pipeline.addStage("matcher", matcherThreads, (item) -> {
+            if (!item.complete) {
+                matchBody(item);
+                storeCache(item);
+            }
+            return true;
+        });
+        
+        // a single emitter thread, so that the next component sees the results of one mail at a time
+        pipeline.addStage("emitter", 1, (item) -> {
+            output.emit(item.results, 1);
+            return true;
+        });
+        
+        return pipeline;
+    }
+    
+    /**
+     * Returns a key that identifies which variables are searched for, i.e. the regular expression or the content of
+     * the dictionary.
+     * 
+     * @return The key of the variable matcher.
+     */
+    private @NonNull String getMatcherKey() {
+        SymbolDictionary dictionary = this.dictionary;
+        return dictionary != null ? "dictionary:" + dictionary.getFingerprint() : notNull(notNull(varRegex).pattern());
+    }
+    
+    /**
+     * Returns a key that identifies the configuration options that change the result of a crawl that is resumed from
+     * a checkpoint.
+     * 
+     * @return The key of the checkpoint.
+     */
+    @NonNull String getCheckpointKey() {
+        // the reader and the commit order change the order of the mails, i.e. the meaning of the positions
+        return CrawlState.createKey(String.join("\n", mailSources), getMatcherKey(), mailScanner.name(), urlPrefix,
+                getReaderKey(), commitOrder.name(), dateRange.toString(), resultGranularity.name(),
+                String.valueOf(indexFile != null), String.valueOf(crawlState != null));
+    }
+    
+    /**
+     * Returns the part of the crawl state and checkpoint keys that identifies the mail reader. For
+     * {@link MailReader#CHANGED_PATHS}, this includes the {@link #CHANGED_PATHS} pathspecs, since they select the
+     * mails.
+     * 
+     * @return The key of the mail reader.
+     */
+    @NonNull String getReaderKey() {
+        return getReaderKey(mailReader, changedPaths);
+    }
+    
+    /**
+     * Returns the part of the crawl state and checkpoint keys that identifies the given mail reader.
+     * 
+     * @param mailReader The mail reader.
+     * @param changedPaths The pathspecs of the mails for {@link MailReader#CHANGED_PATHS}.
+     * 
+     * @return The key of the mail reader.
+     */
+    static @NonNull String getReaderKey(@NonNull MailReader mailReader, @NonNull List<@NonNull String> changedPaths) {
+        if (mailReader != MailReader.CHANGED_PATHS) {
+            return notNull(mailReader.name());
+        }
+        return mailReader.name() + "\n" + String.join("\n", changedPaths);
+    }
+    
+    /**
+     * Determines the commit that the given repository is crawled up to, and the revision (range) to crawl.
+     * 
+     * @param gitRepo The git repository containing the mail archive.
+     * @param database The object database of the repository, if the mails should be read in-process.
+     * @param mailSource The mail source that the repository was created for, as specified in the configuration.
+     * @param stateKey The key of the mail source in the crawl state.
+     * 
+     * @return The head commit and the revision (range) to crawl.
+     * 
+     * @throws GitException If resolving the commits fails.
+     */
+    private @NonNull String @NonNull [] resolveRevision(@NonNull GitRepository gitRepo,
+            @Nullable GitObjectDatabase database, @NonNull String mailSource, @NonNull String stateKey)
+            throws GitException {
+        
+        // pin the branch to a commit, so that mails added during this run are processed by the next one
+        String head = database != null ? database.resolveCommit(BRANCH) : gitRepo.resolveCommit(BRANCH);
+        if (head == null) {
+            throw new GitException("Unknown revision: " + BRANCH);
+        }
+        
+        String revision = head;
+        String last = crawlState != null ? notNull(crawlState).getLastCommit(stateKey) : null;
+        if (last != null) {
+            String lastCommit = database != null ? database.resolveCommit(last) : gitRepo.resolveCommit(last);
+            if (lastCommit != null) {
+                revision = last + ".." + head;
+            } else {
+                LOGGER.logWarning("Last processed commit " + last + " not found in " + mailSource
+                        + "; processing complete history");
+            }
+        }
+        return new @NonNull String[] {head, revision};
+    }
+    
+    /**
+     * Returns the checkpoint position in the given mail source, starting a new one if the crawl of the mail source
+     * is not resumed.
+     * 
+     * @param stateKey The key of the mail source.
+     * @param headAndRevision The result of {@link #resolveRevision(GitRepository, GitObjectDatabase, String, String)},
+     *      if the crawl is not resumed.
+     * 
+     * @return The position, or <code>null</code> if no checkpoints are written.
+     */
+    private @Nullable SourcePosition startCheckpoint(@NonNull String stateKey,
+            @NonNull String @NonNull [] headAndRevision) {
+        
+        synchronized (resultLock) {
+            CrawlCheckpoint checkpoint = this.checkpoint;
+            if (checkpoint == null) {
+                return null;
+            }
+            SourcePosition position = checkpoint.getSource(stateKey);
+            if (position == null) {
+                position = checkpoint.startSource(stateKey, headAndRevision[0], headAndRevision[1]);
+            }
+            return position;
+        }
+    }
+    
+    /**
+     * Executes this analysis on the given git repository. If a crawl state is configured, only the commits that were
+     * added since the last run are processed. If the crawl is resumed from a checkpoint, the mails that were
+     * processed before are skipped.
+     * 
+     * @param gitRepo The git repository containing the mail archive.
+     * @param mailSource The mail source that the repository was created for, as specified in the configuration.
+     * @param output The output to pass the results to.
+     */
+    private void execute(@NonNull GitRepository gitRepo, @NonNull String mailSource, @NonNull SourceOutput output) {
+        // the reader and the scanner may see different mails or variables, so their state is kept separately
+        String stateKey = dateRange.isAll()
+                ? CrawlState.createKey(mailSource, getMatcherKey(), urlPrefix, getReaderKey(), mailScanner.name())
+                : CrawlState.createKey(mailSource, getMatcherKey(), urlPrefix, getReaderKey(), mailScanner.name(),
+                        dateRange.toString());
+        SourcePosition position;
+        synchronized (resultLock) {
+            position = checkpoint != null ? notNull(checkpoint).getSource(stateKey) : null;
+        }
+        if (position != null && position.isDone()) {
+            LOGGER.logInfo("Skipping " + mailSource + "; it was crawled completely before the checkpoint");
+            return;
+        }
+        
+        GitObjectDatabase database = null;
+        try {
+            if (mailReader == MailReader.IN_PROCESS) {
+                database = gitRepo.openObjectDatabase();
+            }
+            
+            String[] headAndRevision;
+            if (position != null) {
+                // continue with the same commits as before, even if new mails were added in the meantime
+                headAndRevision = new @NonNull String[] {position.getHead(), position.getRevision()};
+                LOGGER.logInfo("Resuming " + mailSource + " after " + position.getMails() + " mails ("
+                        + position.getRows() + " result rows)");
+            } else {
+                headAndRevision = resolveRevision(gitRepo, database, mailSource, stateKey);
+                position = startCheckpoint(stateKey, headAndRevision);
+            }
+            synchronized (resultLock) {
+                output.position = position;
+            }
+            String head = notNull(headAndRevision[0]);
+            String revision = notNull(headAndRevision[1]);
+            
+            if (cloneFilter != null && !new File(mailSource).isDirectory()) {
+                // fetch all missing mails at once, instead of one by one while reading them
+                int fetched = gitRepo.materializeBlobs(revision, dateRange,
+                        mailReader == MailReader.CHANGED_PATHS ? changedPaths : notNull(Arrays.asList("m")));
+                if (fetched > 0 && database != null) {
+                    // re-open, so that the newly fetched pack is found
+                    database.close();
+                    database = gitRepo.openObjectDatabase();
+                }
+            }
+            
+            searchInRevision(gitRepo, database, revision, mailSource, output);
+            
+            synchronized (resultLock) {
+                // the position is done and the crawl state is stored once the held back results are emitted, too
+                output.complete = true;
+                output.stateKey = stateKey;
+                output.head = head;
+            }
+            Consumer<@NonNull String> searchedListener = this.searchedListener;
+            if (searchedListener != null) {
+                searchedListener.accept(mailSource);
+            }
+            
+        } catch (GitException e) {
+            LOGGER.logException("Couldn't read mails from git repository", e);
+            
+        } finally {
+            if (database != null) {
+                database.close();
+            }
+        }
+    }
+    
+    /**
+     * Returns the number of mails of a mail source that were processed before the checkpoint.
+     * 
+     * @param output The output of the mail source.
+     * 
+     * @return The number of mails to skip.
+     */
+    private long getSkippedMails(@NonNull SourceOutput output) {
+        synchronized (resultLock) {
+            SourcePosition position = output.position;
+            return position != null ? position.getMails() : 0;
+        }
+    }
+    
+    /**
+     * Searches the mails of all commits in the given revision for relevant variables, using the configured
+     * {@link MailReader}.
+     * 
+     * @param gitRepo The git repository containing the mail archive.
+     * @param database The object database of the repository, if the mails should be read in-process.
+     * @param revision The revision (or revision range) to process.
+     * @param mailSource The mail source that the repository was created for, as specified in the configuration.
+     * @param output The output to pass the results to. The mails before its checkpoint position are skipped.
+     * 
+     * @throws GitException If reading the mails fails.
+     */
+    private void searchInRevision(@NonNull GitRepository gitRepo, @Nullable GitObjectDatabase database,
+            @NonNull String revision, @NonNull String mailSource, @NonNull SourceOutput output)
+            throws GitException {
+        
+        ProgressLogger progress = new ProgressLogger("VariableInMailingListLocator (parsing mails of "
+                + mailSource + ")");
+        Pipeline<@NonNull MailItem> pipeline = pipelineDepth > 0 && numPartitions <= 1
+                ? createPipeline(mailSource, output) : null;
+        if (pipeline != null) {
+            metrics.addPipeline(pipeline);
+        }
+        try {
+            if (mailReader == MailReader.LOG_STREAM) {
+                try (GitFileHistory history = gitRepo.readFileHistory(revision, commitOrder, dateRange, "m")) {
+                    searchInHistory(history, pipeline, progress, output);
+                }
+                
+            } else if (mailReader == MailReader.CHANGED_PATHS) {
+                try (GitBlobReader reader = gitRepo.openBlobReader();
+                        GitChangedBlobs blobs = gitRepo.readChangedBlobs(revision, commitOrder, dateRange,
+                                changedPaths)) {
+                    searchInChangedBlobs(reader, blobs, pipeline, progress, output);
+                }
+                
+            } else if (numPartitions > 1) {
+                searchInPartitions(gitRepo, database, revision, progress, output);
+                
+            } else if (database != null) {
+                try (ICommitIterator commits = database.iterateCommits(revision, commitOrder, dateRange)) {
+                    searchInCommits(database, commits, pipeline, progress, output);
+                }
+                
+            } else {
+                // read the mails through a single git cat-file process; this is much faster than checking out each
+                // commit and leaves the working tree untouched
+                try (GitBlobReader reader = gitRepo.openBlobReader();
+                        ICommitIterator commits = gitRepo.iterateCommits(revision, commitOrder, dateRange)) {
+                    searchInCommits(reader, commits, pipeline, progress, output);
+                }
+            }
+            
+            if (pipeline != null) {
+                pipeline.finish();
+            }
+            
+        } catch (PipelineException e) {
+            throw new GitException("Processing the mails failed", e);
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GitException(e);
+            
+        } finally {
+            if (pipeline != null) {
+                pipeline.close();
+                metrics.removePipeline(pipeline);
+            }
+            progress.close();
+        }
+    }
+    
+    /**
+     * Splits the commits of the given revision into consecutive chunks of {@link #PARTITION_CHUNK_SIZE} commits and
+     * searches them on {@link #numPartitions} threads, each with its own reader. The commits are read lazily and at
+     * most two chunks per thread are in flight. The results of each chunk are emitted in the order of the commits,
+     * as soon as it and all previous chunks are done.
+     * <p>
+     * The readers are opened (and closed) by the current thread, so that their processes count as part of this
+     * crawl for the process limit; otherwise, they could wait forever for the commit iterator's slot.
+     * </p>
+     * 
+     * @param gitRepo The git repository containing the mail archive.
+     * @param database The object database of the repository, if the mails should be read in-process.
+     * @param revision The revision (or revision range) to process.
+     * @param progress The progress logger to report each processed mail to.
+     * @param output The output to pass the results to. The mails before its checkpoint position are skipped.
+     * 
+     * @throws GitException If reading the mails fails.
+     */
+    private void searchInPartitions(@NonNull GitRepository gitRepo, @Nullable GitObjectDatabase database,
+            @NonNull String revision, @NonNull ProgressLogger progress, @NonNull SourceOutput output)
+            throws GitException {
+        
+        ExecutorService pool = gitExecution.newExecutor(numPartitions, "VariableInMailingListLocator-partition-");
+        List<@NonNull IBlobReader> openedReaders = new ArrayList<>(numPartitions);
+        BlockingQueue<@NonNull IBlobReader> readers = new ArrayBlockingQueue<>(numPartitions);
+        Deque<Future<@NonNull List<@NonNull VariableMailLocation>>> chunks = new ArrayDeque<>();
+        Deque<Integer> chunkSizes = new ArrayDeque<>();
+        
+        try (ICommitIterator iterator = database != null ? database.iterateCommits(revision, commitOrder, dateRange)
+                : gitRepo.iterateCommits(revision, commitOrder, dateRange)) {
+            long skip = getSkippedMails(output);
+            List<@NonNull String> chunk = new ArrayList<>(PARTITION_CHUNK_SIZE);
+            String commit;
+            do {
+                commit = iterator.nextCommit();
+                if (commit != null && skip > 0) {
+                    // processed before the checkpoint
+                    skip--;
+                    continue;
+                }
+                if (commit != null) {
+                    chunk.add(commit);
+                }
+                if (!chunk.isEmpty() && (commit == null || chunk.size() == PARTITION_CHUNK_SIZE)) {
+                    if (openedReaders.size() < numPartitions) {
+                        IBlobReader reader = mailReader == MailReader.IN_PROCESS ? gitRepo.openObjectDatabase()
+                                : gitRepo.openBlobReader();
+                        openedReaders.add(reader);
+                        readers.add(reader);
+                    }
+                    List<@NonNull String> commits = chunk;
+                    chunks.add(pool.submit(() -> searchInPartition(readers, commits, progress)));
+                    chunkSizes.add(commits.size());
+                    chunk = new ArrayList<>(PARTITION_CHUNK_SIZE);
+                }
+                // emit the oldest chunk when it is done, or wait for it if too many chunks are in flight
+                while (!chunks.isEmpty() && (chunks.peek().isDone() || commit == null
+                        || chunks.size() >= 2 * numPartitions)) {
+                    output.emit(notNull(chunks.poll().get()), chunkSizes.poll());
+                }
+            } while (commit != null);
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GitException(e);
+            
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof GitException) {
+                throw (GitException) cause;
+            }
+            throw new GitException(notNull(cause != null ? cause : e));
+            
+        } finally {
+            pool.shutdownNow();
+            try {
+                pool.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (IBlobReader reader : openedReaders) {
+                reader.close();
+            }
+        }
+    }
+    
+    /**
+     * Searches the mails of the given commits for relevant variables. The reader is taken from the given idle readers
+     * (waiting for one, if all are in use) and put back afterwards.
+     * 
+     * @param readers The idle readers of the partitions.
+     * @param commits The commits that contain the mails.
+     * @param progress The progress logger to report each processed mail to.
+     * 
+     * @return The locations of the variables found in the mails, in the order of the commits.
+     * 
+     * @throws GitException If reading the mails fails.
+     */
+    private @NonNull List<@NonNull VariableMailLocation> searchInPartition(
+            @NonNull BlockingQueue<@NonNull IBlobReader> readers, @NonNull List<@NonNull String> commits,
+            @NonNull ProgressLogger progress) throws GitException {
+        
+        List<@NonNull VariableMailLocation> result = new ArrayList<>();
+        IBlobReader reader;
+        try {
+            reader = notNull(readers.take());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GitException(e);
+        }
+        try {
+            for (String commit : commits) {
+                long start = System.nanoTime();
+                byte[] mail = reader.readFile(commit, "m");
+                metrics.mailRead(mail, System.nanoTime() - start);
+                result.addAll(processMail(commit, mail));
+                progress.processedOne();
+            }
+        } finally {
+            readers.add(reader);
+        }
+        return result;
+    }
+    
+    /**
+     * Searches the mails of the given commits for relevant variables.
+     * 
+     * @param reader The reader to read the mails with.
+     * @param commits The commits that contain the mails. These are consumed as they are produced.
+     * @param pipeline The pipeline to pass the mails to, or <code>null</code> if they should be processed directly.
+     * @param progress The progress logger to report each processed mail to.
+     * @param output The output to pass the results to. The mails before its checkpoint position are skipped.
+     * 
+     * @throws GitException If enumerating the commits or reading the mails fails.
+     * @throws PipelineException If a stage of the pipeline fails.
+     * @throws InterruptedException If the current thread is interrupted while waiting for the pipeline.
+     */
+    private void searchInCommits(@NonNull IBlobReader reader, @NonNull ICommitIterator commits,
+            @Nullable Pipeline<@NonNull MailItem> pipeline, @NonNull ProgressLogger progress,
+            @NonNull SourceOutput output) throws GitException, PipelineException, InterruptedException {
+        
+        long skip = getSkippedMails(output);
+        long start = System.nanoTime();
+        String commit;
+        while ((commit = commits.nextCommit()) != null) {
+            if (skip > 0) {
+                // processed before the checkpoint
+                skip--;
+            } else {
+                byte[] mail = reader.readFile(commit, "m");
+                metrics.mailRead(mail, System.nanoTime() - start);
+                handleMail(commit, mail, pipeline, output);
+            }
+            progress.processedOne();
+            start = System.nanoTime();
+        }
+    }
+    
+    /**
+     * Searches all versions of the mail file in the given history for relevant variables.
+     * 
+     * @param history The history of the mail file. This is consumed as it is produced.
+     * @param pipeline The pipeline to pass the mails to, or <code>null</code> if they should be processed directly.
+     * @param progress The progress logger to report each processed mail to.
+     * @param output The output to pass the results to. The mails before its checkpoint position are skipped.
+     * 
+     * @throws GitException If reading the history fails.
+     * @throws PipelineException If a stage of the pipeline fails.
+     * @throws InterruptedException If the current thread is interrupted while waiting for the pipeline.
+     */
+    private void searchInHistory(@NonNull GitFileHistory history, @Nullable Pipeline<@NonNull MailItem> pipeline,
+            @NonNull ProgressLogger progress, @NonNull SourceOutput output)
+            throws GitException, PipelineException, InterruptedException {
+        
+        long skip = getSkippedMails(output);
+        long start = System.nanoTime();
+        String commit;
+        while ((commit = history.nextCommit()) != null) {
+            if (skip > 0) {
+                // processed before the checkpoint
+                skip--;
+            } else {
+                byte[] mail = history.getContent();
+                metrics.mailRead(mail, System.nanoTime() - start);
+                handleMail(commit, mail, pipeline, output);
+            }
+            progress.processedOne();
+            start = System.nanoTime();
+        }
+    }
+    
+    /**
+     * Searches all blobs that the commits add or modify for relevant variables. Each blob is treated as a mail.
+     * 
+     * @param reader The reader to read the blobs with.
+     * @param blobs The changed blobs. These are consumed as they are produced.
+     * @param pipeline The pipeline to pass the mails to, or <code>null</code> if they should be processed directly.
+     * @param progress The progress logger to report each processed mail to.
+     * @param output The output to pass the results to. The mails before its checkpoint position are skipped.
+     * 
+     * @throws GitException If enumerating the blobs or reading them fails.
+     * @throws PipelineException If a stage of the pipeline fails.
+     * @throws InterruptedException If the current thread is interrupted while waiting for the pipeline.
+     */
+    private void searchInChangedBlobs(@NonNull GitBlobReader reader, @NonNull GitChangedBlobs blobs,
+            @Nullable Pipeline<@NonNull MailItem> pipeline, @NonNull ProgressLogger progress,
+            @NonNull SourceOutput output) throws GitException, PipelineException, InterruptedException {
+        
+        long skip = getSkippedMails(output);
+        long start = System.nanoTime();
+        String commit;
+        while ((commit = blobs.nextCommit()) != null) {
+            if (skip > 0) {
+                // processed before the checkpoint
+                skip--;
+            } else {
+                byte[] mail = reader.readBlob(notNull(blobs.getBlobId()));
+                metrics.mailRead(mail, System.nanoTime() - start);
+                handleMail(commit, mail, pipeline, output);
+            }
+            progress.processedOne();
+            start = System.nanoTime();
+        }
+    }
+    
+    /**
+     * Processes a single mail that was just read, either directly or by passing it into the pipeline.
+     * 
+     * @param commit The commit that contains the mail.
+     * @param mail The content of the mail, or <code>null</code> if the commit does not contain a mail.
+     * @param pipeline The pipeline to pass the mail to, or <code>null</code> if it should be processed directly.
+     * @param output The output to pass the results to, if the mail is processed directly.
+     * 
+     * @throws PipelineException If a stage of the pipeline fails.
+     * @throws InterruptedException If the current thread is interrupted while waiting for the pipeline.
+     */
+    private void handleMail(@NonNull String commit, byte @Nullable [] mail,
+            @Nullable Pipeline<@NonNull MailItem> pipeline, @NonNull SourceOutput output)
+            throws PipelineException, InterruptedException {
+        
+        if (pipeline != null) {
+            MailItem item;
+            if (mail != null) {
+                item = new MailItem(commit, mail);
+            } else {
+                // still passed through the pipeline, so that the mails are counted in order
+                LOGGER.logWarning("Commit " + commit + " does not contain a mail");
+                item = new MailItem(commit, new byte[0]);
+                item.complete = true;
+            }
+            // blocks if the pipeline is full
+            pipeline.submit(item);
+        } else {
+            output.emit(processMail(commit, mail), 1);
+        }
+    }
+    
+    /**
+     * Searches a single mail for relevant variables.
+     * 
+     * @param commit The commit that contains the mail.
+     * @param mail The content of the mail, or <code>null</code> if the commit does not contain a mail.
+     * 
+     * @return The locations of the variables found in the mail.
+     */
+    private @NonNull List<@NonNull VariableMailLocation> processMail(@NonNull String commit,
+            byte @Nullable [] mail) {
+        
+        if (mail == null) {
+            LOGGER.logWarning("Commit " + commit + " does not contain a mail");
+            return new ArrayList<>();
+        }
+        
+        MailItem item = new MailItem(commit, mail);
+        if (!lookupCache(item)) {
+            if (readHeader(item)) {
+                matchBody(item);
+            }
+            storeCache(item);
+        }
+        return item.results;
+    }
+    
+    /**
+     * Crawls the given mail source.
+     * 
+     * @param mailSource The mail source, as specified in the configuration.
+     * @param output The output to pass the results to. Finished after the crawl, even if it fails.
+     */
+    private void crawl(@NonNull String mailSource, @NonNull SourceOutput output) {
+        metrics.sourceStarted(mailSource);
+        try {
+            crawlSource(mailSource, output);
+        } finally {
+            metrics.sourceFinished(mailSource);
+            output.finish();
+        }
+    }
+    
+    /**
+     * Crawls the given mail source.
+     * 
+     * @param mailSource The mail source, as specified in the configuration.
+     * @param output The output to pass the results to.
+     */
+    private void crawlSource(@NonNull String mailSource, @NonNull SourceOutput output) {
+        File dir = new File(mailSource);
+        if (dir.isDirectory()) {
+            // mailSource is a locally checked-out git repository
+            try {
+                execute(new GitRepository(dir, gitExecution), mailSource, output);
+            } catch (GitException e) {
+                LOGGER.logException(mailSource + " is not a valid git repository", e);
+            }
+        } else if (cloneCache != null) {
+            // mailSource is a remote URL; re-use the previous clone
+            try (CachedClone clone = notNull(cloneCache).acquire(mailSource)) {
+                execute(clone.getRepository(), mailSource, output);
+            } catch (GitException e) {
+                LOGGER.logException("Could not clone " + mailSource, e);
+            }
+        } else {
+            // mailSource is a remote URL
+            File dest = null;
+            try {
+                dest = File.createTempFile("cloned_mail_source", ".git");
+                dest.delete();
+                
+                execute(GitRepository.clone(mailSource, dest, cloneType, cloneFilter, gitExecution), mailSource,
+                        output);
+                
+            } catch (IOException | GitException e) {
+                LOGGER.logException("Could not clone " + mailSource, e);
+            } finally {
+                if (dest != null) {
+                    try {
+                        Util.deleteFolder(dest);
+                    } catch (IOException e) {
+                        LOGGER.logException("Couldn't clear temporary checkout", e);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Estimates the size of the given mail source, to schedule the largest sources first.
+     * 
+     * @param mailSource The mail source, as specified in the configuration.
+     * 
+     * @return The size of the local repository or cached clone in bytes; {@link Long#MAX_VALUE} for remote sources
+     *      that are not cloned yet, since cloning takes longest.
+     */
+    private long estimateSize(@NonNull String mailSource) {
+        File dir = new File(mailSource);
+        if (!dir.isDirectory() && cloneCache != null) {
+            dir = notNull(cloneCache).getCloneDirectory(mailSource);
+        }
+        return dir.isDirectory() ? CloneCache.sizeOf(dir) : Long.MAX_VALUE;
+    }
+    
+    @Override
+    protected void execute() {
+        crawlOnce();
+    }
+    
+    /**
+     * Crawls all mail sources, unless this has been done already. This component and its
+     * {@link #getSummaryOutput() summary output} both call this; whichever is executed first does the crawl, the
+     * other one waits for it to finish.
+     */
+    private void crawlOnce() {
+        synchronized (crawlLock) {
+            if (!crawled) {
+                crawled = true;
+                if (jmxMetrics) {
+                    metrics.register("net.ssehub.kernel_haven.entity_locator:type=VariableInMailingListLocator,id="
+                            + NEXT_METRICS_ID.incrementAndGet());
+                }
+                try {
+                    restoreCheckpoint();
+                    crawlAll();
+                    writeIndex();
+                    closeScanCache();
+                    deleteCheckpoint();
+                } finally {
+                    metrics.unregister();
+                }
+                LOGGER.logInfo("Searched " + metrics.getMails() + " mails (" + metrics.getBytes() + " bytes read) in "
+                        + metrics.getElapsedSeconds() + " s; time spent reading: " + metrics.getReadTimeMillis()
+                        + " ms, searching: " + metrics.getScanTimeMillis() + " ms, emitting: "
+                        + metrics.getEmitTimeMillis() + " ms");
+            }
+        }
+    }
+    
+    /**
+     * Restores the aggregated results of an aborted run from its checkpoint, if the crawl is resumed.
+     */
+    private void restoreCheckpoint() {
+        synchronized (resultLock) {
+            CrawlCheckpoint checkpoint = this.checkpoint;
+            if (checkpoint != null && checkpoint.isResumed()) {
+                LOGGER.logInfo("Resuming crawl from checkpoint");
+                try {
+                    checkpoint.restore(statistics, indexWriter);
+                } catch (IOException e) {
+                    LOGGER.logException("Couldn't restore checkpoint; summaries and index are incomplete", e);
+                }
+            }
+            lastCheckpoint = System.nanoTime();
+        }
+    }
+    
+    /**
+     * Deletes the checkpoint after the crawl has completed, if one is used.
+     */
+    private void deleteCheckpoint() {
+        synchronized (resultLock) {
+            CrawlCheckpoint checkpoint = this.checkpoint;
+            if (checkpoint != null) {
+                checkpoint.delete();
+            }
+        }
+    }
+    
+    /**
+     * Writes the inverted index, if configured.
+     */
+    private void writeIndex() {
+        File indexFile = this.indexFile;
+        InvertedIndexWriter indexWriter = this.indexWriter;
+        if (indexFile != null && indexWriter != null) {
+            synchronized (resultLock) {
+                try {
+                    indexWriter.write(indexFile);
+                    LOGGER.logInfo("Wrote variable index to " + indexFile);
+                } catch (IOException e) {
+                    LOGGER.logException("Couldn't write variable index to " + indexFile, e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Closes the scan cache, if one is used.
+     */
+    private void closeScanCache() {
+        ScanCache scanCache = this.scanCache;
+        if (scanCache != null) {
+            LOGGER.logInfo("Scan cache: " + scanCacheHits.get() + " mails cached, " + scanCacheMisses.get()
+                    + " mails searched");
+            try {
+                scanCache.close();
+            } catch (IOException e) {
+                LOGGER.logException("Couldn't close scan cache", e);
+            }
+            this.scanCache = null;
+        }
+    }
+    
+    /**
+     * Groups the mail sources for crawling. A public-inbox archive is replaced by a group of its epochs, in the order
+     * in which their results are emitted; every other mail source forms a group of its own.
+     * 
+     * @param outputs The outputs for all crawled mail sources are added to this. Only the first epoch of an archive
+     *      is released; each following epoch is released once its predecessor is finished. Releasing an epoch starts
+     *      the epoch {@link #epochsInFlight} - 1 positions after it.
+     * 
+     * @return The groups of mail sources.
+     */
+    private @NonNull List<@NonNull List<@NonNull String>> groupMailSources(
+            @NonNull Map<@NonNull String, @NonNull SourceOutput> outputs) {
+        
+        List<@NonNull List<@NonNull String>> groups = new ArrayList<>();
+        for (String mailSource : this.mailSources) {
+            List<@NonNull String> epochs = PublicInbox.findEpochs(mailSource, gitExecution);
+            if (epochs == null) {
+                outputs.put(mailSource, new SourceOutput(true));
+                groups.add(notNull(Collections.singletonList(mailSource)));
+                continue;
+            }
+            
+            LOGGER.logInfo("Found " + epochs.size() + " epochs in public-inbox archive " + mailSource);
+            if (commitOrder == CommitOrder.NEWEST_FIRST) {
+                Collections.reverse(epochs);
+            }
+            List<@NonNull SourceOutput> epochOutputs = new ArrayList<>(epochs.size());
+            for (String epoch : epochs) {
+                SourceOutput output = new SourceOutput(epochOutputs.isEmpty());
+                if (!epochOutputs.isEmpty()) {
+                    epochOutputs.get(epochOutputs.size() - 1).next = output;
+                }
+                outputs.put(epoch, output);
+                epochOutputs.add(output);
+                if (epochOutputs.size() >= epochsInFlight) {
+                    epochOutputs.get(epochOutputs.size() - epochsInFlight).startOnRelease = output;
+                }
+            }
+            groups.add(epochs);
+        }
+        return groups;
+    }
+    
+    /**
+     * Estimates the size of the given group of mail sources.
+     * 
+     * @param group The mail sources of the group.
+     * 
+     * @return The sum of the {@link #estimateSize(String) estimated sizes} of the mail sources.
+     */
+    private long estimateSize(@NonNull List<@NonNull String> group) {
+        long result = 0;
+        for (String mailSource : group) {
+            long size = estimateSize(mailSource);
+            if (size == Long.MAX_VALUE) {
+                return Long.MAX_VALUE;
+            }
+            result += size;
+        }
+        return result;
+    }
+    
+    /**
+     * Crawls all mail sources, in parallel if configured.
+     */
+    private void crawlAll() {
+        Map<@NonNull String, @NonNull SourceOutput> outputs = new LinkedHashMap<>();
+        List<@NonNull List<@NonNull String>> groups = groupMailSources(outputs);
+        ProgressLogger progress = new ProgressLogger("VariableInMailingListLocator (crawling mail sources)",
+                outputs.size());
+        
+        if (numThreads <= 1 && !gitExecution.isUsingVirtualThreads()) {
+            for (Map.Entry<@NonNull String, @NonNull SourceOutput> entry : outputs.entrySet()) {
+                crawl(notNull(entry.getKey()), notNull(entry.getValue()));
+                progress.processedOne();
+            }
+            
+        } else {
+            // start the largest sources first, so that no single large source is left running at the end; the epochs
+            // of an archive are started in order, so that the held back results are released as early as possible
+            Map<@NonNull List<@NonNull String>, Long> sizes = new HashMap<>();
+            for (List<@NonNull String> group : groups) {
+                sizes.put(group, estimateSize(group));
+            }
+            groups.sort((g1, g2) -> Long.compare(sizes.get(g2), sizes.get(g1)));
+            
+            ExecutorService pool = gitExecution.newExecutor(Math.min(numThreads, outputs.size()),
+                    "VariableInMailingListLocator-");
+            
+            int numTasks = 0;
+            for (List<@NonNull String> group : groups) {
+                numTasks += group.size();
+            }
+            CountDownLatch remaining = new CountDownLatch(numTasks);
+            
+            // later epochs are started when an earlier one is released, so all their tasks have to be known first
+            synchronized (resultLock) {
+                List<@NonNull Runnable> starts = new ArrayList<>();
+                for (List<@NonNull String> group : groups) {
+                    for (int i = 0; i < group.size(); i++) {
+                        String mailSource = notNull(group.get(i));
+                        SourceOutput output = notNull(outputs.get(mailSource));
+                        Runnable task = () -> pool.execute(() -> {
+                            try {
+                                crawl(mailSource, output);
+                                progress.processedOne();
+                            } finally {
+                                remaining.countDown();
+                            }
+                        });
+                        if (group.size() == 1) {
+                            starts.add(task);
+                        } else {
+                            output.task = task;
+                            if (i < epochsInFlight) {
+                                starts.add(output::start);
+                            }
+                        }
+                    }
+                }
+                for (Runnable start : starts) {
+                    start.run();
+                }
+            }
+            
+            try {
+                remaining.await();
+                pool.shutdown();
+            } catch (InterruptedException e) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        progress.close();
+    }
+
+    /**
+     * Sets a listener that is called after a mail source has been searched successfully, before its output is
+     * finished (i.e. possibly before its results are emitted). Only used by tests.
+     * 
+     * @param searchedListener The listener, called with the mail source; <code>null</code> to remove it.
+     */
+    void setSearchedListener(@Nullable Consumer<@NonNull String> searchedListener) {
+        this.searchedListener = searchedListener;
+    }
+    
+    /**
+     * Returns the live metrics of the crawl.
+     * 
+     * @return The metrics.
+     */
+    @NonNull LocatorMetrics getMetrics() {
+        return metrics;
+    }
+    
     @Override
     public @NonNull String getResultName() {
         return "Variables in Mails";
     }
+    
+    /**
+     * Returns a helper component that outputs the per-variable summaries (see {@link #RESULT_GRANULARITY}). Its
+     * results are only available after all mail sources have been crawled. Executing it crawls the mail sources, if
+     * this component has not done so already; they are never crawled twice.
+     * 
+     * @return The summary output of this component.
+     */
+    public synchronized @NonNull AnalysisComponent<VariableMailSummary> getSummaryOutput() {
+        SummaryComponent result = this.summaryOutput;
+        if (result == null) {
+            if (resultGranularity == ResultGranularity.PER_MAIL) {
+                LOGGER.logWarning("Summary output requested, but " + RESULT_GRANULARITY.getKey() + " is "
+                        + resultGranularity + "; the summary output will be empty");
+            }
+            result = new SummaryComponent(config);
+            this.summaryOutput = result;
+        }
+        return result;
+    }
+    
+    /**
+     * The helper component that outputs the per-variable summaries.
+     */
+    private final class SummaryComponent extends AnalysisComponent<VariableMailSummary> {
+        
+        /**
+         * Creates this helper component.
+         * 
+         * @param config The pipeline configuration.
+         */
+        SummaryComponent(@NonNull Configuration config) {
+            super(config);
+        }
+        
+        @Override
+        protected void execute() {
+            crawlOnce();
+            
+            VariableStatistics statistics = VariableInMailingListLocator.this.statistics;
+            if (statistics == null) {
+                return;
+            }
+            
+            synchronized (resultLock) {
+                for (int id : statistics.getVariableIds()) {
+                    addResult(new VariableMailSummary(symbols.getName(id), statistics.getOccurrences(id),
+                            statistics.getNumMails(id), statistics.getFirstMail(id), statistics.getLastMail(id)));
+                }
+            }
+        }
+        
+        @Override
+        public @NonNull String getResultName() {
+            return "Variable Summaries in Mails";
+        }
+        
+    }
 
 }
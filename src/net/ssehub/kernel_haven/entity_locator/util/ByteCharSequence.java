@@ -0,0 +1,128 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * A {@link CharSequence} view on a range of raw bytes, without decoding them. Each byte is mapped to the character
+ * with the same value (i.e. the bytes are interpreted as ISO-8859-1). For ASCII text, this is the same as decoding
+ * the bytes as UTF-8; other characters appear as multiple characters in the range 0x80 to 0xFF. This allows running
+ * regular expressions for ASCII identifiers directly on the bytes of a mail.
+ * <p>
+ * The bytes are read with absolute <code>get</code> calls, so heap, direct and memory-mapped buffers are supported
+ * and the position of the buffer is not changed.
+ * </p>
+ * 
+ * @author Adam
+ */
+public final class ByteCharSequence implements CharSequence {
+
+    private @NonNull ByteBuffer buffer;
+    
+    private int offset;
+    
+    private int length;
+    
+    /**
+     * Creates a view on the given range of the given buffer.
+     * 
+     * @param buffer The buffer that contains the bytes.
+     * @param offset The absolute index of the first byte in the buffer.
+     * @param length The number of bytes.
+     */
+    public ByteCharSequence(@NonNull ByteBuffer buffer, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > buffer.limit()) {
+            throw new IndexOutOfBoundsException("Range " + offset + "+" + length + " exceeds " + buffer.limit());
+        }
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+    
+    /**
+     * Creates a view on the bytes between the position and the limit of the given buffer.
+     * 
+     * @param buffer The buffer that contains the bytes.
+     */
+    public ByteCharSequence(@NonNull ByteBuffer buffer) {
+        this(buffer, buffer.position(), buffer.remaining());
+    }
+    
+    @Override
+    public int length() {
+        return length;
+    }
+    
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " exceeds length " + length);
+        }
+        return (char) (buffer.get(offset + index) & 0xFF);
+    }
+    
+    @Override
+    public @NonNull CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Range " + start + "-" + end + " exceeds length " + length);
+        }
+        return new ByteCharSequence(buffer, offset + start, end - start);
+    }
+    
+    /**
+     * Decodes the given range of this sequence as UTF-8.
+     * 
+     * @param start The index of the first character, relative to this sequence.
+     * @param end The index after the last character, relative to this sequence.
+     * 
+     * @return The decoded string.
+     */
+    public @NonNull String decode(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Range " + start + "-" + end + " exceeds length " + length);
+        }
+        
+        String result;
+        if (buffer.hasArray()) {
+            result = new String(buffer.array(), buffer.arrayOffset() + offset + start, end - start,
+                    StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(offset + start + i);
+            }
+            result = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return notNull(result);
+    }
+    
+    /**
+     * Decodes this sequence as UTF-8.
+     * 
+     * @return The decoded string.
+     */
+    @Override
+    public @NonNull String toString() {
+        return decode(0, length);
+    }
+    
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.nio.ByteBuffer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Searches mails for a regular expression directly on their raw bytes. In contrast to reading the mail through a
+ * {@link java.io.BufferedReader}, no line is decoded or copied; the regular expression runs on a
+ * {@link ByteCharSequence} view of each line, and only the matched text is decoded. Lines are split the same way as
+ * {@link java.io.BufferedReader#readLine()} does (at LF, CR or CRLF).
+ * <p>
+ * The results are the same as for the decoded mail, as long as the regular expression only matches ASCII text.
+ * Instances are thread-safe; each thread re-uses its own {@link Matcher}.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class ByteMailScanner {
+
+    private static final byte @NonNull [] MESSAGE_ID = {'m', 'e', 's', 's', 'a', 'g', 'e', '-', 'i', 'd', ':'};
+    
+    private @NonNull Pattern pattern;
+    
+    private @Nullable LiteralPrefilter prefilter;
+    
+    private @NonNull ThreadLocal<@NonNull Matcher> matchers;
+    
+    /**
+     * Creates a scanner for the given regular expression. If the expression starts with a literal, only the lines
+     * that contain this literal are searched, see {@link LiteralPrefilter}.
+     * 
+     * @param pattern The regular expression to search for.
+     */
+    public ByteMailScanner(@NonNull Pattern pattern) {
+        this.pattern = pattern;
+        this.prefilter = LiteralPrefilter.create(pattern);
+        this.matchers = ThreadLocal.withInitial(() -> pattern.matcher(""));
+    }
+    
+    /**
+     * Reads the header of the given mail, up to the first empty line. Afterwards, the position of the buffer is at
+     * the start of the body.
+     * 
+     * @param mail The mail, between the position and the limit of the buffer.
+     * 
+     * @return The message-id of the mail (without angle brackets), or <code>null</code> if the header does not
+     *      contain one.
+     */
+    public static @Nullable String parseHeader(@NonNull ByteBuffer mail) {
+        String messageId = null;
+        ByteCharSequence chars = new ByteCharSequence(mail, 0, mail.limit());
+        
+        int lineStart = mail.position();
+        while (lineStart < mail.limit()) {
+            int lineEnd = findLineEnd(mail, lineStart);
+            boolean empty = lineEnd == lineStart;
+            
+            if (startsWithIgnoreCase(mail, lineStart, lineEnd, MESSAGE_ID)) {
+                messageId = chars.decode(lineStart + MESSAGE_ID.length, lineEnd).trim();
+                if (!messageId.isEmpty()
+                        && messageId.charAt(0) == '<' && messageId.charAt(messageId.length() - 1) == '>') {
+                    messageId = messageId.substring(1, messageId.length() - 1);
+                }
+            }
+            
+            lineStart = skipLineBreak(mail, lineEnd);
+            
+            // only parse the header of the mail
+            if (empty) {
+                break;
+            }
+        }
+        
+        mail.position(lineStart);
+        return messageId;
+    }
+    
+    /**
+     * Counts the matches of the regular expression in each line between the position and the limit of the given
+     * buffer. The position of the buffer is not changed.
+     * 
+     * @param mail The buffer containing the text to search.
+     * @param counts The counter to add the occurrences of each matched text to. The matches are decoded only the
+     *      first time the counter sees them.
+     */
+    public void countMatches(@NonNull ByteBuffer mail, @NonNull MatchCounter counts) {
+        ByteCharSequence chars = new ByteCharSequence(mail, 0, mail.limit());
+        Matcher matcher = notNull(matchers.get()).reset(chars);
+        LiteralPrefilter prefilter = this.prefilter;
+        
+        int lineStart = mail.position();
+        while (lineStart < mail.limit()) {
+            int searchStart = lineStart;
+            if (prefilter != null) {
+                // jump to the next line that contains the literal; all lines in between can't contain a match
+                int candidate = prefilter.indexOf(mail, lineStart, mail.limit());
+                if (candidate == -1) {
+                    break;
+                }
+                lineStart = findLineStart(mail, candidate, lineStart);
+                searchStart = prefilter.canStartAtCandidate() ? candidate : lineStart;
+            }
+            int lineEnd = findLineEnd(mail, searchStart);
+            
+            // the region bounds act like the start and end of the line for anchors and lookarounds
+            matcher.region(searchStart, lineEnd);
+            while (matcher.find()) {
+                counts.add(chars, matcher.start(), matcher.end());
+            }
+            
+            lineStart = skipLineBreak(mail, lineEnd);
+        }
+    }
+    
+    /**
+     * Finds the start of the line that contains the given index.
+     * 
+     * @param buffer The buffer to search.
+     * @param index The index of a byte in the line.
+     * @param min The index to stop searching at; this has to be the start of a line.
+     * 
+     * @return The index of the first byte of the line.
+     */
+    private static int findLineStart(@NonNull ByteBuffer buffer, int index, int min) {
+        int i = index;
+        while (i > min) {
+            byte b = buffer.get(i - 1);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            i--;
+        }
+        return i;
+    }
+    
+    /**
+     * Finds the end of the line that starts at the given index.
+     * 
+     * @param buffer The buffer to search.
+     * @param start The index of the first byte of the line.
+     * 
+     * @return The index of the line break (CR or LF) that ends the line, or the limit of the buffer.
+     */
+    private static int findLineEnd(@NonNull ByteBuffer buffer, int start) {
+        int limit = buffer.limit();
+        int i = start;
+        while (i < limit) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+    
+    /**
+     * Skips the line break at the given index.
+     * 
+     * @param buffer The buffer.
+     * @param lineEnd The index of a line break, or the limit of the buffer.
+     * 
+     * @return The index of the first byte of the next line.
+     */
+    private static int skipLineBreak(@NonNull ByteBuffer buffer, int lineEnd) {
+        int limit = buffer.limit();
+        int result = lineEnd;
+        if (result < limit) {
+            byte lineBreak = buffer.get(result);
+            result++;
+            if (lineBreak == '\r' && result < limit && buffer.get(result) == '\n') {
+                result++;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Checks whether the given line starts with the given lower case ASCII prefix, ignoring case.
+     * 
+     * @param buffer The buffer containing the line.
+     * @param start The index of the first byte of the line.
+     * @param end The index after the last byte of the line.
+     * @param prefix The lower case prefix.
+     * 
+     * @return Whether the line starts with the prefix.
+     */
+    private static boolean startsWithIgnoreCase(@NonNull ByteBuffer buffer, int start, int end,
+            byte @NonNull [] prefix) {
+        
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            byte b = buffer.get(start + i);
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+}
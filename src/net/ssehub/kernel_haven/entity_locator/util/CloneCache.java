@@ -0,0 +1,386 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+import net.ssehub.kernel_haven.util.Logger;
+import net.ssehub.kernel_haven.util.Util;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A directory of clones of remote repositories that are kept between runs. A clone is created on first use and
+ * updated with <code>git fetch</code> afterwards. Each clone is guarded by a lock file, so that multiple processes
+ * can share the same cache directory. If the cache grows beyond its quota, the least recently used clones that are
+ * not currently in use are deleted.
+ * 
+ * @author Adam
+ */
+public class CloneCache {
+
+    private static final Logger LOGGER = Logger.get();
+    
+    /**
+     * File locks are held by the whole JVM, so threads of the same process additionally synchronize on these. These
+     * are not re-entrant, so that a thread can not evict the clone that it currently uses.
+     */
+    private static final @NonNull Map<@NonNull File, @NonNull Semaphore> LOCAL_LOCKS = new ConcurrentHashMap<>();
+    
+    private static final @NonNull String LOCK_SUFFIX = ".lock";
+    
+    /**
+     * The number of hex digits of the hash in the clone directory names.
+     */
+    private static final int HASH_LENGTH = 16;
+    
+    private @NonNull File directory;
+    
+    private long quota;
+    
+    private @NonNull CloneType cloneType;
+    
+    private @Nullable String cloneFilter;
+    
+    private @NonNull GitExecution execution;
+    
+    /**
+     * Creates a clone cache in the given directory, that creates regular full clones.
+     * 
+     * @param directory The directory to store the clones in. Created if it does not exist.
+     * @param quota The maximum size of the cache in bytes. 0 means unlimited.
+     * 
+     * @throws IOException If the directory can not be created.
+     */
+    public CloneCache(@NonNull File directory, long quota) throws IOException {
+        this(directory, quota, CloneType.FULL, null);
+    }
+    
+    /**
+     * Creates a clone cache in the given directory.
+     * 
+     * @param directory The directory to store the clones in. Created if it does not exist.
+     * @param quota The maximum size of the cache in bytes. 0 means unlimited.
+     * @param cloneType The kind of clones to create.
+     * @param cloneFilter The object filter for partial clones, or <code>null</code> for clones with all objects. See
+     *      {@link GitRepository#clone(String, File, CloneType, String)}.
+     * 
+     * @throws IOException If the directory can not be created.
+     */
+    public CloneCache(@NonNull File directory, long quota, @NonNull CloneType cloneType, @Nullable String cloneFilter)
+            throws IOException {
+        this(directory, quota, cloneType, cloneFilter, GitExecution.DEFAULT);
+    }
+    
+    /**
+     * Creates a clone cache in the given directory.
+     * 
+     * @param directory The directory to store the clones in. Created if it does not exist.
+     * @param quota The maximum size of the cache in bytes. 0 means unlimited.
+     * @param cloneType The kind of clones to create.
+     * @param cloneFilter The object filter for partial clones, or <code>null</code> for clones with all objects. See
+     *      {@link GitRepository#clone(String, File, CloneType, String)}.
+     * @param execution The execution that controls how the git processes of the clones are run.
+     * 
+     * @throws IOException If the directory can not be created.
+     */
+    public CloneCache(@NonNull File directory, long quota, @NonNull CloneType cloneType, @Nullable String cloneFilter,
+            @NonNull GitExecution execution) throws IOException {
+        this.directory = directory;
+        this.quota = quota;
+        this.cloneType = cloneType;
+        this.cloneFilter = cloneFilter;
+        this.execution = execution;
+        
+        directory.mkdirs();
+        if (!directory.isDirectory()) {
+            throw new IOException("Couldn't create clone cache directory " + directory);
+        }
+    }
+    
+    /**
+     * Returns an up-to-date clone of the given remote repository. The clone is locked until the returned handle is
+     * closed; other users of the same clone wait until then.
+     * 
+     * @param url The URL of the remote repository.
+     * 
+     * @return A handle to the locked clone.
+     * 
+     * @throws GitException If cloning or fetching fails.
+     */
+    public @NonNull CachedClone acquire(@NonNull String url) throws GitException {
+        File clone = getCloneDirectory(url);
+        
+        CachedClone result = lock(clone, true);
+        if (result == null) {
+            // can't happen for blocking locks
+            throw new GitException("Couldn't lock " + clone);
+        }
+        
+        try {
+            result.repository = update(url, clone);
+        } catch (GitException e) {
+            result.close();
+            throw e;
+        }
+        
+        evict(clone);
+        return result;
+    }
+    
+    /**
+     * Returns the directory that the clone of the given remote repository is (or would be) stored in. The clone must
+     * not be used without {@link #acquire(String) acquiring} it first.
+     * <p>
+     * The directory name starts with the readable {@link GitRepository#createRemoteName(String) remote name}, which
+     * is the same for different URLs (e.g. for <code>git://</code> and <code>https://</code>). Thus, it is followed
+     * by a hash of the exact URL, the clone type and the clone filter; this way, caches with a different clone
+     * configuration can share the same directory, too.
+     * 
+     * @param url The URL of the remote repository.
+     * 
+     * @return The directory of the clone.
+     */
+    public @NonNull File getCloneDirectory(@NonNull String url) {
+        String cloneFilter = this.cloneFilter;
+        String hash;
+        if (cloneFilter != null) {
+            hash = CrawlState.createKey(url, cloneType.name(), cloneFilter);
+        } else {
+            hash = CrawlState.createKey(url, cloneType.name());
+        }
+        return new File(directory, GitRepository.createRemoteName(url) + "-" + hash.substring(0, HASH_LENGTH));
+    }
+    
+    /**
+     * Brings the given clone up-to-date, cloning it if it does not exist yet. A clone that can not be updated is
+     * deleted and cloned again.
+     * 
+     * @param url The URL of the remote repository.
+     * @param clone The directory of the clone. Must be locked by the caller.
+     * 
+     * @return The up-to-date repository.
+     * 
+     * @throws GitException If cloning fails.
+     */
+    private @NonNull GitRepository update(@NonNull String url, @NonNull File clone) throws GitException {
+        if (clone.isDirectory()) {
+            try {
+                GitRepository repo = new GitRepository(clone, execution);
+                repo.fetchBranches("origin");
+                return repo;
+                
+            } catch (GitException e) {
+                LOGGER.logException("Couldn't update cached clone of " + url + "; cloning again", e);
+                try {
+                    Util.deleteFolder(clone);
+                } catch (IOException e1) {
+                    throw new GitException("Couldn't delete broken clone " + clone, e1);
+                }
+            }
+        }
+        
+        return GitRepository.clone(url, clone, cloneType, cloneFilter, execution);
+    }
+    
+    /**
+     * Deletes the least recently used clones until the cache fits into its quota again. Clones that are currently in
+     * use are skipped.
+     * 
+     * @param current The clone that was just acquired; this is never deleted.
+     */
+    private void evict(@NonNull File current) {
+        if (quota <= 0) {
+            return;
+        }
+        
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(LOCK_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        
+        List<@NonNull File> clones = new ArrayList<>();
+        long total = 0;
+        for (File lockFile : files) {
+            String name = lockFile.getName();
+            File clone = new File(directory, name.substring(0, name.length() - LOCK_SUFFIX.length()));
+            if (clone.isDirectory()) {
+                clones.add(clone);
+                total += sizeOf(clone);
+            }
+        }
+        
+        // least recently used first; the lock file is touched on every use
+        clones.sort((c1, c2) -> Long.compare(getLockFile(c1).lastModified(), getLockFile(c2).lastModified()));
+        
+        for (File clone : clones) {
+            if (total <= quota) {
+                break;
+            }
+            if (clone.equals(current)) {
+                continue;
+            }
+            
+            try (CachedClone locked = lock(clone, false)) {
+                if (locked != null) {
+                    long size = sizeOf(clone);
+                    Util.deleteFolder(clone);
+                    total -= size;
+                    LOGGER.logInfo("Evicted " + clone.getName() + " from clone cache");
+                }
+            } catch (IOException | GitException e) {
+                LOGGER.logException("Couldn't evict " + clone + " from clone cache", e);
+            }
+        }
+        
+        if (total > quota) {
+            LOGGER.logWarning("Clone cache " + directory + " exceeds its quota, but the remaining clones are in use");
+        }
+    }
+    
+    /**
+     * Locks the given clone, both against other threads and other processes.
+     * 
+     * @param clone The clone directory to lock.
+     * @param wait Whether to wait for the lock. If <code>false</code>, <code>null</code> is returned if the clone is
+     *      locked already.
+     * 
+     * @return A handle to the locked clone (without repository), or <code>null</code> if the lock is not available.
+     * 
+     * @throws GitException If locking fails.
+     */
+    private @Nullable CachedClone lock(@NonNull File clone, boolean wait) throws GitException {
+        Semaphore localLock = notNull(LOCAL_LOCKS.computeIfAbsent(clone, (file) -> new Semaphore(1)));
+        if (wait) {
+            localLock.acquireUninterruptibly();
+        } else if (!localLock.tryAcquire()) {
+            return null;
+        }
+        
+        File lockFile = getLockFile(clone);
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(lockFile, "rw");
+            FileChannel channel = file.getChannel();
+            FileLock fileLock = wait ? channel.lock() : channel.tryLock();
+            if (fileLock == null) {
+                file.close();
+                localLock.release();
+                return null;
+            }
+            lockFile.setLastModified(System.currentTimeMillis());
+            return new CachedClone(file, localLock);
+            
+        } catch (IOException e) {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e1) {
+                    // ignore
+                }
+            }
+            localLock.release();
+            throw new GitException("Couldn't lock " + clone, e);
+        }
+    }
+    
+    /**
+     * Returns the lock file of the given clone.
+     * 
+     * @param clone The clone directory.
+     * 
+     * @return The lock file next to the clone directory.
+     */
+    private static @NonNull File getLockFile(@NonNull File clone) {
+        return new File(clone.getParentFile(), clone.getName() + LOCK_SUFFIX);
+    }
+    
+    /**
+     * Calculates the size of all files in the given directory (recursively).
+     * 
+     * @param dir The directory.
+     * 
+     * @return The total size in bytes.
+     */
+    public static long sizeOf(@NonNull File dir) {
+        try (Stream<Path> files = Files.walk(dir.toPath())) {
+            return files.mapToLong((path) -> path.toFile().length()).sum();
+        } catch (IOException | UncheckedIOException e) {
+            return 0;
+        }
+    }
+    
+    /**
+     * A locked clone of the {@link CloneCache}. Closing this releases the lock.
+     */
+    public static final class CachedClone implements Closeable {
+        
+        private @NonNull RandomAccessFile lockFile;
+        
+        private @NonNull Semaphore localLock;
+        
+        private @Nullable GitRepository repository;
+        
+        /**
+         * Creates a handle for a locked clone.
+         * 
+         * @param lockFile The lock file that holds the file lock.
+         * @param localLock The lock for the threads of this process.
+         */
+        private CachedClone(@NonNull RandomAccessFile lockFile, @NonNull Semaphore localLock) {
+            this.lockFile = lockFile;
+            this.localLock = localLock;
+        }
+        
+        /**
+         * Returns the cloned repository.
+         * 
+         * @return The repository.
+         */
+        public @NonNull GitRepository getRepository() {
+            return notNull(repository);
+        }
+        
+        @Override
+        public void close() {
+            try {
+                // closing the file releases the file lock
+                lockFile.close();
+            } catch (IOException e) {
+                LOGGER.logException("Couldn't release clone cache lock", e);
+            }
+            localLock.release();
+        }
+        
+    }
+    
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+/**
+ * The kind of clone that {@link GitRepository#clone(String, java.io.File, CloneType, String)} creates.
+ * 
+ * @author Adam
+ */
+public enum CloneType {
+
+    /**
+     * A regular clone with a checked out working tree.
+     */
+    FULL,
+    
+    /**
+     * A bare clone (<code>git clone --bare</code>) without a working tree. The branches of the remote become the local
+     * branches.
+     */
+    BARE,
+    
+    /**
+     * A mirror clone (<code>git clone --mirror</code>); like {@link #BARE}, but all references of the remote are
+     * copied.
+     */
+    MIRROR,
+    
+}
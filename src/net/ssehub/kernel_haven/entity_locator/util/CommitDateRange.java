@@ -0,0 +1,162 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A range of commit dates (committer timestamps) that commit enumerations are restricted to. The range is passed to
+ * git as <code>--max-age</code> and <code>--min-age</code>, so that git stops walking the history once it reaches
+ * commits older than the start of the range; the commits outside of the range (and their mails) are never read.
+ * <p>
+ * For mail archives, the commit date is the time at which the mail was added to the archive, which is usually close
+ * to the date of the mail itself.
+ * </p>
+ * 
+ * @author Adam
+ */
+public final class CommitDateRange {
+
+    /**
+     * The range that contains all commits.
+     */
+    public static final @NonNull CommitDateRange ALL = new CommitDateRange(Long.MIN_VALUE, Long.MAX_VALUE);
+    
+    private long since;
+    
+    private long until;
+    
+    /**
+     * Creates a date range.
+     * 
+     * @param since The first commit time (in seconds since the epoch) that is in the range.
+     * @param until The last commit time (in seconds since the epoch) that is in the range.
+     */
+    public CommitDateRange(long since, long until) {
+        this.since = since;
+        this.until = until;
+    }
+    
+    /**
+     * Creates a date range from the given dates. Each date is either a day (<code>2019-06-04</code>, in UTC) or a
+     * time with offset (<code>2019-06-04T13:08:00+02:00</code>). A day as <code>until</code> includes the complete
+     * day.
+     * 
+     * @param since The start of the range, or <code>null</code> for no lower bound.
+     * @param until The end of the range (inclusive), or <code>null</code> for no upper bound.
+     * 
+     * @return The date range.
+     * 
+     * @throws IllegalArgumentException If one of the dates can not be parsed.
+     */
+    public static @NonNull CommitDateRange parse(@Nullable String since, @Nullable String until)
+            throws IllegalArgumentException {
+        
+        return new CommitDateRange(since != null ? parseDate(since, false) : Long.MIN_VALUE,
+                until != null ? parseDate(until, true) : Long.MAX_VALUE);
+    }
+    
+    /**
+     * Parses a single date.
+     * 
+     * @param date The date to parse.
+     * @param endOfDay Whether a day should be parsed as its last second instead of its first one.
+     * 
+     * @return The date in seconds since the epoch.
+     * 
+     * @throws IllegalArgumentException If the date can not be parsed.
+     */
+    private static long parseDate(@NonNull String date, boolean endOfDay) throws IllegalArgumentException {
+        try {
+            if (date.indexOf('T') == -1) {
+                LocalDate day = LocalDate.parse(date.trim());
+                if (endOfDay) {
+                    day = day.plusDays(1);
+                }
+                return day.atStartOfDay(ZoneOffset.UTC).toEpochSecond() - (endOfDay ? 1 : 0);
+            }
+            return OffsetDateTime.parse(date.trim()).toEpochSecond();
+            
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date: " + date, e);
+        }
+    }
+    
+    /**
+     * Returns whether this range contains all commits.
+     * 
+     * @return Whether this range has neither a lower nor an upper bound.
+     */
+    public boolean isAll() {
+        return since == Long.MIN_VALUE && until == Long.MAX_VALUE;
+    }
+    
+    /**
+     * Returns whether a commit with the given commit time is in this range.
+     * 
+     * @param commitTime The commit time in seconds since the epoch.
+     * 
+     * @return Whether the commit is in the range.
+     */
+    public boolean contains(long commitTime) {
+        return commitTime >= since && commitTime <= until;
+    }
+    
+    /**
+     * Returns whether a commit with the given commit time is older than the start of this range. Git does not walk
+     * the history beyond such commits.
+     * 
+     * @param commitTime The commit time in seconds since the epoch.
+     * 
+     * @return Whether the commit is before the range.
+     */
+    public boolean isBefore(long commitTime) {
+        return commitTime < since;
+    }
+    
+    /**
+     * Returns the arguments for <code>git rev-list</code> or <code>git log</code> that restrict the commits to this
+     * range.
+     * 
+     * @return The arguments; empty if this range contains all commits.
+     */
+    @NonNull List<@NonNull String> toGitArguments() {
+        List<@NonNull String> result = new ArrayList<>(2);
+        if (since != Long.MIN_VALUE) {
+            result.add("--max-age=" + since);
+        }
+        if (until != Long.MAX_VALUE) {
+            result.add("--min-age=" + until);
+        }
+        return result;
+    }
+    
+    @Override
+    public @NonNull String toString() {
+        return (since != Long.MIN_VALUE ? Instant.ofEpochSecond(since).toString() : "")
+                + ".." + (until != Long.MAX_VALUE ? Instant.ofEpochSecond(until).toString() : "");
+    }
+    
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+/**
+ * The order in which commits are enumerated.
+ * 
+ * @author Adam
+ */
+public enum CommitOrder {
+
+    /**
+     * Oldest to newest, based on the author date (no commit is shown before its parents). Git needs to walk the
+     * complete history before it can return the first commit in this order.
+     */
+    AUTHOR_DATE,
+    
+    /**
+     * Newest to oldest, based on the commit date. This is the natural order of git, so the first commits are
+     * available immediately, without walking the complete history first.
+     */
+    NEWEST_FIRST,
+    
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Periodically saves the progress of a crawl, so that an aborted crawl can be resumed instead of being started from
+ * scratch. A checkpoint consists of the {@link SourcePosition position} in each mail source and the aggregated results
+ * (statistics and index) up to these positions.
+ * <p>
+ * The checkpoint is stored in <code>&lt;key&gt;.checkpoint</code> in the checkpoint directory, and the index in a
+ * separate <code>&lt;key&gt;.&lt;generation&gt;.index</code> file. The checkpoint file is replaced atomically after
+ * the index of its generation has been written, so that an aborted run always leaves a consistent checkpoint behind.
+ * </p>
+ * <p>
+ * Instances are not thread-safe; callers have to synchronize.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class CrawlCheckpoint {
+
+    private static final int MAGIC = 0x4B48434B; // "KHCK"
+    
+    private static final int VERSION = 1;
+    
+    private @NonNull File directory;
+    
+    private @NonNull String key;
+    
+    private @NonNull Map<@NonNull String, @NonNull SourcePosition> sources;
+    
+    private int generation;
+    
+    private boolean hasStatistics;
+    
+    private boolean hasIndex;
+    
+    /**
+     * Creates a checkpoint for the given crawl. If a checkpoint of an earlier run with the same key exists, it is
+     * loaded.
+     * 
+     * @param directory The directory to store the checkpoint in. Created if it does not exist.
+     * @param key The key of the crawl; each configuration option that changes the result has to be part of it. See
+     *      {@link CrawlState#createKey(String...)}.
+     * 
+     * @throws IOException If the directory can not be created or the existing checkpoint can not be read.
+     */
+    public CrawlCheckpoint(@NonNull File directory, @NonNull String key) throws IOException {
+        this.directory = directory;
+        this.key = key;
+        this.sources = new LinkedHashMap<>();
+        
+        directory.mkdirs();
+        if (!directory.isDirectory()) {
+            throw new IOException("Couldn't create checkpoint directory " + directory);
+        }
+        
+        File file = getCheckpointFile();
+        if (file.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                load(in);
+            }
+        }
+    }
+    
+    /**
+     * Reads the sources of an existing checkpoint file.
+     * 
+     * @param in The content of the checkpoint file.
+     * 
+     * @throws IOException If reading fails or the file is not a checkpoint.
+     */
+    private void load(@NonNull DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Unsupported checkpoint file " + getCheckpointFile());
+        }
+        
+        generation = in.readInt();
+        int numSources = in.readInt();
+        for (int i = 0; i < numSources; i++) {
+            String source = in.readUTF();
+            SourcePosition position = new SourcePosition(in.readUTF(), in.readUTF());
+            position.mails = in.readLong();
+            position.rows = in.readLong();
+            position.done = in.readBoolean();
+            sources.put(source, position);
+        }
+        hasStatistics = in.readBoolean();
+        hasIndex = in.readBoolean();
+    }
+    
+    /**
+     * Returns whether this checkpoint was loaded from an earlier run.
+     * 
+     * @return Whether the crawl is resumed.
+     */
+    public boolean isResumed() {
+        return generation > 0;
+    }
+    
+    /**
+     * Returns the position in the given mail source.
+     * 
+     * @param source The key of the mail source, see {@link CrawlState#createKey(String...)}.
+     * 
+     * @return The position, or <code>null</code> if the crawl of this source has not started yet.
+     */
+    public @Nullable SourcePosition getSource(@NonNull String source) {
+        return sources.get(source);
+    }
+    
+    /**
+     * Records that the crawl of the given mail source starts.
+     * 
+     * @param source The key of the mail source, see {@link CrawlState#createKey(String...)}.
+     * @param head The commit that the crawl of the mail source is pinned to.
+     * @param revision The revision (or revision range) that is crawled.
+     * 
+     * @return The position in the mail source, initially at its start.
+     */
+    public @NonNull SourcePosition startSource(@NonNull String source, @NonNull String head,
+            @NonNull String revision) {
+        
+        SourcePosition position = new SourcePosition(head, revision);
+        sources.put(source, position);
+        return position;
+    }
+    
+    /**
+     * Adds the aggregated results of the loaded checkpoint to the given (empty) aggregates. Has to be called before
+     * any mail source is {@link #startSource(String, String, String) started}.
+     * 
+     * @param statistics The statistics to restore, or <code>null</code> if they are not required.
+     * @param indexWriter The index to restore, or <code>null</code> if it is not required.
+     * 
+     * @throws IOException If reading the checkpoint fails.
+     */
+    public void restore(@Nullable VariableStatistics statistics, @Nullable InvertedIndexWriter indexWriter)
+            throws IOException {
+        
+        if (statistics != null && hasStatistics) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(getCheckpointFile())))) {
+                
+                // the statistics follow the positions, which are unchanged so far
+                load(in);
+                statistics.read(in);
+            }
+        }
+        
+        if (indexWriter != null && hasIndex) {
+            try (InvertedIndex index = new InvertedIndex(getIndexFile(generation))) {
+                indexWriter.addAll(index);
+            }
+        }
+    }
+    
+    /**
+     * Saves a new checkpoint with the current positions and the given aggregated results.
+     * 
+     * @param statistics The statistics up to the current positions, or <code>null</code> if they are not required.
+     * @param indexWriter The index up to the current positions, or <code>null</code> if it is not required.
+     * 
+     * @throws IOException If writing the checkpoint fails. The previous checkpoint is still valid in this case.
+     */
+    public void write(@Nullable VariableStatistics statistics, @Nullable InvertedIndexWriter indexWriter)
+            throws IOException {
+        
+        int newGeneration = generation + 1;
+        if (indexWriter != null) {
+            indexWriter.write(getIndexFile(newGeneration));
+        }
+        
+        File tmp = new File(directory, key + ".checkpoint.tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(newGeneration);
+            out.writeInt(sources.size());
+            for (Map.Entry<@NonNull String, @NonNull SourcePosition> entry : sources.entrySet()) {
+                SourcePosition position = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeUTF(position.head);
+                out.writeUTF(position.revision);
+                out.writeLong(position.mails);
+                out.writeLong(position.rows);
+                out.writeBoolean(position.done);
+            }
+            out.writeBoolean(statistics != null);
+            out.writeBoolean(indexWriter != null);
+            if (statistics != null) {
+                statistics.write(out);
+            }
+        }
+        Files.move(tmp.toPath(), getCheckpointFile().toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        
+        getIndexFile(generation).delete();
+        generation = newGeneration;
+        hasStatistics = statistics != null;
+        hasIndex = indexWriter != null;
+    }
+    
+    /**
+     * Deletes the checkpoint, after the crawl has completed.
+     */
+    public void delete() {
+        getCheckpointFile().delete();
+        getIndexFile(generation).delete();
+        sources.clear();
+        generation = 0;
+    }
+    
+    /**
+     * Returns the file that stores the checkpoint.
+     * 
+     * @return The checkpoint file.
+     */
+    private @NonNull File getCheckpointFile() {
+        return new File(directory, key + ".checkpoint");
+    }
+    
+    /**
+     * Returns the file that stores the index of the given generation.
+     * 
+     * @param generation The generation of the checkpoint.
+     * 
+     * @return The index file.
+     */
+    private @NonNull File getIndexFile(int generation) {
+        return new File(directory, key + "." + generation + ".index");
+    }
+    
+    /**
+     * The position of a crawl in a single mail source.
+     */
+    public static final class SourcePosition {
+        
+        private @NonNull String head;
+        
+        private @NonNull String revision;
+        
+        private long mails;
+        
+        private long rows;
+        
+        private boolean done;
+        
+        /**
+         * Creates a position at the start of a mail source.
+         * 
+         * @param head The commit that the crawl of the mail source is pinned to.
+         * @param revision The revision (or revision range) that is crawled.
+         */
+        private SourcePosition(@NonNull String head, @NonNull String revision) {
+            this.head = head;
+            this.revision = revision;
+        }
+        
+        /**
+         * Returns the commit that the crawl of the mail source is pinned to. A resumed crawl has to use the same
+         * commit, so that the mails are enumerated in the same order.
+         * 
+         * @return The head commit.
+         */
+        public @NonNull String getHead() {
+            return head;
+        }
+        
+        /**
+         * Returns the revision (or revision range) that is crawled.
+         * 
+         * @return The revision.
+         */
+        public @NonNull String getRevision() {
+            return revision;
+        }
+        
+        /**
+         * Returns the number of mails (commits) that have been processed, in the order of the commit enumeration.
+         * 
+         * @return The number of processed mails.
+         */
+        public long getMails() {
+            return mails;
+        }
+        
+        /**
+         * Returns the number of result rows that have been emitted for the processed mails.
+         * 
+         * @return The number of emitted rows.
+         */
+        public long getRows() {
+            return rows;
+        }
+        
+        /**
+         * Returns whether the mail source has been crawled completely.
+         * 
+         * @return Whether the crawl of the mail source is done.
+         */
+        public boolean isDone() {
+            return done;
+        }
+        
+        /**
+         * Records that the next mails of the mail source have been processed.
+         * 
+         * @param numMails The number of processed mails.
+         * @param numRows The number of result rows that were emitted for these mails.
+         */
+        public void advance(int numMails, int numRows) {
+            mails += numMails;
+            rows += numRows;
+        }
+        
+        /**
+         * Records that the mail source has been crawled completely.
+         */
+        public void setDone() {
+            done = true;
+        }
+        
+    }
+    
+}
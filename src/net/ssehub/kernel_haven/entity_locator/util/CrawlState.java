@@ -0,0 +1,128 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Persists the last processed commit of each crawled git repository, so that subsequent runs only have to process
+ * the commits that were added since. The state is stored as a properties file that is re-written after each update.
+ * 
+ * @author Adam
+ */
+public class CrawlState {
+
+    private @NonNull File file;
+    
+    private @NonNull Properties lastCommits;
+    
+    /**
+     * Creates a crawl state that is stored in the given file. If the file exists, the previous state is loaded from
+     * it.
+     * 
+     * @param file The file to store the state in.
+     * 
+     * @throws IOException If reading the existing state fails.
+     */
+    public CrawlState(@NonNull File file) throws IOException {
+        this.file = file;
+        this.lastCommits = new Properties();
+        
+        if (file.isFile()) {
+            try (InputStream in = new FileInputStream(file)) {
+                lastCommits.load(in);
+            }
+        }
+    }
+    
+    /**
+     * Creates the key for the given crawl configuration. Each configuration option that changes the result of a
+     * crawl has to be part of the key; otherwise, changing it would not cause a re-crawl of the older commits.
+     * 
+     * @param parts The source and configuration values that identify the crawl.
+     * 
+     * @return A key for {@link #getLastCommit(String)} and {@link #setLastCommit(String, String)}.
+     */
+    public static @NonNull String createKey(@NonNull String /*@NonNull*/ ... parts) {
+        // TODO: commented out @NonNull annotation because checkstyle can't parse it
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-1
+            throw new RuntimeException(e);
+        }
+        
+        for (String part : parts) {
+            digest.update(part.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        
+        StringBuilder result = new StringBuilder();
+        for (byte b : digest.digest()) {
+            result.append(String.format("%02x", b & 0xFF));
+        }
+        return notNull(result.toString());
+    }
+    
+    /**
+     * Returns the last processed commit for the given key.
+     * 
+     * @param key The key of the crawl, see {@link #createKey(String...)}.
+     * 
+     * @return The last processed commit, or <code>null</code> if the crawl has never completed before.
+     */
+    public synchronized @Nullable String getLastCommit(@NonNull String key) {
+        return lastCommits.getProperty(key);
+    }
+    
+    /**
+     * Stores the last processed commit for the given key. The state file is updated immediately; it is replaced
+     * atomically, so that an aborted run never leaves a corrupted state behind.
+     * 
+     * @param key The key of the crawl, see {@link #createKey(String...)}.
+     * @param commit The last processed commit.
+     * 
+     * @throws IOException If writing the state file fails.
+     */
+    public synchronized void setLastCommit(@NonNull String key, @NonNull String commit) throws IOException {
+        lastCommits.setProperty(key, commit);
+        
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            lastCommits.store(out, "Last processed commit per mail source");
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import net.ssehub.kernel_haven.entity_locator.util.GitExecution.ProcessSlot;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Reads blobs from a git repository through a single, long-lived <code>git cat-file --batch</code> process. This
+ * avoids spawning a new process (and touching the working tree) for every file that should be read.
+ * 
+ * @author Adam
+ */
+public class GitBlobReader implements IBlobReader {
+
+    private @NonNull Process process;
+    
+    private @NonNull OutputStream requests;
+    
+    private @NonNull InputStream responses;
+    
+    private @NonNull ByteArrayOutputStream stderr;
+    
+    private @NonNull ProcessSlot slot;
+    
+    private boolean closed;
+    
+    /**
+     * Starts the <code>git cat-file --batch</code> process in the given repository.
+     * 
+     * @param execution The execution that controls how the process is run.
+     * @param workingDirectory The working directory of the git repository.
+     * 
+     * @throws GitException If starting the process fails.
+     */
+    GitBlobReader(@NonNull GitExecution execution, @NonNull File workingDirectory) throws GitException {
+        ProcessBuilder builder = new ProcessBuilder("git", "cat-file", "--batch");
+        builder.directory(workingDirectory);
+        
+        this.slot = execution.acquireProcessSlot();
+        try {
+            this.process = notNull(builder.start());
+        } catch (IOException e) {
+            slot.close();
+            throw new GitException(e);
+        }
+        
+        this.requests = new BufferedOutputStream(process.getOutputStream());
+        this.responses = new BufferedInputStream(process.getInputStream());
+        
+        this.stderr = new ByteArrayOutputStream();
+        Thread stderrReader = execution.newThread(() -> {
+            byte[] buffer = new byte[1024];
+            try (InputStream in = process.getErrorStream()) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    synchronized (stderr) {
+                        stderr.write(buffer, 0, read);
+                    }
+                }
+            } catch (IOException e) {
+                // ignore, process has died
+            }
+        }, "GitBlobReader-stderr");
+        stderrReader.start();
+    }
+    
+    @Override
+    public byte @Nullable [] readFile(@NonNull String commit, @NonNull String path) throws GitException {
+        return readBlob(commit + ":" + path);
+    }
+    
+    /**
+     * Reads the content of the given blob.
+     * 
+     * @param object The object name of the blob; anything that <code>git cat-file</code> understands (e.g. a hash
+     *      or <code>&lt;commit&gt;:&lt;path&gt;</code>).
+     * 
+     * @return The content of the blob, or <code>null</code> if the object does not exist.
+     * 
+     * @throws GitException If communicating with the git process fails, or the object is not a blob.
+     */
+    public synchronized byte @Nullable [] readBlob(@NonNull String object) throws GitException {
+        if (closed) {
+            throw new GitException("GitBlobReader is already closed");
+        }
+        if (object.indexOf('\n') != -1) {
+            throw new GitException("Invalid object name: " + object);
+        }
+        
+        try {
+            requests.write(object.getBytes(StandardCharsets.UTF_8));
+            requests.write('\n');
+            requests.flush();
+            
+            // header is either "<object> missing" or "<hash> <type> <size>"
+            String header = readLine();
+            if (header.endsWith(" missing")) {
+                return null;
+            }
+            
+            String[] parts = header.split(" ");
+            if (parts.length != 3) {
+                throw new GitException("Unexpected cat-file response for " + object + ": " + header);
+            }
+            
+            int size = Integer.parseInt(parts[2]);
+            byte[] content = new byte[size];
+            readFully(content);
+            
+            // content is terminated by a single LF
+            if (responses.read() != '\n') {
+                throw new GitException("Malformed cat-file response for " + object);
+            }
+            
+            if (!parts[1].equals("blob")) {
+                throw new GitException(object + " is not a blob but a " + parts[1]);
+            }
+            
+            return content;
+            
+        } catch (IOException | NumberFormatException e) {
+            throw new GitException(getErrorMessage(), e);
+        }
+    }
+    
+    /**
+     * Reads a single LF terminated line from the process output.
+     * 
+     * @return The line, without the trailing LF.
+     * 
+     * @throws IOException If the stream ends before a line is complete.
+     */
+    private @NonNull String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int read;
+        while ((read = responses.read()) != '\n') {
+            if (read == -1) {
+                throw new IOException("git cat-file terminated unexpectedly");
+            }
+            line.write(read);
+        }
+        return notNull(new String(line.toByteArray(), StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Fills the given buffer completely from the process output.
+     * 
+     * @param buffer The buffer to fill.
+     * 
+     * @throws IOException If the stream ends before the buffer is filled.
+     */
+    private void readFully(byte @NonNull [] buffer) throws IOException {
+        int offset = 0;
+        while (offset < buffer.length) {
+            int read = responses.read(buffer, offset, buffer.length - offset);
+            if (read == -1) {
+                throw new IOException("git cat-file terminated unexpectedly");
+            }
+            offset += read;
+        }
+    }
+    
+    /**
+     * Creates an error message from the stderr output of the git process.
+     * 
+     * @return The error message.
+     */
+    private @NonNull String getErrorMessage() {
+        String message;
+        synchronized (stderr) {
+            message = stderr.toString().trim();
+        }
+        if (message.isEmpty()) {
+            message = "Communication with git cat-file failed";
+        }
+        return message;
+    }
+    
+    /**
+     * Terminates the <code>git cat-file</code> process.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            try {
+                // closing stdin makes git cat-file terminate normally
+                requests.close();
+                process.waitFor();
+                responses.close();
+            } catch (IOException e) {
+                process.destroy();
+            } catch (InterruptedException e) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+            } finally {
+                slot.close();
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Enumerates the blobs that the commits of a revision add or modify, from the output of a single
+ * <code>git log --raw</code> process. Unlike a {@link GitFileHistory}, this does not depend on the path of the
+ * files: it also finds the mails of archives that store each mail in a file of its own (e.g. the public-inbox v1
+ * layout, where each commit adds a single file under a hashed path). Only the changed paths of each commit are
+ * compared, so the (possibly huge) trees of the commits are never listed or checked out.
+ * <p>
+ * Each call of {@link #nextCommit()} advances to the next changed blob and returns the commit that contains it; a
+ * commit that changes several files is returned once per file. Commits that only delete files are skipped.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class GitChangedBlobs implements ICommitIterator {
+
+    private @NonNull GitProcess process;
+    
+    private @NonNull BufferedReader reader;
+    
+    private @Nullable String commit;
+    
+    private @Nullable String blobId;
+    
+    private boolean done;
+    
+    /**
+     * Creates an iterator over the output of the given <code>git log</code> process.
+     * 
+     * @param process The process, see {@link GitRepository#readChangedBlobs(String, CommitOrder, CommitDateRange)}.
+     */
+    GitChangedBlobs(@NonNull GitProcess process) {
+        this.process = process;
+        this.reader = new BufferedReader(new InputStreamReader(process.getStdout(), StandardCharsets.US_ASCII));
+    }
+    
+    @Override
+    public @Nullable String nextCommit() throws GitException {
+        blobId = null;
+        while (!done) {
+            String line;
+            try {
+                line = reader.readLine();
+            } catch (IOException e) {
+                throw new GitException(e);
+            }
+            
+            if (line == null) {
+                done = true;
+                process.waitFor();
+                
+            } else if (!line.isEmpty() && line.charAt(0) == GitFileHistory.COMMIT_MARKER) {
+                commit = line.substring(1);
+                
+            } else if (line.startsWith(":") && commit != null) {
+                blobId = parseRawLine(line);
+                if (blobId != null) {
+                    return commit;
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Returns the blob at the current position.
+     * 
+     * @return The hash of the blob that was added or modified by the commit last returned by {@link #nextCommit()},
+     *      or <code>null</code> if all blobs have been returned.
+     */
+    public @Nullable String getBlobId() {
+        return blobId;
+    }
+    
+    /**
+     * Parses a line of the raw diff output, e.g.
+     * <code>:100644 100644 &lt;old hash&gt; &lt;new hash&gt; M&lt;TAB&gt;path</code>.
+     * 
+     * @param line The line to parse.
+     * 
+     * @return The hash of the new blob, or <code>null</code> if the line does not denote a regular file (e.g. a
+     *      symbolic link or a submodule).
+     * 
+     * @throws GitException If the line is malformed.
+     */
+    private static @Nullable String parseRawLine(@NonNull String line) throws GitException {
+        int tab = line.indexOf('\t');
+        String[] fields = line.substring(1, tab != -1 ? tab : line.length()).split(" ");
+        if (fields.length < 5) {
+            throw new GitException("Unexpected line in git log output: " + line);
+        }
+        return fields[1].startsWith("100") ? fields[3] : null;
+    }
+    
+    @Override
+    public void close() {
+        process.close();
+    }
+    
+}
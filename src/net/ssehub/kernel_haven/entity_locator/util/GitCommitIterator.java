@@ -0,0 +1,76 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * An {@link ICommitIterator} that reads the commit hashes line by line from the output of a running
+ * <code>git rev-list</code> process.
+ * 
+ * @author Adam
+ */
+class GitCommitIterator implements ICommitIterator {
+
+    private @NonNull GitProcess process;
+    
+    private @NonNull BufferedReader reader;
+    
+    private boolean done;
+    
+    /**
+     * Creates an iterator over the output of the given process.
+     * 
+     * @param process The process that prints one commit hash per line.
+     */
+    GitCommitIterator(@NonNull GitProcess process) {
+        this.process = process;
+        this.reader = new BufferedReader(new InputStreamReader(process.getStdout(), StandardCharsets.US_ASCII));
+    }
+    
+    @Override
+    public @Nullable String nextCommit() throws GitException {
+        String result = null;
+        while (!done && result == null) {
+            String line;
+            try {
+                line = reader.readLine();
+            } catch (IOException e) {
+                throw new GitException(e);
+            }
+            
+            if (line == null) {
+                done = true;
+                process.waitFor();
+            } else if (!line.trim().isEmpty()) {
+                result = line.trim();
+            }
+        }
+        return result;
+    }
+    
+    @Override
+    public void close() {
+        process.close();
+    }
+    
+}
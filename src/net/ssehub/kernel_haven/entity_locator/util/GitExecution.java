@@ -0,0 +1,235 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.ssehub.kernel_haven.util.Logger;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Controls how git processes are run: which kind of threads wait for them and how many may run at once. Each
+ * component that runs git processes creates its own instance and passes it to its {@link GitRepository}s, so that
+ * components in the same JVM don't influence each other.
+ * <p>
+ * Virtual threads require Java 21 or newer. They are created through reflection, so that this plug-in still runs on
+ * older Java versions; there, platform threads are used instead.
+ * </p>
+ * 
+ * @author Adam
+ */
+public final class GitExecution {
+
+    private static final @NonNull Logger LOGGER = Logger.get();
+    
+    /**
+     * The execution that is used if none is specified: platform threads and no process limit.
+     */
+    public static final @NonNull GitExecution DEFAULT = new GitExecution(false, 0);
+    
+    /**
+     * The number of process slots of this execution that the current thread holds. A thread that already holds a
+     * slot may start further processes without acquiring another one; otherwise, a task that needs two processes at
+     * once (e.g. a commit iterator and a blob reader) could wait for itself forever.
+     */
+    private final @NonNull ThreadLocal<@NonNull AtomicInteger> heldSlots = ThreadLocal.withInitial(AtomicInteger::new);
+    
+    private final boolean virtualThreads;
+    
+    private final @Nullable Semaphore processLimit;
+    
+    /**
+     * Creates an execution.
+     * 
+     * @param useVirtualThreads Whether the threads that wait for git processes should be virtual threads. Ignored
+     *      (with a warning) if the JVM does not support virtual threads.
+     * @param maxProcesses The maximum number of threads that run git processes at the same time. 0 means unlimited.
+     */
+    public GitExecution(boolean useVirtualThreads, int maxProcesses) {
+        if (useVirtualThreads && !isVirtualThreadsSupported()) {
+            LOGGER.logWarning("Virtual threads are not supported by this JVM; using platform threads instead");
+            useVirtualThreads = false;
+        }
+        this.virtualThreads = useVirtualThreads;
+        this.processLimit = maxProcesses > 0 ? new Semaphore(maxProcesses, true) : null;
+    }
+    
+    /**
+     * Returns whether the running JVM supports virtual threads.
+     * 
+     * @return Whether virtual threads are available.
+     */
+    public static boolean isVirtualThreadsSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Returns whether virtual threads are used.
+     * 
+     * @return Whether {@link #newThread(Runnable, String)} and {@link #newExecutor(int, String)} create virtual
+     *      threads.
+     */
+    public boolean isUsingVirtualThreads() {
+        return virtualThreads;
+    }
+    
+    /**
+     * Creates a new, not yet started thread. This is a virtual thread, if configured; otherwise, it is a daemon
+     * platform thread.
+     * 
+     * @param task The task to run in the thread.
+     * @param name The name of the thread.
+     * 
+     * @return The new thread.
+     */
+    public @NonNull Thread newThread(@NonNull Runnable task, @NonNull String name) {
+        return createThread(task, name, true);
+    }
+    
+    /**
+     * Creates a new, not yet started thread. This is a virtual thread, if configured; otherwise, it is a platform
+     * thread.
+     * 
+     * @param task The task to run in the thread.
+     * @param name The name of the thread.
+     * @param daemon Whether a platform thread should be a daemon thread. Virtual threads always are.
+     * 
+     * @return The new thread.
+     */
+    private @NonNull Thread createThread(@NonNull Runnable task, @NonNull String name, boolean daemon) {
+        if (virtualThreads) {
+            try {
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                builder = builderClass.getMethod("name", String.class).invoke(builder, name);
+                return notNull((Thread) builderClass.getMethod("unstarted", Runnable.class).invoke(builder, task));
+                
+            } catch (ReflectiveOperationException e) {
+                LOGGER.logException("Couldn't create virtual thread", e);
+            }
+        }
+        
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(daemon);
+        return thread;
+    }
+    
+    /**
+     * Creates an executor for tasks that run git processes. If virtual threads are configured, each task runs in its
+     * own virtual thread and the number of concurrent tasks is only limited by the process limit. Otherwise, a fixed
+     * pool of platform threads is used.
+     * 
+     * @param numThreads The number of platform threads, if virtual threads are not used.
+     * @param namePrefix The prefix for the thread names; a running number is appended.
+     * 
+     * @return The new executor. Has to be shut down by the caller.
+     */
+    public @NonNull ExecutorService newExecutor(int numThreads, @NonNull String namePrefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory factory = (runnable) ->
+                createThread(notNull(runnable), namePrefix + threadNumber.incrementAndGet(), false);
+        
+        if (virtualThreads) {
+            try {
+                Method method = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+                return notNull((ExecutorService) method.invoke(null, factory));
+                
+            } catch (ReflectiveOperationException e) {
+                LOGGER.logException("Couldn't create virtual thread executor", e);
+            }
+        }
+        
+        return notNull(Executors.newFixedThreadPool(Math.max(numThreads, 1), factory));
+    }
+    
+    /**
+     * Acquires a slot for starting a git process, waiting until one is available. The slot has to be released
+     * with {@link ProcessSlot#close()} by the same thread, after the process has terminated.
+     * 
+     * @return The acquired slot.
+     * 
+     * @throws GitException If waiting for a slot is interrupted.
+     */
+    @NonNull ProcessSlot acquireProcessSlot() throws GitException {
+        Semaphore limit = processLimit;
+        AtomicInteger held = notNull(heldSlots.get());
+        if (limit != null && held.get() == 0) {
+            try {
+                limit.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GitException(e);
+            }
+        } else {
+            limit = null;
+        }
+        held.incrementAndGet();
+        return new ProcessSlot(held, limit);
+    }
+    
+    /**
+     * A slot for a running git process, see {@link GitExecution#acquireProcessSlot()}.
+     */
+    static final class ProcessSlot implements Closeable {
+        
+        private @NonNull AtomicInteger held;
+        
+        private @Nullable Semaphore limit;
+        
+        private boolean released;
+        
+        /**
+         * Creates a slot.
+         * 
+         * @param held The slot counter of the thread that acquired this slot.
+         * @param limit The semaphore to release the slot to, or <code>null</code> if no permit was taken.
+         */
+        private ProcessSlot(@NonNull AtomicInteger held, @Nullable Semaphore limit) {
+            this.held = held;
+            this.limit = limit;
+        }
+        
+        /**
+         * Releases this slot. Does nothing if it is released already.
+         */
+        @Override
+        public synchronized void close() {
+            if (!released) {
+                released = true;
+                held.decrementAndGet();
+                if (limit != null) {
+                    notNull(limit).release();
+                }
+            }
+        }
+        
+    }
+    
+}
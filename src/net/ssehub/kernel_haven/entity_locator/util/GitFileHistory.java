@@ -0,0 +1,299 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Reads all versions of a single file from one <code>git log -p</code> stream. The diffs are generated with
+ * unlimited context, so that the new version of the file can be reconstructed from the context and added lines of
+ * each diff alone. Iterating the commits with {@link #nextCommit()} reads the stream incrementally; after each call,
+ * {@link #getContent()} returns the content of the file in that commit. Only commits that modify the file are
+ * returned; commits that only change the mode of the file are skipped, since its content stays the same.
+ * 
+ * @author Adam
+ */
+public class GitFileHistory implements ICommitIterator {
+
+    /**
+     * The first byte of the line that git prints for each commit (followed by the commit hash).
+     */
+    static final byte COMMIT_MARKER = 0x01;
+    
+    private @NonNull GitProcess process;
+    
+    private @NonNull InputStream in;
+    
+    private byte @NonNull [] buffer;
+    
+    private int bufferPos;
+    
+    private int bufferEnd;
+    
+    private byte @NonNull [] line;
+    
+    private int lineLength;
+    
+    private @NonNull ByteArrayOutputStream content;
+    
+    private @Nullable String pendingCommit;
+    
+    private boolean exists;
+    
+    /**
+     * Whether the diff of the current commit changes the content of the file, i.e. has a hunk or creates the file.
+     * A diff without these only changes the mode of the file.
+     */
+    private boolean changed;
+    
+    private int oldRemaining;
+    
+    private int newRemaining;
+    
+    private byte lastHunkLine;
+    
+    private boolean done;
+    
+    private boolean waited;
+    
+    /**
+     * Creates a history reader for the output of the given <code>git log</code> process.
+     * 
+     * @param process The process, see {@link GitRepository#readFileHistory(String, CommitOrder, String)}.
+     */
+    GitFileHistory(@NonNull GitProcess process) {
+        this.process = process;
+        this.in = process.getStdout();
+        this.buffer = new byte[64 * 1024];
+        this.line = new byte[256];
+        this.content = new ByteArrayOutputStream(16 * 1024);
+    }
+    
+    @Override
+    public @Nullable String nextCommit() throws GitException {
+        try {
+            String commit;
+            do {
+                commit = pendingCommit;
+                if (commit == null) {
+                    // first call: skip everything up to the first commit line
+                    while (commit == null && readLine()) {
+                        commit = parseCommitLine();
+                    }
+                    if (commit == null) {
+                        finish();
+                        return null;
+                    }
+                }
+                
+                content.reset();
+                exists = false;
+                changed = false;
+                pendingCommit = null;
+                
+                while (pendingCommit == null && readLine()) {
+                    pendingCommit = parseCommitLine();
+                    if (pendingCommit == null) {
+                        parseDiffLine();
+                    }
+                }
+                if (pendingCommit == null) {
+                    finish();
+                }
+                
+            } while (exists && !changed);
+            
+            return commit;
+            
+        } catch (IOException | NumberFormatException e) {
+            throw new GitException("Couldn't parse git log output", e);
+        }
+    }
+    
+    /**
+     * Returns the content of the file in the commit last returned by {@link #nextCommit()}.
+     * 
+     * @return The content of the file, or <code>null</code> if the file was deleted in that commit (or the commit
+     *      has no diff, e.g. because it is a merge).
+     */
+    public byte @Nullable [] getContent() {
+        return exists ? content.toByteArray() : null;
+    }
+    
+    /**
+     * Parses a line of the diff of the current commit.
+     * 
+     * @throws IOException If the line is malformed.
+     */
+    private void parseDiffLine() throws IOException {
+        byte first = lineLength > 0 ? line[0] : 0;
+        
+        if (first == '\\') {
+            // "\ No newline at end of file"; only relevant if it refers to the new version
+            if (lastHunkLine == ' ' || lastHunkLine == '+') {
+                byte[] data = content.toByteArray();
+                content.reset();
+                content.write(data, 0, data.length - 1);
+            }
+            
+        } else if (oldRemaining > 0 || newRemaining > 0) {
+            // inside a hunk
+            if (first == ' ' || first == '+') {
+                content.write(line, 1, lineLength - 1);
+                content.write('\n');
+                newRemaining--;
+            }
+            if (first == ' ' || first == '-') {
+                oldRemaining--;
+            }
+            if (first != ' ' && first != '+' && first != '-') {
+                throw new IOException("Unexpected line in hunk");
+            }
+            lastHunkLine = first;
+            
+        } else if (lineStartsWith("diff --git ")) {
+            // also covers new empty files, which have no hunk
+            exists = true;
+            
+        } else if (lineStartsWith("new file mode ")) {
+            // new empty files have no hunk
+            changed = true;
+            
+        } else if (lineStartsWith("deleted file mode ")) {
+            exists = false;
+            
+        } else if (lineStartsWith("@@ ")) {
+            // @@ -start[,count] +start[,count] @@
+            String[] parts = new String(line, 0, lineLength, StandardCharsets.US_ASCII).split(" ");
+            oldRemaining = parseHunkCount(notNull(parts[1]));
+            newRemaining = parseHunkCount(notNull(parts[2]));
+            lastHunkLine = 0;
+            changed = true;
+        }
+    }
+    
+    /**
+     * Parses the line count of a hunk range.
+     * 
+     * @param range The range, e.g. <code>-1,20</code>.
+     * 
+     * @return The number of lines of the range.
+     */
+    private static int parseHunkCount(@NonNull String range) {
+        int comma = range.indexOf(',');
+        return comma == -1 ? 1 : Integer.parseInt(range.substring(comma + 1));
+    }
+    
+    /**
+     * Checks if the current line is a commit line (outside of a hunk).
+     * 
+     * @return The commit hash, or <code>null</code> if the current line is no commit line.
+     */
+    private @Nullable String parseCommitLine() {
+        String result = null;
+        if (oldRemaining == 0 && newRemaining == 0 && lineLength > 1 && line[0] == COMMIT_MARKER) {
+            result = new String(line, 1, lineLength - 1, StandardCharsets.US_ASCII);
+        }
+        return result;
+    }
+    
+    /**
+     * Checks whether the current line starts with the given ASCII prefix.
+     * 
+     * @param prefix The prefix.
+     * 
+     * @return Whether the line starts with the prefix.
+     */
+    private boolean lineStartsWith(@NonNull String prefix) {
+        if (lineLength < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (line[i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Reads the next LF terminated line into {@link #line} (without the LF).
+     * 
+     * @return <code>false</code> if the end of the stream is reached.
+     * 
+     * @throws IOException If reading fails.
+     */
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+        boolean read = false;
+        while (!done) {
+            if (bufferPos == bufferEnd) {
+                bufferEnd = in.read(buffer);
+                bufferPos = 0;
+                if (bufferEnd == -1) {
+                    bufferEnd = 0;
+                    done = true;
+                    break;
+                }
+            }
+            read = true;
+            
+            int start = bufferPos;
+            while (bufferPos < bufferEnd && buffer[bufferPos] != '\n') {
+                bufferPos++;
+            }
+            int length = bufferPos - start;
+            if (lineLength + length > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+            }
+            System.arraycopy(buffer, start, line, lineLength, length);
+            lineLength += length;
+            if (bufferPos < bufferEnd) {
+                bufferPos++; // skip LF
+                break;
+            }
+        }
+        return read && (lineLength > 0 || !done);
+    }
+    
+    /**
+     * Waits for the git process after the stream has been consumed.
+     * 
+     * @throws GitException If git reported an error.
+     */
+    private void finish() throws GitException {
+        done = true;
+        if (!waited) {
+            waited = true;
+            process.waitFor();
+        }
+    }
+    
+    @Override
+    public void close() {
+        process.close();
+    }
+    
+}
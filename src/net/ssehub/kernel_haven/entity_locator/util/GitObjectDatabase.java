@@ -0,0 +1,1233 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * An in-process reader for the object database of a git repository. Reads memory-mapped packfiles (with version 2
+ * indices) and loose objects directly, without starting any <code>git</code> process. Delta chains in packs are
+ * resolved with the help of a bounded cache for delta bases.
+ * 
+ * @author Adam
+ */
+public class GitObjectDatabase implements IBlobReader {
+
+    /**
+     * The default maximum size of the delta base cache, in bytes.
+     */
+    public static final long DEFAULT_DELTA_BASE_CACHE_SIZE = 32L * 1024 * 1024;
+    
+    private static final int TYPE_COMMIT = 1;
+    
+    private static final int TYPE_TREE = 2;
+    
+    private static final int TYPE_BLOB = 3;
+    
+    private static final int TYPE_TAG = 4;
+    
+    private static final int TYPE_OFS_DELTA = 6;
+    
+    private static final int TYPE_REF_DELTA = 7;
+    
+    /**
+     * The number of commits that a range walk continues after only uninteresting commits are left, like in git.
+     */
+    private static final int SLOP = 5;
+    
+    private static final @NonNull String @NonNull [] TYPE_NAMES = {
+        "", "commit", "tree", "blob", "tag", "", "ofs-delta", "ref-delta"
+    };
+    
+    /**
+     * An inflated object.
+     */
+    private static final class RawObject {
+        
+        private int type;
+        
+        private byte @NonNull [] data;
+        
+        /**
+         * Creates a raw object.
+         * 
+         * @param type The type of the object.
+         * @param data The inflated content of the object.
+         */
+        RawObject(int type, byte @NonNull [] data) {
+            this.type = type;
+            this.data = data;
+        }
+        
+    }
+    
+    private @NonNull File gitDirectory;
+    
+    private @NonNull List<@NonNull PackFile> packs;
+    
+    private @NonNull Map<Long, RawObject> deltaBaseCache;
+    
+    private long deltaBaseCacheLimit;
+    
+    private long deltaBaseCacheSize;
+    
+    private @NonNull Inflater inflater;
+    
+    private byte @NonNull [] inputBuffer;
+    
+    /**
+     * Opens the object database of the given git directory, with the default delta base cache size.
+     * 
+     * @param gitDirectory The git directory (usually the <code>.git</code> folder of a repository).
+     * 
+     * @throws GitException If opening the packs of the repository fails.
+     */
+    public GitObjectDatabase(@NonNull File gitDirectory) throws GitException {
+        this(gitDirectory, DEFAULT_DELTA_BASE_CACHE_SIZE);
+    }
+    
+    /**
+     * Opens the object database of the given git directory.
+     * 
+     * @param gitDirectory The git directory (usually the <code>.git</code> folder of a repository).
+     * @param deltaBaseCacheLimit The maximum number of bytes to keep in the delta base cache.
+     * 
+     * @throws GitException If opening the packs of the repository fails.
+     */
+    public GitObjectDatabase(@NonNull File gitDirectory, long deltaBaseCacheLimit) throws GitException {
+        this.gitDirectory = gitDirectory;
+        this.deltaBaseCacheLimit = deltaBaseCacheLimit;
+        this.deltaBaseCache = new LinkedHashMap<>(64, 0.75f, true);
+        this.inflater = new Inflater();
+        this.inputBuffer = new byte[8192];
+        this.packs = new ArrayList<>();
+        
+        File packDir = new File(gitDirectory, "objects/pack");
+        File[] idxFiles = packDir.listFiles((dir, name) -> name.endsWith(".idx"));
+        if (idxFiles != null) {
+            for (File idxFile : idxFiles) {
+                String name = idxFile.getName();
+                File packFile = new File(packDir, name.substring(0, name.length() - ".idx".length()) + ".pack");
+                if (packFile.isFile()) {
+                    try {
+                        packs.add(new PackFile(idxFile, packFile));
+                    } catch (IOException e) {
+                        throw new GitException("Couldn't open pack " + packFile, e);
+                    }
+                }
+            }
+        }
+    }
+    
+    @Override
+    public synchronized byte @Nullable [] readFile(@NonNull String commit, @NonNull String path)
+            throws GitException {
+        
+        byte[] commitId = resolve(commit);
+        if (commitId == null) {
+            return null;
+        }
+        
+        byte[] objectId = getTree(commitId);
+        if (objectId == null) {
+            return null;
+        }
+        for (String component : path.split("/")) {
+            if (component.isEmpty()) {
+                continue;
+            }
+            RawObject tree = readObject(objectId);
+            if (tree == null || tree.type != TYPE_TREE) {
+                return null;
+            }
+            objectId = findTreeEntry(tree.data, component);
+            if (objectId == null) {
+                return null;
+            }
+        }
+        
+        RawObject blob = readObject(objectId);
+        if (blob == null) {
+            throw new GitException("Object " + toHex(objectId) + " is missing in the object database");
+        }
+        if (blob.type != TYPE_BLOB) {
+            throw new GitException(commit + ":" + path + " is not a blob but a " + TYPE_NAMES[blob.type]);
+        }
+        return blob.data;
+    }
+    
+    /**
+     * Creates a list of all commit hashes reachable by the given revision. The result order is based on the author
+     * date, sorted old to new, without ever showing a commit before its parents (like
+     * <code>git log --author-date-order --reverse</code>).
+     * 
+     * @param revision The revision to list the commits for. May be a commit hash, a branch or tag name, or a range
+     *      like <code>a..b</code>.
+     * 
+     * @return The list of all commit hashes.
+     * 
+     * @throws GitException If the revision can not be resolved or reading the commits fails.
+     */
+    public synchronized @NonNull List<@NonNull String> listAllCommits(@NonNull String revision) throws GitException {
+        return listAllCommits(revision, CommitDateRange.ALL);
+    }
+    
+    /**
+     * Creates a list of the commit hashes reachable by the given revision that are in the given date range, in the
+     * same order as {@link #listAllCommits(String)}. Like git, the history is not walked beyond commits that are
+     * older than the start of the range.
+     * 
+     * @param revision The revision to list the commits for. May be a commit hash, a branch or tag name, or a range
+     *      like <code>a..b</code>.
+     * @param dateRange The commit dates to restrict the commits to.
+     * 
+     * @return The list of the commit hashes.
+     * 
+     * @throws GitException If the revision can not be resolved or reading the commits fails.
+     */
+    public synchronized @NonNull List<@NonNull String> listAllCommits(@NonNull String revision,
+            @NonNull CommitDateRange dateRange) throws GitException {
+        
+        // collect all commits of the range
+        CommitWalk walk = walkRange(revision, dateRange);
+        Map<String, CommitNode> nodes = new HashMap<>();
+        for (CommitNode node = walk.nextNode(); node != null; node = walk.nextNode()) {
+            nodes.put(node.id, node);
+        }
+        for (CommitNode node : nodes.values()) {
+            node.parents = new CommitNode[0];
+            for (String parentId : node.parentIds) {
+                CommitNode parent = nodes.get(parentId);
+                if (parent == null) {
+                    // excluded or older than the range
+                    continue;
+                }
+                parent.numChildren++;
+                node.parents = notNull(Arrays.copyOf(node.parents, node.parents.length + 1));
+                node.parents[node.parents.length - 1] = parent;
+            }
+        }
+        
+        // emit newest first, but only once all children are emitted; then reverse
+        List<@NonNull String> result = new ArrayList<>(nodes.size());
+        PriorityQueue<CommitNode> ready = new PriorityQueue<>(
+            (c1, c2) -> Long.compare(c2.authorTime, c1.authorTime));
+        for (CommitNode node : nodes.values()) {
+            if (node.numChildren == 0) {
+                ready.add(node);
+            }
+        }
+        while (!ready.isEmpty()) {
+            CommitNode node = ready.poll();
+            if (dateRange.contains(node.commitTime)) {
+                result.add(node.id);
+            }
+            for (CommitNode parent : node.parents) {
+                if (--parent.numChildren == 0) {
+                    ready.add(parent);
+                }
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+    
+    /**
+     * Enumerates all commit hashes reachable by the given revision. For {@link CommitOrder#NEWEST_FIRST}, the commit
+     * graph is walked incrementally (by commit date), so the first commits are returned immediately. For
+     * {@link CommitOrder#AUTHOR_DATE}, the complete history is read first (see {@link #listAllCommits(String)}).
+     * 
+     * @param revision The revision to list the commits for. May be a commit hash, a branch or tag name, or a range
+     *      like <code>a..b</code>.
+     * @param order The order in which the commits should be returned.
+     * 
+     * @return An iterator over the commit hashes.
+     * 
+     * @throws GitException If the revision can not be resolved or reading the commits fails.
+     */
+    public synchronized @NonNull ICommitIterator iterateCommits(@NonNull String revision, @NonNull CommitOrder order)
+            throws GitException {
+        
+        return iterateCommits(revision, order, CommitDateRange.ALL);
+    }
+    
+    /**
+     * Enumerates the commit hashes reachable by the given revision that are in the given date range. Like git, the
+     * history is not walked beyond commits that are older than the start of the range.
+     * 
+     * @param revision The revision to list the commits for. May be a commit hash, a branch or tag name, or a range
+     *      like <code>a..b</code>.
+     * @param order The order in which the commits should be returned.
+     * @param dateRange The commit dates to restrict the commits to.
+     * 
+     * @return An iterator over the commit hashes.
+     * 
+     * @throws GitException If the revision can not be resolved or reading the commits fails.
+     */
+    public synchronized @NonNull ICommitIterator iterateCommits(@NonNull String revision, @NonNull CommitOrder order,
+            @NonNull CommitDateRange dateRange) throws GitException {
+        
+        ICommitIterator result;
+        if (order == CommitOrder.AUTHOR_DATE) {
+            Iterator<@NonNull String> commits = listAllCommits(revision, dateRange).iterator();
+            result = new ICommitIterator() {
+                
+                @Override
+                public @Nullable String nextCommit() {
+                    return commits.hasNext() ? commits.next() : null;
+                }
+                
+                @Override
+                public void close() {
+                }
+            };
+            
+        } else {
+            result = walkRange(revision, dateRange);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Walks the commit graph incrementally, newest commit first. Like <code>git rev-list a..b</code>, the commits
+     * reachable from <code>a</code> are walked in the same queue, but marked as uninteresting; the walk ends once only
+     * uninteresting commits are left, so only the new part of the history is read. As in git, the walk of a range
+     * continues for {@link #SLOP} more commits before it ends, since a commit with a skewed (newer) commit date may
+     * still turn out to be reachable from <code>a</code>; thus a range is completely walked before its first commit
+     * is returned.
+     */
+    private final class CommitWalk implements ICommitIterator {
+        
+        private @NonNull PriorityQueue<CommitNode> queue;
+        
+        /**
+         * The walked commits, by their binary id; used to mark them as uninteresting. When walking without an
+         * excluded commit, popped commits are removed again.
+         */
+        private @NonNull Map<ByteBuffer, CommitNode> nodes;
+        
+        /**
+         * The binary ids of all commits that were already queued.
+         */
+        private @NonNull Set<ByteBuffer> seen;
+        
+        /**
+         * The number of queued commits that are interesting.
+         */
+        private int numInteresting;
+        
+        private @NonNull CommitDateRange dateRange;
+        
+        private boolean limited;
+        
+        /**
+         * The interesting commits of the range, once it has been walked completely. <code>null</code> if not walked
+         * yet.
+         */
+        private @Nullable ArrayDeque<CommitNode> rangeCommits;
+        
+        /**
+         * Creates a walk starting at the given commit.
+         * 
+         * @param start The id of the commit to start at.
+         * @param exclude The id of the commit that should not be returned (nor its parents). <code>null</code> if
+         *      no commits are excluded.
+         * @param dateRange The commit dates to restrict the commits to. The walk stops at the first commit that is
+         *      older than the range.
+         * 
+         * @throws GitException If reading the start commits fails.
+         */
+        CommitWalk(@NonNull String start, @Nullable String exclude, @NonNull CommitDateRange dateRange)
+                throws GitException {
+            
+            this.queue = new PriorityQueue<>((c1, c2) -> Long.compare(c2.commitTime, c1.commitTime));
+            this.nodes = new HashMap<>();
+            this.seen = new HashSet<>();
+            this.dateRange = dateRange;
+            this.limited = exclude != null;
+            if (exclude != null) {
+                add(exclude, true);
+            }
+            add(start, false);
+        }
+        
+        /**
+         * Queues the given commit, if it was not queued before. If it was already walked and should be uninteresting,
+         * it is marked as such.
+         * 
+         * @param id The id of the commit.
+         * @param uninteresting Whether the commit is reachable from an excluded commit.
+         * 
+         * @throws GitException If reading the commit fails.
+         */
+        private void add(@NonNull String id, boolean uninteresting) throws GitException {
+            ByteBuffer key = ByteBuffer.wrap(fromHex(id));
+            if (seen.add(key)) {
+                CommitNode node = new CommitNode(id);
+                node.uninteresting = uninteresting;
+                parseCommit(node);
+                node.queued = true;
+                queue.add(node);
+                nodes.put(key, node);
+                if (!uninteresting) {
+                    numInteresting++;
+                }
+                
+            } else if (uninteresting) {
+                CommitNode node = nodes.get(key);
+                if (node != null) {
+                    markUninteresting(node);
+                }
+            }
+        }
+        
+        /**
+         * Marks the given commit as uninteresting. If it was already popped from the queue, its walked parents are
+         * marked, too.
+         * 
+         * @param commit The commit to mark.
+         * 
+         * @throws GitException If the id of a parent is malformed.
+         */
+        private void markUninteresting(@NonNull CommitNode commit) throws GitException {
+            ArrayDeque<CommitNode> stack = new ArrayDeque<>();
+            stack.push(commit);
+            while (!stack.isEmpty()) {
+                CommitNode node = stack.pop();
+                if (node.uninteresting) {
+                    continue;
+                }
+                node.uninteresting = true;
+                if (node.queued) {
+                    numInteresting--;
+                } else {
+                    for (String parentId : node.parentIds) {
+                        CommitNode parent = nodes.get(ByteBuffer.wrap(fromHex(parentId)));
+                        if (parent != null) {
+                            stack.push(parent);
+                        }
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Pops the next commit from the queue and queues its parents.
+         * 
+         * @return The popped commit, or <code>null</code> if the queue is empty or the commit is older than the date
+         *      range.
+         * 
+         * @throws GitException If reading a parent commit fails.
+         */
+        private @Nullable CommitNode pop() throws GitException {
+            CommitNode node = queue.poll();
+            if (node == null) {
+                return null;
+            }
+            node.queued = false;
+            if (!node.uninteresting) {
+                numInteresting--;
+            }
+            if (!limited) {
+                nodes.remove(ByteBuffer.wrap(fromHex(node.id)));
+            }
+            if (dateRange.isBefore(node.commitTime)) {
+                // all remaining commits are older, too
+                queue.clear();
+                numInteresting = 0;
+                return null;
+            }
+            for (String parentId : node.parentIds) {
+                add(parentId, node.uninteresting);
+            }
+            return node;
+        }
+        
+        /**
+         * Walks the complete range, like <code>limit_list()</code> in git.
+         * 
+         * @return The interesting commits of the range, newest first.
+         * 
+         * @throws GitException If reading a commit fails.
+         */
+        private @NonNull ArrayDeque<CommitNode> limitRange() throws GitException {
+            List<CommitNode> walked = new ArrayList<>();
+            int slop = SLOP;
+            CommitNode node;
+            while ((node = pop()) != null) {
+                if (!node.uninteresting) {
+                    walked.add(node);
+                }
+                if (numInteresting > 0) {
+                    slop = SLOP;
+                } else if (--slop == 0) {
+                    break;
+                }
+            }
+            queue.clear();
+            nodes.clear();
+            
+            // commits may have been marked as uninteresting after they were popped
+            ArrayDeque<CommitNode> result = new ArrayDeque<>();
+            for (CommitNode commit : walked) {
+                if (!commit.uninteresting) {
+                    result.add(commit);
+                }
+            }
+            return result;
+        }
+        
+        /**
+         * Returns the next interesting commit that is not older than the date range. Commits that are newer than the
+         * range are returned, too.
+         * 
+         * @return The next commit, or <code>null</code> if the walk is finished.
+         * 
+         * @throws GitException If reading a commit fails.
+         */
+        @Nullable CommitNode nextNode() throws GitException {
+            if (limited) {
+                ArrayDeque<CommitNode> rangeCommits = this.rangeCommits;
+                if (rangeCommits == null) {
+                    rangeCommits = limitRange();
+                    this.rangeCommits = rangeCommits;
+                }
+                return rangeCommits.poll();
+            }
+            
+            while (numInteresting > 0) {
+                CommitNode node = pop();
+                if (node == null) {
+                    break;
+                }
+                if (!node.uninteresting) {
+                    return node;
+                }
+            }
+            return null;
+        }
+        
+        @Override
+        public @Nullable String nextCommit() throws GitException {
+            synchronized (GitObjectDatabase.this) {
+                CommitNode node;
+                do {
+                    node = nextNode();
+                } while (node != null && !dateRange.contains(node.commitTime));
+                return node != null ? node.id : null;
+            }
+        }
+        
+        @Override
+        public void close() {
+        }
+        
+    }
+    
+    /**
+     * A commit in the commit graph, used by {@link GitObjectDatabase#listAllCommits(String)}.
+     */
+    private static final class CommitNode {
+        
+        private @NonNull String id;
+        
+        private @NonNull String @NonNull [] parentIds = new String[0];
+        
+        private @NonNull CommitNode @NonNull [] parents = new CommitNode[0];
+        
+        private long authorTime;
+        
+        private long commitTime;
+        
+        private int numChildren;
+        
+        private boolean uninteresting;
+        
+        private boolean queued;
+        
+        /**
+         * Creates a commit node.
+         * 
+         * @param id The hash of the commit.
+         */
+        CommitNode(@NonNull String id) {
+            this.id = id;
+        }
+        
+    }
+    
+    /**
+     * Reads the parents, author time and commit time of the given commit.
+     * 
+     * @param node The commit node to fill.
+     * 
+     * @throws GitException If the commit can not be read.
+     */
+    private void parseCommit(@NonNull CommitNode node) throws GitException {
+        RawObject commit = readObject(fromHex(node.id));
+        if (commit == null || commit.type != TYPE_COMMIT) {
+            throw new GitException("Couldn't read commit " + node.id);
+        }
+        
+        List<String> parentIds = new ArrayList<>(1);
+        String text = new String(commit.data, StandardCharsets.UTF_8);
+        int pos = 0;
+        while (pos < text.length()) {
+            int end = text.indexOf('\n', pos);
+            if (end == -1 || end == pos) {
+                break; // end of commit header
+            }
+            String line = text.substring(pos, end);
+            if (line.startsWith("parent ")) {
+                parentIds.add(line.substring("parent ".length()));
+            } else if (line.startsWith("author ")) {
+                // author Name <email> <timestamp> <timezone>
+                String[] parts = line.split(" ");
+                node.authorTime = Long.parseLong(parts[parts.length - 2]);
+            } else if (line.startsWith("committer ")) {
+                String[] parts = line.split(" ");
+                node.commitTime = Long.parseLong(parts[parts.length - 2]);
+            }
+            pos = end + 1;
+        }
+        
+        node.parentIds = notNull(parentIds.toArray(new String[parentIds.size()]));
+        node.parents = new CommitNode[parentIds.size()];
+    }
+    
+    /**
+     * Returns the root tree of the given commit. Tags are peeled to the commit they point to.
+     * 
+     * @param commitId The id of the commit (or tag).
+     * 
+     * @return The id of the root tree, or <code>null</code> if the commit does not exist.
+     * 
+     * @throws GitException If the object is not a commit.
+     */
+    private byte @Nullable [] getTree(byte @NonNull [] commitId) throws GitException {
+        RawObject object = readObject(commitId);
+        while (object != null && object.type == TYPE_TAG) {
+            // tag objects start with "object <hex>\n"
+            object = readObject(fromHex(new String(object.data, 7, 40, StandardCharsets.US_ASCII)));
+        }
+        if (object == null) {
+            return null;
+        }
+        if (object.type != TYPE_COMMIT) {
+            throw new GitException(toHex(commitId) + " is not a commit");
+        }
+        // commit objects start with "tree <hex>\n"
+        return fromHex(new String(object.data, 5, 40, StandardCharsets.US_ASCII));
+    }
+    
+    /**
+     * Searches the given tree for an entry with the given name.
+     * 
+     * @param tree The content of the tree object.
+     * @param name The name of the entry.
+     * 
+     * @return The id of the entry, or <code>null</code> if the tree has no such entry.
+     */
+    private static byte @Nullable [] findTreeEntry(byte @NonNull [] tree, @NonNull String name) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int pos = 0;
+        while (pos < tree.length) {
+            // entries are "<mode> <name>\0<20 byte id>"
+            int nameStart = pos;
+            while (tree[nameStart] != ' ') {
+                nameStart++;
+            }
+            nameStart++;
+            int nameEnd = nameStart;
+            while (tree[nameEnd] != 0) {
+                nameEnd++;
+            }
+            
+            if (nameEnd - nameStart == nameBytes.length && regionEquals(tree, nameStart, nameBytes)) {
+                byte[] id = new byte[20];
+                System.arraycopy(tree, nameEnd + 1, id, 0, 20);
+                return id;
+            }
+            
+            pos = nameEnd + 1 + 20;
+        }
+        return null;
+    }
+    
+    /**
+     * Checks whether the given array contains the given bytes at the given position.
+     * 
+     * @param array The array to check.
+     * @param offset The position in the array.
+     * @param expected The expected bytes.
+     * 
+     * @return Whether the region matches.
+     */
+    private static boolean regionEquals(byte @NonNull [] array, int offset, byte @NonNull [] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (array[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Reads the object with the given id. Packs are searched first, then loose objects.
+     * 
+     * @param id The 20 byte object id.
+     * 
+     * @return The object, or <code>null</code> if it does not exist.
+     * 
+     * @throws GitException If reading the object fails.
+     */
+    private @Nullable RawObject readObject(byte @NonNull [] id) throws GitException {
+        for (int i = 0; i < packs.size(); i++) {
+            PackFile pack = notNull(packs.get(i));
+            long offset = pack.findOffset(id);
+            if (offset != -1) {
+                try {
+                    return readPackedObject(i, offset);
+                } catch (IOException | DataFormatException | RuntimeException e) {
+                    throw new GitException("Couldn't read object " + toHex(id) + " from " + pack, e);
+                }
+            }
+        }
+        
+        return readLooseObject(id);
+    }
+    
+    /**
+     * Reads an object from a pack, resolving delta chains.
+     * 
+     * @param packIndex The index of the pack in {@link #packs}.
+     * @param offset The offset of the object in the pack.
+     * 
+     * @return The object.
+     * 
+     * @throws IOException If the pack is malformed.
+     * @throws DataFormatException If inflating fails.
+     * @throws GitException If the base of a REF_DELTA object can not be found.
+     */
+    private @NonNull RawObject readPackedObject(int packIndex, long offset)
+            throws IOException, DataFormatException, GitException {
+        
+        PackFile pack = notNull(packs.get(packIndex));
+        long pos = offset;
+        
+        // header: type and size, as a little-endian base 128 number
+        int c = pack.getByte(pos++);
+        int type = (c >> 4) & 0x07;
+        long size = c & 0x0f;
+        int shift = 4;
+        while ((c & 0x80) != 0) {
+            c = pack.getByte(pos++);
+            size |= (long) (c & 0x7f) << shift;
+            shift += 7;
+        }
+        
+        RawObject base;
+        switch (type) {
+        case TYPE_COMMIT:
+        case TYPE_TREE:
+        case TYPE_BLOB:
+        case TYPE_TAG:
+            return new RawObject(type, inflate(pack, pos, (int) size));
+        
+        case TYPE_OFS_DELTA:
+            // negative offset to the base, as a big-endian base 128 number with an offset added per byte
+            c = pack.getByte(pos++);
+            long baseDistance = c & 0x7f;
+            while ((c & 0x80) != 0) {
+                c = pack.getByte(pos++);
+                baseDistance = ((baseDistance + 1) << 7) | (c & 0x7f);
+            }
+            base = getDeltaBase(packIndex, offset - baseDistance);
+            break;
+        
+        case TYPE_REF_DELTA:
+            byte[] baseId = new byte[20];
+            pack.read(pos, baseId, 0, 20);
+            pos += 20;
+            base = getDeltaBase(packIndex, baseId);
+            break;
+        
+        default:
+            throw new IOException("Invalid object type " + type + " at offset " + offset);
+        }
+        
+        byte[] delta = inflate(pack, pos, (int) size);
+        return new RawObject(base.type, applyDelta(base.data, delta));
+    }
+    
+    /**
+     * Reads a delta base from the cache, or from the pack if it is not cached.
+     * 
+     * @param packIndex The index of the pack in {@link #packs}.
+     * @param offset The offset of the base object in the pack.
+     * 
+     * @return The base object.
+     * 
+     * @throws IOException If the pack is malformed.
+     * @throws DataFormatException If inflating fails.
+     * @throws GitException If the base of a REF_DELTA object can not be found.
+     */
+    private @NonNull RawObject getDeltaBase(int packIndex, long offset)
+            throws IOException, DataFormatException, GitException {
+        
+        Long key = ((long) packIndex << 48) | offset;
+        RawObject base = deltaBaseCache.get(key);
+        if (base == null) {
+            base = readPackedObject(packIndex, offset);
+            
+            if (base.data.length <= deltaBaseCacheLimit) {
+                deltaBaseCache.put(key, base);
+                deltaBaseCacheSize += base.data.length;
+                
+                // evict least recently used entries
+                Iterator<RawObject> it = deltaBaseCache.values().iterator();
+                while (deltaBaseCacheSize > deltaBaseCacheLimit && it.hasNext()) {
+                    deltaBaseCacheSize -= it.next().data.length;
+                    it.remove();
+                }
+            }
+        }
+        return base;
+    }
+    
+    /**
+     * Reads the base of a REF_DELTA object. If the base is packed, it is read through the delta base cache, like the
+     * base of an OFS_DELTA object; otherwise, it is read as a loose object.
+     * 
+     * @param packIndex The index of the pack that contains the delta; this pack is searched first.
+     * @param baseId The id of the base object.
+     * 
+     * @return The base object.
+     * 
+     * @throws IOException If the pack is malformed.
+     * @throws DataFormatException If inflating fails.
+     * @throws GitException If the base object can not be found.
+     */
+    private @NonNull RawObject getDeltaBase(int packIndex, byte @NonNull [] baseId)
+            throws IOException, DataFormatException, GitException {
+        
+        long offset = notNull(packs.get(packIndex)).findOffset(baseId);
+        if (offset != -1) {
+            return getDeltaBase(packIndex, offset);
+        }
+        
+        // thin packs that were kept as-is refer to bases in other packs
+        for (int i = 0; i < packs.size(); i++) {
+            offset = i != packIndex ? notNull(packs.get(i)).findOffset(baseId) : -1;
+            if (offset != -1) {
+                return getDeltaBase(i, offset);
+            }
+        }
+        
+        RawObject base = readLooseObject(baseId);
+        if (base == null) {
+            throw new GitException("Delta base " + toHex(baseId) + " is missing");
+        }
+        return base;
+    }
+    
+    /**
+     * Inflates a zlib stream from a pack.
+     * 
+     * @param pack The pack to read from.
+     * @param position The start of the zlib stream in the pack.
+     * @param size The size of the inflated data.
+     * 
+     * @return The inflated data.
+     * 
+     * @throws IOException If the stream ends prematurely.
+     * @throws DataFormatException If the stream is malformed.
+     */
+    private byte @NonNull [] inflate(@NonNull PackFile pack, long position, int size)
+            throws IOException, DataFormatException {
+        
+        byte[] result = new byte[size];
+        int produced = 0;
+        inflater.reset();
+        
+        while (produced < size) {
+            if (inflater.needsInput()) {
+                int length = (int) Math.min(inputBuffer.length, pack.getSize() - position);
+                if (length <= 0) {
+                    throw new IOException("Unexpected end of pack");
+                }
+                pack.read(position, inputBuffer, 0, length);
+                position += length;
+                inflater.setInput(inputBuffer, 0, length);
+            }
+            
+            int read = inflater.inflate(result, produced, size - produced);
+            produced += read;
+            if (read == 0 && (inflater.finished() || inflater.needsDictionary())) {
+                throw new IOException("Compressed object data is too short");
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Applies a git delta to the given base.
+     * 
+     * @param base The base data.
+     * @param delta The delta instructions.
+     * 
+     * @return The resulting data.
+     * 
+     * @throws IOException If the delta is malformed.
+     */
+    static byte @NonNull [] applyDelta(byte @NonNull [] base, byte @NonNull [] delta) throws IOException {
+        int[] pos = {0};
+        long baseSize = readVarInt(delta, pos);
+        if (baseSize != base.length) {
+            throw new IOException("Delta base size mismatch");
+        }
+        byte[] result = new byte[(int) readVarInt(delta, pos)];
+        
+        int in = pos[0];
+        int out = 0;
+        while (in < delta.length) {
+            int op = delta[in++] & 0xff;
+            if ((op & 0x80) != 0) {
+                // copy from base; the lower bits specify which offset and size bytes are present
+                int copyOffset = 0;
+                int copySize = 0;
+                for (int i = 0; i < 4; i++) {
+                    if ((op & (1 << i)) != 0) {
+                        copyOffset |= (delta[in++] & 0xff) << (i * 8);
+                    }
+                }
+                for (int i = 0; i < 3; i++) {
+                    if ((op & (0x10 << i)) != 0) {
+                        copySize |= (delta[in++] & 0xff) << (i * 8);
+                    }
+                }
+                if (copySize == 0) {
+                    copySize = 0x10000;
+                }
+                System.arraycopy(base, copyOffset, result, out, copySize);
+                out += copySize;
+                
+            } else if (op != 0) {
+                // insert the next op bytes from the delta
+                System.arraycopy(delta, in, result, out, op);
+                in += op;
+                out += op;
+                
+            } else {
+                throw new IOException("Invalid delta opcode 0");
+            }
+        }
+        
+        if (out != result.length) {
+            throw new IOException("Delta result size mismatch");
+        }
+        return result;
+    }
+    
+    /**
+     * Reads a little-endian base 128 number, as used in delta headers.
+     * 
+     * @param data The data to read from.
+     * @param pos A single element array holding the read position; is advanced by this method.
+     * 
+     * @return The read number.
+     */
+    private static long readVarInt(byte @NonNull [] data, int @NonNull [] pos) {
+        long result = 0;
+        int shift = 0;
+        int c;
+        do {
+            c = data[pos[0]++] & 0xff;
+            result |= (long) (c & 0x7f) << shift;
+            shift += 7;
+        } while ((c & 0x80) != 0);
+        return result;
+    }
+    
+    /**
+     * Reads a loose object from the <code>objects</code> directory.
+     * 
+     * @param id The 20 byte object id.
+     * 
+     * @return The object, or <code>null</code> if there is no such loose object.
+     * 
+     * @throws GitException If reading the object fails.
+     */
+    private @Nullable RawObject readLooseObject(byte @NonNull [] id) throws GitException {
+        String hex = toHex(id);
+        File file = new File(gitDirectory, "objects/" + hex.substring(0, 2) + "/" + hex.substring(2));
+        if (!file.isFile()) {
+            return null;
+        }
+        
+        byte[] content;
+        try (InputStream in = new InflaterInputStream(new FileInputStream(file))) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream((int) file.length() * 2);
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                buffer.write(chunk, 0, read);
+            }
+            content = buffer.toByteArray();
+        } catch (IOException e) {
+            throw new GitException("Couldn't read loose object " + hex, e);
+        }
+        
+        // header is "<type> <size>\0"
+        int space = 0;
+        while (space < content.length && content[space] != ' ') {
+            space++;
+        }
+        int nul = space;
+        while (nul < content.length && content[nul] != 0) {
+            nul++;
+        }
+        if (nul >= content.length) {
+            throw new GitException("Malformed loose object " + hex);
+        }
+        
+        String typeName = new String(content, 0, space, StandardCharsets.US_ASCII);
+        int type = -1;
+        for (int i = 0; i < TYPE_NAMES.length; i++) {
+            if (TYPE_NAMES[i].equals(typeName) && !typeName.isEmpty()) {
+                type = i;
+            }
+        }
+        if (type == -1) {
+            throw new GitException("Unknown object type " + typeName + " in loose object " + hex);
+        }
+        
+        byte[] data = new byte[content.length - nul - 1];
+        System.arraycopy(content, nul + 1, data, 0, data.length);
+        return new RawObject(type, data);
+    }
+    
+    /**
+     * Resolves the given revision to an object id. Supports full commit hashes and names of references (e.g.
+     * <code>master</code>, <code>origin/master</code> or <code>HEAD</code>), loose or packed.
+     * 
+     * @param revision The revision to resolve.
+     * 
+     * @return The object id, or <code>null</code> if the revision can not be resolved.
+     * 
+     * @throws GitException If reading the references fails.
+     */
+    private byte @Nullable [] resolve(@NonNull String revision) throws GitException {
+        if (revision.matches("[0-9a-fA-F]{40}")) {
+            return fromHex(revision);
+        }
+        
+        String[] candidates = {
+            revision, "refs/" + revision, "refs/tags/" + revision, "refs/heads/" + revision,
+            "refs/remotes/" + revision, "refs/remotes/" + revision + "/HEAD"
+        };
+        
+        for (String candidate : candidates) {
+            String target = readRef(notNull(candidate), 0);
+            if (target != null) {
+                return fromHex(target);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Resolves the given revision to the hash of the commit it points to. Tags are peeled to the commit they point
+     * to.
+     * 
+     * @param revision The revision to resolve. May be a commit hash, a branch or tag name.
+     * 
+     * @return The commit hash, or <code>null</code> if the revision does not point to an existing commit.
+     * 
+     * @throws GitException If reading the objects or references fails.
+     */
+    public synchronized @Nullable String resolveCommit(@NonNull String revision) throws GitException {
+        byte[] id = resolve(revision);
+        RawObject object = id != null ? readObject(id) : null;
+        while (object != null && object.type == TYPE_TAG) {
+            // tag objects start with "object <hex>\n"
+            id = fromHex(new String(object.data, 7, 40, StandardCharsets.US_ASCII));
+            object = readObject(id);
+        }
+        return id != null && object != null && object.type == TYPE_COMMIT ? toHex(id) : null;
+    }
+    
+    /**
+     * Resolves the given revision or range and creates a walk over its commits. For a range <code>a..b</code>, the
+     * commits reachable from <code>a</code> are excluded.
+     * 
+     * @param revision The revision or range to resolve.
+     * @param dateRange The commit dates to restrict the commits to.
+     * 
+     * @return The walk over the commits.
+     * 
+     * @throws GitException If the revision can not be resolved or reading the start commits fails.
+     */
+    private @NonNull CommitWalk walkRange(@NonNull String revision, @NonNull CommitDateRange dateRange)
+            throws GitException {
+        
+        String end = revision;
+        String exclude = null;
+        int dots = revision.indexOf("..");
+        if (dots != -1) {
+            exclude = resolveCommit(notNull(revision.substring(0, dots)));
+            if (exclude == null) {
+                throw new GitException("Unknown revision: " + revision.substring(0, dots));
+            }
+            end = notNull(revision.substring(dots + 2));
+        }
+        
+        String start = resolveCommit(end);
+        if (start == null) {
+            throw new GitException("Unknown revision: " + end);
+        }
+        return new CommitWalk(start, exclude, dateRange);
+    }
+    
+    /**
+     * Reads the given reference, following symbolic references.
+     * 
+     * @param ref The full name of the reference.
+     * @param depth The current depth of symbolic references, to detect cycles.
+     * 
+     * @return The hash the reference points to, or <code>null</code> if the reference does not exist.
+     * 
+     * @throws GitException If reading the reference fails.
+     */
+    private @Nullable String readRef(@NonNull String ref, int depth) throws GitException {
+        if (depth > 5) {
+            throw new GitException("Too many levels of symbolic references: " + ref);
+        }
+        
+        String result = null;
+        try {
+            File file = new File(gitDirectory, ref);
+            if (file.isFile()) {
+                try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+                    String line = in.readLine();
+                    if (line != null && line.startsWith("ref: ")) {
+                        result = readRef(notNull(line.substring("ref: ".length()).trim()), depth + 1);
+                    } else if (line != null) {
+                        result = line.trim();
+                    }
+                }
+            } else {
+                File packedRefs = new File(gitDirectory, "packed-refs");
+                if (packedRefs.isFile()) {
+                    try (BufferedReader in = new BufferedReader(new FileReader(packedRefs))) {
+                        String line;
+                        while (result == null && (line = in.readLine()) != null) {
+                            // lines are "<hash> <refname>"; skip comments and peeled tag lines
+                            if (!line.startsWith("#") && !line.startsWith("^") && line.endsWith(" " + ref)) {
+                                result = line.substring(0, line.indexOf(' '));
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new GitException("Couldn't read reference " + ref, e);
+        }
+        return result;
+    }
+    
+    /**
+     * Converts a hexadecimal object id to bytes.
+     * 
+     * @param hex The 40 character hexadecimal id.
+     * 
+     * @return The 20 byte id.
+     * 
+     * @throws GitException If the given string is not a valid object id.
+     */
+    static byte @NonNull [] fromHex(@NonNull String hex) throws GitException {
+        if (hex.length() != 40) {
+            throw new GitException("Invalid object id: " + hex);
+        }
+        byte[] result = new byte[20];
+        for (int i = 0; i < 20; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high == -1 || low == -1) {
+                throw new GitException("Invalid object id: " + hex);
+            }
+            result[i] = (byte) (high << 4 | low);
+        }
+        return result;
+    }
+    
+    /**
+     * Converts a 20 byte object id to its hexadecimal representation.
+     * 
+     * @param id The 20 byte id.
+     * 
+     * @return The 40 character hexadecimal id.
+     */
+    static @NonNull String toHex(byte @NonNull [] id) {
+        StringBuilder result = new StringBuilder(id.length * 2);
+        for (byte b : id) {
+            result.append(Character.forDigit((b >> 4) & 0x0f, 16));
+            result.append(Character.forDigit(b & 0x0f, 16));
+        }
+        return notNull(result.toString());
+    }
+    
+    /**
+     * Releases the delta base cache. The mapped packs are released by the garbage collector.
+     */
+    @Override
+    public synchronized void close() {
+        deltaBaseCache.clear();
+        deltaBaseCacheSize = 0;
+        inflater.end();
+    }
+    
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import net.ssehub.kernel_haven.entity_locator.util.GitExecution.ProcessSlot;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * A running git process whose standard output is consumed incrementally by the caller. The standard error stream is
+ * drained in the background, so that the process never blocks on it. After the standard output has been consumed,
+ * {@link #waitFor()} checks the exit code; {@link #close()} terminates the process if this has not happened.
+ * 
+ * @author Adam
+ */
+public class GitProcess implements Closeable {
+
+    private @NonNull Process process;
+    
+    private @NonNull InputStream stdout;
+    
+    private @NonNull ByteArrayOutputStream stderr;
+    
+    private @NonNull Thread stderrReader;
+    
+    private @NonNull ProcessSlot slot;
+    
+    private boolean finished;
+    
+    /**
+     * Starts the given git command.
+     * 
+     * @param execution The execution that controls how the process is run.
+     * @param workingDirectory The working directory to execute the command in.
+     * @param command The command to run, with command line parameters.
+     * 
+     * @throws GitException If starting the process fails.
+     */
+    GitProcess(@NonNull GitExecution execution, @NonNull File workingDirectory,
+            @NonNull String /*@NonNull*/ ... command) throws GitException {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.directory(workingDirectory);
+        
+        this.slot = execution.acquireProcessSlot();
+        try {
+            this.process = notNull(builder.start());
+            process.getOutputStream().close();
+        } catch (IOException e) {
+            slot.close();
+            throw new GitException(e);
+        }
+        
+        this.stdout = new BufferedInputStream(process.getInputStream(), 64 * 1024);
+        
+        this.stderr = new ByteArrayOutputStream();
+        this.stderrReader = execution.newThread(() -> {
+            byte[] buffer = new byte[1024];
+            try (InputStream in = process.getErrorStream()) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    synchronized (stderr) {
+                        stderr.write(buffer, 0, read);
+                    }
+                }
+            } catch (IOException e) {
+                // ignore, process has died
+            }
+        }, "GitProcess-stderr");
+        stderrReader.start();
+    }
+    
+    /**
+     * Returns the standard output stream of the process.
+     * 
+     * @return The standard output of the process.
+     */
+    public @NonNull InputStream getStdout() {
+        return stdout;
+    }
+    
+    /**
+     * Waits for the process to terminate and checks its exit code. Should be called after the standard output has
+     * been consumed completely.
+     * 
+     * @throws GitException If the process returned non-success, or waiting for it was interrupted.
+     */
+    public void waitFor() throws GitException {
+        finished = true;
+        int exitCode;
+        try {
+            exitCode = process.waitFor();
+            stderrReader.join();
+            stdout.close();
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new GitException(e);
+        } catch (IOException e) {
+            throw new GitException(e);
+        } finally {
+            slot.close();
+        }
+        
+        if (exitCode != 0) {
+            String message;
+            synchronized (stderr) {
+                message = stderr.toString().trim();
+            }
+            throw new GitException(message.isEmpty() ? "git exited with code " + exitCode : message);
+        }
+    }
+    
+    /**
+     * Terminates the process, if it has not been waited for yet.
+     */
+    @Override
+    public void close() {
+        if (!finished) {
+            finished = true;
+            process.destroy();
+            try {
+                stdout.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            slot.close();
+        }
+    }
+    
+}
@@ -17,10 +17,15 @@ package net.ssehub.kernel_haven.entity_locator.util;
 
 import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -28,6 +33,7 @@ import java.util.Set;
 import net.ssehub.kernel_haven.util.Logger;
 import net.ssehub.kernel_haven.util.Util;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
 
 /**
  * Represents a local git repository directory.
@@ -40,17 +46,37 @@ public class GitRepository {
     
     private static final @NonNull Logger LOGGER = Logger.get();
     
+    private static final int MATERIALIZE_BATCH_SIZE = 1000;
+    
     private @NonNull File workingDirectory;
     
+    private @NonNull File gitDirectory;
+    
+    private @NonNull GitExecution execution;
+    
     /**
-     * Creates a {@link GitRepository} for the given folder.
+     * Creates a {@link GitRepository} for the given folder. The folder may also be a bare repository. The git
+     * processes are run with {@link GitExecution#DEFAULT}.
      * 
      * @param workingDirectory The working directory. If it doesn't exist yet, it will be created.
      * 
      * @throws GitException If workingDirectory is not a git repository and it cannot be initialized as one.
      */
     public GitRepository(@NonNull File workingDirectory) throws GitException {
+        this(workingDirectory, GitExecution.DEFAULT);
+    }
+    
+    /**
+     * Creates a {@link GitRepository} for the given folder. The folder may also be a bare repository.
+     * 
+     * @param workingDirectory The working directory. If it doesn't exist yet, it will be created.
+     * @param execution The execution that controls how the git processes of this repository are run.
+     * 
+     * @throws GitException If workingDirectory is not a git repository and it cannot be initialized as one.
+     */
+    public GitRepository(@NonNull File workingDirectory, @NonNull GitExecution execution) throws GitException {
         this.workingDirectory = workingDirectory;
+        this.execution = execution;
         if (!workingDirectory.isDirectory()) {
             workingDirectory.mkdir();
         }
@@ -59,11 +85,28 @@ public class GitRepository {
             throw new GitException(workingDirectory + " is not a directory");
         }
         
-        if (!new File(workingDirectory, ".git").isDirectory()) {
-            init();
+        if (isBareRepository(workingDirectory)) {
+            this.gitDirectory = workingDirectory;
+        } else {
+            this.gitDirectory = new File(workingDirectory, ".git");
+            if (!gitDirectory.isDirectory()) {
+                init();
+            }
         }
     }
     
+    /**
+     * Checks whether the given directory is a bare repository, i.e. contains the git database directly.
+     * 
+     * @param directory The directory to check.
+     * 
+     * @return Whether the directory is a bare repository.
+     */
+    private static boolean isBareRepository(@NonNull File directory) {
+        return !new File(directory, ".git").exists() && new File(directory, "HEAD").isFile()
+                && new File(directory, "objects").isDirectory() && new File(directory, "refs").isDirectory();
+    }
+    
     /**
      * Clones a given remote repository to a local destination.
      * 
@@ -77,6 +120,46 @@ public class GitRepository {
     public static @NonNull GitRepository clone(@NonNull String remoteUrl,
             @NonNull File destination) throws GitException {
         
+        return clone(remoteUrl, destination, CloneType.FULL, null);
+    }
+    
+    /**
+     * Clones a given remote repository to a local destination.
+     * 
+     * @param remoteUrl The remote URL to clone.
+     * @param destination The destination to clone to. This must not yet exist.
+     * @param type The kind of clone to create. Bare and mirror clones don't write a working tree.
+     * @param filter An object filter for a partial clone (e.g. <code>blob:none</code>), or <code>null</code> to
+     *      clone all objects. The objects that are left out are fetched when they are needed; see
+     *      {@link #materializeBlobs(String, String)} to fetch them in bulk. The remote has to support filters.
+     * 
+     * @return A {@link GitRepository} for the given cloned destination.
+     * 
+     * @throws GitException If cloning fails.
+     */
+    public static @NonNull GitRepository clone(@NonNull String remoteUrl, @NonNull File destination,
+            @NonNull CloneType type, @Nullable String filter) throws GitException {
+        
+        return clone(remoteUrl, destination, type, filter, GitExecution.DEFAULT);
+    }
+    
+    /**
+     * Clones a given remote repository to a local destination.
+     * 
+     * @param remoteUrl The remote URL to clone.
+     * @param destination The destination to clone to. This must not yet exist.
+     * @param type The kind of clone to create. Bare and mirror clones don't write a working tree.
+     * @param filter An object filter for a partial clone (e.g. <code>blob:none</code>), or <code>null</code> to
+     *      clone all objects. See {@link #clone(String, File, CloneType, String)}.
+     * @param execution The execution that controls how the git processes of the clone are run.
+     * 
+     * @return A {@link GitRepository} for the given cloned destination.
+     * 
+     * @throws GitException If cloning fails.
+     */
+    public static @NonNull GitRepository clone(@NonNull String remoteUrl, @NonNull File destination,
+            @NonNull CloneType type, @Nullable String filter, @NonNull GitExecution execution) throws GitException {
+        
         if (destination.exists()) {
             throw new GitException(destination + " already exists");
         }
@@ -87,9 +170,21 @@ public class GitRepository {
         }
         
         try {
-            runGitCommand(destination, "git", "clone", remoteUrl, notNull(destination.getAbsolutePath()));
+            List<@NonNull String> command = new ArrayList<>(Arrays.asList("git", "clone"));
+            if (type == CloneType.BARE) {
+                command.add("--bare");
+            } else if (type == CloneType.MIRROR) {
+                command.add("--mirror");
+            }
+            if (filter != null) {
+                command.add("--filter=" + filter);
+            }
+            command.add(remoteUrl);
+            command.add(notNull(destination.getAbsolutePath()));
+            
+            runGitCommand(execution, destination, notNull(command.toArray(new String[0])));
             
-            return new GitRepository(destination);
+            return new GitRepository(destination, execution);
         } catch (GitException e) {
             // clean up failed clone destination
             try {
@@ -102,6 +197,37 @@ public class GitRepository {
         }
     }
     
+    /**
+     * Checks whether the given URL points to a readable git repository, by listing its branches with
+     * <code>git ls-remote</code>.
+     * 
+     * @param url The URL of the (remote) repository.
+     * 
+     * @return Whether the repository exists and can be read.
+     */
+    public static boolean isReadableRepository(@NonNull String url) {
+        return isReadableRepository(url, GitExecution.DEFAULT);
+    }
+    
+    /**
+     * Checks whether the given URL points to a readable git repository, by listing its branches with
+     * <code>git ls-remote</code>.
+     * 
+     * @param url The URL of the (remote) repository.
+     * @param execution The execution that controls how the git process is run.
+     * 
+     * @return Whether the repository exists and can be read.
+     */
+    public static boolean isReadableRepository(@NonNull String url, @NonNull GitExecution execution) {
+        try {
+            runGitCommand(execution, new File(System.getProperty("java.io.tmpdir")), "git", "ls-remote", "--heads",
+                    url);
+            return true;
+        } catch (GitException e) {
+            return false;
+        }
+    }
+    
     /**
      * Initializes this git repository. Calls <code>git init</code>.
      * 
@@ -131,15 +257,14 @@ public class GitRepository {
      * @throws GitException 
      */
     public @NonNull Set<@NonNull String> getRemotes() throws GitException {
-        String output = runGitCommand("git", "remote");
-        
         Set<@NonNull String> result = new HashSet<>();
         
-        for (String line : output.split("\\n")) {
+        readGitOutput((line) -> {
             if (!line.trim().isEmpty()) {
                 result.add(line);
             }
-        }
+            return true;
+        }, "git", "remote");
         
         return result;
     }
@@ -203,6 +328,18 @@ public class GitRepository {
         }
     }
     
+    /**
+     * Fetches all branches of the given remote directly into the local branches of the same name. This keeps a clone
+     * up-to-date without touching the working tree (even for the branch that is currently checked out).
+     * 
+     * @param remoteName The remote to fetch.
+     * 
+     * @throws GitException If fetching fails.
+     */
+    public void fetchBranches(@NonNull String remoteName) throws GitException {
+        runGitCommand("git", "fetch", "--update-head-ok", remoteName, "+refs/heads/*:refs/heads/*");
+    }
+    
     /**
      * Checks out the given commit.
      * 
@@ -248,12 +385,190 @@ public class GitRepository {
      * @throws GitException If this command fails.
      */
     public @NonNull List<@NonNull String> listAllCommits() throws GitException {
-        String out = runGitCommand("git", "log", "--format=format:%H", "--author-date-order", "--reverse");
-        @SuppressWarnings("null")
-        List<@NonNull String> result = notNull(Arrays.asList(out.split("\n")));
+        return listAllCommits("HEAD");
+    }
+    
+    /**
+     * Creates a list of all commit hashes reachable by the given revision. The result order is based on the author
+     * date, sorted old to new.
+     * 
+     * @param revision The revision to list the commits for. May be a commit hash, a branch or tag name.
+     * 
+     * @return The list of all commit hashes.
+     * 
+     * @throws GitException If this command fails.
+     */
+    public @NonNull List<@NonNull String> listAllCommits(@NonNull String revision) throws GitException {
+        List<@NonNull String> result = new ArrayList<>();
+        readGitOutput((line) -> {
+            if (!line.trim().isEmpty()) {
+                result.add(notNull(line.trim()));
+            }
+            return true;
+        }, "git", "log", "--format=format:%H", "--author-date-order", "--reverse", revision);
         return result;
     }
     
+    /**
+     * Enumerates all commit hashes reachable by the given revision. In contrast to {@link #listAllCommits(String)},
+     * the commits are read incrementally from the output of <code>git rev-list</code>, so memory usage stays
+     * constant. The caller is responsible for closing the returned iterator.
+     * 
+     * @param revision The revision to list the commits for. May be a commit hash, a branch or tag name, or a range
+     *      like <code>a..b</code>.
+     * @param order The order in which the commits should be returned. {@link CommitOrder#NEWEST_FIRST} allows git to
+     *      return the first commits immediately.
+     * 
+     * @return An iterator over the commit hashes.
+     * 
+     * @throws GitException If starting the command fails.
+     */
+    public @NonNull ICommitIterator iterateCommits(@NonNull String revision, @NonNull CommitOrder order)
+            throws GitException {
+        
+        return iterateCommits(revision, order, CommitDateRange.ALL);
+    }
+    
+    /**
+     * Enumerates the commit hashes reachable by the given revision that are in the given date range. The range is
+     * applied by git while walking the history, so the commits before the range are not even read. The caller is
+     * responsible for closing the returned iterator.
+     * 
+     * @param revision The revision to list the commits for. May be a commit hash, a branch or tag name, or a range
+     *      like <code>a..b</code>.
+     * @param order The order in which the commits should be returned. {@link CommitOrder#NEWEST_FIRST} allows git to
+     *      return the first commits immediately.
+     * @param dateRange The commit dates to restrict the commits to.
+     * 
+     * @return An iterator over the commit hashes.
+     * 
+     * @throws GitException If starting the command fails.
+     */
+    public @NonNull ICommitIterator iterateCommits(@NonNull String revision, @NonNull CommitOrder order,
+            @NonNull CommitDateRange dateRange) throws GitException {
+        
+        List<@NonNull String> command = new ArrayList<>(Arrays.asList("git", "rev-list"));
+        if (order == CommitOrder.AUTHOR_DATE) {
+            command.add("--author-date-order");
+            command.add("--reverse");
+        }
+        command.addAll(dateRange.toGitArguments());
+        command.add(revision);
+        
+        return new GitCommitIterator(startGitCommand(notNull(command.toArray(new String[0]))));
+    }
+    
+    /**
+     * Reads all versions of the given file from a single <code>git log -p</code> stream. This avoids one process (or
+     * object lookup) per commit and lets git decompress the objects in pack order. The caller is responsible for
+     * closing the returned history.
+     * 
+     * @param revision The revision to read the history of. May be a commit hash, a branch or tag name, or a range
+     *      like <code>a..b</code>.
+     * @param order The order in which the commits should be returned.
+     * @param path The path of the file, relative to the repository root. Only commits that modify this file are
+     *      returned.
+     * 
+     * @return The history of the file.
+     * 
+     * @throws GitException If starting the command fails.
+     */
+    public @NonNull GitFileHistory readFileHistory(@NonNull String revision, @NonNull CommitOrder order,
+            @NonNull String path) throws GitException {
+        
+        return readFileHistory(revision, order, CommitDateRange.ALL, path);
+    }
+    
+    /**
+     * Reads the versions of the given file in the given date range from a single <code>git log -p</code> stream. The
+     * range is applied by git while walking the history, so the commits before the range are not even read. The
+     * caller is responsible for closing the returned history.
+     * 
+     * @param revision The revision to read the history of. May be a commit hash, a branch or tag name, or a range
+     *      like <code>a..b</code>.
+     * @param order The order in which the commits should be returned.
+     * @param dateRange The commit dates to restrict the commits to.
+     * @param path The path of the file, relative to the repository root. Only commits that modify this file are
+     *      returned.
+     * 
+     * @return The history of the file.
+     * 
+     * @throws GitException If starting the command fails.
+     */
+    public @NonNull GitFileHistory readFileHistory(@NonNull String revision, @NonNull CommitOrder order,
+            @NonNull CommitDateRange dateRange, @NonNull String path) throws GitException {
+        
+        List<@NonNull String> command = new ArrayList<>(Arrays.asList(
+            "git", "-c", "diff.suppressBlankEmpty=false", "log", "--format=format:%x01%H", "--patch",
+            "--unified=" + Integer.MAX_VALUE, "--text", "--no-color", "--no-renames", "--no-ext-diff",
+            "--no-textconv"
+        ));
+        if (order == CommitOrder.AUTHOR_DATE) {
+            command.add("--author-date-order");
+            command.add("--reverse");
+        }
+        command.addAll(dateRange.toGitArguments());
+        command.add(revision);
+        command.add("--");
+        command.add(path);
+        
+        return new GitFileHistory(startGitCommand(notNull(command.toArray(new String[0]))));
+    }
+    
+    /**
+     * Enumerates the blobs that the commits of the given revision add or modify, from a single
+     * <code>git log --raw</code> stream. The caller is responsible for closing the returned iterator.
+     * 
+     * @param revision The revision to read the changes of. May be a commit hash, a branch or tag name, or a range
+     *      like <code>a..b</code>.
+     * @param order The order in which the commits should be returned.
+     * @param dateRange The commit dates to restrict the commits to.
+     * 
+     * @return The changed blobs.
+     * 
+     * @throws GitException If starting the command fails.
+     */
+    public @NonNull GitChangedBlobs readChangedBlobs(@NonNull String revision, @NonNull CommitOrder order,
+            @NonNull CommitDateRange dateRange) throws GitException {
+        
+        return readChangedBlobs(revision, order, dateRange, notNull(Collections.emptyList()));
+    }
+    
+    /**
+     * Enumerates the blobs that the commits of the given revision add or modify in the given paths, from a single
+     * <code>git log --raw</code> stream. The caller is responsible for closing the returned iterator.
+     * 
+     * @param revision The revision to read the changes of. May be a commit hash, a branch or tag name, or a range
+     *      like <code>a..b</code>.
+     * @param order The order in which the commits should be returned.
+     * @param dateRange The commit dates to restrict the commits to.
+     * @param pathspec The git pathspecs of the files to read the blobs of (e.g. <code>:!.*</code> to exclude
+     *      dotfiles). Empty for all files.
+     * 
+     * @return The changed blobs.
+     * 
+     * @throws GitException If starting the command fails.
+     */
+    public @NonNull GitChangedBlobs readChangedBlobs(@NonNull String revision, @NonNull CommitOrder order,
+            @NonNull CommitDateRange dateRange, @NonNull List<@NonNull String> pathspec) throws GitException {
+        
+        List<@NonNull String> command = new ArrayList<>(Arrays.asList(
+            "git", "log", "--format=format:%x01%H", "--raw", "--no-abbrev", "--no-renames", "--diff-filter=AM"
+        ));
+        if (order == CommitOrder.AUTHOR_DATE) {
+            command.add("--author-date-order");
+            command.add("--reverse");
+        }
+        command.addAll(dateRange.toGitArguments());
+        command.add(revision);
+        if (!pathspec.isEmpty()) {
+            command.add("--");
+            command.addAll(pathspec);
+        }
+        
+        return new GitChangedBlobs(startGitCommand(notNull(command.toArray(new String[0]))));
+    }
+    
     /**
      * Returns the commit hash that is directly before <code>date</code> in the given <code>branch</code>.
      * 
@@ -302,17 +617,16 @@ public class GitRepository {
      * @throws GitException 
      */
     public boolean containsRemoteBranch(@NonNull String remote, @NonNull String branch) throws GitException {
-        String output = runGitCommand("git", "branch", "-r");
+        String wanted = remote + "/" + branch;
+        boolean[] found = {false};
         
-        Set<String> branches = new HashSet<>();
+        readGitOutput((line) -> {
+            found[0] = line.trim().equals(wanted);
+            // stop reading as soon as the branch is found
+            return !found[0];
+        }, "git", "branch", "-r");
         
-        for (String line : output.split("\\n")) {
-            if (!line.trim().isEmpty()) {
-                branches.add(line.trim());
-            }
-        }
-        
-        return branches.contains(remote + "/" + branch);
+        return found[0];
     }
     
     /**
@@ -336,6 +650,167 @@ public class GitRepository {
         return exists;
     }
     
+    /**
+     * Resolves the given revision to the hash of the commit it points to.
+     * 
+     * @param revision The revision to resolve. May be a commit hash, a branch or tag name.
+     * 
+     * @return The commit hash, or <code>null</code> if the revision does not point to an existing commit.
+     */
+    public @Nullable String resolveCommit(@NonNull String revision) {
+        String hash;
+        
+        try {
+            hash = runGitCommand("git", "rev-parse", "--verify", "--quiet", revision + "^{commit}");
+        } catch (GitException e) {
+            hash = null;
+        }
+        
+        return hash;
+    }
+    
+    /**
+     * Checks whether this repository is a partial clone, i.e. objects may be missing locally and are fetched from a
+     * promisor remote on demand.
+     * 
+     * @return Whether this is a partial clone.
+     */
+    public boolean isPartialClone() {
+        return getPromisorRemote() != null;
+    }
+    
+    /**
+     * Returns the name of the remote that missing objects of a partial clone are fetched from.
+     * 
+     * @return The name of the promisor remote, or <code>null</code> if this is no partial clone.
+     */
+    private @Nullable String getPromisorRemote() {
+        String result = null;
+        try {
+            String output = runGitCommand("git", "config", "--get-regexp", "^remote\\..*\\.promisor$");
+            for (String line : output.split("\\n")) {
+                // remote.<name>.promisor true
+                int valueStart = line.lastIndexOf(' ');
+                if (valueStart != -1 && line.substring(valueStart + 1).equals("true")) {
+                    String key = line.substring(0, valueStart);
+                    result = key.substring("remote.".length(), key.length() - ".promisor".length());
+                    break;
+                }
+            }
+        } catch (GitException e) {
+            // git config exits with an error if there is no such key
+        }
+        return result;
+    }
+    
+    /**
+     * Fetches all blobs of the given file that are missing in this partial clone in bulk. Reading a missing blob
+     * would otherwise trigger a separate fetch for each single blob. Does nothing if this is no partial clone.
+     * 
+     * @param revision The revision (or revision range) to fetch the blobs for.
+     * @param path The path of the file to fetch the blobs of.
+     * 
+     * @return The number of blobs that were fetched.
+     * 
+     * @throws GitException If listing the missing blobs or fetching them fails.
+     */
+    public int materializeBlobs(@NonNull String revision, @NonNull String path) throws GitException {
+        return materializeBlobs(revision, CommitDateRange.ALL, path);
+    }
+    
+    /**
+     * Fetches the blobs of the given file in the commits of the given date range that are missing in this partial
+     * clone in bulk. Does nothing if this is no partial clone.
+     * 
+     * @param revision The revision (or revision range) to fetch the blobs for.
+     * @param dateRange The commit dates to restrict the commits to.
+     * @param path The path of the file to fetch the blobs of.
+     * 
+     * @return The number of blobs that were fetched.
+     * 
+     * @throws GitException If listing the missing blobs or fetching them fails.
+     */
+    public int materializeBlobs(@NonNull String revision, @NonNull CommitDateRange dateRange, @NonNull String path)
+            throws GitException {
+        
+        return materializeBlobs(revision, dateRange, notNull(Arrays.asList(path)));
+    }
+    
+    /**
+     * Fetches the blobs of the files that match the given pathspecs in the commits of the given date range that are
+     * missing in this partial clone in bulk. Does nothing if this is no partial clone.
+     * 
+     * @param revision The revision (or revision range) to fetch the blobs for.
+     * @param dateRange The commit dates to restrict the commits to.
+     * @param pathspec The git pathspecs of the files to fetch the blobs of.
+     * 
+     * @return The number of blobs that were fetched.
+     * 
+     * @throws GitException If listing the missing blobs or fetching them fails.
+     */
+    public int materializeBlobs(@NonNull String revision, @NonNull CommitDateRange dateRange,
+            @NonNull List<@NonNull String> pathspec) throws GitException {
+        
+        String remote = getPromisorRemote();
+        if (remote == null) {
+            return 0;
+        }
+        
+        // --missing=print lists the missing objects with a leading '?' instead of fetching them
+        List<@NonNull String> listCommand = new ArrayList<>(Arrays.asList("git", "rev-list", "--objects",
+                "--missing=print"));
+        listCommand.addAll(dateRange.toGitArguments());
+        listCommand.add(revision);
+        listCommand.add("--");
+        listCommand.addAll(pathspec);
+        
+        List<@NonNull String> missing = new ArrayList<>();
+        readGitOutput((line) -> {
+            if (line.startsWith("?")) {
+                missing.add(notNull(line.substring(1).trim()));
+            }
+            return true;
+        }, notNull(listCommand.toArray(new String[0])));
+        
+        // fetch in batches, to stay below the command line length limit
+        for (int i = 0; i < missing.size(); i += MATERIALIZE_BATCH_SIZE) {
+            List<@NonNull String> command = new ArrayList<>(Arrays.asList("git", "-c",
+                    "fetch.negotiationAlgorithm=noop", "fetch", remote, "--no-tags", "--no-write-fetch-head",
+                    "--recurse-submodules=no", "--filter=blob:none"));
+            command.addAll(missing.subList(i, Math.min(i + MATERIALIZE_BATCH_SIZE, missing.size())));
+            
+            runGitCommand(notNull(command.toArray(new String[0])));
+        }
+        
+        return missing.size();
+    }
+    
+    /**
+     * Opens a {@link GitBlobReader} for this repository. The reader keeps a single <code>git cat-file</code>
+     * process running, which makes reading many files considerably faster than checking each of them out. The caller
+     * is responsible for closing the returned reader.
+     * 
+     * @return A new {@link GitBlobReader} for this repository.
+     * 
+     * @throws GitException If starting the reader fails.
+     */
+    public @NonNull GitBlobReader openBlobReader() throws GitException {
+        return new GitBlobReader(execution, workingDirectory);
+    }
+    
+    /**
+     * Opens a {@link GitObjectDatabase} for this repository. This reads the objects of this repository directly,
+     * without starting any <code>git</code> process. The caller is responsible for closing the returned reader. Blobs
+     * that are missing in a partial clone are not fetched; use {@link #materializeBlobs(String, String)} first.
+     * 
+     * @return A new {@link GitObjectDatabase} for this repository.
+     * 
+     * @throws GitException If opening the object database fails.
+     */
+    public @NonNull GitObjectDatabase openObjectDatabase() throws GitException {
+        return new GitObjectDatabase(gitDirectory);
+    }
+    
     /**
      * The working directory of this git repository.
      * 
@@ -345,6 +820,57 @@ public class GitRepository {
         return workingDirectory;
     }
     
+    /**
+     * Starts the given git command in this repository. The standard output of the command can be read incrementally
+     * from {@link GitProcess#getStdout()}, while the standard error stream is drained in the background. After the
+     * output has been consumed, the caller should check the exit code with {@link GitProcess#waitFor()}. The caller
+     * is responsible for closing the returned process.
+     * 
+     * @param command The command to run, with command line parameters.
+     * 
+     * @return The running process.
+     * 
+     * @throws GitException If starting the command fails.
+     */
+    public @NonNull GitProcess startGitCommand(@NonNull String /*@NonNull*/ ... command) throws GitException {
+        // TODO: commented out @NonNull annotation because checkstyle can't parse it
+        return new GitProcess(execution, workingDirectory, command);
+    }
+    
+    /**
+     * Runs the given git command in this repository and passes each line of its standard output to the given handler,
+     * as soon as it is produced. In contrast to {@link #runGitCommand(String...)}, the output is never held in memory
+     * completely. The exit code of the command is checked after the last line.
+     * 
+     * @param handler The handler for the output lines. If it returns <code>false</code>, the command is terminated
+     *      early and its exit code is not checked.
+     * @param command The command to run, with command line parameters.
+     * 
+     * @throws GitException If the command can not be started, returns non-success or the handler fails.
+     */
+    public void readGitOutput(@NonNull ILineHandler handler, @NonNull String /*@NonNull*/ ... command)
+            throws GitException {
+        // TODO: commented out @NonNull annotation because checkstyle can't parse it
+        
+        try (GitProcess process = startGitCommand(command)) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(process.getStdout(),
+                    StandardCharsets.UTF_8));
+            
+            boolean more = true;
+            String line;
+            while (more && (line = in.readLine()) != null) {
+                more = handler.handleLine(line);
+            }
+            
+            if (more) {
+                process.waitFor();
+            }
+            
+        } catch (IOException e) {
+            throw new GitException(e);
+        }
+    }
+    
     /**
      * Runs the given git command in this git repository.
      * 
@@ -356,12 +882,13 @@ public class GitRepository {
      */
     private @NonNull String runGitCommand(@NonNull String /*@NonNull*/ ... command) throws GitException {
         // TODO: commented out @NonNull annotation because checkstyle can't parse it
-        return runGitCommand(workingDirectory, command);
+        return runGitCommand(execution, workingDirectory, command);
     }
     
     /**
      * Runs the given git command.
      * 
+     * @param execution The execution that controls how the process is run.
      * @param workingDirectory The working directory to execute the command in.
      * @param command The command to run, with command line parameters.
      * 
@@ -369,24 +896,24 @@ public class GitRepository {
      * 
      * @throws GitException If the given command fails executing or returns non-success.
      */
-    private static @NonNull String runGitCommand(@NonNull File workingDirectory, 
+    private static @NonNull String runGitCommand(@NonNull GitExecution execution, @NonNull File workingDirectory,
             @NonNull String /*@NonNull*/ ... command) throws GitException {
         // TODO: commented out @NonNull annotation because checkstyle can't parse it
         
-        ProcessBuilder builder = new ProcessBuilder(command);
-        builder.directory(workingDirectory);
-        
         ByteArrayOutputStream stdout = new ByteArrayOutputStream();
-        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
-        
-        boolean success = false;
         
         if (DEBUG_LOGGING) {
             LOGGER.logDebug(Arrays.toString(command));
         }
         
-        try {
-            success = Util.executeProcess(builder, "git", stdout, stderr, 0);
+        // stdout is read by the calling thread; GitProcess drains stderr and limits the number of running processes
+        try (GitProcess process = new GitProcess(execution, workingDirectory, command)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = process.getStdout().read(buffer)) != -1) {
+                stdout.write(buffer, 0, read);
+            }
+            process.waitFor();
             
         } catch (IOException e) {
             throw new GitException(e);
@@ -394,14 +921,9 @@ public class GitRepository {
         } finally {
             if (DEBUG_LOGGING) {
                 logWithLimit("Stdout:", notNull(stdout.toString().trim()), 20);
-                logWithLimit("Stderr:", notNull(stderr.toString().trim()), 1000);
             }
         }
         
-        if (!success) {
-            throw new GitException(notNull(stderr.toString().trim()));
-        }
-        
         return notNull(stdout.toString().trim());
     }
     
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import java.io.Closeable;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Reads the content of files from a git repository without checking them out.
+ * 
+ * @author Adam
+ */
+public interface IBlobReader extends Closeable {
+
+    /**
+     * Reads the content of the given file at the given commit.
+     * 
+     * @param commit The commit to read the file at. May also be a branch or tag name.
+     * @param path The path of the file, relative to the repository root.
+     * 
+     * @return The content of the file, or <code>null</code> if the file does not exist at the given commit.
+     * 
+     * @throws GitException If reading the repository fails, or the path does not denote a blob.
+     */
+    public byte @Nullable [] readFile(@NonNull String commit, @NonNull String path) throws GitException;
+    
+    /**
+     * Releases all resources held by this reader.
+     */
+    @Override
+    public void close();
+    
+}
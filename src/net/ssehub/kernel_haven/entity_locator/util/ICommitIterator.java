@@ -0,0 +1,45 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import java.io.Closeable;
+
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Iterates over commit hashes as they are produced, without holding the complete history in memory. Closing the
+ * iterator before it is exhausted aborts the enumeration.
+ * 
+ * @author Adam
+ */
+public interface ICommitIterator extends Closeable {
+
+    /**
+     * Returns the next commit hash.
+     * 
+     * @return The next commit hash, or <code>null</code> if all commits have been returned.
+     * 
+     * @throws GitException If enumerating the commits fails.
+     */
+    public @Nullable String nextCommit() throws GitException;
+    
+    /**
+     * Releases all resources held by this iterator.
+     */
+    @Override
+    public void close();
+    
+}
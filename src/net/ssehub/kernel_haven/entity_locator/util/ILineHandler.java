@@ -0,0 +1,40 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * Receives the output of a git command line by line, as it is produced. See
+ * {@link GitRepository#readGitOutput(ILineHandler, String...)}.
+ * 
+ * @author Adam
+ */
+public interface ILineHandler {
+
+    /**
+     * Handles a single line of output.
+     * 
+     * @param line The line, without the trailing line break.
+     * 
+     * @return Whether more lines should be read. <code>false</code> terminates the command early; its exit code is
+     *      not checked in that case.
+     * 
+     * @throws GitException If handling the line fails. This terminates the command.
+     */
+    public boolean handleLine(@NonNull String line) throws GitException;
+    
+}
@@ -0,0 +1,418 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * Reads an inverted index written by {@link InvertedIndexWriter}. The file is memory-mapped, so opening the index
+ * does not read it into the heap, and a lookup only touches the pages of the variable directory entries visited by
+ * the binary search, the name, the postings and the mail identifiers that are actually requested.
+ * <p>
+ * Each section of the file is mapped separately and must not be larger than 2 GiB. Instances are thread-safe.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class InvertedIndex implements Closeable {
+
+    private @NonNull FileChannel channel;
+    
+    private int numVariables;
+    
+    private int numMails;
+    
+    private @NonNull ByteBuffer directory;
+    
+    private @NonNull ByteBuffer names;
+    
+    private @NonNull ByteBuffer postings;
+    
+    private @NonNull ByteBuffer mailDirectory;
+    
+    private @NonNull ByteBuffer mailData;
+    
+    /**
+     * Opens the given index file.
+     * 
+     * @param file The index file.
+     * 
+     * @throws IOException If the file can not be read or is not a valid index.
+     */
+    public InvertedIndex(@NonNull File file) throws IOException {
+        this.channel = notNull(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+        try {
+            long size = channel.size();
+            if (size < InvertedIndexWriter.HEADER_SIZE) {
+                throw new IOException(file + " is not a variable index");
+            }
+            ByteBuffer header = map(0, InvertedIndexWriter.HEADER_SIZE);
+            if (header.getInt() != InvertedIndexWriter.MAGIC) {
+                throw new IOException(file + " is not a variable index");
+            }
+            int version = header.getInt();
+            if (version != InvertedIndexWriter.VERSION) {
+                throw new IOException("Unsupported version " + version + " of variable index " + file);
+            }
+            this.numVariables = header.getInt();
+            this.numMails = header.getInt();
+            long directoryStart = header.getLong();
+            long namesStart = header.getLong();
+            long postingsStart = header.getLong();
+            long mailDirectoryStart = header.getLong();
+            long mailDataStart = header.getLong();
+            
+            if (directoryStart > namesStart || namesStart > postingsStart || postingsStart > mailDirectoryStart
+                    || mailDirectoryStart > mailDataStart || mailDataStart > size) {
+                throw new IOException("Corrupt variable index " + file);
+            }
+            
+            this.directory = map(directoryStart, namesStart - directoryStart);
+            this.names = map(namesStart, postingsStart - namesStart);
+            this.postings = map(postingsStart, mailDirectoryStart - postingsStart);
+            this.mailDirectory = map(mailDirectoryStart, mailDataStart - mailDirectoryStart);
+            this.mailData = map(mailDataStart, size - mailDataStart);
+            
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Maps a section of the file.
+     * 
+     * @param start The start offset of the section.
+     * @param length The length of the section.
+     * 
+     * @return The read-only buffer of the section.
+     * 
+     * @throws IOException If the section is too large or mapping fails.
+     */
+    private @NonNull ByteBuffer map(long start, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Section of variable index is too large to be mapped: " + length + " bytes");
+        }
+        MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, start, length);
+        return notNull(buffer);
+    }
+    
+    /**
+     * Returns the number of variables in this index.
+     * 
+     * @return The number of variables.
+     */
+    public int getNumVariables() {
+        return numVariables;
+    }
+    
+    /**
+     * Returns the number of mails in this index.
+     * 
+     * @return The number of mails.
+     */
+    public int getNumMails() {
+        return numMails;
+    }
+    
+    /**
+     * Finds the given variable with a binary search in the sorted variable directory.
+     * 
+     * @param variable The name of the variable.
+     * 
+     * @return The index of the variable, or -1 if it is not contained in this index.
+     */
+    public int findVariable(@NonNull String variable) {
+        byte[] key = variable.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = numVariables - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = mid * InvertedIndexWriter.DIRECTORY_ENTRY_SIZE;
+            int cmp = compare(names, directory.getInt(entry), directory.getInt(entry + 4), key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the name of the variable at the given index.
+     * 
+     * @param index The index of the variable, between 0 and {@link #getNumVariables()} (exclusive). Variables are
+     *      sorted by name.
+     * 
+     * @return The name of the variable.
+     */
+    public @NonNull String getVariable(int index) {
+        int entry = checkVariable(index);
+        return decode(names, directory.getInt(entry), directory.getInt(entry + 4));
+    }
+    
+    /**
+     * Returns the number of mails that the variable at the given index was found in.
+     * 
+     * @param index The index of the variable.
+     * 
+     * @return The number of postings of the variable.
+     */
+    public int getNumPostings(int index) {
+        int entry = checkVariable(index);
+        return directory.getInt(entry + 20);
+    }
+    
+    /**
+     * Returns an iterator over the postings of the variable at the given index.
+     * 
+     * @param index The index of the variable.
+     * 
+     * @return An iterator over the mails that the variable was found in, in ascending order of their ordinals.
+     */
+    public @NonNull PostingIterator getPostings(int index) {
+        int entry = checkVariable(index);
+        long offset = directory.getLong(entry + 8);
+        return new PostingIterator(postings, (int) offset, directory.getInt(entry + 20));
+    }
+    
+    /**
+     * Returns the identifier of the mail with the given ordinal.
+     * 
+     * @param ordinal The ordinal of the mail, between 0 and {@link #getNumMails()} (exclusive).
+     * 
+     * @return The identifier of the mail.
+     */
+    public @NonNull String getMail(int ordinal) {
+        if (ordinal < 0 || ordinal >= numMails) {
+            throw new IndexOutOfBoundsException("Mail " + ordinal + " exceeds " + numMails);
+        }
+        long start = mailDirectory.getLong(ordinal * 8);
+        long end = mailDirectory.getLong((ordinal + 1) * 8);
+        return decode(mailData, (int) start, (int) (end - start));
+    }
+    
+    /**
+     * Looks up all mails that mention the given variable.
+     * 
+     * @param variable The name of the variable.
+     * 
+     * @return The identifiers of the mails, mapped to the number of occurrences of the variable in each mail. Empty if
+     *      the variable is not contained in this index.
+     */
+    public @NonNull Map<@NonNull String, Integer> lookup(@NonNull String variable) {
+        Map<@NonNull String, Integer> result = new LinkedHashMap<>();
+        int index = findVariable(variable);
+        if (index != -1) {
+            PostingIterator it = getPostings(index);
+            while (it.next()) {
+                result.put(getMail(it.getMail()), it.getCount());
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Checks the given variable index.
+     * 
+     * @param index The index of a variable.
+     * 
+     * @return The offset of the directory entry of the variable.
+     * 
+     * @throws IndexOutOfBoundsException If the index is not valid.
+     */
+    private int checkVariable(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= numVariables) {
+            throw new IndexOutOfBoundsException("Variable " + index + " exceeds " + numVariables);
+        }
+        return index * InvertedIndexWriter.DIRECTORY_ENTRY_SIZE;
+    }
+    
+    /**
+     * Decodes a UTF-8 string from the given buffer.
+     * 
+     * @param buffer The buffer to read from.
+     * @param offset The start of the string.
+     * @param length The length of the string in bytes.
+     * 
+     * @return The decoded string.
+     */
+    private static @NonNull String decode(@NonNull ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Compares a string in the given buffer with the given bytes, as unsigned bytes.
+     * 
+     * @param buffer The buffer that contains the first string.
+     * @param offset The start of the first string.
+     * @param length The length of the first string.
+     * @param key The second string.
+     * 
+     * @return A negative number, zero or a positive number if the first string is less, equal or greater than the
+     *      second one.
+     */
+    private static int compare(@NonNull ByteBuffer buffer, int offset, int length, byte @NonNull [] key) {
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = (buffer.get(offset + i) & 0xFF) - (key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+    
+    /**
+     * Compares two byte arrays as unsigned bytes. This is the order of the variable directory.
+     * 
+     * @param b1 The first array.
+     * @param b2 The second array.
+     * 
+     * @return A negative number, zero or a positive number if the first array is less, equal or greater than the
+     *      second one.
+     */
+    static int compare(byte @NonNull [] b1, byte @NonNull [] b2) {
+        return -compare(notNull(ByteBuffer.wrap(b2)), 0, b2.length, b1);
+    }
+    
+    /**
+     * Reads an unsigned LEB128 varint.
+     * 
+     * @param data The array to read from.
+     * @param position The index to read at, as a single element array; advanced past the read bytes.
+     * 
+     * @return The read value.
+     */
+    static int readVarint(byte @NonNull [] data, int @NonNull [] position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[position[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    /**
+     * Iterates over the postings of a variable, without allocating anything per posting.
+     */
+    public static final class PostingIterator {
+        
+        private @NonNull ByteBuffer postings;
+        
+        private int position;
+        
+        private int remaining;
+        
+        private int mail;
+        
+        private int count;
+        
+        /**
+         * Creates an iterator.
+         * 
+         * @param postings The postings section.
+         * @param offset The offset of the first posting of the variable.
+         * @param numPostings The number of postings of the variable.
+         */
+        private PostingIterator(@NonNull ByteBuffer postings, int offset, int numPostings) {
+            this.postings = postings;
+            this.position = offset;
+            this.remaining = numPostings;
+        }
+        
+        /**
+         * Moves to the next posting.
+         * 
+         * @return Whether there is a next posting. If <code>false</code>, all postings have been visited.
+         */
+        public boolean next() {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            mail += readVarint();
+            count = readVarint();
+            return true;
+        }
+        
+        /**
+         * Reads an unsigned LEB128 varint at the current position.
+         * 
+         * @return The read value.
+         */
+        private int readVarint() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = postings.get(position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+        
+        /**
+         * Returns the ordinal of the current mail; see {@link InvertedIndex#getMail(int)}.
+         * 
+         * @return The mail ordinal.
+         */
+        public int getMail() {
+            return mail;
+        }
+        
+        /**
+         * Returns the number of occurrences of the variable in the current mail.
+         * 
+         * @return The number of occurrences.
+         */
+        public int getCount() {
+            return count;
+        }
+        
+    }
+    
+}
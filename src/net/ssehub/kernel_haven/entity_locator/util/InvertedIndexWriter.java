@@ -0,0 +1,371 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.ssehub.kernel_haven.entity_locator.util.InvertedIndex.PostingIterator;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Builds an on-disk inverted index from variables to the mails that they were found in. The index can be read with
+ * {@link InvertedIndex}.
+ * <p>
+ * The posting lists are kept in memory while the index is built, but already in their compact on-disk form: each
+ * posting is the difference to the previous mail ordinal and the number of occurrences, both as variable-length
+ * integers. Usually, this takes two or three bytes per posting.
+ * </p>
+ * <p>
+ * The file consists of the following sections (all numbers are big-endian):
+ * </p>
+ * <ol>
+ * <li>Header: magic number, version, number of variables, number of mails, and the start offsets of the following
+ *     sections (as longs).</li>
+ * <li>Variable directory: for each variable, sorted by the UTF-8 bytes of the name: name offset (int), name length
+ *     (int), postings offset (long), postings length (int), number of postings (int).</li>
+ * <li>Variable names: UTF-8.</li>
+ * <li>Postings: for each posting of a variable, ordered by mail ordinal: mail ordinal delta and count as unsigned
+ *     LEB128 varints.</li>
+ * <li>Mail directory: the offsets of the mail identifiers in the mail data, as longs; one more than mails.</li>
+ * <li>Mail data: the mail identifiers, UTF-8, in the order of their ordinals.</li>
+ * </ol>
+ * <p>
+ * Instances are not thread-safe; callers have to synchronize.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class InvertedIndexWriter {
+
+    static final int MAGIC = 0x4B485649; // "KHVI"
+    
+    static final int VERSION = 1;
+    
+    static final int HEADER_SIZE = 4 * 4 + 5 * 8;
+    
+    static final int DIRECTORY_ENTRY_SIZE = 4 + 4 + 8 + 4 + 4;
+    
+    private @NonNull SymbolTable symbols;
+    
+    private @NonNull Map<@NonNull String, Integer> mailOrdinals;
+    
+    private @NonNull List<byte @NonNull []> mails;
+    
+    private @Nullable String lastMail;
+    
+    private int lastMailOrdinal;
+    
+    private byte @NonNull [] @Nullable [] postings;
+    
+    private int @NonNull [] postingsLength;
+    
+    private int @NonNull [] numPostings;
+    
+    private int @NonNull [] lastOrdinal;
+    
+    /**
+     * Variables whose postings were not added in ascending order of mail ordinals (i.e. a mail was added again after
+     * other mails). The postings of these variables store absolute ordinals instead of deltas, and are sorted before
+     * writing.
+     */
+    private boolean @NonNull [] unsorted;
+    
+    /**
+     * Creates an empty index.
+     * 
+     * @param symbols The symbol table that the variable ids refer to.
+     */
+    public InvertedIndexWriter(@NonNull SymbolTable symbols) {
+        this.symbols = symbols;
+        this.mailOrdinals = new HashMap<>();
+        this.mails = new ArrayList<>();
+        this.postings = new byte[64][];
+        this.postingsLength = new int[64];
+        this.numPostings = new int[64];
+        this.lastOrdinal = new int[64];
+        this.unsorted = new boolean[64];
+    }
+    
+    /**
+     * Adds the occurrences of a variable in a mail.
+     * 
+     * @param variableId The id of the variable in the symbol table.
+     * @param mail The identifier of the mail.
+     * @param count The number of occurrences of the variable in the mail.
+     */
+    public void add(int variableId, @NonNull String mail, int count) {
+        int ordinal = getMailOrdinal(mail);
+        
+        if (variableId >= numPostings.length) {
+            int capacity = Math.max(numPostings.length * 2, variableId + 1);
+            postings = Arrays.copyOf(postings, capacity);
+            postingsLength = Arrays.copyOf(postingsLength, capacity);
+            numPostings = Arrays.copyOf(numPostings, capacity);
+            lastOrdinal = Arrays.copyOf(lastOrdinal, capacity);
+            unsorted = Arrays.copyOf(unsorted, capacity);
+        }
+        
+        if (numPostings[variableId] > 0 && ordinal <= lastOrdinal[variableId] && !unsorted[variableId]) {
+            makeAbsolute(variableId);
+        }
+        int delta = unsorted[variableId] ? ordinal : ordinal - lastOrdinal[variableId];
+        
+        byte[] data = postings[variableId];
+        int length = postingsLength[variableId];
+        if (data == null) {
+            data = new byte[16];
+        } else if (length + 10 > data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+        length = writeVarint(data, length, delta);
+        length = writeVarint(data, length, count);
+        
+        postings[variableId] = data;
+        postingsLength[variableId] = length;
+        numPostings[variableId]++;
+        lastOrdinal[variableId] = ordinal;
+    }
+    
+    /**
+     * Adds all postings of the given index, e.g. to continue building an index that was written by an aborted run.
+     * The mails of the given index receive the lowest ordinals, in their original order, so that the posting lists
+     * stay sorted.
+     * 
+     * @param index The index to add. Should be added before any other mails.
+     */
+    public void addAll(@NonNull InvertedIndex index) {
+        for (int ordinal = 0; ordinal < index.getNumMails(); ordinal++) {
+            getMailOrdinal(index.getMail(ordinal));
+        }
+        
+        for (int i = 0; i < index.getNumVariables(); i++) {
+            int variableId = symbols.intern(index.getVariable(i));
+            PostingIterator postings = index.getPostings(i);
+            while (postings.next()) {
+                add(variableId, index.getMail(postings.getMail()), postings.getCount());
+            }
+        }
+    }
+    
+    /**
+     * Returns the ordinal of the given mail, assigning a new one if the mail is not known yet.
+     * 
+     * @param mail The identifier of the mail.
+     * 
+     * @return The ordinal of the mail.
+     */
+    private int getMailOrdinal(@NonNull String mail) {
+        // the rows of a mail are usually added together
+        if (mail.equals(lastMail)) {
+            return lastMailOrdinal;
+        }
+        
+        Integer ordinal = mailOrdinals.get(mail);
+        if (ordinal == null) {
+            ordinal = mails.size();
+            mailOrdinals.put(mail, ordinal);
+            mails.add(mail.getBytes(StandardCharsets.UTF_8));
+        }
+        lastMail = mail;
+        lastMailOrdinal = ordinal;
+        return ordinal;
+    }
+    
+    /**
+     * Writes the given value as an unsigned LEB128 varint.
+     * 
+     * @param data The array to write to; must have space for 5 more bytes.
+     * @param offset The index to write at.
+     * @param value The value to write; must not be negative.
+     * 
+     * @return The index after the written bytes.
+     */
+    private static int writeVarint(byte @NonNull [] data, int offset, int value) {
+        int i = offset;
+        while ((value & ~0x7F) != 0) {
+            data[i++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[i++] = (byte) value;
+        return i;
+    }
+    
+    /**
+     * Re-encodes the postings of a variable with absolute mail ordinals instead of deltas, and marks it as
+     * {@link #unsorted}.
+     * 
+     * @param variableId The id of the variable.
+     */
+    private void makeAbsolute(int variableId) {
+        byte[] data = notNull(postings[variableId]);
+        int num = numPostings[variableId];
+        byte[] absolute = new byte[num * 10 + 16];
+        int length = 0;
+        
+        int[] position = {0};
+        int ordinal = 0;
+        for (int i = 0; i < num; i++) {
+            ordinal += InvertedIndex.readVarint(data, position);
+            length = writeVarint(absolute, length, ordinal);
+            length = writeVarint(absolute, length, InvertedIndex.readVarint(data, position));
+        }
+        
+        postings[variableId] = absolute;
+        postingsLength[variableId] = length;
+        unsorted[variableId] = true;
+    }
+    
+    /**
+     * Sorts the postings of an {@link #unsorted} variable and encodes them as deltas again. Postings for the same mail
+     * are merged.
+     * 
+     * @param variableId The id of the variable.
+     */
+    private void sortPostings(int variableId) {
+        byte[] data = notNull(postings[variableId]);
+        int num = numPostings[variableId];
+        long[] entries = new long[num];
+        
+        int[] position = {0};
+        for (int i = 0; i < num; i++) {
+            int ordinal = InvertedIndex.readVarint(data, position);
+            int count = InvertedIndex.readVarint(data, position);
+            entries[i] = ((long) ordinal << 32) | count;
+        }
+        Arrays.sort(entries);
+        
+        byte[] sorted = new byte[num * 10];
+        int length = 0;
+        int numSorted = 0;
+        int last = 0;
+        for (int i = 0; i < num; i++) {
+            int ordinal = (int) (entries[i] >>> 32);
+            int count = (int) entries[i];
+            while (i + 1 < num && (int) (entries[i + 1] >>> 32) == ordinal) {
+                count += (int) entries[++i];
+            }
+            length = writeVarint(sorted, length, ordinal - last);
+            length = writeVarint(sorted, length, count);
+            last = ordinal;
+            numSorted++;
+        }
+        
+        postings[variableId] = sorted;
+        postingsLength[variableId] = length;
+        numPostings[variableId] = numSorted;
+        lastOrdinal[variableId] = last;
+        unsorted[variableId] = false;
+    }
+    
+    /**
+     * Writes the index to the given file. The index can still be extended and written again afterwards.
+     * 
+     * @param file The file to write to. Overwritten if it exists.
+     * 
+     * @throws IOException If writing the file fails.
+     */
+    public void write(@NonNull File file) throws IOException {
+        List<@NonNull Integer> variables = new ArrayList<>();
+        List<byte @NonNull []> names = new ArrayList<>();
+        for (int id = 0; id < numPostings.length; id++) {
+            if (numPostings[id] > 0) {
+                if (unsorted[id]) {
+                    sortPostings(id);
+                }
+                variables.add(id);
+            }
+        }
+        variables.sort((id1, id2) -> InvertedIndex.compare(symbols.getName(id1).getBytes(StandardCharsets.UTF_8),
+                symbols.getName(id2).getBytes(StandardCharsets.UTF_8)));
+        
+        long namesSize = 0;
+        long postingsSize = 0;
+        for (int id : variables) {
+            byte[] name = symbols.getName(id).getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            namesSize += name.length;
+            postingsSize += postingsLength[id];
+        }
+        long mailDataSize = 0;
+        for (byte[] mail : mails) {
+            mailDataSize += mail.length;
+        }
+        
+        long directoryStart = HEADER_SIZE;
+        long namesStart = directoryStart + (long) variables.size() * DIRECTORY_ENTRY_SIZE;
+        long postingsStart = namesStart + namesSize;
+        long mailDirectoryStart = postingsStart + postingsSize;
+        long mailDataStart = mailDirectoryStart + (mails.size() + 1L) * 8;
+        
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(variables.size());
+            out.writeInt(mails.size());
+            out.writeLong(directoryStart);
+            out.writeLong(namesStart);
+            out.writeLong(postingsStart);
+            out.writeLong(mailDirectoryStart);
+            out.writeLong(mailDataStart);
+            
+            int nameOffset = 0;
+            long postingsOffset = 0;
+            for (int i = 0; i < variables.size(); i++) {
+                int id = variables.get(i);
+                out.writeInt(nameOffset);
+                out.writeInt(names.get(i).length);
+                out.writeLong(postingsOffset);
+                out.writeInt(postingsLength[id]);
+                out.writeInt(numPostings[id]);
+                nameOffset += names.get(i).length;
+                postingsOffset += postingsLength[id];
+            }
+            
+            for (byte[] name : names) {
+                out.write(name);
+            }
+            
+            for (int id : variables) {
+                out.write(notNull(postings[id]), 0, postingsLength[id]);
+            }
+            
+            long mailOffset = 0;
+            for (byte[] mail : mails) {
+                out.writeLong(mailOffset);
+                mailOffset += mail.length;
+            }
+            out.writeLong(mailOffset);
+            
+            for (byte[] mail : mails) {
+                out.write(mail);
+            }
+        }
+    }
+    
+}
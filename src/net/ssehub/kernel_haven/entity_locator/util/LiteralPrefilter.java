@@ -0,0 +1,233 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A literal string that every match of a regular expression starts with. Text that does not contain this literal
+ * can not contain a match, so it can be skipped with a fast substring search instead of running the regular
+ * expression on it. For example, every match of <code>CONFIG_[A-Za-z0-9_]+</code> starts with
+ * <code>CONFIG_</code>.
+ * <p>
+ * The literal is derived conservatively from the source of the regular expression: if in doubt (e.g. for
+ * alternations, case-insensitive matching or a leading character class), no prefilter is created.
+ * </p>
+ * 
+ * @author Adam
+ */
+public final class LiteralPrefilter {
+
+    private static final long ONES = 0x0101010101010101L;
+    
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    
+    private static final @NonNull String META_CHARACTERS = "\\.[]()^$|*+?{}";
+    
+    private static final @NonNull String QUANTIFIERS = "*?{";
+    
+    private @NonNull String literal;
+    
+    private byte @NonNull [] bytes;
+    
+    private boolean canStartAtCandidate;
+    
+    /**
+     * Creates a prefilter.
+     * 
+     * @param literal The literal that every match starts with. Must be ASCII and not empty.
+     * @param canStartAtCandidate Whether the search may start at the first occurrence of the literal.
+     */
+    private LiteralPrefilter(@NonNull String literal, boolean canStartAtCandidate) {
+        this.literal = literal;
+        this.bytes = literal.getBytes(StandardCharsets.US_ASCII);
+        this.canStartAtCandidate = canStartAtCandidate;
+    }
+    
+    /**
+     * Derives a prefilter from the given regular expression.
+     * 
+     * @param pattern The regular expression.
+     * 
+     * @return The prefilter, or <code>null</code> if no literal prefix could be determined.
+     */
+    public static @Nullable LiteralPrefilter create(@NonNull Pattern pattern) {
+        String source = pattern.pattern();
+        int flags = pattern.flags();
+        if ((flags & (Pattern.CASE_INSENSITIVE | Pattern.COMMENTS | Pattern.CANON_EQ)) != 0) {
+            return null;
+        }
+        
+        String literal;
+        if ((flags & Pattern.LITERAL) != 0) {
+            literal = source;
+        } else if (source.indexOf('|') != -1) {
+            // a match may start in any alternative
+            return null;
+        } else {
+            literal = extractPrefix(source);
+        }
+        
+        if (literal.isEmpty() || !isAscii(literal)) {
+            return null;
+        }
+        
+        // a regex that looks behind its start position could see a different context if the search starts later
+        boolean canStartAtCandidate = (flags & Pattern.LITERAL) != 0
+                || !(source.contains("(?<") || source.contains("\\b") || source.contains("\\B")
+                || source.contains("\\G"));
+        
+        return new LiteralPrefilter(literal, canStartAtCandidate);
+    }
+    
+    /**
+     * Extracts the literal characters at the start of the given regular expression.
+     * 
+     * @param source The source of the regular expression.
+     * 
+     * @return The literal prefix; empty if the expression does not start with a literal character.
+     */
+    private static @NonNull String extractPrefix(@NonNull String source) {
+        StringBuilder result = new StringBuilder();
+        int i = 0;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (c == '\\' && i + 1 < source.length() && !Character.isLetterOrDigit(source.charAt(i + 1))) {
+                // escaped meta character
+                result.append(source.charAt(i + 1));
+                i += 2;
+            } else if (META_CHARACTERS.indexOf(c) == -1) {
+                result.append(c);
+                i++;
+            } else {
+                break;
+            }
+            
+            // a quantifier that allows zero repetitions makes the previous character optional
+            if (i < source.length() && QUANTIFIERS.indexOf(source.charAt(i)) != -1) {
+                result.setLength(result.length() - 1);
+                break;
+            }
+        }
+        return result.toString();
+    }
+    
+    /**
+     * Checks whether the given string only contains ASCII characters.
+     * 
+     * @param str The string to check.
+     * 
+     * @return Whether all characters are ASCII.
+     */
+    private static boolean isAscii(@NonNull String str) {
+        for (int i = 0; i < str.length(); i++) {
+            if (str.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Returns the literal that every match starts with.
+     * 
+     * @return The literal.
+     */
+    public @NonNull String getLiteral() {
+        return literal;
+    }
+    
+    /**
+     * Returns whether the regular expression may be started at the first occurrence of the literal in a line,
+     * instead of at the start of the line. This is not the case if the expression contains look-behinds or word
+     * boundaries, since these would not see the skipped text.
+     * 
+     * @return Whether the search may start at the first candidate position.
+     */
+    public boolean canStartAtCandidate() {
+        return canStartAtCandidate;
+    }
+    
+    /**
+     * Finds the first occurrence of the literal in the given range of the buffer. Eight bytes at a time are checked
+     * for the first byte of the literal (SWAR), so that text without candidates is skipped quickly.
+     * 
+     * @param buffer The buffer to search. Its position and byte order are not used.
+     * @param from The absolute index to start searching at.
+     * @param to The absolute index after the last byte to search.
+     * 
+     * @return The absolute index of the first occurrence, or -1 if the literal does not occur in the range.
+     */
+    public int indexOf(@NonNull ByteBuffer buffer, int from, int to) {
+        boolean littleEndian = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+        long firstByte = ONES * (bytes[0] & 0xFF);
+        int lastStart = to - bytes.length;
+        
+        int i = from;
+        while (i <= lastStart) {
+            if (to - i >= Long.BYTES) {
+                long word = buffer.getLong(i);
+                if (!littleEndian) {
+                    // the byte at the lowest index has to be the least significant one
+                    word = Long.reverseBytes(word);
+                }
+                
+                // sets the high bit of each byte that equals the first byte of the literal; exact for the lowest one
+                long diff = word ^ firstByte;
+                long found = (diff - ONES) & ~diff & HIGH_BITS;
+                if (found == 0) {
+                    i += Long.BYTES;
+                    continue;
+                }
+                i += Long.numberOfTrailingZeros(found) >>> 3;
+                
+            } else if (buffer.get(i) != bytes[0]) {
+                i++;
+                continue;
+            }
+            
+            if (i <= lastStart && matchesAt(buffer, i)) {
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+    
+    /**
+     * Checks whether the literal occurs at the given index of the buffer.
+     * 
+     * @param buffer The buffer to check.
+     * @param index The absolute index; there must be enough bytes left for the literal.
+     * 
+     * @return Whether the literal occurs at the index.
+     */
+    private boolean matchesAt(@NonNull ByteBuffer buffer, int index) {
+        for (int j = 1; j < bytes.length; j++) {
+            if (buffer.get(index + j) != bytes[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import net.ssehub.kernel_haven.util.Logger;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Live counters of a crawl, which can be published as an MBean to watch a running crawl in a JMX console. The
+ * counters are updated concurrently by all threads of the crawl.
+ * <p>
+ * The rates are calculated between two samples of the counters. A new sample is taken when a rate is read and the
+ * last sample is at least a second old; thus, a console that polls the rates periodically sees the rates of its
+ * polling interval.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class LocatorMetrics implements LocatorMetricsMBean {
+
+    private static final @NonNull Logger LOGGER = Logger.get();
+    
+    private static final long MIN_SAMPLE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    
+    private static final int MAILS = 0;
+    
+    private static final int BYTES = 1;
+    
+    private static final int MATCHES = 2;
+    
+    private final long startTime;
+    
+    private final @NonNull LongAdder mails = new LongAdder();
+    
+    private final @NonNull LongAdder bytes = new LongAdder();
+    
+    private final @NonNull LongAdder matches = new LongAdder();
+    
+    private final @NonNull LongAdder results = new LongAdder();
+    
+    private final @NonNull LongAdder mailsWithoutMessageId = new LongAdder();
+    
+    private final @NonNull LongAdder readTime = new LongAdder();
+    
+    private final @NonNull LongAdder scanTime = new LongAdder();
+    
+    private final @NonNull LongAdder emitTime = new LongAdder();
+    
+    private final @NonNull Set<@NonNull String> currentSources = ConcurrentHashMap.newKeySet();
+    
+    private final @NonNull Set<@NonNull Pipeline<?>> pipelines = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * The previous and the latest sample of the counters used for the rates. Guarded by <code>this</code>.
+     */
+    private long previousSampleTime;
+    
+    private long @NonNull [] previousSample = new long[3];
+    
+    private long latestSampleTime;
+    
+    private long @NonNull [] latestSample = new long[3];
+    
+    private @Nullable ObjectName name;
+    
+    /**
+     * Creates new metrics, with all counters at zero.
+     */
+    public LocatorMetrics() {
+        this.startTime = System.nanoTime();
+        this.previousSampleTime = startTime;
+        this.latestSampleTime = startTime;
+    }
+    
+    /**
+     * Records a mail that was read from git.
+     * 
+     * @param mail The content of the mail, or <code>null</code> if the commit does not contain a mail.
+     * @param nanos The time it took to read the mail, in nanoseconds.
+     */
+    public void mailRead(byte @Nullable [] mail, long nanos) {
+        if (mail != null) {
+            bytes.add(mail.length);
+        }
+        readTime.add(nanos);
+    }
+    
+    /**
+     * Records the time that was spent searching a mail.
+     * 
+     * @param nanos The time in nanoseconds.
+     */
+    public void scanned(long nanos) {
+        scanTime.add(nanos);
+    }
+    
+    /**
+     * Records a mail without Message-ID header.
+     */
+    public void mailWithoutMessageId() {
+        mailsWithoutMessageId.increment();
+    }
+    
+    /**
+     * Records emitted results.
+     * 
+     * @param numMails The number of mails that the results are from.
+     * @param numResults The number of result rows.
+     * @param numMatches The number of variable occurrences in the results.
+     * @param nanos The time it took to emit the results, in nanoseconds.
+     */
+    public void emitted(int numMails, int numResults, long numMatches, long nanos) {
+        mails.add(numMails);
+        results.add(numResults);
+        matches.add(numMatches);
+        emitTime.add(nanos);
+    }
+    
+    /**
+     * Records that the crawl of a mail source was started.
+     * 
+     * @param mailSource The mail source.
+     */
+    public void sourceStarted(@NonNull String mailSource) {
+        currentSources.add(mailSource);
+    }
+    
+    /**
+     * Records that the crawl of a mail source has finished.
+     * 
+     * @param mailSource The mail source.
+     */
+    public void sourceFinished(@NonNull String mailSource) {
+        currentSources.remove(mailSource);
+    }
+    
+    /**
+     * Adds a running pipeline, whose queue depths are reported until it is {@link #removePipeline(Pipeline) removed}.
+     * 
+     * @param pipeline The pipeline.
+     */
+    public void addPipeline(@NonNull Pipeline<?> pipeline) {
+        pipelines.add(pipeline);
+    }
+    
+    /**
+     * Removes a pipeline that has finished.
+     * 
+     * @param pipeline The pipeline.
+     */
+    public void removePipeline(@NonNull Pipeline<?> pipeline) {
+        pipelines.remove(pipeline);
+    }
+    
+    /**
+     * Publishes these metrics as an MBean in the platform MBean server. Failures are logged, since the metrics are
+     * not essential for the crawl.
+     * 
+     * @param objectName The name to register the MBean with, e.g.
+     *      <code>net.ssehub.kernel_haven.entity_locator:type=VariableInMailingListLocator,id=1</code>.
+     */
+    public synchronized void register(@NonNull String objectName) {
+        try {
+            ObjectName name = new ObjectName(objectName);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            this.name = name;
+        } catch (JMException e) {
+            LOGGER.logException("Couldn't register metrics MBean " + objectName, e);
+        }
+    }
+    
+    /**
+     * Removes the MBean of these metrics from the platform MBean server. Does nothing if it is not registered.
+     */
+    public synchronized void unregister() {
+        ObjectName name = this.name;
+        if (name != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                LOGGER.logException("Couldn't unregister metrics MBean " + name, e);
+            }
+            this.name = null;
+        }
+    }
+    
+    /**
+     * Returns the rate of the given counter between the previous sample and now. Takes a new sample, if the latest
+     * one is old enough.
+     * 
+     * @param counter The index of the counter in the samples.
+     * 
+     * @return The rate per second.
+     */
+    private synchronized double getRate(int counter) {
+        long now = System.nanoTime();
+        long[] current = {mails.sum(), bytes.sum(), matches.sum()};
+        if (now - latestSampleTime >= MIN_SAMPLE_INTERVAL) {
+            previousSampleTime = latestSampleTime;
+            previousSample = latestSample;
+            latestSampleTime = now;
+            latestSample = current;
+        }
+        
+        long interval = now - previousSampleTime;
+        if (interval <= 0) {
+            return 0;
+        }
+        return (current[counter] - previousSample[counter]) * (double) TimeUnit.SECONDS.toNanos(1) / interval;
+    }
+    
+    @Override
+    public long getMails() {
+        return mails.sum();
+    }
+    
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+    
+    @Override
+    public long getMatches() {
+        return matches.sum();
+    }
+    
+    @Override
+    public long getResults() {
+        return results.sum();
+    }
+    
+    @Override
+    public long getMailsWithoutMessageId() {
+        return mailsWithoutMessageId.sum();
+    }
+    
+    @Override
+    public double getMailsPerSecond() {
+        return getRate(MAILS);
+    }
+    
+    @Override
+    public double getBytesPerSecond() {
+        return getRate(BYTES);
+    }
+    
+    @Override
+    public double getMatchesPerSecond() {
+        return getRate(MATCHES);
+    }
+    
+    @Override
+    public long getReadTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(readTime.sum());
+    }
+    
+    @Override
+    public long getScanTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(scanTime.sum());
+    }
+    
+    @Override
+    public long getEmitTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(emitTime.sum());
+    }
+    
+    @Override
+    public long getElapsedSeconds() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime);
+    }
+    
+    @Override
+    public String[] getCurrentSources() {
+        return notNull(currentSources.toArray(new String[0]));
+    }
+    
+    @Override
+    public String[] getQueueDepths() {
+        return notNull(pipelines.stream().map(Pipeline::describeQueues).toArray(String[]::new));
+    }
+    
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+/**
+ * The management interface of {@link LocatorMetrics}, as shown in JMX consoles like JConsole or VisualVM.
+ * 
+ * @author Adam
+ */
+public interface LocatorMetricsMBean {
+
+    /**
+     * Returns the number of mails that have been processed (including mails taken from the scan cache).
+     * 
+     * @return The number of processed mails.
+     */
+    public long getMails();
+    
+    /**
+     * Returns the number of bytes of the mails that have been read from the repositories.
+     * 
+     * @return The number of bytes read.
+     */
+    public long getBytes();
+    
+    /**
+     * Returns the number of variable occurrences that have been found.
+     * 
+     * @return The number of matches.
+     */
+    public long getMatches();
+    
+    /**
+     * Returns the number of result rows (variable and mail pairs) that have been emitted.
+     * 
+     * @return The number of results.
+     */
+    public long getResults();
+    
+    /**
+     * Returns the number of mails without a Message-ID header; these never produce a result.
+     * 
+     * @return The number of mails without message ID.
+     */
+    public long getMailsWithoutMessageId();
+    
+    /**
+     * Returns the number of processed mails per second, since the previous sample (see {@link LocatorMetrics}).
+     * 
+     * @return The current mail rate.
+     */
+    public double getMailsPerSecond();
+    
+    /**
+     * Returns the number of read bytes per second, since the previous sample (see {@link LocatorMetrics}).
+     * 
+     * @return The current byte rate.
+     */
+    public double getBytesPerSecond();
+    
+    /**
+     * Returns the number of matches per second, since the previous sample (see {@link LocatorMetrics}).
+     * 
+     * @return The current match rate.
+     */
+    public double getMatchesPerSecond();
+    
+    /**
+     * Returns the total time that was spent reading mails from git, summed over all threads.
+     * 
+     * @return The read time in milliseconds.
+     */
+    public long getReadTimeMillis();
+    
+    /**
+     * Returns the total time that was spent parsing the headers and searching the bodies of the mails, summed over
+     * all threads.
+     * 
+     * @return The scan time in milliseconds.
+     */
+    public long getScanTimeMillis();
+    
+    /**
+     * Returns the total time that was spent passing the results to the next component, including the time waiting
+     * for other threads that emit results, summed over all threads.
+     * 
+     * @return The emit time in milliseconds.
+     */
+    public long getEmitTimeMillis();
+    
+    /**
+     * Returns the time since the crawl was started.
+     * 
+     * @return The elapsed time in seconds.
+     */
+    public long getElapsedSeconds();
+    
+    /**
+     * Returns the mail sources that are currently crawled.
+     * 
+     * @return The current mail sources.
+     */
+    public String[] getCurrentSources();
+    
+    /**
+     * Returns the number of mails that wait in front of each stage of the currently running pipelines. A full queue
+     * in front of a stage means that this stage is the bottleneck.
+     * 
+     * @return One entry per running pipeline, e.g. <code>name: header=0, matcher=16, emitter=0</code>.
+     */
+    public String[] getQueueDepths();
+    
+}
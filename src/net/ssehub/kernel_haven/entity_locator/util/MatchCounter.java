@@ -0,0 +1,304 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Counts the occurrences of matched texts, without allocating anything for texts that were seen before. The matched
+ * texts are passed as spans of a {@link CharSequence}; they are hashed and compared in place, so no substring is
+ * created for them. The counts are kept in an open-addressing hash table of primitive arrays.
+ * <p>
+ * A counter is meant to be reused for many mails: {@link #reset()} only clears the counts, but keeps the known texts.
+ * Thus, after a warm-up, counting the variables of a mail does not allocate any memory. Instances are not
+ * thread-safe; each thread should use its own counter.
+ * </p>
+ * <p>
+ * Each new text is interned in a {@link SymbolTable}, so the counted texts are the canonical instances of the table
+ * and their ids are available through {@link #getId(int)}.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class MatchCounter {
+
+    /**
+     * If more texts than this are known when the counter is {@link #reset()}, they are forgotten; otherwise, a regular
+     * expression that matches arbitrary words would let the table grow without bounds.
+     */
+    private static final int MAX_RETAINED_KEYS = 1 << 16;
+    
+    private static final int INITIAL_CAPACITY = 64;
+    
+    private int @NonNull [] hashes;
+    
+    /**
+     * The characters of each known text, as they appeared in the searched {@link CharSequence}. <code>null</code>
+     * marks a free slot.
+     */
+    private char @NonNull [] @Nullable [] raw;
+    
+    /**
+     * The canonical string of each known text, as created by {@link CharSequence#toString()} of the searched sequence.
+     */
+    private @Nullable String @NonNull [] keys;
+    
+    /**
+     * The id of each known text in {@link #symbols}.
+     */
+    private int @NonNull [] ids;
+    
+    private int @NonNull [] counts;
+    
+    private int numKeys;
+    
+    /**
+     * The slots with a non-zero count, in the order in which they were first counted since the last reset.
+     */
+    private int @NonNull [] used;
+    
+    private int numUsed;
+    
+    private @NonNull SymbolTable symbols;
+    
+    /**
+     * Creates an empty counter.
+     * 
+     * @param symbols The symbol table to intern the counted texts in.
+     */
+    public MatchCounter(@NonNull SymbolTable symbols) {
+        this.symbols = symbols;
+        allocate(INITIAL_CAPACITY);
+    }
+    
+    /**
+     * Allocates empty tables with the given capacity.
+     * 
+     * @param capacity The number of slots; must be a power of two.
+     */
+    private void allocate(int capacity) {
+        this.hashes = new int[capacity];
+        this.raw = new char[capacity][];
+        this.keys = new String[capacity];
+        this.ids = new int[capacity];
+        this.counts = new int[capacity];
+        this.used = new int[capacity];
+        this.numKeys = 0;
+        this.numUsed = 0;
+    }
+    
+    /**
+     * Counts an occurrence of the given text.
+     * 
+     * @param text The sequence that contains the text.
+     * @param start The index of the first character of the text.
+     * @param end The index after the last character of the text.
+     */
+    public void add(@NonNull CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        // spread the bits, so that similar texts don't cluster in the table
+        hash ^= hash >>> 16;
+        
+        int mask = hashes.length - 1;
+        int slot = hash & mask;
+        char[] chars;
+        while ((chars = raw[slot]) != null) {
+            if (hashes[slot] == hash && equals(chars, text, start, end)) {
+                if (counts[slot]++ == 0) {
+                    used[numUsed++] = slot;
+                }
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        
+        // a new text; this is the only case that allocates
+        chars = new char[end - start];
+        for (int i = start; i < end; i++) {
+            chars[i - start] = text.charAt(i);
+        }
+        hashes[slot] = hash;
+        raw[slot] = chars;
+        int id = symbols.intern(notNull(text.subSequence(start, end).toString()));
+        keys[slot] = symbols.getName(id);
+        ids[slot] = id;
+        counts[slot] = 1;
+        used[numUsed++] = slot;
+        numKeys++;
+        
+        if (numKeys * 2 > hashes.length) {
+            grow();
+        }
+    }
+    
+    /**
+     * Checks whether the given characters equal the given span.
+     * 
+     * @param chars The characters of a known text.
+     * @param text The sequence that contains the span.
+     * @param start The start of the span.
+     * @param end The end of the span.
+     * 
+     * @return Whether the span consists of exactly the given characters.
+     */
+    private static boolean equals(char @NonNull [] chars, @NonNull CharSequence text, int start, int end) {
+        if (chars.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Doubles the size of the tables, keeping all known texts and counts.
+     */
+    private void grow() {
+        int[] oldHashes = hashes;
+        char[][] oldRaw = raw;
+        @Nullable String[] oldKeys = keys;
+        int[] oldIds = ids;
+        int[] oldCounts = counts;
+        int[] oldUsed = used;
+        int oldNumUsed = numUsed;
+        
+        allocate(oldHashes.length * 2);
+        int mask = hashes.length - 1;
+        int[] newSlots = new int[oldHashes.length];
+        for (int oldSlot = 0; oldSlot < oldHashes.length; oldSlot++) {
+            if (oldRaw[oldSlot] != null) {
+                int slot = oldHashes[oldSlot] & mask;
+                while (raw[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                hashes[slot] = oldHashes[oldSlot];
+                raw[slot] = oldRaw[oldSlot];
+                keys[slot] = oldKeys[oldSlot];
+                ids[slot] = oldIds[oldSlot];
+                counts[slot] = oldCounts[oldSlot];
+                newSlots[oldSlot] = slot;
+                numKeys++;
+            }
+        }
+        for (int i = 0; i < oldNumUsed; i++) {
+            used[numUsed++] = newSlots[oldUsed[i]];
+        }
+    }
+    
+    /**
+     * Clears all counts, so that the counter can be used for the next mail.
+     */
+    public void reset() {
+        if (numKeys > MAX_RETAINED_KEYS) {
+            allocate(INITIAL_CAPACITY);
+            return;
+        }
+        for (int i = 0; i < numUsed; i++) {
+            counts[used[i]] = 0;
+        }
+        numUsed = 0;
+    }
+    
+    /**
+     * Returns the number of different texts that were counted since the last {@link #reset()}.
+     * 
+     * @return The number of texts with a non-zero count.
+     */
+    public int size() {
+        return numUsed;
+    }
+    
+    /**
+     * Returns whether nothing was counted since the last {@link #reset()}.
+     * 
+     * @return Whether {@link #size()} is 0.
+     */
+    public boolean isEmpty() {
+        return numUsed == 0;
+    }
+    
+    /**
+     * Returns the text at the given index.
+     * 
+     * @param index The index of the text, between 0 and {@link #size()} (exclusive). Texts are indexed in the order
+     *      in which they were first counted since the last {@link #reset()}.
+     * 
+     * @return The counted text.
+     */
+    public @NonNull String getText(int index) {
+        checkIndex(index);
+        return notNull(keys[used[index]]);
+    }
+    
+    /**
+     * Returns the symbol id of the text at the given index.
+     * 
+     * @param index The index of the text, between 0 and {@link #size()} (exclusive).
+     * 
+     * @return The id of the text in the symbol table of this counter.
+     */
+    public int getId(int index) {
+        checkIndex(index);
+        return ids[used[index]];
+    }
+    
+    /**
+     * Returns the number of occurrences of the text at the given index.
+     * 
+     * @param index The index of the text, between 0 and {@link #size()} (exclusive).
+     * 
+     * @return The number of occurrences of the text since the last {@link #reset()}.
+     */
+    public int getCount(int index) {
+        checkIndex(index);
+        return counts[used[index]];
+    }
+    
+    /**
+     * Checks that the given index is valid.
+     * 
+     * @param index The index to check.
+     * 
+     * @throws IndexOutOfBoundsException If the index is not between 0 and {@link #size()} (exclusive).
+     */
+    private void checkIndex(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= numUsed) {
+            throw new IndexOutOfBoundsException("Index " + index + " exceeds size " + numUsed);
+        }
+    }
+    
+    @Override
+    public @NonNull String toString() {
+        StringBuilder result = new StringBuilder("{");
+        for (int i = 0; i < numUsed; i++) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            result.append(getText(i)).append('=').append(getCount(i));
+        }
+        return notNull(result.append('}').toString());
+    }
+    
+}
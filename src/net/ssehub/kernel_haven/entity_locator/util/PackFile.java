@@ -0,0 +1,217 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * A memory-mapped git packfile together with its (version 2) index. This class only provides raw access to the
+ * pack; parsing and inflating the objects is done by {@link GitObjectDatabase}. Not thread-safe.
+ * 
+ * @author Adam
+ */
+class PackFile {
+
+    /**
+     * The maximum size of a single mapped segment of the pack. Packs larger than this are mapped in multiple
+     * segments, since a single {@link MappedByteBuffer} can not exceed 2 GB.
+     */
+    private static final int SEGMENT_SIZE = 1 << 30;
+    
+    private static final int IDX_MAGIC = 0xff744f63;
+    
+    private static final int FANOUT_OFFSET = 8;
+    
+    private static final int SHA_TABLE_OFFSET = FANOUT_OFFSET + 256 * 4;
+    
+    private @NonNull File packFile;
+    
+    private @NonNull MappedByteBuffer idx;
+    
+    private @NonNull MappedByteBuffer @NonNull [] segments;
+    
+    private long packSize;
+    
+    private int numObjects;
+    
+    private int offsetTableOffset;
+    
+    private int largeOffsetTableOffset;
+    
+    /**
+     * Maps the given pack and index file.
+     * 
+     * @param idxFile The <code>.idx</code> file of the pack.
+     * @param packFile The <code>.pack</code> file.
+     * 
+     * @throws IOException If mapping the files fails or they are not in a supported format.
+     */
+    PackFile(@NonNull File idxFile, @NonNull File packFile) throws IOException {
+        this.packFile = packFile;
+        
+        try (FileChannel channel = FileChannel.open(idxFile.toPath(), StandardOpenOption.READ)) {
+            this.idx = notNull(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+        }
+        if (idx.getInt(0) != IDX_MAGIC || idx.getInt(4) != 2) {
+            throw new IOException("Unsupported pack index format: " + idxFile);
+        }
+        
+        this.numObjects = idx.getInt(FANOUT_OFFSET + 255 * 4);
+        this.offsetTableOffset = SHA_TABLE_OFFSET + numObjects * 20 + numObjects * 4;
+        this.largeOffsetTableOffset = offsetTableOffset + numObjects * 4;
+        
+        try (FileChannel channel = FileChannel.open(packFile.toPath(), StandardOpenOption.READ)) {
+            this.packSize = channel.size();
+            int numSegments = (int) ((packSize + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+            this.segments = new MappedByteBuffer[numSegments];
+            for (int i = 0; i < numSegments; i++) {
+                long start = (long) i * SEGMENT_SIZE;
+                segments[i] = notNull(channel.map(MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, packSize - start)));
+            }
+        }
+        if (packSize < 12 || getByte(0) != 'P' || getByte(1) != 'A' || getByte(2) != 'C' || getByte(3) != 'K') {
+            throw new IOException("Not a pack file: " + packFile);
+        }
+    }
+    
+    /**
+     * Finds the offset of the given object in this pack. Uses the fanout table to narrow down the range of the
+     * sorted SHA table, which is then binary searched.
+     * 
+     * @param id The 20 byte object id.
+     * 
+     * @return The offset of the object in the pack; -1 if this pack does not contain the object.
+     */
+    long findOffset(byte @NonNull [] id) {
+        int first = id[0] & 0xff;
+        int low = first == 0 ? 0 : idx.getInt(FANOUT_OFFSET + (first - 1) * 4);
+        int high = idx.getInt(FANOUT_OFFSET + first * 4) - 1;
+        
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareId(mid, id);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return getOffset(mid);
+            }
+        }
+        
+        return -1;
+    }
+    
+    /**
+     * Compares the id at the given position in the SHA table with the given id.
+     * 
+     * @param position The position in the SHA table.
+     * @param id The id to compare with.
+     * 
+     * @return The comparison result, in the sense of {@link Comparable#compareTo(Object)}.
+     */
+    private int compareId(int position, byte @NonNull [] id) {
+        int base = SHA_TABLE_OFFSET + position * 20;
+        for (int i = 0; i < 20; i++) {
+            int cmp = (idx.get(base + i) & 0xff) - (id[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * Reads the pack offset for the object at the given position in the SHA table.
+     * 
+     * @param position The position in the SHA table.
+     * 
+     * @return The offset in the pack.
+     */
+    private long getOffset(int position) {
+        int offset = idx.getInt(offsetTableOffset + position * 4);
+        if ((offset & 0x80000000) == 0) {
+            return offset;
+        }
+        // MSB set: the remaining bits are an index into the 8 byte offset table
+        return idx.getLong(largeOffsetTableOffset + (offset & 0x7fffffff) * 8);
+    }
+    
+    /**
+     * Reads a single byte from the pack.
+     * 
+     * @param position The position in the pack.
+     * 
+     * @return The unsigned byte value.
+     */
+    int getByte(long position) {
+        return segments[(int) (position / SEGMENT_SIZE)].get((int) (position % SEGMENT_SIZE)) & 0xff;
+    }
+    
+    /**
+     * Copies bytes from the pack into the given buffer. May cross segment boundaries.
+     * 
+     * @param position The position in the pack to start reading at.
+     * @param buffer The buffer to copy to.
+     * @param offset The offset in the buffer.
+     * @param length The number of bytes to copy.
+     */
+    void read(long position, byte @NonNull [] buffer, int offset, int length) {
+        while (length > 0) {
+            MappedByteBuffer segment = segments[(int) (position / SEGMENT_SIZE)];
+            int segmentPos = (int) (position % SEGMENT_SIZE);
+            int n = Math.min(length, segment.limit() - segmentPos);
+            segment.position(segmentPos);
+            segment.get(buffer, offset, n);
+            position += n;
+            offset += n;
+            length -= n;
+        }
+    }
+    
+    /**
+     * Returns the size of the pack file.
+     * 
+     * @return The size in bytes.
+     */
+    long getSize() {
+        return packSize;
+    }
+    
+    /**
+     * Returns the number of objects in this pack.
+     * 
+     * @return The number of objects.
+     */
+    int getNumObjects() {
+        return numObjects;
+    }
+    
+    @Override
+    public @NonNull String toString() {
+        return notNull(packFile.getName());
+    }
+    
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A chain of processing stages that are connected by bounded queues. Each stage runs on its own threads, so that
+ * the stages work concurrently. If a stage is slower than its predecessor, the queue in front of it fills up and the
+ * predecessor (and finally the caller of {@link #submit(Object)}) blocks until there is space again. This limits the
+ * number of items in flight to the queue depth per stage.
+ * <p>
+ * If a stage has more than one thread, items may overtake each other in that stage.
+ * </p>
+ * 
+ * @param <T> The type of items that flow through the pipeline. Stages may modify the items.
+ * 
+ * @author Adam
+ */
+public class Pipeline<T> implements Closeable {
+
+    /**
+     * A single processing step of a {@link Pipeline}.
+     * 
+     * @param <T> The type of items that flow through the pipeline.
+     */
+    public static interface Stage<T> {
+        
+        /**
+         * Processes a single item.
+         * 
+         * @param item The item to process.
+         * 
+         * @return Whether the item should be passed on to the next stage. <code>false</code> drops the item.
+         * 
+         * @throws Exception If processing fails. This aborts the complete pipeline.
+         */
+        public boolean process(@NonNull T item) throws Exception;
+        
+    }
+    
+    /**
+     * Marks the end of the items in a queue.
+     */
+    private static final @NonNull Object END = new Object();
+    
+    private @NonNull String name;
+    
+    private int queueDepth;
+    
+    private @NonNull GitExecution execution;
+    
+    private @NonNull List<@NonNull StageRunner> stages;
+    
+    private @NonNull List<@NonNull Thread> threads;
+    
+    private @NonNull AtomicReference<@Nullable Throwable> failure;
+    
+    private boolean started;
+    
+    /**
+     * Creates an empty pipeline. Add stages with {@link #addStage(String, int, Stage)}.
+     * 
+     * @param name The name of this pipeline; used for the thread names.
+     * @param queueDepth The maximum number of items that may wait in front of each stage.
+     */
+    public Pipeline(@NonNull String name, int queueDepth) {
+        this(name, queueDepth, GitExecution.DEFAULT);
+    }
+    
+    /**
+     * Creates an empty pipeline. Add stages with {@link #addStage(String, int, Stage)}.
+     * 
+     * @param name The name of this pipeline; used for the thread names.
+     * @param queueDepth The maximum number of items that may wait in front of each stage.
+     * @param execution The execution that creates the threads of the stages.
+     */
+    public Pipeline(@NonNull String name, int queueDepth, @NonNull GitExecution execution) {
+        this.name = name;
+        this.queueDepth = Math.max(queueDepth, 1);
+        this.execution = execution;
+        this.stages = new ArrayList<>();
+        this.threads = new CopyOnWriteArrayList<>();
+        this.failure = new AtomicReference<>();
+    }
+    
+    /**
+     * Adds a stage to the end of this pipeline. Must be called before the first item is submitted.
+     * 
+     * @param stageName The name of the stage; used for the thread names.
+     * @param numThreads The number of threads that run this stage concurrently.
+     * @param stage The processing step.
+     */
+    public void addStage(@NonNull String stageName, int numThreads, @NonNull Stage<T> stage) {
+        if (started) {
+            throw new IllegalStateException("Pipeline already started");
+        }
+        stages.add(new StageRunner(stageName, Math.max(numThreads, 1), stage));
+    }
+    
+    /**
+     * Starts the threads of all stages.
+     */
+    private void start() {
+        started = true;
+        for (int i = 0; i < stages.size(); i++) {
+            StageRunner runner = stages.get(i);
+            StageRunner next = i + 1 < stages.size() ? stages.get(i + 1) : null;
+            for (int j = 0; j < runner.numThreads; j++) {
+                Thread thread = execution.newThread(() -> runner.run(next), name + "-" + runner.name + "-" + (j + 1));
+                threads.add(thread);
+                thread.start();
+            }
+        }
+    }
+    
+    /**
+     * Passes an item into the first stage of this pipeline. Blocks while the queue of the first stage is full.
+     * Should only be called by a single thread.
+     * 
+     * @param item The item to process.
+     * 
+     * @throws PipelineException If a stage has failed.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    public void submit(@NonNull T item) throws PipelineException, InterruptedException {
+        if (!started) {
+            start();
+        }
+        if (stages.isEmpty()) {
+            return;
+        }
+        put(stages.get(0).queue, item);
+    }
+    
+    /**
+     * Signals that no more items will be submitted and waits until all items have passed through all stages.
+     * 
+     * @throws PipelineException If a stage has failed.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    public void finish() throws PipelineException, InterruptedException {
+        if (!started) {
+            start();
+        }
+        if (!stages.isEmpty()) {
+            StageRunner first = stages.get(0);
+            for (int i = 0; i < first.numThreads; i++) {
+                put(first.queue, END);
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        checkFailure();
+    }
+    
+    /**
+     * Aborts all stages, if they are still running. Items that are still in the pipeline are discarded. Does nothing
+     * if {@link #finish()} has completed already.
+     */
+    @Override
+    public void close() {
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+    }
+    
+    /**
+     * Describes how many items currently wait in front of each stage. A full queue in front of a stage means that
+     * this stage is slower than its predecessors.
+     * 
+     * @return A description like <code>name: header=0, matcher=16, emitter=0</code>.
+     */
+    public @NonNull String describeQueues() {
+        StringBuilder result = new StringBuilder(name).append(':');
+        for (int i = 0; i < stages.size(); i++) {
+            StageRunner stage = stages.get(i);
+            result.append(i == 0 ? " " : ", ").append(stage.name).append('=').append(stage.queue.size());
+        }
+        return notNull(result.toString());
+    }
+    
+    /**
+     * Puts the given element into the given queue, waiting for space if required. Gives up if a stage has failed,
+     * since the queue may never drain in that case.
+     * 
+     * @param queue The queue to put the element into.
+     * @param element The element.
+     * 
+     * @throws PipelineException If a stage has failed.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    private void put(@NonNull BlockingQueue<Object> queue, @NonNull Object element)
+            throws PipelineException, InterruptedException {
+        
+        checkFailure();
+        while (!queue.offer(element, 100, TimeUnit.MILLISECONDS)) {
+            checkFailure();
+        }
+    }
+    
+    /**
+     * Records the failure of a stage and aborts all other stages.
+     * 
+     * @param cause The exception thrown by the stage.
+     */
+    private void fail(@NonNull Throwable cause) {
+        if (failure.compareAndSet(null, cause)) {
+            close();
+        }
+    }
+    
+    /**
+     * Throws an exception, if a stage has failed.
+     * 
+     * @throws PipelineException If a stage has failed.
+     */
+    private void checkFailure() throws PipelineException {
+        Throwable cause = failure.get();
+        if (cause != null) {
+            throw new PipelineException(cause);
+        }
+    }
+    
+    /**
+     * A stage together with its input queue.
+     */
+    private final class StageRunner {
+        
+        private @NonNull String name;
+        
+        private int numThreads;
+        
+        private @NonNull Stage<T> stage;
+        
+        private @NonNull BlockingQueue<Object> queue;
+        
+        private @NonNull AtomicInteger runningThreads;
+        
+        /**
+         * Creates a runner for the given stage.
+         * 
+         * @param name The name of the stage.
+         * @param numThreads The number of threads that run this stage.
+         * @param stage The stage.
+         */
+        StageRunner(@NonNull String name, int numThreads, @NonNull Stage<T> stage) {
+            this.name = name;
+            this.numThreads = numThreads;
+            this.stage = stage;
+            this.queue = new ArrayBlockingQueue<>(queueDepth);
+            this.runningThreads = new AtomicInteger(numThreads);
+        }
+        
+        /**
+         * Processes items until the end marker is received. Executed by each thread of this stage.
+         * 
+         * @param next The next stage, or <code>null</code> if this is the last stage.
+         */
+        @SuppressWarnings("unchecked")
+        void run(@Nullable StageRunner next) {
+            try {
+                Object element;
+                while ((element = queue.take()) != END) {
+                    T item = (T) element;
+                    if (stage.process(item) && next != null) {
+                        put(next.queue, item);
+                    }
+                }
+                
+                // the last thread of this stage passes the end on to all threads of the next stage
+                if (runningThreads.decrementAndGet() == 0 && next != null) {
+                    for (int i = 0; i < next.numThreads; i++) {
+                        put(next.queue, END);
+                    }
+                }
+                
+            } catch (PipelineException e) {
+                // another stage has failed already
+            
+            // checkstyle: stop exception type check
+            } catch (Exception | Error e) {
+                // checkstyle: resume exception type check
+                fail(e);
+            }
+        }
+        
+    }
+    
+    /**
+     * Thrown if a stage of a {@link Pipeline} fails.
+     */
+    public static class PipelineException extends Exception {
+        
+        private static final long serialVersionUID = 6415707012591011436L;
+        
+        /**
+         * Creates an exception for the given failure of a stage.
+         * 
+         * @param cause The exception thrown by the stage.
+         */
+        public PipelineException(@NonNull Throwable cause) {
+            super(cause);
+        }
+        
+    }
+    
+}
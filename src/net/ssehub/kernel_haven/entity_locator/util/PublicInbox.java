@@ -0,0 +1,146 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Discovers the epochs of public-inbox v2 archives (like the ones on lore.kernel.org). A v2 archive splits its mails
+ * into several git repositories, <code>git/0.git</code>, <code>git/1.git</code> and so on, below the root of the
+ * archive. Each epoch holds the mails of a consecutive period of time, and a new epoch is started when the previous
+ * one has grown large enough. Thus, processing the epochs in the order of their numbers processes the mails
+ * chronologically.
+ * 
+ * @author Adam
+ */
+public final class PublicInbox {
+
+    private static final @NonNull Pattern EPOCH_NAME = Pattern.compile("([0-9]+)\\.git");
+    
+    /**
+     * Don't allow any instances.
+     */
+    private PublicInbox() {
+    }
+    
+    /**
+     * Returns the epochs of the given public-inbox v2 archive, oldest first.
+     * <p>
+     * For a local directory, the epochs are the <code>git/&lt;number&gt;.git</code> directories. For a remote URL, the
+     * epochs are probed with <code>git ls-remote</code>, starting at <code>git/0.git</code>, until an epoch does not
+     * exist. URLs that end with <code>.git</code> are regular repositories and are not probed.
+     * </p>
+     * 
+     * @param source The local directory or remote URL of the archive root.
+     * 
+     * @return The local directories or remote URLs of the epochs, or <code>null</code> if the source is not a
+     *      public-inbox v2 archive.
+     */
+    public static @Nullable List<@NonNull String> findEpochs(@NonNull String source) {
+        return findEpochs(source, GitExecution.DEFAULT);
+    }
+    
+    /**
+     * Finds the epochs of the given public-inbox v2 archive, see {@link #findEpochs(String)}.
+     * 
+     * @param source The local directory or remote URL of the archive root.
+     * @param execution The execution that controls how the <code>git ls-remote</code> processes are run.
+     * 
+     * @return The local directories or remote URLs of the epochs, or <code>null</code> if the source is not a
+     *      public-inbox v2 archive.
+     */
+    public static @Nullable List<@NonNull String> findEpochs(@NonNull String source,
+            @NonNull GitExecution execution) {
+        List<@NonNull String> result;
+        File dir = new File(source);
+        if (dir.isDirectory()) {
+            result = findLocalEpochs(dir);
+        } else if (!source.endsWith(".git")) {
+            result = findRemoteEpochs(source, execution);
+        } else {
+            result = new ArrayList<>();
+        }
+        return result.isEmpty() ? null : result;
+    }
+    
+    /**
+     * Lists the epoch directories of a local archive.
+     * 
+     * @param root The root directory of the archive.
+     * 
+     * @return The absolute paths of the epochs, ordered by their numbers. Empty if there are none.
+     */
+    private static @NonNull List<@NonNull String> findLocalEpochs(@NonNull File root) {
+        List<@NonNull String> result = new ArrayList<>();
+        File[] files = new File(root, "git").listFiles();
+        if (files == null) {
+            return result;
+        }
+        
+        List<@NonNull File> epochs = new ArrayList<>();
+        for (File file : files) {
+            if (file.isDirectory() && EPOCH_NAME.matcher(file.getName()).matches()) {
+                epochs.add(file);
+            }
+        }
+        epochs.sort((e1, e2) -> Long.compare(getEpochNumber(e1), getEpochNumber(e2)));
+        
+        for (File epoch : epochs) {
+            result.add(epoch.getAbsolutePath());
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the number of the given epoch directory.
+     * 
+     * @param epoch An epoch directory.
+     * 
+     * @return The number in the name of the directory.
+     */
+    private static long getEpochNumber(@NonNull File epoch) {
+        Matcher m = EPOCH_NAME.matcher(epoch.getName());
+        m.matches();
+        return Long.parseLong(m.group(1));
+    }
+    
+    /**
+     * Probes the epochs of a remote archive.
+     * 
+     * @param url The URL of the archive root.
+     * @param execution The execution that controls how the <code>git ls-remote</code> processes are run.
+     * 
+     * @return The URLs of the epochs, ordered by their numbers. Empty if there are none.
+     */
+    private static @NonNull List<@NonNull String> findRemoteEpochs(@NonNull String url,
+            @NonNull GitExecution execution) {
+        String base = url.endsWith("/") ? url : url + "/";
+        List<@NonNull String> result = new ArrayList<>();
+        String epoch;
+        while (GitRepository.isReadableRepository(epoch = base + "git/" + result.size() + ".git", execution)) {
+            result.add(epoch);
+        }
+        return result;
+    }
+    
+}
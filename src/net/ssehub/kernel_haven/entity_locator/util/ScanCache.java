@@ -0,0 +1,441 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import net.ssehub.kernel_haven.util.Logger;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A persistent cache of the scan results of mail blobs. Git blobs are immutable, so the variables found in a blob
+ * never change for the same search configuration. The cache is keyed by the blob id; each search configuration
+ * (identified by a fingerprint) has its own cache file.
+ * <p>
+ * The cache file is an append-only log of records. Only the position of each record is kept in memory, in an
+ * open-addressing table of primitive arrays that is keyed by the first 64 bits of the blob id; the records themselves
+ * are read from the file on demand. A record that was cut off by an aborted run is discarded when the cache is opened.
+ * </p>
+ * <p>
+ * The cache file is locked while it is open, so that only one process uses it at a time. Instances are thread-safe.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class ScanCache implements Closeable {
+
+    /**
+     * The scan result of a single mail.
+     */
+    public static final class Entry {
+        
+        private @Nullable String messageId;
+        
+        private @NonNull String @NonNull [] variables;
+        
+        private int @NonNull [] counts;
+        
+        /**
+         * Creates a scan result.
+         * 
+         * @param messageId The message-id of the mail, or <code>null</code> if it has none.
+         * @param variables The variables found in the mail.
+         * @param counts The number of occurrences of each variable; same length as <code>variables</code>.
+         */
+        public Entry(@Nullable String messageId, @NonNull String @NonNull [] variables, int @NonNull [] counts) {
+            if (variables.length != counts.length) {
+                throw new IllegalArgumentException("Different number of variables and counts");
+            }
+            this.messageId = messageId;
+            this.variables = variables;
+            this.counts = counts;
+        }
+        
+        /**
+         * Returns the message-id of the mail.
+         * 
+         * @return The message-id, or <code>null</code> if the mail has none.
+         */
+        public @Nullable String getMessageId() {
+            return messageId;
+        }
+        
+        /**
+         * Returns the number of variables found in the mail.
+         * 
+         * @return The number of variables.
+         */
+        public int size() {
+            return variables.length;
+        }
+        
+        /**
+         * Returns the variable at the given index.
+         * 
+         * @param index The index, between 0 and {@link #size()} (exclusive).
+         * 
+         * @return The variable.
+         */
+        public @NonNull String getVariable(int index) {
+            return variables[index];
+        }
+        
+        /**
+         * Returns the number of occurrences of the variable at the given index.
+         * 
+         * @param index The index, between 0 and {@link #size()} (exclusive).
+         * 
+         * @return The number of occurrences.
+         */
+        public int getCount(int index) {
+            return counts[index];
+        }
+        
+    }
+    
+    private static final @NonNull Logger LOGGER = Logger.get();
+    
+    private static final int BLOB_ID_LENGTH = 20;
+    
+    private @NonNull File file;
+    
+    private @NonNull RandomAccessFile data;
+    
+    private @NonNull FileLock lock;
+    
+    /**
+     * The first 64 bits of the blob id of each record; 0 marks a free slot (a blob id that starts with 64 zero bits
+     * is simply not cached).
+     */
+    private long @NonNull [] keys;
+    
+    private long @NonNull [] offsets;
+    
+    private int size;
+    
+    /**
+     * Opens the cache for the given search configuration. The cache file is created if it does not exist.
+     * 
+     * @param directory The directory that contains the cache files. Created if it does not exist.
+     * @param fingerprint Identifies the search configuration; each option that changes the scan result of a mail has
+     *      to be part of it. See {@link CrawlState#createKey(String...)}.
+     * 
+     * @throws IOException If the cache can not be opened, or it is locked by another process.
+     */
+    public ScanCache(@NonNull File directory, @NonNull String fingerprint) throws IOException {
+        directory.mkdirs();
+        this.file = new File(directory, fingerprint + ".scancache");
+        this.keys = new long[1024];
+        this.offsets = new long[1024];
+        
+        this.data = new RandomAccessFile(file, "rw");
+        FileLock lock;
+        try {
+            lock = data.getChannel().tryLock();
+        } catch (OverlappingFileLockException e) {
+            // locked by this JVM
+            lock = null;
+        } catch (IOException e) {
+            data.close();
+            throw e;
+        }
+        if (lock == null) {
+            data.close();
+            throw new IOException("Scan cache " + file + " is used by another process");
+        }
+        this.lock = lock;
+        
+        try {
+            load();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Reads the positions of all complete records. An incomplete record at the end of the file is removed.
+     * 
+     * @throws IOException If reading the file fails.
+     */
+    private void load() throws IOException {
+        long offset = 0;
+        long length = data.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] blobId = new byte[BLOB_ID_LENGTH];
+            while (offset + 4 <= length) {
+                int recordLength = in.readInt();
+                if (recordLength < BLOB_ID_LENGTH || offset + 4 + recordLength > length) {
+                    break;
+                }
+                in.readFully(blobId);
+                in.skipBytes(recordLength - BLOB_ID_LENGTH);
+                
+                putOffset(toKey(blobId), offset);
+                offset += 4 + recordLength;
+            }
+        } catch (EOFException e) {
+            // handled below
+        }
+        
+        if (offset < length) {
+            LOGGER.logWarning("Discarding incomplete record at the end of scan cache " + file);
+            data.setLength(offset);
+        }
+    }
+    
+    /**
+     * Computes the git blob id of the given content. This is the same id that git assigns to the blob, so it is the
+     * same for each clone of a repository.
+     * 
+     * @param content The content of the blob.
+     * 
+     * @return The blob id, as 40 hex digits.
+     */
+    public static @NonNull String computeBlobId(byte @NonNull [] content) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-1
+            throw new RuntimeException(e);
+        }
+        digest.update(("blob " + content.length + "\0").getBytes(StandardCharsets.US_ASCII));
+        digest.update(content);
+        
+        StringBuilder result = new StringBuilder(2 * BLOB_ID_LENGTH);
+        for (byte b : digest.digest()) {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return notNull(result.toString());
+    }
+    
+    /**
+     * Returns the cached scan result of the given blob.
+     * 
+     * @param blobId The blob id, as 40 hex digits.
+     * 
+     * @return The cached result, or <code>null</code> if the blob is not cached.
+     * 
+     * @throws IOException If reading the cache file fails.
+     */
+    public synchronized @Nullable Entry get(@NonNull String blobId) throws IOException {
+        byte[] id = parseBlobId(blobId);
+        long key = toKey(id);
+        if (key == 0) {
+            return null;
+        }
+        
+        int slot = findSlot(key);
+        if (keys[slot] == 0) {
+            return null;
+        }
+        
+        data.seek(offsets[slot]);
+        byte[] record = new byte[data.readInt()];
+        data.readFully(record);
+        
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        byte[] recordId = new byte[BLOB_ID_LENGTH];
+        in.readFully(recordId);
+        if (!Arrays.equals(id, recordId)) {
+            // a different blob with the same first 64 bits
+            return null;
+        }
+        
+        String messageId = in.readBoolean() ? in.readUTF() : null;
+        int num = in.readInt();
+        String[] variables = new String[num];
+        int[] counts = new int[num];
+        for (int i = 0; i < num; i++) {
+            variables[i] = in.readUTF();
+            counts[i] = in.readInt();
+        }
+        return new Entry(messageId, variables, counts);
+    }
+    
+    /**
+     * Stores the scan result of the given blob. The record is appended to the cache file immediately.
+     * 
+     * @param blobId The blob id, as 40 hex digits.
+     * @param entry The scan result of the blob.
+     * 
+     * @throws IOException If writing the cache file fails.
+     */
+    public synchronized void put(@NonNull String blobId, @NonNull Entry entry) throws IOException {
+        byte[] id = parseBlobId(blobId);
+        long key = toKey(id);
+        if (key == 0) {
+            return;
+        }
+        
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(record);
+        out.writeInt(0); // placeholder for the length
+        out.write(id);
+        String messageId = entry.messageId;
+        out.writeBoolean(messageId != null);
+        if (messageId != null) {
+            out.writeUTF(messageId);
+        }
+        out.writeInt(entry.size());
+        for (int i = 0; i < entry.size(); i++) {
+            out.writeUTF(entry.getVariable(i));
+            out.writeInt(entry.getCount(i));
+        }
+        out.flush();
+        
+        byte[] bytes = record.toByteArray();
+        int recordLength = bytes.length - 4;
+        bytes[0] = (byte) (recordLength >>> 24);
+        bytes[1] = (byte) (recordLength >>> 16);
+        bytes[2] = (byte) (recordLength >>> 8);
+        bytes[3] = (byte) recordLength;
+        
+        long offset = data.length();
+        data.seek(offset);
+        data.write(bytes);
+        putOffset(key, offset);
+    }
+    
+    /**
+     * Returns the number of cached blobs.
+     * 
+     * @return The number of records in the cache.
+     */
+    public synchronized int size() {
+        return size;
+    }
+    
+    /**
+     * Finds the slot of the given key, or the free slot where it would be inserted.
+     * 
+     * @param key The key; not 0.
+     * 
+     * @return The slot index.
+     */
+    private int findSlot(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    /**
+     * Records the offset of the record for the given key. A previous record for the same key is replaced.
+     * 
+     * @param key The key.
+     * @param offset The offset of the record in the file.
+     */
+    private void putOffset(long key, long offset) {
+        if (key == 0) {
+            return;
+        }
+        int slot = findSlot(key);
+        if (keys[slot] == 0) {
+            keys[slot] = key;
+            size++;
+        }
+        offsets[slot] = offset;
+        
+        if (size * 2 > keys.length) {
+            long[] oldKeys = keys;
+            long[] oldOffsets = offsets;
+            keys = new long[oldKeys.length * 2];
+            offsets = new long[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int newSlot = findSlot(oldKeys[i]);
+                    keys[newSlot] = oldKeys[i];
+                    offsets[newSlot] = oldOffsets[i];
+                }
+            }
+        }
+    }
+    
+    /**
+     * Parses a blob id.
+     * 
+     * @param blobId The blob id, as 40 hex digits.
+     * 
+     * @return The 20 bytes of the blob id.
+     * 
+     * @throws IllegalArgumentException If the blob id is malformed.
+     */
+    private static byte @NonNull [] parseBlobId(@NonNull String blobId) throws IllegalArgumentException {
+        if (blobId.length() != 2 * BLOB_ID_LENGTH) {
+            throw new IllegalArgumentException("Invalid blob id: " + blobId);
+        }
+        byte[] result = new byte[BLOB_ID_LENGTH];
+        for (int i = 0; i < BLOB_ID_LENGTH; i++) {
+            int high = Character.digit(blobId.charAt(2 * i), 16);
+            int low = Character.digit(blobId.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid blob id: " + blobId);
+            }
+            result[i] = (byte) ((high << 4) | low);
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the key of the given blob id in the in-memory table.
+     * 
+     * @param blobId The 20 bytes of the blob id.
+     * 
+     * @return The first 64 bits of the blob id.
+     */
+    private static long toKey(byte @NonNull [] blobId) {
+        long key = 0;
+        for (int i = 0; i < 8; i++) {
+            key = (key << 8) | (blobId[i] & 0xFF);
+        }
+        return key;
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (lock.isValid()) {
+                lock.release();
+            }
+        } finally {
+            data.close();
+        }
+    }
+    
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * Finds the occurrences of a fixed set of identifiers (e.g. all Kconfig symbols) in a text, in a single linear pass
+ * that does not depend on the number of identifiers. Only complete identifiers are matched: an identifier is a
+ * maximal run of the characters <code>[A-Za-z0-9_]</code>, so <code>FOO</code> does not match in
+ * <code>FOO_BAR</code> or <code>XFOO</code>.
+ * <p>
+ * The identifiers are stored in a trie (the goto function of an Aho-Corasick automaton) that consists only of
+ * primitive arrays. Since every match has to start at the start of an identifier, the failure transitions of
+ * Aho-Corasick would always lead back to the root; instead, a mismatch moves the automaton to a dead state until
+ * the current identifier ends, and the next identifier starts at the root again.
+ * </p>
+ * <p>
+ * Instances are immutable and thus thread-safe.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class SymbolDictionary {
+
+    private static final int ROOT = 0;
+    
+    private static final int DEAD = -1;
+    
+    private static final int NO_SYMBOL = -1;
+    
+    /**
+     * The character of the transition into each state.
+     */
+    private byte @NonNull [] label;
+    
+    /**
+     * The first child of each state, or {@link #DEAD}. The children of a state are linked through
+     * {@link #nextSibling}, sorted by their label.
+     */
+    private int @NonNull [] firstChild;
+    
+    /**
+     * The next sibling of each state, or {@link #DEAD}.
+     */
+    private int @NonNull [] nextSibling;
+    
+    /**
+     * The index in {@link #symbols} of the identifier that ends in each state, or {@link #NO_SYMBOL}.
+     */
+    private int @NonNull [] symbolOf;
+    
+    private @NonNull String @NonNull [] symbols;
+    
+    private @NonNull String fingerprint;
+    
+    /**
+     * Creates a dictionary for the given identifiers.
+     * 
+     * @param symbols The identifiers to find. Duplicates are ignored.
+     * 
+     * @throws IllegalArgumentException If one of the symbols is not a valid identifier.
+     */
+    public SymbolDictionary(@NonNull Collection<@NonNull String> symbols) throws IllegalArgumentException {
+        // sorted input lets each new child be appended as the last sibling
+        TreeSet<@NonNull String> sorted = new TreeSet<>(symbols);
+        this.symbols = sorted.toArray(new String[0]);
+        
+        int capacity = 1;
+        for (String symbol : sorted) {
+            if (symbol.isEmpty()) {
+                throw new IllegalArgumentException("Empty symbol");
+            }
+            for (int i = 0; i < symbol.length(); i++) {
+                if (symbol.charAt(i) > 0x7F || !isIdentifierChar((byte) symbol.charAt(i))) {
+                    throw new IllegalArgumentException("Not an identifier: " + symbol);
+                }
+            }
+            capacity += symbol.length();
+        }
+        
+        this.label = new byte[capacity];
+        this.firstChild = new int[capacity];
+        this.nextSibling = new int[capacity];
+        this.symbolOf = new int[capacity];
+        int[] lastChild = new int[capacity];
+        Arrays.fill(firstChild, DEAD);
+        Arrays.fill(nextSibling, DEAD);
+        Arrays.fill(symbolOf, NO_SYMBOL);
+        Arrays.fill(lastChild, DEAD);
+        
+        int numStates = 1;
+        for (int index = 0; index < this.symbols.length; index++) {
+            String symbol = this.symbols[index];
+            int state = ROOT;
+            for (int i = 0; i < symbol.length(); i++) {
+                byte c = (byte) symbol.charAt(i);
+                int last = lastChild[state];
+                if (last != DEAD && label[last] == c) {
+                    state = last;
+                } else {
+                    int child = numStates++;
+                    label[child] = c;
+                    if (last == DEAD) {
+                        firstChild[state] = child;
+                    } else {
+                        nextSibling[last] = child;
+                    }
+                    lastChild[state] = child;
+                    state = child;
+                }
+            }
+            symbolOf[state] = index;
+        }
+        
+        // shrink to the number of states actually used (shared prefixes)
+        this.label = Arrays.copyOf(label, numStates);
+        this.firstChild = Arrays.copyOf(firstChild, numStates);
+        this.nextSibling = Arrays.copyOf(nextSibling, numStates);
+        this.symbolOf = Arrays.copyOf(symbolOf, numStates);
+        
+        this.fingerprint = CrawlState.createKey(this.symbols);
+    }
+    
+    /**
+     * Loads a dictionary from the given file. The file contains one identifier per line; empty lines and lines
+     * starting with <code>#</code> are ignored.
+     * 
+     * @param file The file to read.
+     * 
+     * @return The dictionary.
+     * 
+     * @throws IOException If reading the file fails or it contains an invalid identifier.
+     */
+    public static @NonNull SymbolDictionary load(@NonNull File file) throws IOException {
+        List<@NonNull String> symbols = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                StandardCharsets.UTF_8))) {
+            
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    symbols.add(line);
+                }
+            }
+        }
+        
+        try {
+            return new SymbolDictionary(symbols);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid symbol in " + file + ": " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Returns the number of identifiers in this dictionary.
+     * 
+     * @return The number of identifiers.
+     */
+    public int size() {
+        return symbols.length;
+    }
+    
+    /**
+     * Returns a fingerprint of the identifiers in this dictionary. Two dictionaries with the same identifiers have
+     * the same fingerprint.
+     * 
+     * @return A hex string that identifies the content of this dictionary.
+     */
+    public @NonNull String getFingerprint() {
+        return fingerprint;
+    }
+    
+    /**
+     * Counts the occurrences of the identifiers between the position and the limit of the given buffer. The position
+     * of the buffer is not changed. The bytes are not decoded; non-ASCII bytes separate identifiers.
+     * 
+     * @param text The buffer containing the text to search.
+     * @param counts The counter to add the occurrences of each found identifier to.
+     */
+    public void countMatches(@NonNull ByteBuffer text, @NonNull MatchCounter counts) {
+        int state = DEAD;
+        boolean inIdentifier = false;
+        
+        int limit = text.limit();
+        for (int i = text.position(); i < limit; i++) {
+            byte c = text.get(i);
+            if (isIdentifierChar(c)) {
+                state = step(inIdentifier ? state : ROOT, c);
+                inIdentifier = true;
+            } else if (inIdentifier) {
+                count(state, counts);
+                inIdentifier = false;
+            }
+        }
+        if (inIdentifier) {
+            count(state, counts);
+        }
+    }
+    
+    /**
+     * Counts the occurrences of the identifiers in the given text.
+     * 
+     * @param text The text to search.
+     * @param counts The counter to add the occurrences of each found identifier to.
+     */
+    public void countMatches(@NonNull CharSequence text, @NonNull MatchCounter counts) {
+        int state = DEAD;
+        boolean inIdentifier = false;
+        
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c <= 0x7F && isIdentifierChar((byte) c)) {
+                state = step(inIdentifier ? state : ROOT, (byte) c);
+                inIdentifier = true;
+            } else if (inIdentifier) {
+                count(state, counts);
+                inIdentifier = false;
+            }
+        }
+        if (inIdentifier) {
+            count(state, counts);
+        }
+    }
+    
+    /**
+     * Follows the transition for the given character.
+     * 
+     * @param state The current state, or {@link #DEAD}.
+     * @param c The next character of the current identifier.
+     * 
+     * @return The next state, or {@link #DEAD} if no identifier of this dictionary starts with the current one.
+     */
+    private int step(int state, byte c) {
+        if (state == DEAD) {
+            return DEAD;
+        }
+        int child = firstChild[state];
+        while (child != DEAD && label[child] < c) {
+            child = nextSibling[child];
+        }
+        return child != DEAD && label[child] == c ? child : DEAD;
+    }
+    
+    /**
+     * Counts the identifier that ended in the given state, if it is in this dictionary.
+     * 
+     * @param state The state at the end of an identifier, or {@link #DEAD}.
+     * @param counts The counter to add the occurrence to.
+     */
+    private void count(int state, @NonNull MatchCounter counts) {
+        if (state != DEAD && symbolOf[state] != NO_SYMBOL) {
+            String symbol = symbols[symbolOf[state]];
+            counts.add(symbol, 0, symbol.length());
+        }
+    }
+    
+    /**
+     * Checks whether the given ASCII character may be part of an identifier.
+     * 
+     * @param c The character.
+     * 
+     * @return Whether the character is one of <code>[A-Za-z0-9_]</code>.
+     */
+    private static boolean isIdentifierChar(byte c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_';
+    }
+    
+}
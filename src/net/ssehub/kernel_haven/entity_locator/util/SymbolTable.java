@@ -0,0 +1,132 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * Assigns a dense <code>int</code> id and a single canonical {@link String} instance to each variable name. Results
+ * that refer to the same variable share the same string, and aggregations can work on the ids instead of comparing
+ * strings.
+ * <p>
+ * Ids are assigned in the order in which the names are first interned, starting at 0, and are never reused. Looking up
+ * a known name does not lock; only adding a new name does. Instances are thread-safe.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class SymbolTable {
+
+    private @NonNull Map<@NonNull String, Integer> ids;
+    
+    /**
+     * The names by their id. Replaced by a larger copy when full; the reference is only published after the new name
+     * is written, so that readers never see an id without its name.
+     */
+    private volatile @NonNull String @NonNull [] names;
+    
+    private int size;
+    
+    /**
+     * Creates an empty symbol table. A table is never cleared, so it should be scoped to a single run: all components
+     * of the run share it, so that their ids are consistent.
+     */
+    public SymbolTable() {
+        this.ids = new ConcurrentHashMap<>();
+        this.names = new String[64];
+    }
+    
+    /**
+     * Returns the id of the given name, assigning a new one if the name is not known yet.
+     * 
+     * @param name The name to intern.
+     * 
+     * @return The id of the name.
+     */
+    public int intern(@NonNull String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = add(name);
+        }
+        return id;
+    }
+    
+    /**
+     * Adds the given name, if no other thread has added it in the meantime.
+     * 
+     * @param name The name to add.
+     * 
+     * @return The id of the name.
+     */
+    private synchronized int add(@NonNull String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            String[] names = this.names;
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+            }
+            id = size++;
+            names[id] = name;
+            this.names = names;
+            ids.put(name, id);
+        }
+        return id;
+    }
+    
+    /**
+     * Returns the canonical instance of the given name, interning it if required.
+     * 
+     * @param name The name.
+     * 
+     * @return The string instance that is shared by all users of this table; equal to the given name.
+     */
+    public @NonNull String canonicalize(@NonNull String name) {
+        return getName(intern(name));
+    }
+    
+    /**
+     * Returns the name with the given id.
+     * 
+     * @param id An id returned by {@link #intern(String)}.
+     * 
+     * @return The canonical instance of the name.
+     * 
+     * @throws IndexOutOfBoundsException If the id was not assigned by this table.
+     */
+    public @NonNull String getName(int id) throws IndexOutOfBoundsException {
+        String[] names = this.names;
+        if (id < 0 || id >= names.length || names[id] == null) {
+            throw new IndexOutOfBoundsException("Unknown symbol id " + id);
+        }
+        return notNull(names[id]);
+    }
+    
+    /**
+     * Returns the number of names in this table. All ids are smaller than this.
+     * 
+     * @return The number of interned names.
+     */
+    public synchronized int size() {
+        return size;
+    }
+    
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator.util;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Aggregates the occurrences of variables over many mails. The statistics are kept in primitive arrays that are
+ * indexed by the {@link SymbolTable} id of the variables, so adding a location does not allocate anything (except when
+ * the arrays grow).
+ * <p>
+ * Instances are not thread-safe; callers have to synchronize.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class VariableStatistics {
+
+    private @NonNull SymbolTable symbols;
+    
+    private long @NonNull [] occurrences;
+    
+    private int @NonNull [] numMails;
+    
+    private @Nullable String @NonNull [] firstMail;
+    
+    private @Nullable String @NonNull [] lastMail;
+    
+    /**
+     * Creates empty statistics.
+     * 
+     * @param symbols The symbol table that the variable ids refer to.
+     */
+    public VariableStatistics(@NonNull SymbolTable symbols) {
+        this.symbols = symbols;
+        this.occurrences = new long[64];
+        this.numMails = new int[64];
+        this.firstMail = new String[64];
+        this.lastMail = new String[64];
+    }
+    
+    /**
+     * Adds the occurrences of a variable in a single mail. Each mail must only be added once per variable.
+     * 
+     * @param variableId The id of the variable in the symbol table.
+     * @param mail The identifier of the mail.
+     * @param numOccurrences The number of occurrences of the variable in the mail.
+     */
+    public void add(int variableId, @NonNull String mail, int numOccurrences) {
+        ensureCapacity(variableId);
+        
+        if (numMails[variableId]++ == 0) {
+            firstMail[variableId] = mail;
+        }
+        lastMail[variableId] = mail;
+        occurrences[variableId] += numOccurrences;
+    }
+    
+    /**
+     * Grows the arrays, so that they have space for the given variable id.
+     * 
+     * @param variableId The id of a variable.
+     */
+    private void ensureCapacity(int variableId) {
+        if (variableId >= numMails.length) {
+            int capacity = Math.max(numMails.length * 2, variableId + 1);
+            occurrences = Arrays.copyOf(occurrences, capacity);
+            numMails = Arrays.copyOf(numMails, capacity);
+            firstMail = Arrays.copyOf(firstMail, capacity);
+            lastMail = Arrays.copyOf(lastMail, capacity);
+        }
+    }
+    
+    /**
+     * Writes these statistics to the given output. The variables are stored by their names, so that the statistics
+     * can be read into a different symbol table.
+     * 
+     * @param out The output to write to.
+     * 
+     * @throws IOException If writing fails.
+     */
+    public void write(@NonNull DataOutput out) throws IOException {
+        List<@NonNull Integer> ids = getVariableIds();
+        out.writeInt(ids.size());
+        for (int id : ids) {
+            out.writeUTF(symbols.getName(id));
+            out.writeLong(occurrences[id]);
+            out.writeInt(numMails[id]);
+            out.writeUTF(getFirstMail(id));
+            out.writeUTF(getLastMail(id));
+        }
+    }
+    
+    /**
+     * Adds statistics that were written with {@link #write(DataOutput)}, as if their mails had been added before all
+     * mails that are added to these statistics afterwards.
+     * 
+     * @param in The input to read from.
+     * 
+     * @throws IOException If reading fails.
+     */
+    public void read(@NonNull DataInput in) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            int id = symbols.intern(in.readUTF());
+            long readOccurrences = in.readLong();
+            int readMails = in.readInt();
+            String readFirstMail = in.readUTF();
+            String readLastMail = in.readUTF();
+            
+            ensureCapacity(id);
+            if (numMails[id] == 0) {
+                firstMail[id] = readFirstMail;
+            }
+            lastMail[id] = readLastMail;
+            numMails[id] += readMails;
+            occurrences[id] += readOccurrences;
+        }
+    }
+    
+    /**
+     * Returns the ids of all variables that were added, sorted by the name of the variables.
+     * 
+     * @return The ids of the found variables.
+     */
+    public @NonNull List<@NonNull Integer> getVariableIds() {
+        List<@NonNull Integer> result = new ArrayList<>();
+        for (int id = 0; id < numMails.length; id++) {
+            if (numMails[id] > 0) {
+                result.add(id);
+            }
+        }
+        result.sort((id1, id2) -> symbols.getName(id1).compareTo(symbols.getName(id2)));
+        return result;
+    }
+    
+    /**
+     * Returns the total number of occurrences of the given variable in all mails.
+     * 
+     * @param variableId The id of the variable.
+     * 
+     * @return The number of occurrences; 0 if the variable was not found.
+     */
+    public long getOccurrences(int variableId) {
+        return variableId < occurrences.length ? occurrences[variableId] : 0;
+    }
+    
+    /**
+     * Returns the number of different mails that the given variable was found in.
+     * 
+     * @param variableId The id of the variable.
+     * 
+     * @return The number of mails; 0 if the variable was not found.
+     */
+    public int getNumMails(int variableId) {
+        return variableId < numMails.length ? numMails[variableId] : 0;
+    }
+    
+    /**
+     * Returns the first mail (in the order in which they were added) that the given variable was found in.
+     * 
+     * @param variableId The id of a variable that was found.
+     * 
+     * @return The identifier of the first mail.
+     */
+    public @NonNull String getFirstMail(int variableId) {
+        return notNull(firstMail[variableId]);
+    }
+    
+    /**
+     * Returns the last mail (in the order in which they were added) that the given variable was found in.
+     * 
+     * @param variableId The id of a variable that was found.
+     * 
+     * @return The identifier of the last mail.
+     */
+    public @NonNull String getLastMail(int variableId) {
+        return notNull(lastMail[variableId]);
+    }
+    
+}
@@ -27,6 +27,21 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({
     GitRepositoryTest.class,
+    GitObjectDatabaseTest.class,
+    GitFileHistoryTest.class,
+    GitChangedBlobsTest.class,
+    ByteMailScannerTest.class,
+    LiteralPrefilterTest.class,
+    SymbolDictionaryTest.class,
+    MatchCounterTest.class,
+    SymbolTableTest.class,
+    InvertedIndexTest.class,
+    ScanCacheTest.class,
+    CrawlCheckpointTest.class,
+    PublicInboxTest.class,
+    PipelineTest.class,
+    LocatorMetricsTest.class,
+    CloneCacheTest.class,
     VariableInMailingListLocatorTest.class,
     })
 public class AllTests {
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.entity_locator.util.ByteCharSequence;
+import net.ssehub.kernel_haven.entity_locator.util.ByteMailScanner;
+import net.ssehub.kernel_haven.entity_locator.util.MatchCounter;
+import net.ssehub.kernel_haven.entity_locator.util.SymbolTable;
+
+/**
+ * Tests the {@link ByteMailScanner} and the {@link ByteCharSequence}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class ByteMailScannerTest {
+
+    /**
+     * Tests that the message-id is found case-insensitively and that the buffer is positioned after the header.
+     */
+    @Test
+    public void testParseHeader() {
+        ByteBuffer mail = ByteBuffer.wrap("From: a\r\nMESSAGE-ID:  <123/456@test.org> \r\n\r\nbody\n"
+                .getBytes(StandardCharsets.UTF_8));
+        assertThat(ByteMailScanner.parseHeader(mail), is("123/456@test.org"));
+        assertThat(mail.position(), is(mail.limit() - "body\n".length()));
+        
+        mail = ByteBuffer.wrap("From: a\nSubject: b\n\nMessage-Id: <1@test.org>\n".getBytes(StandardCharsets.UTF_8));
+        assertThat(ByteMailScanner.parseHeader(mail), nullValue());
+        
+        mail = ByteBuffer.wrap("Message-Id: <\u00E4@test.org>".getBytes(StandardCharsets.UTF_8));
+        assertThat(ByteMailScanner.parseHeader(mail), is("\u00E4@test.org"));
+        assertThat(mail.remaining(), is(0));
+    }
+    
+    /**
+     * Tests that the matches are the same as for decoded lines, for different line breaks, anchors and non-ASCII
+     * text, and for heap and direct buffers.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testSameAsLineReader() throws IOException {
+        String body = "CONFIG_A and CONFIG_B\r\nCONFIG_A\rline with \u00FCml\u00E4uts CONFIG_\u00E4 CONFIG_C\n\n"
+                + "CONFIG_A at end\nno trailing line break CONFIG_B";
+        
+        for (String regex : new String[] {"CONFIG_\\w+", "^CONFIG_\\w+", "CONFIG_\\w+$", "(?<=\\s)CONFIG_\\w+",
+                "CONFIG_\\w+\\b", "CONFIG_A$"}) {
+            Pattern pattern = Pattern.compile(regex);
+            
+            MatchCounter expected = new MatchCounter(new SymbolTable());
+            BufferedReader in = new BufferedReader(new StringReader(body));
+            String line;
+            while ((line = in.readLine()) != null) {
+                Matcher m = pattern.matcher(line);
+                while (m.find()) {
+                    expected.add(line, m.start(), m.end());
+                }
+            }
+            
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes);
+            direct.flip();
+            
+            for (ByteBuffer buffer : new ByteBuffer[] {ByteBuffer.wrap(bytes), direct}) {
+                MatchCounter actual = new MatchCounter(new SymbolTable());
+                new ByteMailScanner(pattern).countMatches(buffer, actual);
+                assertThat(regex, actual.toString(), is(expected.toString()));
+                assertThat(buffer.position(), is(0));
+            }
+        }
+    }
+    
+    /**
+     * Tests the {@link ByteCharSequence}.
+     */
+    @Test
+    public void testByteCharSequence() {
+        byte[] bytes = "xxab\u00E4cxx".getBytes(StandardCharsets.UTF_8);
+        ByteCharSequence chars = new ByteCharSequence(ByteBuffer.wrap(bytes), 2, bytes.length - 4);
+        
+        assertThat(chars.length(), is(5));
+        assertThat(chars.charAt(0), is('a'));
+        assertThat(chars.charAt(2), is((char) 0xC3));
+        assertThat(chars.toString(), is("ab\u00E4c"));
+        assertThat(chars.subSequence(1, 4).toString(), is("b\u00E4"));
+        assertThat(chars.decode(4, 5), is("c"));
+    }
+    
+    /**
+     * Tests that the {@link ByteCharSequence} checks its bounds.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testByteCharSequenceBounds() {
+        new ByteCharSequence(ByteBuffer.wrap(new byte[4]), 1, 3).charAt(3);
+    }
+    
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.entity_locator.util.CloneCache;
+import net.ssehub.kernel_haven.entity_locator.util.CloneCache.CachedClone;
+import net.ssehub.kernel_haven.entity_locator.util.CloneType;
+import net.ssehub.kernel_haven.entity_locator.util.GitException;
+import net.ssehub.kernel_haven.entity_locator.util.GitRepository;
+import net.ssehub.kernel_haven.util.Util;
+import net.ssehub.kernel_haven.util.ZipArchive;
+
+/**
+ * Tests the {@link CloneCache}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class CloneCacheTest {
+
+    private static final File TESTDATA = new File("testdata");
+    
+    private static final File TEST_REPO = new File(TESTDATA, "testRepo");
+    
+    private static final File CACHE_DIR = new File(TESTDATA, "cloneCache");
+    
+    private static final File SOURCE_REPO = new File(TESTDATA, "cacheSource");
+    
+    /**
+     * Extracts the test repository in testRepo.zip.
+     * 
+     * @throws IOException If extraction fails.
+     */
+    @BeforeClass
+    public static void extractTestRepo() throws IOException {
+        try (ZipArchive archive = new ZipArchive(new File(TESTDATA, "testRepo.zip"))) {
+            for (File f : archive.listFiles()) {
+                File target = new File(TESTDATA, f.getPath());
+                target.getParentFile().mkdirs();
+                archive.extract(f, new File(TESTDATA, f.getPath()));
+            }
+        }
+    }
+    
+    /**
+     * Deletes the test repository.
+     * 
+     * @throws IOException If deleting fails.
+     */
+    @AfterClass
+    public static void cleanUpTestRepo() throws IOException {
+        Util.deleteFolder(TEST_REPO);
+    }
+    
+    /**
+     * Deletes the cache and source directories created by a test.
+     * 
+     * @throws IOException If deleting fails.
+     */
+    @After
+    public void cleanUp() throws IOException {
+        if (CACHE_DIR.exists()) {
+            Util.deleteFolder(CACHE_DIR);
+        }
+        if (SOURCE_REPO.exists()) {
+            Util.deleteFolder(SOURCE_REPO);
+        }
+    }
+    
+    /**
+     * Runs the given git command in the given directory.
+     * 
+     * @param directory The directory to run the command in.
+     * @param command The git command line.
+     * 
+     * @throws IOException If the command fails.
+     */
+    private static void runGit(File directory, String... command) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.directory(directory);
+        assertThat(Util.executeProcess(builder, "git", new ByteArrayOutputStream(), new ByteArrayOutputStream(), 0),
+                is(true));
+    }
+    
+    /**
+     * Tests that a clone is re-used and updated on the next acquisition.
+     * 
+     * @throws GitException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testUpdate() throws GitException, IOException {
+        GitRepository.clone("file://" + TEST_REPO.getAbsolutePath(), SOURCE_REPO);
+        String url = "file://" + SOURCE_REPO.getAbsolutePath();
+        
+        CloneCache cache = new CloneCache(CACHE_DIR, 0);
+        File cloneDir;
+        try (CachedClone clone = cache.acquire(url)) {
+            cloneDir = clone.getRepository().getWorkingDirectory();
+            assertThat(clone.getRepository().resolveCommit("master"), is("183dda81207043ba8d81e480c3a8da6a2502b895"));
+        }
+        
+        runGit(SOURCE_REPO, "git", "-c", "user.name=Test", "-c", "user.email=test@test.org", "commit", "-q",
+                "--allow-empty", "-m", "new mail");
+        String newHead = new GitRepository(SOURCE_REPO).resolveCommit("master");
+        
+        // a marker file shows that the clone is not re-created
+        File marker = new File(cloneDir, "marker");
+        marker.createNewFile();
+        
+        try (CachedClone clone = cache.acquire(url)) {
+            assertThat(clone.getRepository().getWorkingDirectory(), is(cloneDir));
+            assertThat(clone.getRepository().resolveCommit("master"), is(newHead));
+            assertThat(marker.exists(), is(true));
+        }
+    }
+    
+    /**
+     * Tests that different remotes and clone configurations get different clone directories, even if their readable
+     * remote names are the same.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testCloneDirectory() throws IOException {
+        CloneCache cache = new CloneCache(CACHE_DIR, 0);
+        File dir = cache.getCloneDirectory("https://h/a-b");
+        
+        assertThat(dir.getParentFile(), is(CACHE_DIR));
+        assertThat(dir.getName().startsWith(GitRepository.createRemoteName("https://h/a-b") + "-"), is(true));
+        assertThat(cache.getCloneDirectory("https://h/a-b"), is(dir));
+        assertThat(new CloneCache(CACHE_DIR, 1).getCloneDirectory("https://h/a-b"), is(dir));
+        
+        assertThat(cache.getCloneDirectory("https://h/a_b"), not(dir));
+        assertThat(cache.getCloneDirectory("https://h/x"), not(cache.getCloneDirectory("git://h/x")));
+        
+        assertThat(new CloneCache(CACHE_DIR, 0, CloneType.BARE, null).getCloneDirectory("https://h/a-b"), not(dir));
+        assertThat(new CloneCache(CACHE_DIR, 0, CloneType.FULL, "blob:none").getCloneDirectory("https://h/a-b"),
+                not(dir));
+    }
+    
+    /**
+     * Tests that the least recently used clone is evicted if the quota is exceeded, but only if it is not in use.
+     * 
+     * @throws GitException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testEviction() throws GitException, IOException {
+        GitRepository.clone("file://" + TEST_REPO.getAbsolutePath(), SOURCE_REPO);
+        String url1 = "file://" + TEST_REPO.getAbsolutePath();
+        String url2 = "file://" + SOURCE_REPO.getAbsolutePath();
+        
+        CloneCache cache = new CloneCache(CACHE_DIR, 1);
+        File cloneDir1;
+        try (CachedClone clone1 = cache.acquire(url1)) {
+            cloneDir1 = clone1.getRepository().getWorkingDirectory();
+            
+            // clone1 is in use, so it can not be evicted
+            try (CachedClone clone2 = cache.acquire(url2)) {
+                assertThat(cloneDir1.isDirectory(), is(true));
+            }
+        }
+        
+        // clone1 is no longer in use and is the least recently used one
+        try (CachedClone clone2 = cache.acquire(url2)) {
+            assertThat(cloneDir1.exists(), is(false));
+            assertThat(clone2.getRepository().getWorkingDirectory().isDirectory(), is(true));
+        }
+    }
+    
+}
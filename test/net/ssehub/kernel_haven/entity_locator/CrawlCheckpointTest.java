@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.entity_locator.util.CrawlCheckpoint;
+import net.ssehub.kernel_haven.entity_locator.util.CrawlCheckpoint.SourcePosition;
+import net.ssehub.kernel_haven.entity_locator.util.InvertedIndex;
+import net.ssehub.kernel_haven.entity_locator.util.InvertedIndexWriter;
+import net.ssehub.kernel_haven.entity_locator.util.SymbolTable;
+import net.ssehub.kernel_haven.entity_locator.util.VariableStatistics;
+import net.ssehub.kernel_haven.util.Util;
+
+/**
+ * Tests the {@link CrawlCheckpoint}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class CrawlCheckpointTest {
+
+    private static final File CHECKPOINT_DIR = new File("testdata", "checkpoints");
+    
+    /**
+     * Deletes the checkpoint directory created by a test.
+     * 
+     * @throws IOException If deleting fails.
+     */
+    @After
+    public void cleanUp() throws IOException {
+        if (CHECKPOINT_DIR.exists()) {
+            Util.deleteFolder(CHECKPOINT_DIR);
+        }
+    }
+    
+    /**
+     * Tests that the positions and the aggregated results are restored from a checkpoint.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testResume() throws IOException {
+        SymbolTable symbols = new SymbolTable();
+        int a = symbols.intern("CONFIG_A");
+        int b = symbols.intern("CONFIG_B");
+        
+        VariableStatistics statistics = new VariableStatistics(symbols);
+        InvertedIndexWriter indexWriter = new InvertedIndexWriter(symbols);
+        statistics.add(a, "mail1", 2);
+        indexWriter.add(a, "mail1", 2);
+        statistics.add(b, "mail2", 1);
+        indexWriter.add(b, "mail2", 1);
+        
+        CrawlCheckpoint checkpoint = new CrawlCheckpoint(CHECKPOINT_DIR, "key");
+        assertThat(checkpoint.isResumed(), is(false));
+        checkpoint.startSource("source1", "head1", "head1").setDone();
+        checkpoint.startSource("source2", "head2", "last..head2").advance(3, 2);
+        checkpoint.write(statistics, indexWriter);
+        
+        // a second checkpoint replaces the first one
+        statistics.add(a, "mail3", 1);
+        indexWriter.add(a, "mail3", 1);
+        checkpoint.getSource("source2").advance(1, 1);
+        checkpoint.write(statistics, indexWriter);
+        assertThat(CHECKPOINT_DIR.list().length, is(2));
+        
+        // resume with a new symbol table, in which the variables have different ids
+        SymbolTable newSymbols = new SymbolTable();
+        newSymbols.intern("CONFIG_C");
+        VariableStatistics newStatistics = new VariableStatistics(newSymbols);
+        InvertedIndexWriter newIndexWriter = new InvertedIndexWriter(newSymbols);
+        
+        CrawlCheckpoint resumed = new CrawlCheckpoint(CHECKPOINT_DIR, "key");
+        assertThat(resumed.isResumed(), is(true));
+        resumed.restore(newStatistics, newIndexWriter);
+        
+        assertThat(resumed.getSource("source1").isDone(), is(true));
+        SourcePosition position = resumed.getSource("source2");
+        assertThat(position.isDone(), is(false));
+        assertThat(position.getHead(), is("head2"));
+        assertThat(position.getRevision(), is("last..head2"));
+        assertThat(position.getMails(), is(4L));
+        assertThat(position.getRows(), is(3L));
+        assertThat(resumed.getSource("source3"), nullValue());
+        
+        int newA = newSymbols.intern("CONFIG_A");
+        assertThat(newStatistics.getOccurrences(newA), is(3L));
+        assertThat(newStatistics.getNumMails(newA), is(2));
+        assertThat(newStatistics.getFirstMail(newA), is("mail1"));
+        assertThat(newStatistics.getLastMail(newA), is("mail3"));
+        
+        // mails added after the restore continue the restored index
+        newIndexWriter.add(newA, "mail4", 5);
+        File indexFile = new File(CHECKPOINT_DIR, "restored.index");
+        newIndexWriter.write(indexFile);
+        try (InvertedIndex index = new InvertedIndex(indexFile)) {
+            assertThat(index.getNumMails(), is(4));
+            assertThat(index.getMail(0), is("mail1"));
+            assertThat(index.lookup("CONFIG_A").keySet().toArray(), is(new Object[] {"mail1", "mail3", "mail4"}));
+            assertThat(index.lookup("CONFIG_B").get("mail2"), is(1));
+        }
+        indexFile.delete();
+        
+        resumed.delete();
+        assertThat(Arrays.asList(CHECKPOINT_DIR.list()).size(), is(0));
+        assertThat(new CrawlCheckpoint(CHECKPOINT_DIR, "key").isResumed(), is(false));
+    }
+    
+    /**
+     * Tests a checkpoint without aggregated results.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testWithoutAggregates() throws IOException {
+        CrawlCheckpoint checkpoint = new CrawlCheckpoint(CHECKPOINT_DIR, "key");
+        checkpoint.startSource("source", "head", "head").advance(10, 20);
+        checkpoint.write(null, null);
+        assertThat(CHECKPOINT_DIR.list().length, is(1));
+        
+        CrawlCheckpoint resumed = new CrawlCheckpoint(CHECKPOINT_DIR, "key");
+        VariableStatistics statistics = new VariableStatistics(new SymbolTable());
+        resumed.restore(statistics, null);
+        assertThat(statistics.getVariableIds().size(), is(0));
+        assertThat(resumed.getSource("source").getMails(), is(10L));
+        
+        // a different key has its own checkpoint
+        assertThat(new CrawlCheckpoint(CHECKPOINT_DIR, "other").isResumed(), is(false));
+    }
+    
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.entity_locator.util.CommitDateRange;
+import net.ssehub.kernel_haven.entity_locator.util.CommitOrder;
+import net.ssehub.kernel_haven.entity_locator.util.GitBlobReader;
+import net.ssehub.kernel_haven.entity_locator.util.GitChangedBlobs;
+import net.ssehub.kernel_haven.entity_locator.util.GitException;
+import net.ssehub.kernel_haven.entity_locator.util.GitRepository;
+import net.ssehub.kernel_haven.util.Util;
+import net.ssehub.kernel_haven.util.ZipArchive;
+
+/**
+ * Tests the {@link GitChangedBlobs}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class GitChangedBlobsTest {
+
+    private static final File TESTDATA = new File("testdata");
+    
+    private static final File TEST_REPO = new File(TESTDATA, "testRepo");
+    
+    private static final File MULTI_FILE_REPO = new File(TESTDATA, "multiFileRepo");
+    
+    /**
+     * Extracts the test repository in testRepo.zip.
+     * 
+     * @throws IOException If extraction fails.
+     */
+    @BeforeClass
+    public static void extractTestRepo() throws IOException {
+        try (ZipArchive archive = new ZipArchive(new File(TESTDATA, "testRepo.zip"))) {
+            for (File f : archive.listFiles()) {
+                File target = new File(TESTDATA, f.getPath());
+                target.getParentFile().mkdirs();
+                archive.extract(f, new File(TESTDATA, f.getPath()));
+            }
+        }
+    }
+    
+    /**
+     * Deletes the test repository.
+     * 
+     * @throws IOException If deleting fails.
+     */
+    @AfterClass
+    public static void cleanUpTestRepo() throws IOException {
+        Util.deleteFolder(TEST_REPO);
+    }
+    
+    /**
+     * Deletes the repository created by a test.
+     * 
+     * @throws IOException If deleting fails.
+     */
+    @After
+    public void cleanUp() throws IOException {
+        if (MULTI_FILE_REPO.exists()) {
+            Util.deleteFolder(MULTI_FILE_REPO);
+        }
+    }
+    
+    /**
+     * Runs the given git command in the given directory.
+     * 
+     * @param directory The directory to run the command in.
+     * @param command The git command line.
+     * 
+     * @throws IOException If the command fails.
+     */
+    private static void runGit(File directory, String... command) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.directory(directory);
+        assertThat(Util.executeProcess(builder, "git", new ByteArrayOutputStream(), new ByteArrayOutputStream(), 0),
+                is(true));
+    }
+    
+    /**
+     * Commits all changes in the given repository.
+     * 
+     * @param repo The repository directory.
+     * 
+     * @throws IOException If committing fails.
+     */
+    private static void commitAll(File repo) throws IOException {
+        runGit(repo, "git", "add", "-A", ".");
+        runGit(repo, "git", "-c", "user.name=Test", "-c", "user.email=test@test.org", "commit", "-q",
+                "--allow-empty", "-m", "commit");
+    }
+    
+    /**
+     * Writes the given content to the given file.
+     * 
+     * @param file The file to write.
+     * @param content The content.
+     * 
+     * @throws IOException If writing fails.
+     */
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Reads all changed blobs and their content.
+     * 
+     * @param repo The repository to read.
+     * @param order The order of the commits.
+     * @param pathspec The pathspecs of the files to read, empty for all files.
+     * 
+     * @return The commit and the content of each changed blob, separated by a colon.
+     * 
+     * @throws GitException If reading fails.
+     */
+    private static List<String> readAll(GitRepository repo, CommitOrder order, String... pathspec)
+            throws GitException {
+        
+        List<String> result = new ArrayList<>();
+        try (GitChangedBlobs blobs = repo.readChangedBlobs("master", order, CommitDateRange.ALL,
+                Arrays.asList(pathspec));
+                GitBlobReader reader = repo.openBlobReader()) {
+            
+            String commit;
+            while ((commit = blobs.nextCommit()) != null) {
+                result.add(commit + ":" + new String(reader.readBlob(blobs.getBlobId()), StandardCharsets.UTF_8));
+            }
+            assertThat(blobs.getBlobId(), nullValue());
+        }
+        return result;
+    }
+    
+    /**
+     * Tests that the blobs are the versions of the single mail file of the test repository.
+     * 
+     * @throws GitException unwanted.
+     */
+    @Test
+    public void testSingleFile() throws GitException {
+        GitRepository repo = new GitRepository(TEST_REPO);
+        List<String> expected = new ArrayList<>();
+        try (GitBlobReader reader = repo.openBlobReader()) {
+            for (String commit : Arrays.asList(
+                    "ac3ce2b8e1970cafedf445fc85e8f0e3b10fb678",
+                    "8761998b60bf12146be97ce4854ceddc7fd0bfc9",
+                    "da43e932a3bbed69d4a09426922a960652f591f6",
+                    "183dda81207043ba8d81e480c3a8da6a2502b895")) {
+                expected.add(commit + ":" + new String(reader.readFile(commit, "m"), StandardCharsets.UTF_8));
+            }
+        }
+        
+        assertThat(readAll(repo, CommitOrder.AUTHOR_DATE), is(expected));
+    }
+    
+    /**
+     * Tests commits that add several files, modify or delete files, or change no regular file.
+     * 
+     * @throws GitException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testMultipleFiles() throws GitException, IOException {
+        MULTI_FILE_REPO.mkdirs();
+        runGit(MULTI_FILE_REPO, "git", "init", "-q", "-b", "master");
+        GitRepository repo = new GitRepository(MULTI_FILE_REPO);
+        
+        write(new File(MULTI_FILE_REPO, "a/1"), "one");
+        write(new File(MULTI_FILE_REPO, "b/2"), "two");
+        commitAll(MULTI_FILE_REPO);
+        String first = repo.resolveCommit("master");
+        
+        write(new File(MULTI_FILE_REPO, "a/1"), "one, edited");
+        new File(MULTI_FILE_REPO, "b/2").delete();
+        commitAll(MULTI_FILE_REPO);
+        String second = repo.resolveCommit("master");
+        
+        // neither deletions nor empty commits produce a blob
+        new File(MULTI_FILE_REPO, "a/1").delete();
+        commitAll(MULTI_FILE_REPO);
+        commitAll(MULTI_FILE_REPO);
+        
+        write(new File(MULTI_FILE_REPO, "c/3"), "three");
+        commitAll(MULTI_FILE_REPO);
+        String last = repo.resolveCommit("master");
+        
+        assertThat(readAll(repo, CommitOrder.AUTHOR_DATE), is(Arrays.asList(
+                first + ":one", first + ":two", second + ":one, edited", last + ":three")));
+        assertThat(readAll(repo, CommitOrder.NEWEST_FIRST), is(Arrays.asList(
+                last + ":three", second + ":one, edited", first + ":one", first + ":two")));
+    }
+    
+    /**
+     * Tests that only the blobs of the files that match the given pathspecs are read.
+     * 
+     * @throws GitException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testPathspec() throws GitException, IOException {
+        MULTI_FILE_REPO.mkdirs();
+        runGit(MULTI_FILE_REPO, "git", "init", "-q", "-b", "master");
+        GitRepository repo = new GitRepository(MULTI_FILE_REPO);
+        
+        write(new File(MULTI_FILE_REPO, "a/1"), "one");
+        write(new File(MULTI_FILE_REPO, "a/.hidden"), "hidden");
+        write(new File(MULTI_FILE_REPO, ".meta/2"), "meta");
+        write(new File(MULTI_FILE_REPO, "README"), "readme");
+        write(new File(MULTI_FILE_REPO, "m"), "mails");
+        commitAll(MULTI_FILE_REPO);
+        String commit = repo.resolveCommit("master");
+        
+        assertThat(readAll(repo, CommitOrder.AUTHOR_DATE, "m", "*/*", ":!.*", ":!*/.*"), is(Arrays.asList(
+                commit + ":one", commit + ":mails")));
+        assertThat(readAll(repo, CommitOrder.AUTHOR_DATE, "README"), is(Arrays.asList(commit + ":readme")));
+        assertThat(readAll(repo, CommitOrder.AUTHOR_DATE).size(), is(5));
+    }
+    
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.entity_locator.util.CommitOrder;
+import net.ssehub.kernel_haven.entity_locator.util.GitBlobReader;
+import net.ssehub.kernel_haven.entity_locator.util.GitException;
+import net.ssehub.kernel_haven.entity_locator.util.GitFileHistory;
+import net.ssehub.kernel_haven.entity_locator.util.GitRepository;
+import net.ssehub.kernel_haven.util.Util;
+import net.ssehub.kernel_haven.util.ZipArchive;
+
+/**
+ * Tests the {@link GitFileHistory}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class GitFileHistoryTest {
+
+    private static final File TESTDATA = new File("testdata");
+    
+    private static final File TEST_REPO = new File(TESTDATA, "testRepo");
+    
+    private static final List<String> COMMITS = Arrays.asList(
+        "ac3ce2b8e1970cafedf445fc85e8f0e3b10fb678",
+        "8761998b60bf12146be97ce4854ceddc7fd0bfc9",
+        "da43e932a3bbed69d4a09426922a960652f591f6",
+        "183dda81207043ba8d81e480c3a8da6a2502b895"
+    );
+    
+    /**
+     * Extracts the test repository in testRepo.zip.
+     * 
+     * @throws IOException If extraction fails.
+     */
+    @BeforeClass
+    public static void extractTestRepo() throws IOException {
+        try (ZipArchive archive = new ZipArchive(new File(TESTDATA, "testRepo.zip"))) {
+            for (File f : archive.listFiles()) {
+                File target = new File(TESTDATA, f.getPath());
+                target.getParentFile().mkdirs();
+                archive.extract(f, new File(TESTDATA, f.getPath()));
+            }
+        }
+    }
+    
+    /**
+     * Deletes the test repository.
+     * 
+     * @throws IOException If deleting fails.
+     */
+    @AfterClass
+    public static void cleanUpTestRepo() throws IOException {
+        Util.deleteFolder(TEST_REPO);
+    }
+    
+    /**
+     * Runs the given git command in the given directory.
+     * 
+     * @param directory The directory to run the command in.
+     * @param command The git command line.
+     * 
+     * @throws IOException If the command fails.
+     */
+    private static void runGit(File directory, String... command) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.directory(directory);
+        assertThat(Util.executeProcess(builder, "git", new ByteArrayOutputStream(), new ByteArrayOutputStream(), 0),
+                is(true));
+    }
+    
+    /**
+     * Writes the given content to the file and commits it.
+     * 
+     * @param repo The repository directory.
+     * @param content The new content of the file; <code>null</code> deletes the file.
+     * 
+     * @throws IOException If writing or committing fails.
+     */
+    private static void commit(File repo, String content) throws IOException {
+        File file = new File(repo, "m");
+        if (content == null) {
+            runGit(repo, "git", "rm", "-q", "m");
+        } else {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(content.getBytes(StandardCharsets.UTF_8));
+            }
+            runGit(repo, "git", "add", "m");
+        }
+        runGit(repo, "git", "-c", "user.name=Test", "-c", "user.email=test@test.org", "commit", "-q",
+                "--allow-empty", "-m", "commit");
+    }
+    
+    /**
+     * Tests that the history returns the same content as <code>git cat-file</code> for each commit.
+     * 
+     * @throws GitException unwanted.
+     */
+    @Test
+    public void testSameAsBlobReader() throws GitException {
+        GitRepository repo = new GitRepository(TEST_REPO);
+        
+        List<String> commits = new ArrayList<>();
+        try (GitFileHistory history = repo.readFileHistory("master", CommitOrder.AUTHOR_DATE, "m");
+                GitBlobReader reader = repo.openBlobReader()) {
+            
+            String commit;
+            while ((commit = history.nextCommit()) != null) {
+                commits.add(commit);
+                assertThat(history.getContent(), is(reader.readFile(commit, "m")));
+            }
+        }
+        assertThat(commits, is(COMMITS));
+        
+        List<String> reversed = new ArrayList<>(COMMITS);
+        Collections.reverse(reversed);
+        assertThat(GitRepositoryTest.iterateAll(repo.readFileHistory("master", CommitOrder.NEWEST_FIRST, "m")),
+                is(reversed));
+    }
+    
+    /**
+     * Tests deleted files, files without a trailing line break, empty lines and commits that don't modify the file.
+     * 
+     * @throws GitException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testEdgeCases() throws GitException, IOException {
+        File repoDir = new File(TESTDATA, "historyRepo");
+        assertThat(repoDir.exists(), is(false));
+        repoDir.mkdir();
+        
+        try {
+            runGit(repoDir, "git", "init", "-q");
+            
+            List<String> versions = Arrays.asList(
+                "",
+                "no trailing line break",
+                "no trailing line break\n\n \n\u0001fake commit line\n",
+                null,
+                "@@ -1 +1 @@\n+++ /dev/null\n\\ no newline",
+                "",
+                "a\nb"
+            );
+            for (String version : versions) {
+                commit(repoDir, version);
+            }
+            
+            GitRepository repo = new GitRepository(repoDir);
+            try (GitFileHistory history = repo.readFileHistory("HEAD", CommitOrder.AUTHOR_DATE, "m")) {
+                for (String version : versions) {
+                    assertThat(history.nextCommit() != null, is(true));
+                    if (version == null) {
+                        assertThat(history.getContent(), nullValue());
+                    } else {
+                        assertThat(new String(history.getContent(), StandardCharsets.UTF_8), is(version));
+                    }
+                }
+                assertThat(history.nextCommit(), nullValue());
+            }
+            
+        } finally {
+            Util.deleteFolder(repoDir);
+        }
+    }
+    
+    /**
+     * Tests that a commit that only changes the mode of the file is skipped, instead of being returned with an empty
+     * content.
+     * 
+     * @throws GitException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testModeChange() throws GitException, IOException {
+        File repoDir = new File(TESTDATA, "historyRepo");
+        assertThat(repoDir.exists(), is(false));
+        repoDir.mkdir();
+        
+        try {
+            runGit(repoDir, "git", "init", "-q");
+            runGit(repoDir, "git", "config", "core.fileMode", "true");
+            commit(repoDir, "first\n");
+            runGit(repoDir, "git", "update-index", "--chmod=+x", "m");
+            runGit(repoDir, "git", "-c", "user.name=Test", "-c", "user.email=test@test.org", "commit", "-q", "-m",
+                    "mode change");
+            commit(repoDir, "first\nsecond\n");
+            
+            GitRepository repo = new GitRepository(repoDir);
+            for (CommitOrder order : CommitOrder.values()) {
+                List<String> contents = new ArrayList<>();
+                try (GitFileHistory history = repo.readFileHistory("HEAD", order, "m")) {
+                    while (history.nextCommit() != null) {
+                        contents.add(new String(history.getContent(), StandardCharsets.UTF_8));
+                    }
+                }
+                List<String> expected = Arrays.asList("first\n", "first\nsecond\n");
+                if (order == CommitOrder.NEWEST_FIRST) {
+                    expected = Arrays.asList("first\nsecond\n", "first\n");
+                }
+                assertThat(contents, is(expected));
+            }
+            
+        } finally {
+            Util.deleteFolder(repoDir);
+        }
+    }
+    
+    /**
+     * Tests that an unknown revision is reported.
+     * 
+     * @throws GitException wanted.
+     */
+    @Test(expected = GitException.class)
+    public void testUnknownRevision() throws GitException {
+        GitRepository repo = new GitRepository(TEST_REPO);
+        
+        GitRepositoryTest.iterateAll(repo.readFileHistory("doesnt_exist", CommitOrder.AUTHOR_DATE, "m"));
+    }
+    
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.entity_locator.util.CommitDateRange;
+import net.ssehub.kernel_haven.entity_locator.util.CommitOrder;
+import net.ssehub.kernel_haven.entity_locator.util.GitBlobReader;
+import net.ssehub.kernel_haven.entity_locator.util.GitException;
+import net.ssehub.kernel_haven.entity_locator.util.GitObjectDatabase;
+import net.ssehub.kernel_haven.entity_locator.util.GitRepository;
+import net.ssehub.kernel_haven.util.Util;
+import net.ssehub.kernel_haven.util.ZipArchive;
+
+/**
+ * Tests the {@link GitObjectDatabase}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class GitObjectDatabaseTest {
+
+    private static final File TESTDATA = new File("testdata");
+    
+    private static final File TEST_REPO = new File(TESTDATA, "testRepo");
+    
+    private static final List<String> COMMITS = Arrays.asList(
+        "ac3ce2b8e1970cafedf445fc85e8f0e3b10fb678",
+        "8761998b60bf12146be97ce4854ceddc7fd0bfc9",
+        "da43e932a3bbed69d4a09426922a960652f591f6",
+        "183dda81207043ba8d81e480c3a8da6a2502b895"
+    );
+    
+    /**
+     * Extracts the test repository in testRepo.zip.
+     * 
+     * @throws IOException If extraction fails.
+     */
+    @BeforeClass
+    public static void extractTestRepo() throws IOException {
+        try (ZipArchive archive = new ZipArchive(new File(TESTDATA, "testRepo.zip"))) {
+            for (File f : archive.listFiles()) {
+                File target = new File(TESTDATA, f.getPath());
+                target.getParentFile().mkdirs();
+                archive.extract(f, new File(TESTDATA, f.getPath()));
+            }
+        }
+    }
+    
+    /**
+     * Deletes the test repository.
+     * 
+     * @throws IOException If deleting fails.
+     */
+    @AfterClass
+    public static void cleanUpTestRepo() throws IOException {
+        Util.deleteFolder(TEST_REPO);
+    }
+    
+    /**
+     * Runs the given git command in the given directory.
+     * 
+     * @param directory The directory to run the command in.
+     * @param command The git command line.
+     * 
+     * @throws IOException If the command fails.
+     */
+    private static void runGit(File directory, String... command) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.directory(directory);
+        assertThat(Util.executeProcess(builder, "git", new ByteArrayOutputStream(), new ByteArrayOutputStream(), 0),
+                is(true));
+    }
+    
+    /**
+     * Asserts that the given {@link GitObjectDatabase} returns the same mails as <code>git cat-file</code>.
+     * 
+     * @param repo The repository to read.
+     * @param database The database to test.
+     * 
+     * @throws GitException unwanted.
+     */
+    private static void assertSameMails(GitRepository repo, GitObjectDatabase database) throws GitException {
+        try (GitBlobReader reader = repo.openBlobReader()) {
+            for (String commit : COMMITS) {
+                assertThat(database.readFile(commit, "m"), is(reader.readFile(commit, "m")));
+            }
+            assertThat(database.readFile("master", "m"), is(reader.readFile("master", "m")));
+            assertThat(database.readFile("HEAD", "m"), is(reader.readFile("HEAD", "m")));
+        }
+    }
+    
+    /**
+     * Tests reading a repository that only contains loose objects.
+     * 
+     * @throws GitException unwanted.
+     */
+    @Test
+    public void testLooseObjects() throws GitException {
+        GitRepository repo = new GitRepository(TEST_REPO);
+        
+        try (GitObjectDatabase database = repo.openObjectDatabase()) {
+            assertSameMails(repo, database);
+            assertThat(database.listAllCommits("master"), is(COMMITS));
+        }
+    }
+    
+    /**
+     * Tests reading a repository that contains a pack with offset deltas. Uses a small delta base cache, so that
+     * cache eviction is exercised.
+     * 
+     * @throws GitException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testPackedObjects() throws GitException, IOException {
+        File clonedRepo = new File(TESTDATA, "clonedRepo");
+        assertThat(clonedRepo.exists(), is(false));
+        
+        try {
+            GitRepository repo = GitRepository.clone("file://" + TEST_REPO.getAbsolutePath(), clonedRepo);
+            runGit(clonedRepo, "git", "repack", "-a", "-d", "-f");
+            
+            try (GitObjectDatabase database = new GitObjectDatabase(new File(clonedRepo, ".git"), 700)) {
+                assertSameMails(repo, database);
+                assertThat(database.listAllCommits("master"), is(COMMITS));
+                assertThat(database.listAllCommits("origin/master"), is(COMMITS));
+                assertThat(database.listAllCommits("8761998b60bf12146be97ce4854ceddc7fd0bfc9"),
+                        is(COMMITS.subList(0, 2)));
+            }
+            
+        } finally {
+            if (clonedRepo.exists()) {
+                Util.deleteFolder(clonedRepo);
+            }
+        }
+    }
+    
+    /**
+     * Tests reading a repository that contains a pack with reference deltas and packed references. The bases of the
+     * reference deltas go through the delta base cache, too; a small cache exercises its eviction.
+     * 
+     * @throws GitException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testRefDeltaPack() throws GitException, IOException {
+        File clonedRepo = new File(TESTDATA, "clonedRepo");
+        assertThat(clonedRepo.exists(), is(false));
+        
+        try {
+            GitRepository repo = GitRepository.clone("file://" + TEST_REPO.getAbsolutePath(), clonedRepo);
+            runGit(clonedRepo, "git", "-c", "repack.useDeltaBaseOffset=false", "repack", "-a", "-d", "-f");
+            runGit(clonedRepo, "git", "pack-refs", "--all");
+            
+            try (GitObjectDatabase database = repo.openObjectDatabase()) {
+                assertSameMails(repo, database);
+                assertThat(database.listAllCommits("master"), is(COMMITS));
+            }
+            try (GitObjectDatabase database = new GitObjectDatabase(new File(clonedRepo, ".git"), 700)) {
+                assertSameMails(repo, database);
+            }
+            
+        } finally {
+            if (clonedRepo.exists()) {
+                Util.deleteFolder(clonedRepo);
+            }
+        }
+    }
+    
+    /**
+     * Tests the {@link GitObjectDatabase#iterateCommits(String, CommitOrder)} method.
+     * 
+     * @throws GitException unwanted.
+     */
+    @Test
+    public void testIterateCommits() throws GitException {
+        GitRepository repo = new GitRepository(TEST_REPO);
+        
+        try (GitObjectDatabase database = repo.openObjectDatabase()) {
+            assertThat(GitRepositoryTest.iterateAll(database.iterateCommits("master", CommitOrder.AUTHOR_DATE)),
+                    is(COMMITS));
+            
+            List<String> reversed = new ArrayList<>(COMMITS);
+            Collections.reverse(reversed);
+            assertThat(GitRepositoryTest.iterateAll(database.iterateCommits("master", CommitOrder.NEWEST_FIRST)),
+                    is(reversed));
+        }
+    }
+    
+    /**
+     * Tests listing and iterating the commits of a date range.
+     * 
+     * @throws GitException unwanted.
+     */
+    @Test
+    public void testDateRange() throws GitException {
+        GitRepository repo = new GitRepository(TEST_REPO);
+        
+        try (GitObjectDatabase database = repo.openObjectDatabase()) {
+            CommitDateRange since = CommitDateRange.parse("2019-06-04T13:08:30+02:00", null);
+            assertThat(database.listAllCommits("master", since), is(COMMITS.subList(2, 4)));
+            assertThat(GitRepositoryTest.iterateAll(database.iterateCommits("master", CommitOrder.NEWEST_FIRST,
+                    since)), is(Arrays.asList(COMMITS.get(3), COMMITS.get(2))));
+            
+            CommitDateRange until = CommitDateRange.parse(null, "2019-06-04T13:09:00+02:00");
+            assertThat(GitRepositoryTest.iterateAll(database.iterateCommits("master", CommitOrder.AUTHOR_DATE,
+                    until)), is(COMMITS.subList(0, 2)));
+            
+            CommitDateRange both = CommitDateRange.parse("2019-06-04T11:00:00Z", "2019-06-04T11:09:50Z");
+            assertThat(GitRepositoryTest.iterateAll(database.iterateCommits("master", CommitOrder.NEWEST_FIRST,
+                    both)), is(Arrays.asList(COMMITS.get(2), COMMITS.get(1))));
+            assertThat(database.listAllCommits("master", both), is(COMMITS.subList(1, 3)));
+            
+            CommitDateRange empty = CommitDateRange.parse("2019-06-05", null);
+            assertThat(database.listAllCommits("master", empty), is(Collections.emptyList()));
+            assertThat(GitRepositoryTest.iterateAll(database.iterateCommits("master", CommitOrder.NEWEST_FIRST,
+                    empty)), is(Collections.emptyList()));
+        }
+    }
+    
+    /**
+     * Tests listing and iterating the commits of a revision range.
+     * 
+     * @throws GitException unwanted.
+     */
+    @Test
+    public void testRange() throws GitException {
+        GitRepository repo = new GitRepository(TEST_REPO);
+        
+        try (GitObjectDatabase database = repo.openObjectDatabase()) {
+            String range = "8761998b60bf12146be97ce4854ceddc7fd0bfc9..master";
+            assertThat(database.listAllCommits(range), is(COMMITS.subList(2, 4)));
+            assertThat(GitRepositoryTest.iterateAll(database.iterateCommits(range, CommitOrder.AUTHOR_DATE)),
+                    is(COMMITS.subList(2, 4)));
+            assertThat(GitRepositoryTest.iterateAll(database.iterateCommits(range, CommitOrder.NEWEST_FIRST)),
+                    is(Arrays.asList(COMMITS.get(3), COMMITS.get(2))));
+            
+            assertThat(database.listAllCommits("master..master"), is(Collections.emptyList()));
+            assertThat(GitRepositoryTest.iterateAll(database.iterateCommits("master..master",
+                    CommitOrder.NEWEST_FIRST)), is(Collections.emptyList()));
+            
+            assertThat(database.resolveCommit("master"), is(COMMITS.get(3)));
+            assertThat(database.resolveCommit(COMMITS.get(0)), is(COMMITS.get(0)));
+            assertThat(database.resolveCommit("398c7500a1f5f74e207bd2edca1b1721b3cc1f1e"), nullValue());
+            assertThat(database.resolveCommit("doesnt_exist"), nullValue());
+        }
+    }
+    
+    /**
+     * Writes a commit object with an empty tree and the given date into the given repository.
+     * 
+     * @param repo The repository to write the commit to.
+     * @param time The author and commit date of the commit, in seconds since the epoch.
+     * @param parents The ids of the parent commits.
+     * 
+     * @return The id of the written commit.
+     * 
+     * @throws GitException unwanted.
+     * @throws IOException unwanted.
+     */
+    private static String writeCommit(GitRepository repo, long time, String... parents)
+            throws GitException, IOException {
+        
+        StringBuilder commit = new StringBuilder("tree 4b825dc642cb6eb9a060e54bf8d69288fbee4904\n");
+        for (String parent : parents) {
+            commit.append("parent ").append(parent).append('\n');
+        }
+        commit.append("author A <a@example.com> ").append(time).append(" +0000\n");
+        commit.append("committer A <a@example.com> ").append(time).append(" +0000\n");
+        commit.append("\nCommit at ").append(time).append('\n');
+        
+        File file = new File(repo.getWorkingDirectory(), "commit");
+        Files.write(file.toPath(), commit.toString().getBytes(StandardCharsets.UTF_8));
+        List<String> id = new ArrayList<>();
+        repo.readGitOutput((line) -> id.add(line), "git", "hash-object", "-t", "commit", "-w", "commit");
+        Files.delete(file.toPath());
+        return id.get(0);
+    }
+    
+    /**
+     * Tests that a range is walked correctly if a commit on the excluded side has a newer commit date than the
+     * commits of the range (clock skew).
+     * 
+     * @throws GitException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testRangeClockSkew() throws GitException, IOException {
+        File skewedRepo = new File(TESTDATA, "skewedRepo");
+        assertThat(skewedRepo.exists(), is(false));
+        
+        try {
+            GitRepository repo = new GitRepository(skewedRepo);
+            // a's commit date is newer than the one of its children b and l, and the one of m
+            String a = writeCommit(repo, 5000);
+            String b = writeCommit(repo, 2000, a);
+            String l = writeCommit(repo, 3000, b);
+            String m = writeCommit(repo, 4000, a);
+            String h = writeCommit(repo, 6000, l, m);
+            String range = l + ".." + h;
+            
+            assertThat(GitRepositoryTest.iterateAll(repo.iterateCommits(range, CommitOrder.NEWEST_FIRST)),
+                    is(Arrays.asList(h, m)));
+            try (GitObjectDatabase database = repo.openObjectDatabase()) {
+                assertThat(GitRepositoryTest.iterateAll(database.iterateCommits(range, CommitOrder.NEWEST_FIRST)),
+                        is(Arrays.asList(h, m)));
+                assertThat(database.listAllCommits(range), is(Arrays.asList(m, h)));
+            }
+            
+        } finally {
+            if (skewedRepo.exists()) {
+                Util.deleteFolder(skewedRepo);
+            }
+        }
+    }
+    
+    /**
+     * Tests reading files and commits that do not exist.
+     * 
+     * @throws GitException unwanted.
+     */
+    @Test
+    public void testMissing() throws GitException {
+        GitRepository repo = new GitRepository(TEST_REPO);
+        
+        try (GitObjectDatabase database = repo.openObjectDatabase()) {
+            assertThat(database.readFile("183dda81207043ba8d81e480c3a8da6a2502b895", "doesnt_exist"), nullValue());
+            assertThat(database.readFile("183dda81207043ba8d81e480c3a8da6a2502b895", "m/sub"), nullValue());
+            assertThat(database.readFile("398c7500a1f5f74e207bd2edca1b1721b3cc1f1e", "m"), nullValue());
+            assertThat(database.readFile("doesnt_exist", "m"), nullValue());
+        }
+    }
+    
+    /**
+     * Tests that listing the commits of an unknown revision throws an exception.
+     * 
+     * @throws GitException wanted.
+     */
+    @Test(expected = GitException.class)
+    public void testListCommitsUnknownRevision() throws GitException {
+        GitRepository repo = new GitRepository(TEST_REPO);
+        
+        try (GitObjectDatabase database = repo.openObjectDatabase()) {
+            database.listAllCommits("doesnt_exist");
+        }
+    }
+    
+}
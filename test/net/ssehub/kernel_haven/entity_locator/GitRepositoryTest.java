@@ -21,18 +21,33 @@ import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import net.ssehub.kernel_haven.entity_locator.util.CloneType;
+import net.ssehub.kernel_haven.entity_locator.util.CommitDateRange;
+import net.ssehub.kernel_haven.entity_locator.util.CommitOrder;
+import net.ssehub.kernel_haven.entity_locator.util.GitBlobReader;
 import net.ssehub.kernel_haven.entity_locator.util.GitException;
+import net.ssehub.kernel_haven.entity_locator.util.GitExecution;
+import net.ssehub.kernel_haven.entity_locator.util.GitObjectDatabase;
+import net.ssehub.kernel_haven.entity_locator.util.GitProcess;
 import net.ssehub.kernel_haven.entity_locator.util.GitRepository;
+import net.ssehub.kernel_haven.entity_locator.util.ICommitIterator;
+import net.ssehub.kernel_haven.entity_locator.util.ILineHandler;
 import net.ssehub.kernel_haven.util.Util;
 import net.ssehub.kernel_haven.util.ZipArchive;
 
@@ -171,6 +186,105 @@ public class GitRepositoryTest {
         }
     }
     
+    /**
+     * Tests creating a bare and a mirror clone.
+     * 
+     * @throws GitException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testCloneBare() throws GitException, IOException {
+        File clonedRepo = new File(TESTDATA, "clonedRepo");
+        
+        for (CloneType type : Arrays.asList(CloneType.BARE, CloneType.MIRROR)) {
+            assertThat(clonedRepo.exists(), is(false));
+            
+            try {
+                GitRepository.clone("file://" + TEST_REPO.getAbsolutePath(), clonedRepo, type, null);
+                
+                // no working tree
+                assertThat(new File(clonedRepo, ".git").exists(), is(false));
+                assertThat(new File(clonedRepo, "m").exists(), is(false));
+                
+                // re-opening the bare repository does not initialize a new one inside of it
+                GitRepository repo = new GitRepository(clonedRepo);
+                assertThat(new File(clonedRepo, ".git").exists(), is(false));
+                assertThat(repo.resolveCommit("master"), is("183dda81207043ba8d81e480c3a8da6a2502b895"));
+                assertThat(repo.isPartialClone(), is(false));
+                
+                try (GitBlobReader reader = repo.openBlobReader();
+                        GitObjectDatabase database = repo.openObjectDatabase()) {
+                    assertThat(database.readFile("master", "m"), is(reader.readFile("master", "m")));
+                }
+                
+            } finally {
+                if (clonedRepo.exists()) {
+                    Util.deleteFolder(clonedRepo);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Tests creating a partial clone without blobs and materializing the blobs afterwards.
+     * 
+     * @throws GitException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testPartialClone() throws GitException, IOException {
+        File clonedRepo = new File(TESTDATA, "clonedRepo");
+        assertThat(clonedRepo.exists(), is(false));
+        
+        try {
+            runGit(TEST_REPO, "git", "config", "uploadpack.allowFilter", "true");
+            GitRepository repo = GitRepository.clone("file://" + TEST_REPO.getAbsolutePath(), clonedRepo,
+                    CloneType.BARE, "blob:none");
+            assertThat(repo.isPartialClone(), is(true));
+            
+            // the blob is referenced, but missing
+            boolean missing = false;
+            try (GitObjectDatabase database = repo.openObjectDatabase()) {
+                database.readFile("master", "m");
+            } catch (GitException e) {
+                missing = true;
+            }
+            assertThat(missing, is(true));
+            
+            assertThat(repo.materializeBlobs("da43e932a3bbed69d4a09426922a960652f591f6..master", "m"), is(1));
+            assertThat(repo.materializeBlobs("master", "m"), is(3));
+            assertThat(repo.materializeBlobs("master", "m"), is(0));
+            
+            try (GitObjectDatabase database = repo.openObjectDatabase();
+                    GitBlobReader reader = new GitRepository(TEST_REPO).openBlobReader()) {
+                assertThat(database.readFile("master", "m"), is(reader.readFile("master", "m")));
+                assertThat(database.readFile("ac3ce2b8e1970cafedf445fc85e8f0e3b10fb678", "m"),
+                        is(reader.readFile("ac3ce2b8e1970cafedf445fc85e8f0e3b10fb678", "m")));
+            }
+            
+        } finally {
+            runGit(TEST_REPO, "git", "config", "--unset", "uploadpack.allowFilter");
+            if (clonedRepo.exists()) {
+                Util.deleteFolder(clonedRepo);
+            }
+        }
+    }
+    
+    /**
+     * Runs the given git command in the given directory.
+     * 
+     * @param directory The directory to run the command in.
+     * @param command The git command line.
+     * 
+     * @throws IOException If the command fails.
+     */
+    private static void runGit(File directory, String... command) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.directory(directory);
+        assertThat(Util.executeProcess(builder, "git", new ByteArrayOutputStream(), new ByteArrayOutputStream(), 0),
+                is(true));
+    }
+    
     /**
      * Tests that cloning into an existing location throws an exception.
      * 
@@ -270,6 +384,206 @@ public class GitRepositoryTest {
         }
     }
     
+    /**
+     * Tests the {@link GitRepository#iterateCommits(String, CommitOrder)} method.
+     * 
+     * @throws GitException unwanted.
+     */
+    @Test
+    public void testIterateCommits() throws GitException {
+        GitRepository repo = new GitRepository(TEST_REPO);
+        
+        assertThat(iterateAll(repo.iterateCommits("master", CommitOrder.AUTHOR_DATE)), is(Arrays.asList(
+            "ac3ce2b8e1970cafedf445fc85e8f0e3b10fb678",
+            "8761998b60bf12146be97ce4854ceddc7fd0bfc9",
+            "da43e932a3bbed69d4a09426922a960652f591f6",
+            "183dda81207043ba8d81e480c3a8da6a2502b895"
+        )));
+        
+        assertThat(iterateAll(repo.iterateCommits("master", CommitOrder.NEWEST_FIRST)), is(Arrays.asList(
+            "183dda81207043ba8d81e480c3a8da6a2502b895",
+            "da43e932a3bbed69d4a09426922a960652f591f6",
+            "8761998b60bf12146be97ce4854ceddc7fd0bfc9",
+            "ac3ce2b8e1970cafedf445fc85e8f0e3b10fb678"
+        )));
+        
+        assertThat(iterateAll(repo.iterateCommits("8761998b60bf12146be97ce4854ceddc7fd0bfc9..master",
+                CommitOrder.AUTHOR_DATE)), is(Arrays.asList(
+            "da43e932a3bbed69d4a09426922a960652f591f6",
+            "183dda81207043ba8d81e480c3a8da6a2502b895"
+        )));
+        
+        // closing before the end aborts the enumeration
+        try (ICommitIterator it = repo.iterateCommits("master", CommitOrder.NEWEST_FIRST)) {
+            assertThat(it.nextCommit(), is("183dda81207043ba8d81e480c3a8da6a2502b895"));
+        }
+    }
+    
+    /**
+     * Tests that the process limits of two {@link GitExecution}s don't influence each other.
+     * 
+     * @throws GitException unwanted.
+     * @throws InterruptedException unwanted.
+     */
+    @Test(timeout = 30000)
+    public void testSeparateExecutions() throws GitException, InterruptedException {
+        GitRepository limited = new GitRepository(TEST_REPO, new GitExecution(false, 1));
+        GitRepository other = new GitRepository(TEST_REPO, new GitExecution(false, 1));
+        
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            try (GitBlobReader reader = limited.openBlobReader()) {
+                started.countDown();
+                done.await();
+            } catch (GitException | InterruptedException e) {
+                started.countDown();
+            }
+        });
+        holder.start();
+        started.await();
+        
+        try {
+            // the only slot of the first execution is taken, but the second one still has its own
+            try (GitBlobReader reader = other.openBlobReader()) {
+                assertThat(reader.readFile("183dda81207043ba8d81e480c3a8da6a2502b895", "m"), notNullValue());
+            }
+        } finally {
+            done.countDown();
+            holder.join();
+        }
+    }
+    
+    /**
+     * Tests the {@link GitRepository#iterateCommits(String, CommitOrder, CommitDateRange)} method.
+     * 
+     * @throws GitException unwanted.
+     */
+    @Test
+    public void testIterateCommitsDateRange() throws GitException {
+        GitRepository repo = new GitRepository(TEST_REPO);
+        
+        assertThat(iterateAll(repo.iterateCommits("master", CommitOrder.AUTHOR_DATE,
+                CommitDateRange.parse("2019-06-04T13:08:30+02:00", null))), is(Arrays.asList(
+            "da43e932a3bbed69d4a09426922a960652f591f6",
+            "183dda81207043ba8d81e480c3a8da6a2502b895"
+        )));
+        
+        assertThat(iterateAll(repo.iterateCommits("master", CommitOrder.NEWEST_FIRST,
+                CommitDateRange.parse(null, "2019-06-04T13:09:00+02:00"))), is(Arrays.asList(
+            "8761998b60bf12146be97ce4854ceddc7fd0bfc9",
+            "ac3ce2b8e1970cafedf445fc85e8f0e3b10fb678"
+        )));
+        
+        assertThat(iterateAll(repo.iterateCommits("master", CommitOrder.NEWEST_FIRST,
+                CommitDateRange.parse("2019-06-04T11:00:00Z", "2019-06-04T11:09:50Z"))), is(Arrays.asList(
+            "da43e932a3bbed69d4a09426922a960652f591f6",
+            "8761998b60bf12146be97ce4854ceddc7fd0bfc9"
+        )));
+        
+        assertThat(iterateAll(repo.iterateCommits("master", CommitOrder.AUTHOR_DATE,
+                CommitDateRange.parse("2019-06-05", null))).size(), is(0));
+        assertThat(iterateAll(repo.iterateCommits("master", CommitOrder.AUTHOR_DATE,
+                CommitDateRange.parse("2019-06-04", "2019-06-04"))).size(), is(4));
+    }
+    
+    /**
+     * Tests that the {@link GitRepository#iterateCommits(String, CommitOrder)} method reports an unknown revision.
+     * 
+     * @throws GitException wanted.
+     */
+    @Test(expected = GitException.class)
+    public void testIterateCommitsUnknownRevision() throws GitException {
+        GitRepository repo = new GitRepository(TEST_REPO);
+        
+        iterateAll(repo.iterateCommits("doesnt_exist", CommitOrder.AUTHOR_DATE));
+    }
+    
+    /**
+     * Reads all commits from the given iterator and closes it.
+     * 
+     * @param iterator The iterator to read.
+     * 
+     * @return The list of all commits returned by the iterator.
+     * 
+     * @throws GitException If the iterator throws an exception.
+     */
+    static List<String> iterateAll(ICommitIterator iterator) throws GitException {
+        List<String> result = new ArrayList<>();
+        try (ICommitIterator it = iterator) {
+            String commit;
+            while ((commit = it.nextCommit()) != null) {
+                result.add(commit);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Tests the {@link GitRepository#readGitOutput(ILineHandler, String...)} and
+     * {@link GitRepository#startGitCommand(String...)} methods.
+     * 
+     * @throws GitException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testStreamingOutput() throws GitException, IOException {
+        GitRepository repo = new GitRepository(TEST_REPO);
+        
+        List<String> lines = new ArrayList<>();
+        repo.readGitOutput((line) -> lines.add(line), "git", "rev-list", "--reverse", "master");
+        assertThat(lines, is(Arrays.asList(
+            "ac3ce2b8e1970cafedf445fc85e8f0e3b10fb678",
+            "8761998b60bf12146be97ce4854ceddc7fd0bfc9",
+            "da43e932a3bbed69d4a09426922a960652f591f6",
+            "183dda81207043ba8d81e480c3a8da6a2502b895"
+        )));
+        
+        // stopping early terminates the command
+        lines.clear();
+        repo.readGitOutput((line) -> {
+            lines.add(line);
+            return false;
+        }, "git", "rev-list", "master");
+        assertThat(lines, is(Arrays.asList("183dda81207043ba8d81e480c3a8da6a2502b895")));
+        
+        try (GitProcess process = repo.startGitCommand("git", "rev-parse", "master")) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(process.getStdout()));
+            assertThat(in.readLine(), is("183dda81207043ba8d81e480c3a8da6a2502b895"));
+            assertThat(in.readLine(), nullValue());
+            process.waitFor();
+        }
+    }
+    
+    /**
+     * Tests that the {@link GitRepository#readGitOutput(ILineHandler, String...)} method checks the exit code of the
+     * command.
+     * 
+     * @throws GitException wanted.
+     */
+    @Test(expected = GitException.class)
+    public void testStreamingOutputFailure() throws GitException {
+        GitRepository repo = new GitRepository(TEST_REPO);
+        
+        repo.readGitOutput((line) -> true, "git", "rev-list", "doesnt_exist");
+    }
+    
+    /**
+     * Tests the {@link GitRepository#resolveCommit(String)} method.
+     * 
+     * @throws GitException unwanted.
+     */
+    @Test
+    public void testResolveCommit() throws GitException {
+        GitRepository repo = new GitRepository(TEST_REPO);
+        
+        assertThat(repo.resolveCommit("master"), is("183dda81207043ba8d81e480c3a8da6a2502b895"));
+        assertThat(repo.resolveCommit("8761998b60bf12146be97ce4854ceddc7fd0bfc9"),
+                is("8761998b60bf12146be97ce4854ceddc7fd0bfc9"));
+        assertThat(repo.resolveCommit("398c7500a1f5f74e207bd2edca1b1721b3cc1f1e"), nullValue());
+        assertThat(repo.resolveCommit("doesnt_exist"), nullValue());
+    }
+    
     /**
      * Tests the {@link GitRepository#containsCommit(String)} method.
      * 
@@ -734,6 +1048,52 @@ public class GitRepositoryTest {
         }
     }
     
+    /**
+     * Tests the {@link GitRepository#openBlobReader()} method.
+     * 
+     * @throws GitException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testBlobReader() throws GitException, IOException {
+        GitRepository repo = new GitRepository(TEST_REPO);
+        
+        try (GitBlobReader reader = repo.openBlobReader()) {
+            byte[] content = reader.readFile("8761998b60bf12146be97ce4854ceddc7fd0bfc9", "m");
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content)))) {
+                assertThat(in.readLine(), is("Received: (sender2@test.org) by some.server.org"));
+            }
+            
+            // the same process is re-used for multiple requests
+            content = reader.readFile("183dda81207043ba8d81e480c3a8da6a2502b895", "m");
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content)))) {
+                assertThat(in.readLine(), is("Received: (sender4@test.org) by some.server.org"));
+            }
+            
+            assertThat(reader.readFile("183dda81207043ba8d81e480c3a8da6a2502b895", "doesnt_exist"), nullValue());
+            assertThat(reader.readFile("398c7500a1f5f74e207bd2edca1b1721b3cc1f1e", "m"), nullValue());
+        }
+        
+        // the working tree is not modified
+        try (BufferedReader in = new BufferedReader(new FileReader(new File(TEST_REPO, "m")))) {
+            assertThat(in.readLine(), is("Received: (sender4@test.org) by some.server.org"));
+        }
+    }
+    
+    /**
+     * Tests that the {@link GitBlobReader} throws an exception if the requested object is not a blob.
+     * 
+     * @throws GitException wanted.
+     */
+    @Test(expected = GitException.class)
+    public void testBlobReaderNotABlob() throws GitException {
+        GitRepository repo = new GitRepository(TEST_REPO);
+        
+        try (GitBlobReader reader = repo.openBlobReader()) {
+            reader.readBlob("183dda81207043ba8d81e480c3a8da6a2502b895");
+        }
+    }
+    
     /**
      * Calls all {@link GitException} constructors for full test coverage.
      */
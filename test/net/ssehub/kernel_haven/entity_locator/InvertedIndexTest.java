@@ -0,0 +1,177 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.entity_locator.util.InvertedIndex;
+import net.ssehub.kernel_haven.entity_locator.util.InvertedIndex.PostingIterator;
+import net.ssehub.kernel_haven.entity_locator.util.InvertedIndexWriter;
+import net.ssehub.kernel_haven.entity_locator.util.SymbolTable;
+
+/**
+ * Tests the {@link InvertedIndexWriter} and {@link InvertedIndex}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class InvertedIndexTest {
+
+    private static final File INDEX_FILE = new File("testdata", "test.index");
+    
+    /**
+     * Deletes the index file created by a test.
+     */
+    @After
+    public void cleanUp() {
+        INDEX_FILE.delete();
+    }
+    
+    /**
+     * Creates a map of expected postings.
+     * 
+     * @param entries Alternating mail identifiers and counts.
+     * 
+     * @return The map, in the given order.
+     */
+    private static Map<String, Integer> postings(Object... entries) {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (int i = 0; i < entries.length; i += 2) {
+            result.put((String) entries[i], (Integer) entries[i + 1]);
+        }
+        return result;
+    }
+    
+    /**
+     * Tests writing and reading an index.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testWriteAndRead() throws IOException {
+        SymbolTable symbols = new SymbolTable();
+        int varB = symbols.intern("CONFIG_B");
+        int varA = symbols.intern("CONFIG_A");
+        int varUmlaut = symbols.intern("CONFIG_\u00E4");
+        
+        InvertedIndexWriter writer = new InvertedIndexWriter(symbols);
+        writer.add(varB, "mail1", 1);
+        writer.add(varA, "mail1", 2);
+        writer.add(varA, "mail2", 300);
+        for (int i = 3; i < 1000; i++) {
+            writer.add(varB, "mail" + i, i);
+        }
+        writer.add(varUmlaut, "mail\u00F6", 1);
+        writer.write(INDEX_FILE);
+        
+        try (InvertedIndex index = new InvertedIndex(INDEX_FILE)) {
+            assertThat(index.getNumVariables(), is(3));
+            assertThat(index.getNumMails(), is(1000));
+            
+            // sorted by name
+            assertThat(index.getVariable(0), is("CONFIG_A"));
+            assertThat(index.getVariable(1), is("CONFIG_B"));
+            assertThat(index.getVariable(2), is("CONFIG_\u00E4"));
+            
+            assertThat(index.findVariable("CONFIG_A"), is(0));
+            assertThat(index.findVariable("CONFIG_\u00E4"), is(2));
+            assertThat(index.findVariable("CONFIG_C"), is(-1));
+            assertThat(index.findVariable("CONFIG_"), is(-1));
+            assertThat(index.findVariable("A"), is(-1));
+            
+            assertThat(index.lookup("CONFIG_A"), is(postings("mail1", 2, "mail2", 300)));
+            assertThat(index.lookup("CONFIG_\u00E4"), is(postings("mail\u00F6", 1)));
+            assertThat(index.lookup("CONFIG_C"), is(postings()));
+            
+            assertThat(index.getNumPostings(1), is(998));
+            PostingIterator it = index.getPostings(1);
+            assertThat(it.next(), is(true));
+            assertThat(index.getMail(it.getMail()), is("mail1"));
+            assertThat(it.getCount(), is(1));
+            for (int i = 3; i < 1000; i++) {
+                assertThat(it.next(), is(true));
+                assertThat(index.getMail(it.getMail()), is("mail" + i));
+                assertThat(it.getCount(), is(i));
+            }
+            assertThat(it.next(), is(false));
+        }
+    }
+    
+    /**
+     * Tests that postings that are added out of order (e.g. the same mail in two mail sources) are sorted and merged.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testUnsortedPostings() throws IOException {
+        SymbolTable symbols = new SymbolTable();
+        int var = symbols.intern("CONFIG_A");
+        int other = symbols.intern("CONFIG_B");
+        
+        InvertedIndexWriter writer = new InvertedIndexWriter(symbols);
+        writer.add(other, "mail1", 1);
+        writer.add(other, "mail2", 1);
+        writer.add(var, "mail3", 3);
+        writer.add(var, "mail1", 1);
+        writer.add(var, "mail3", 2);
+        writer.add(var, "mail2", 5);
+        writer.write(INDEX_FILE);
+        
+        try (InvertedIndex index = new InvertedIndex(INDEX_FILE)) {
+            assertThat(index.lookup("CONFIG_A"), is(postings("mail1", 1, "mail2", 5, "mail3", 5)));
+            assertThat(index.getNumPostings(0), is(3));
+            assertThat(index.lookup("CONFIG_B"), is(postings("mail1", 1, "mail2", 1)));
+        }
+    }
+    
+    /**
+     * Tests that an empty index can be written and read.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testEmpty() throws IOException {
+        new InvertedIndexWriter(new SymbolTable()).write(INDEX_FILE);
+        
+        try (InvertedIndex index = new InvertedIndex(INDEX_FILE)) {
+            assertThat(index.getNumVariables(), is(0));
+            assertThat(index.getNumMails(), is(0));
+            assertThat(index.findVariable("CONFIG_A"), is(-1));
+        }
+    }
+    
+    /**
+     * Tests that a file that is not an index is rejected.
+     * 
+     * @throws IOException wanted.
+     */
+    @Test(expected = IOException.class)
+    public void testInvalidFile() throws IOException {
+        Files.write(INDEX_FILE.toPath(), new byte[100]);
+        new InvertedIndex(INDEX_FILE).close();
+    }
+    
+}
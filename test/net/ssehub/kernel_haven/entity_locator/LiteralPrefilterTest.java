@@ -0,0 +1,100 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.entity_locator.util.LiteralPrefilter;
+
+/**
+ * Tests the {@link LiteralPrefilter}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class LiteralPrefilterTest {
+
+    /**
+     * Tests which literals are derived from different regular expressions.
+     */
+    @Test
+    public void testCreate() {
+        assertThat(LiteralPrefilter.create(Pattern.compile("CONFIG_[A-Za-z0-9_]+")).getLiteral(), is("CONFIG_"));
+        assertThat(LiteralPrefilter.create(Pattern.compile("CONFIG_\\w+")).getLiteral(), is("CONFIG_"));
+        assertThat(LiteralPrefilter.create(Pattern.compile("a\\.b\\-c(d)")).getLiteral(), is("a.b-c"));
+        assertThat(LiteralPrefilter.create(Pattern.compile("abc?d")).getLiteral(), is("ab"));
+        assertThat(LiteralPrefilter.create(Pattern.compile("abc{0,2}")).getLiteral(), is("ab"));
+        assertThat(LiteralPrefilter.create(Pattern.compile("abc+")).getLiteral(), is("abc"));
+        assertThat(LiteralPrefilter.create(Pattern.compile("a.b", Pattern.LITERAL)).getLiteral(), is("a.b"));
+        
+        assertThat(LiteralPrefilter.create(Pattern.compile("CONFIG_\\w+")).canStartAtCandidate(), is(true));
+        assertThat(LiteralPrefilter.create(Pattern.compile("CONFIG_\\w+\\b")).canStartAtCandidate(), is(false));
+        
+        assertThat(LiteralPrefilter.create(Pattern.compile("\\bCONFIG_\\w+")), nullValue());
+        assertThat(LiteralPrefilter.create(Pattern.compile("[A-Z]+_\\w+")), nullValue());
+        assertThat(LiteralPrefilter.create(Pattern.compile("CONFIG_\\w+|MODULE_\\w+")), nullValue());
+        assertThat(LiteralPrefilter.create(Pattern.compile("CONFIG_\\w+", Pattern.CASE_INSENSITIVE)), nullValue());
+        assertThat(LiteralPrefilter.create(Pattern.compile("a?bc")), nullValue());
+        assertThat(LiteralPrefilter.create(Pattern.compile("\u00E4bc")), nullValue());
+    }
+    
+    /**
+     * Tests that {@link LiteralPrefilter#indexOf(ByteBuffer, int, int)} finds the same positions as a naive search,
+     * for both byte orders and direct buffers.
+     */
+    @Test
+    public void testIndexOf() {
+        LiteralPrefilter prefilter = LiteralPrefilter.create(Pattern.compile("CON"));
+        Random random = new Random(42);
+        
+        for (int run = 0; run < 200; run++) {
+            byte[] bytes = new byte[random.nextInt(40)];
+            for (int i = 0; i < bytes.length; i++) {
+                // mostly characters of the literal, to create many partial matches
+                bytes[i] = (byte) "CONCOx\n\u0080\u00C3".charAt(random.nextInt(9));
+            }
+            String text = new String(bytes, StandardCharsets.ISO_8859_1);
+            
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes);
+            direct.flip();
+            ByteBuffer[] buffers = {
+                ByteBuffer.wrap(bytes),
+                ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN),
+                direct,
+            };
+            
+            int from = bytes.length > 0 ? random.nextInt(bytes.length) : 0;
+            int to = from + (bytes.length > from ? random.nextInt(bytes.length - from + 1) : 0);
+            int expected = text.substring(0, to).indexOf("CON", from);
+            
+            for (ByteBuffer buffer : buffers) {
+                assertThat(text + " [" + from + ", " + to + ")", prefilter.indexOf(buffer, from, to), is(expected));
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.entity_locator.util.LocatorMetrics;
+import net.ssehub.kernel_haven.entity_locator.util.Pipeline;
+
+/**
+ * Tests the {@link LocatorMetrics}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class LocatorMetricsTest {
+
+    /**
+     * Tests that the counters sum up the recorded events.
+     */
+    @Test
+    public void testCounters() {
+        LocatorMetrics metrics = new LocatorMetrics();
+        metrics.mailRead(new byte[100], 1000000);
+        metrics.mailRead(null, 2000000);
+        metrics.scanned(5000000);
+        metrics.mailWithoutMessageId();
+        metrics.emitted(2, 3, 7, 4000000);
+        
+        assertThat(metrics.getMails(), is(2L));
+        assertThat(metrics.getBytes(), is(100L));
+        assertThat(metrics.getResults(), is(3L));
+        assertThat(metrics.getMatches(), is(7L));
+        assertThat(metrics.getMailsWithoutMessageId(), is(1L));
+        assertThat(metrics.getReadTimeMillis(), is(3L));
+        assertThat(metrics.getScanTimeMillis(), is(5L));
+        assertThat(metrics.getEmitTimeMillis(), is(4L));
+    }
+    
+    /**
+     * Tests that the rates are calculated since the previous sample.
+     * 
+     * @throws InterruptedException unwanted.
+     */
+    @Test
+    public void testRates() throws InterruptedException {
+        LocatorMetrics metrics = new LocatorMetrics();
+        metrics.emitted(10, 0, 0, 0);
+        assertThat(metrics.getMailsPerSecond() > 0, is(true));
+        
+        // after a second without new mails, a new sample is taken and the rate drops to zero
+        Thread.sleep(1100);
+        metrics.getMailsPerSecond();
+        Thread.sleep(1100);
+        assertThat(metrics.getMailsPerSecond(), is(0.0));
+        assertThat(metrics.getBytesPerSecond(), is(0.0));
+        
+        metrics.mailRead(new byte[1000], 0);
+        assertThat(metrics.getBytesPerSecond() > 0, is(true));
+    }
+    
+    /**
+     * Tests that the current sources and the queue depths of the running pipelines are reported.
+     */
+    @Test
+    public void testSourcesAndQueues() {
+        LocatorMetrics metrics = new LocatorMetrics();
+        metrics.sourceStarted("a");
+        metrics.sourceStarted("b");
+        metrics.sourceFinished("a");
+        assertThat(Arrays.asList(metrics.getCurrentSources()), is(Arrays.asList("b")));
+        
+        try (Pipeline<Integer> pipeline = new Pipeline<>("test", 1)) {
+            pipeline.addStage("stage", 1, (item) -> true);
+            metrics.addPipeline(pipeline);
+            assertThat(Arrays.asList(metrics.getQueueDepths()), is(Arrays.asList("test: stage=0")));
+            metrics.removePipeline(pipeline);
+        }
+        assertThat(metrics.getQueueDepths().length, is(0));
+    }
+    
+    /**
+     * Tests that the metrics can be read through the platform MBean server while they are registered.
+     * 
+     * @throws JMException unwanted.
+     */
+    @Test
+    public void testRegistration() throws JMException {
+        String name = "net.ssehub.kernel_haven.entity_locator:type=LocatorMetricsTest";
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        
+        LocatorMetrics metrics = new LocatorMetrics();
+        metrics.emitted(5, 1, 1, 0);
+        metrics.register(name);
+        try {
+            assertThat(server.getAttribute(new ObjectName(name), "Mails"), is(5L));
+        } finally {
+            metrics.unregister();
+        }
+        assertThat(server.isRegistered(new ObjectName(name)), is(false));
+        
+        // unregistering twice does nothing
+        metrics.unregister();
+    }
+    
+}
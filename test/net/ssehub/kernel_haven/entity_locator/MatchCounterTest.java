@@ -0,0 +1,119 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.entity_locator.util.ByteCharSequence;
+import net.ssehub.kernel_haven.entity_locator.util.MatchCounter;
+import net.ssehub.kernel_haven.entity_locator.util.SymbolTable;
+
+/**
+ * Tests the {@link MatchCounter}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class MatchCounterTest {
+
+    /**
+     * Tests counting spans of a string, in the order of their first occurrence.
+     */
+    @Test
+    public void testCount() {
+        String text = "CONFIG_A CONFIG_B CONFIG_A CONFIG_AB";
+        SymbolTable symbols = new SymbolTable();
+        MatchCounter counter = new MatchCounter(symbols);
+        counter.add(text, 0, 8);
+        counter.add(text, 9, 17);
+        counter.add(text, 18, 26);
+        counter.add(text, 27, 36);
+        
+        assertThat(counter.size(), is(3));
+        assertThat(counter.getText(0), is("CONFIG_A"));
+        assertThat(counter.getCount(0), is(2));
+        assertThat(counter.getText(1), is("CONFIG_B"));
+        assertThat(counter.getCount(1), is(1));
+        assertThat(counter.getText(2), is("CONFIG_AB"));
+        assertThat(counter.getCount(2), is(1));
+        
+        // the texts are interned in the symbol table
+        assertThat(counter.getText(0) == symbols.getName(counter.getId(0)), is(true));
+        assertThat(counter.getId(1), is(symbols.intern("CONFIG_B")));
+    }
+    
+    /**
+     * Tests that a reset clears the counts, but re-uses the known strings.
+     */
+    @Test
+    public void testReset() {
+        MatchCounter counter = new MatchCounter(new SymbolTable());
+        counter.add("xCONFIG_A", 1, 9);
+        String first = counter.getText(0);
+        
+        counter.reset();
+        assertThat(counter.isEmpty(), is(true));
+        
+        counter.add("CONFIG_B CONFIG_A", 9, 17);
+        assertThat(counter.size(), is(1));
+        assertThat(counter.getCount(0), is(1));
+        assertThat(counter.getText(0) == first, is(true));
+    }
+    
+    /**
+     * Tests that the table grows while keeping all counts.
+     */
+    @Test
+    public void testGrow() {
+        MatchCounter counter = new MatchCounter(new SymbolTable());
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 1000; i++) {
+                String text = "CONFIG_" + i;
+                counter.add(text, 0, text.length());
+            }
+        }
+        
+        assertThat(counter.size(), is(1000));
+        for (int i = 0; i < 1000; i++) {
+            assertThat(counter.getText(i), is("CONFIG_" + i));
+            assertThat(counter.getCount(i), is(3));
+        }
+    }
+    
+    /**
+     * Tests that spans of raw bytes are compared as bytes, but their text is decoded.
+     */
+    @Test
+    public void testByteSpans() {
+        byte[] bytes = "CONFIG_\u00E4 CONFIG_\u00E4".getBytes(StandardCharsets.UTF_8);
+        ByteCharSequence chars = new ByteCharSequence(ByteBuffer.wrap(bytes));
+        
+        MatchCounter counter = new MatchCounter(new SymbolTable());
+        counter.add(chars, 0, 9);
+        counter.add(chars, 10, 19);
+        
+        assertThat(counter.size(), is(1));
+        assertThat(counter.getText(0), is("CONFIG_\u00E4"));
+        assertThat(counter.getCount(0), is(2));
+    }
+    
+}
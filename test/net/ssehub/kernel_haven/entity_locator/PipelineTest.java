@@ -0,0 +1,200 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.entity_locator.util.GitExecution;
+import net.ssehub.kernel_haven.entity_locator.util.Pipeline;
+import net.ssehub.kernel_haven.entity_locator.util.Pipeline.PipelineException;
+
+/**
+ * Tests the {@link Pipeline}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class PipelineTest {
+
+    /**
+     * Tests that items pass through all stages in order, and that dropped items don't reach the later stages.
+     * 
+     * @throws PipelineException unwanted.
+     * @throws InterruptedException unwanted.
+     */
+    @Test
+    public void testOrder() throws PipelineException, InterruptedException {
+        List<Integer> result = new ArrayList<>();
+        try (Pipeline<int[]> pipeline = new Pipeline<>("test", 2)) {
+            pipeline.addStage("double", 1, (item) -> {
+                item[0] *= 2;
+                return true;
+            });
+            pipeline.addStage("filter", 1, (item) -> item[0] % 3 != 0);
+            pipeline.addStage("collect", 1, (item) -> result.add(item[0]));
+            
+            for (int i = 0; i < 10; i++) {
+                pipeline.submit(new int[] {i});
+            }
+            pipeline.finish();
+        }
+        
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            if (i % 3 != 0) {
+                expected.add(i * 2);
+            }
+        }
+        assertThat(result, is(expected));
+    }
+    
+    /**
+     * Tests that all items are processed if stages use multiple threads, and that a slow stage limits the number of
+     * items in flight.
+     * 
+     * @throws PipelineException unwanted.
+     * @throws InterruptedException unwanted.
+     */
+    @Test
+    public void testBackpressure() throws PipelineException, InterruptedException {
+        AtomicInteger submitted = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        List<Integer> result = Collections.synchronizedList(new ArrayList<>());
+        
+        try (Pipeline<Integer> pipeline = new Pipeline<>("test", 1)) {
+            pipeline.addStage("parallel", 3, (item) -> true);
+            pipeline.addStage("slow", 1, (item) -> {
+                maxInFlight.accumulateAndGet(submitted.get() - result.size(), Math::max);
+                Thread.sleep(5);
+                return result.add(item);
+            });
+            
+            for (int i = 0; i < 50; i++) {
+                pipeline.submit(i);
+                submitted.incrementAndGet();
+            }
+            pipeline.finish();
+        }
+        
+        assertThat(result.size(), is(50));
+        List<Integer> sorted = new ArrayList<>(result);
+        Collections.sort(sorted);
+        for (int i = 0; i < 50; i++) {
+            assertThat(sorted.get(i), is(i));
+        }
+        
+        // at most: one in each queue, one in each thread of each stage, and one being submitted
+        assertThat(maxInFlight.get() <= 1 + 3 + 1 + 1 + 1, is(true));
+    }
+    
+    /**
+     * Tests that the failure of a stage is reported to the submitter, even if the stage would never drain its queue.
+     * 
+     * @throws InterruptedException unwanted.
+     */
+    @Test
+    public void testFailure() throws InterruptedException {
+        try (Pipeline<Integer> pipeline = new Pipeline<>("test", 1)) {
+            pipeline.addStage("failing", 1, (item) -> {
+                throw new IOException("failed");
+            });
+            
+            for (int i = 0; i < 100; i++) {
+                pipeline.submit(i);
+            }
+            pipeline.finish();
+            fail("Expected exception");
+            
+        } catch (PipelineException e) {
+            assertThat(e.getCause(), instanceOf(IOException.class));
+        }
+    }
+    
+    /**
+     * Tests that the queue depths show the items that wait in front of a blocked stage.
+     * 
+     * @throws PipelineException unwanted.
+     * @throws InterruptedException unwanted.
+     */
+    @Test
+    public void testDescribeQueues() throws PipelineException, InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        try (Pipeline<Integer> pipeline = new Pipeline<>("test", 2)) {
+            pipeline.addStage("block", 1, (item) -> {
+                blocked.await();
+                return true;
+            });
+            pipeline.addStage("collect", 1, (item) -> true);
+            assertThat(pipeline.describeQueues(), is("test: block=0, collect=0"));
+            
+            // the first item is taken by the blocked stage, the other two fill its queue
+            for (int i = 0; i < 3; i++) {
+                pipeline.submit(i);
+            }
+            assertThat(pipeline.describeQueues(), is("test: block=2, collect=0"));
+            
+            blocked.countDown();
+            pipeline.finish();
+            assertThat(pipeline.describeQueues(), is("test: block=0, collect=0"));
+        }
+    }
+    
+    /**
+     * Tests that the threads of the stages are created by the given {@link GitExecution}, i.e. they are virtual
+     * threads if the execution uses these.
+     * 
+     * @throws PipelineException unwanted.
+     * @throws InterruptedException unwanted.
+     */
+    @Test
+    public void testExecution() throws PipelineException, InterruptedException {
+        GitExecution execution = new GitExecution(true, 0);
+        List<Boolean> virtual = Collections.synchronizedList(new ArrayList<>());
+        List<String> names = Collections.synchronizedList(new ArrayList<>());
+        
+        try (Pipeline<Integer> pipeline = new Pipeline<>("test", 1, execution)) {
+            pipeline.addStage("collect", 1, (item) -> {
+                Thread thread = Thread.currentThread();
+                names.add(thread.getName());
+                try {
+                    virtual.add((Boolean) Thread.class.getMethod("isVirtual").invoke(thread));
+                } catch (NoSuchMethodException e) {
+                    // no virtual threads before Java 21
+                    virtual.add(false);
+                }
+                return true;
+            });
+            pipeline.submit(1);
+            pipeline.finish();
+        }
+        
+        assertThat(names, is(Collections.singletonList("test-collect-1")));
+        assertThat(virtual, is(Collections.singletonList(execution.isUsingVirtualThreads())));
+    }
+    
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.entity_locator.util.GitException;
+import net.ssehub.kernel_haven.entity_locator.util.GitRepository;
+import net.ssehub.kernel_haven.entity_locator.util.PublicInbox;
+import net.ssehub.kernel_haven.util.Util;
+import net.ssehub.kernel_haven.util.ZipArchive;
+
+/**
+ * Tests the {@link PublicInbox}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class PublicInboxTest {
+
+    private static final File TESTDATA = new File("testdata");
+    
+    private static final File TEST_REPO = new File(TESTDATA, "testRepo");
+    
+    private static final File INBOX = new File(TESTDATA, "inbox");
+    
+    /**
+     * Extracts the test repository in testRepo.zip.
+     * 
+     * @throws IOException If extraction fails.
+     */
+    @BeforeClass
+    public static void extractTestRepo() throws IOException {
+        try (ZipArchive archive = new ZipArchive(new File(TESTDATA, "testRepo.zip"))) {
+            for (File f : archive.listFiles()) {
+                File target = new File(TESTDATA, f.getPath());
+                target.getParentFile().mkdirs();
+                archive.extract(f, new File(TESTDATA, f.getPath()));
+            }
+        }
+    }
+    
+    /**
+     * Deletes the test repository.
+     * 
+     * @throws IOException If deleting fails.
+     */
+    @AfterClass
+    public static void cleanUpTestRepo() throws IOException {
+        Util.deleteFolder(TEST_REPO);
+    }
+    
+    /**
+     * Deletes the archive created by a test.
+     * 
+     * @throws IOException If deleting fails.
+     */
+    @After
+    public void cleanUp() throws IOException {
+        if (INBOX.exists()) {
+            Util.deleteFolder(INBOX);
+        }
+    }
+    
+    /**
+     * Creates an archive with the given epochs, each a clone of the test repository.
+     * 
+     * @param epochs The numbers of the epochs to create.
+     * 
+     * @throws GitException If cloning fails.
+     */
+    private static void createEpochs(int... epochs) throws GitException {
+        new File(INBOX, "git").mkdirs();
+        for (int epoch : epochs) {
+            GitRepository.clone("file://" + TEST_REPO.getAbsolutePath(), new File(INBOX, "git/" + epoch + ".git"));
+        }
+    }
+    
+    /**
+     * Tests that the epochs of a local archive are found and ordered by their numbers.
+     * 
+     * @throws GitException unwanted.
+     */
+    @Test
+    public void testLocal() throws GitException {
+        createEpochs(10, 2, 0, 1);
+        new File(INBOX, "git/notes").mkdirs();
+        
+        assertThat(PublicInbox.findEpochs(INBOX.getPath()), is(Arrays.asList(
+                new File(INBOX, "git/0.git").getAbsolutePath(),
+                new File(INBOX, "git/1.git").getAbsolutePath(),
+                new File(INBOX, "git/2.git").getAbsolutePath(),
+                new File(INBOX, "git/10.git").getAbsolutePath())));
+    }
+    
+    /**
+     * Tests that the epochs of a remote archive are probed until the first missing one.
+     * 
+     * @throws GitException unwanted.
+     */
+    @Test
+    public void testRemote() throws GitException {
+        createEpochs(0, 1, 3);
+        String url = "file://" + INBOX.getAbsolutePath();
+        
+        assertThat(PublicInbox.findEpochs(url), is(Arrays.asList(url + "/git/0.git", url + "/git/1.git")));
+    }
+    
+    /**
+     * Tests that regular repositories are not detected as archives.
+     */
+    @Test
+    public void testNoArchive() {
+        assertThat(PublicInbox.findEpochs(TEST_REPO.getPath()), nullValue());
+        assertThat(PublicInbox.findEpochs("file://" + TEST_REPO.getAbsolutePath()), nullValue());
+        assertThat(PublicInbox.findEpochs("file://" + TEST_REPO.getAbsolutePath() + "/.git"), nullValue());
+    }
+    
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.entity_locator.util.ScanCache;
+import net.ssehub.kernel_haven.entity_locator.util.ScanCache.Entry;
+import net.ssehub.kernel_haven.util.Util;
+
+/**
+ * Tests the {@link ScanCache}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class ScanCacheTest {
+
+    private static final File CACHE_DIR = new File("testdata", "scanCache");
+    
+    private static final String BLOB_1 = ScanCache.computeBlobId("mail 1".getBytes(StandardCharsets.UTF_8));
+    
+    private static final String BLOB_2 = ScanCache.computeBlobId("mail 2".getBytes(StandardCharsets.UTF_8));
+    
+    /**
+     * Deletes the cache directory created by a test.
+     * 
+     * @throws IOException If deleting fails.
+     */
+    @After
+    public void cleanUp() throws IOException {
+        if (CACHE_DIR.exists()) {
+            Util.deleteFolder(CACHE_DIR);
+        }
+    }
+    
+    /**
+     * Tests that the blob id is the same as the one computed by git.
+     */
+    @Test
+    public void testBlobId() {
+        // git hash-object of a file containing "hello\n"
+        assertThat(ScanCache.computeBlobId("hello\n".getBytes(StandardCharsets.UTF_8)),
+                is("ce013625030ba8dba906f756967f9e9ca394464a"));
+    }
+    
+    /**
+     * Tests that stored entries are found again, also after re-opening the cache.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testPersistence() throws IOException {
+        try (ScanCache cache = new ScanCache(CACHE_DIR, "key")) {
+            assertThat(cache.get(BLOB_1), nullValue());
+            cache.put(BLOB_1, new Entry("1@test.org", new String[] {"CONFIG_A", "CONFIG_B"}, new int[] {1, 2}));
+            cache.put(BLOB_2, new Entry(null, new String[0], new int[0]));
+            assertThat(cache.size(), is(2));
+        }
+        
+        try (ScanCache cache = new ScanCache(CACHE_DIR, "key")) {
+            assertThat(cache.size(), is(2));
+            
+            Entry entry = cache.get(BLOB_1);
+            assertThat(entry.getMessageId(), is("1@test.org"));
+            assertThat(entry.size(), is(2));
+            assertThat(entry.getVariable(0), is("CONFIG_A"));
+            assertThat(entry.getCount(0), is(1));
+            assertThat(entry.getVariable(1), is("CONFIG_B"));
+            assertThat(entry.getCount(1), is(2));
+            
+            entry = cache.get(BLOB_2);
+            assertThat(entry.getMessageId(), nullValue());
+            assertThat(entry.size(), is(0));
+        }
+        
+        // a different fingerprint has its own cache
+        try (ScanCache cache = new ScanCache(CACHE_DIR, "other")) {
+            assertThat(cache.get(BLOB_1), nullValue());
+        }
+    }
+    
+    /**
+     * Tests that an incomplete record at the end of the cache file is discarded.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testIncompleteRecord() throws IOException {
+        try (ScanCache cache = new ScanCache(CACHE_DIR, "key")) {
+            cache.put(BLOB_1, new Entry("1@test.org", new String[] {"CONFIG_A"}, new int[] {1}));
+            cache.put(BLOB_2, new Entry("2@test.org", new String[] {"CONFIG_B"}, new int[] {1}));
+        }
+        
+        File file = new File(CACHE_DIR, "key.scancache");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        
+        try (ScanCache cache = new ScanCache(CACHE_DIR, "key")) {
+            assertThat(cache.size(), is(1));
+            assertThat(cache.get(BLOB_1).getVariable(0), is("CONFIG_A"));
+            assertThat(cache.get(BLOB_2), nullValue());
+            
+            cache.put(BLOB_2, new Entry("2@test.org", new String[] {"CONFIG_C"}, new int[] {1}));
+        }
+        
+        try (ScanCache cache = new ScanCache(CACHE_DIR, "key")) {
+            assertThat(cache.size(), is(2));
+            assertThat(cache.get(BLOB_2).getVariable(0), is("CONFIG_C"));
+        }
+    }
+    
+    /**
+     * Tests that a cache can not be opened twice at the same time.
+     * 
+     * @throws IOException wanted.
+     */
+    @Test(expected = IOException.class)
+    public void testLocked() throws IOException {
+        try (ScanCache cache = new ScanCache(CACHE_DIR, "key")) {
+            new ScanCache(CACHE_DIR, "key").close();
+        }
+    }
+    
+}
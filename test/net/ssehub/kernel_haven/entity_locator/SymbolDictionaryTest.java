@@ -0,0 +1,165 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.entity_locator.util.MatchCounter;
+import net.ssehub.kernel_haven.entity_locator.util.SymbolDictionary;
+import net.ssehub.kernel_haven.entity_locator.util.SymbolTable;
+
+/**
+ * Tests the {@link SymbolDictionary}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class SymbolDictionaryTest {
+
+    private static final SymbolDictionary DICTIONARY = new SymbolDictionary(
+            Arrays.asList("FOO", "FOO_BAR", "BAR", "CONFIG_A", "CONFIG_AB", "FOO"));
+    
+    /**
+     * Counts the matches in the given text, both as string and as bytes, and checks that both agree.
+     * 
+     * @param text The text to search.
+     * 
+     * @return The number of occurrences of each found symbol.
+     */
+    private static Map<String, Integer> count(String text) {
+        MatchCounter fromString = new MatchCounter(new SymbolTable());
+        DICTIONARY.countMatches(text, fromString);
+        
+        MatchCounter fromBytes = new MatchCounter(new SymbolTable());
+        ByteBuffer buffer = ByteBuffer.wrap(("xx" + text).getBytes(StandardCharsets.UTF_8));
+        buffer.position(2);
+        DICTIONARY.countMatches(buffer, fromBytes);
+        assertThat(buffer.position(), is(2));
+        
+        assertThat(fromBytes.toString(), is(fromString.toString()));
+        return toMap(fromString);
+    }
+    
+    /**
+     * Converts the given counter to a map.
+     * 
+     * @param counter The counter.
+     * 
+     * @return A map of the counted texts to their number of occurrences.
+     */
+    private static Map<String, Integer> toMap(MatchCounter counter) {
+        Map<String, Integer> result = new HashMap<>();
+        for (int i = 0; i < counter.size(); i++) {
+            result.put(counter.getText(i), counter.getCount(i));
+        }
+        return result;
+    }
+    
+    /**
+     * Creates a map of expected counts.
+     * 
+     * @param entries Alternating symbols and their counts.
+     * 
+     * @return The map.
+     */
+    private static Map<String, Integer> counts(Object... entries) {
+        Map<String, Integer> result = new HashMap<>();
+        for (int i = 0; i < entries.length; i += 2) {
+            result.put((String) entries[i], (Integer) entries[i + 1]);
+        }
+        return result;
+    }
+    
+    /**
+     * Tests that only complete identifiers are matched.
+     */
+    @Test
+    public void testIdentifierBoundaries() {
+        assertThat(count("FOO"), is(counts("FOO", 1)));
+        assertThat(count("FOO_BAR"), is(counts("FOO_BAR", 1)));
+        assertThat(count("FOO_BARX XFOO FOO1 _BAR"), is(counts()));
+        assertThat(count("(FOO) FOO.BAR, BAR-FOO_BAR"), is(counts("FOO", 2, "BAR", 2, "FOO_BAR", 1)));
+    }
+    
+    /**
+     * Tests symbols that are prefixes of other symbols.
+     */
+    @Test
+    public void testPrefixes() {
+        assertThat(count("CONFIG_A CONFIG_AB CONFIG_ABC CONFIG_ CONFIG_A"), is(counts("CONFIG_A", 2, "CONFIG_AB", 1)));
+    }
+    
+    /**
+     * Tests that non-ASCII characters separate identifiers.
+     */
+    @Test
+    public void testNonAscii() {
+        assertThat(count("\u00E4FOO\u00F6BAR\u00FC \u20AC FOO_BAR\u00E4"),
+                is(counts("FOO", 1, "BAR", 1, "FOO_BAR", 1)));
+    }
+    
+    /**
+     * Tests loading a dictionary from a file.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testLoad() throws IOException {
+        File file = File.createTempFile("dictionary", ".txt");
+        try {
+            Files.write(file.toPath(), Arrays.asList("# comment", "", "  CONFIG_A  ", "CONFIG_B", "CONFIG_A"));
+            SymbolDictionary dictionary = SymbolDictionary.load(file);
+            assertThat(dictionary.size(), is(2));
+            assertThat(dictionary.getFingerprint(),
+                    is(new SymbolDictionary(Arrays.asList("CONFIG_B", "CONFIG_A")).getFingerprint()));
+            
+            MatchCounter result = new MatchCounter(new SymbolTable());
+            dictionary.countMatches("CONFIG_A CONFIG_B CONFIG_C", result);
+            assertThat(toMap(result), is(counts("CONFIG_A", 1, "CONFIG_B", 1)));
+        } finally {
+            file.delete();
+        }
+    }
+    
+    /**
+     * Tests that invalid symbols are rejected.
+     * 
+     * @throws IOException wanted.
+     */
+    @Test(expected = IOException.class)
+    public void testInvalidSymbol() throws IOException {
+        File file = File.createTempFile("dictionary", ".txt");
+        try {
+            Files.write(file.toPath(), Arrays.asList("CONFIG_A", "CONFIG-B"));
+            SymbolDictionary.load(file);
+        } finally {
+            file.delete();
+        }
+    }
+    
+}
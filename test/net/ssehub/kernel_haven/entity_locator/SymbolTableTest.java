@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.entity_locator;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.entity_locator.util.SymbolTable;
+
+/**
+ * Tests the {@link SymbolTable}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class SymbolTableTest {
+
+    /**
+     * Tests that ids are dense and that equal names share the same instance.
+     */
+    @Test
+    public void testIntern() {
+        SymbolTable table = new SymbolTable();
+        String first = new String("CONFIG_A");
+        
+        assertThat(table.intern(first), is(0));
+        assertThat(table.intern("CONFIG_B"), is(1));
+        assertThat(table.intern(new String("CONFIG_A")), is(0));
+        assertThat(table.size(), is(2));
+        
+        assertThat(table.getName(0) == first, is(true));
+        assertThat(table.canonicalize(new String("CONFIG_A")) == first, is(true));
+        assertThat(table.getName(1), is("CONFIG_B"));
+    }
+    
+    /**
+     * Tests that the table grows beyond its initial capacity.
+     */
+    @Test
+    public void testGrow() {
+        SymbolTable table = new SymbolTable();
+        for (int i = 0; i < 1000; i++) {
+            assertThat(table.intern("CONFIG_" + i), is(i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertThat(table.getName(i), is("CONFIG_" + i));
+        }
+    }
+    
+    /**
+     * Tests that unknown ids are rejected.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testUnknownId() {
+        SymbolTable table = new SymbolTable();
+        table.intern("CONFIG_A");
+        table.getName(1);
+    }
+    
+    /**
+     * Tests that concurrent threads get the same id for the same name.
+     * 
+     * @throws InterruptedException unwanted.
+     * @throws ExecutionException unwanted.
+     */
+    @Test
+    public void testConcurrent() throws InterruptedException, ExecutionException {
+        SymbolTable table = new SymbolTable();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<int[]>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    int[] ids = new int[500];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = table.intern("CONFIG_" + i);
+                    }
+                    return ids;
+                }));
+            }
+            
+            int[] expected = futures.get(0).get();
+            for (Future<int[]> future : futures) {
+                int[] ids = future.get();
+                for (int i = 0; i < ids.length; i++) {
+                    assertThat(ids[i], is(expected[i]));
+                    assertThat(table.getName(ids[i]), is("CONFIG_" + i));
+                }
+            }
+            assertThat(table.size(), is(500));
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+}
@@ -18,19 +18,47 @@ package net.ssehub.kernel_haven.entity_locator;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.regex.Pattern;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import net.ssehub.kernel_haven.SetUpException;
+import net.ssehub.kernel_haven.analysis.AnalysisComponent;
+import net.ssehub.kernel_haven.entity_locator.VariableInMailingListLocator.MailReader;
+import net.ssehub.kernel_haven.entity_locator.VariableInMailingListLocator.MailScanner;
+import net.ssehub.kernel_haven.entity_locator.VariableInMailingListLocator.ResultGranularity;
 import net.ssehub.kernel_haven.entity_locator.VariableInMailingListLocator.VariableMailLocation;
+import net.ssehub.kernel_haven.entity_locator.VariableInMailingListLocator.VariableMailSummary;
+import net.ssehub.kernel_haven.entity_locator.util.CloneType;
+import net.ssehub.kernel_haven.entity_locator.util.CommitOrder;
+import net.ssehub.kernel_haven.entity_locator.util.CrawlCheckpoint;
+import net.ssehub.kernel_haven.entity_locator.util.CrawlState;
+import net.ssehub.kernel_haven.entity_locator.util.GitException;
+import net.ssehub.kernel_haven.entity_locator.util.GitRepository;
+import net.ssehub.kernel_haven.entity_locator.util.ICommitIterator;
+import net.ssehub.kernel_haven.entity_locator.util.InvertedIndex;
+import net.ssehub.kernel_haven.entity_locator.util.InvertedIndexWriter;
+import net.ssehub.kernel_haven.entity_locator.util.LocatorMetrics;
+import net.ssehub.kernel_haven.entity_locator.util.ScanCache;
+import net.ssehub.kernel_haven.entity_locator.util.SymbolTable;
+import net.ssehub.kernel_haven.entity_locator.util.VariableStatistics;
 import net.ssehub.kernel_haven.test_utils.AnalysisComponentExecuter;
 import net.ssehub.kernel_haven.test_utils.TestConfiguration;
 import net.ssehub.kernel_haven.util.Util;
@@ -103,17 +131,21 @@ public class VariableInMailingListLocatorTest {
         assertThat(result.get(0).getMailIdentifier(), is("https://lore.kernel.org/lkml/1215-4-7-1-5-4-7%40test.org"));
         assertThat(result.get(0).getNumOccurrences(), is(1));
         
-        assertThat(result.get(1).getVariable(), is("CONFIG_DEF"));
+        assertThat(result.get(1).getVariable(), is("CONFIG_ABC"));
         assertThat(result.get(1).getMailIdentifier(), is("https://lore.kernel.org/lkml/121554-8-6-4-4-777%40test.org"));
-        assertThat(result.get(1).getNumOccurrences(), is(1));
+        assertThat(result.get(1).getNumOccurrences(), is(2));
         
-        assertThat(result.get(2).getVariable(), is("CONFIG_ABC"));
+        assertThat(result.get(2).getVariable(), is("CONFIG_DEF"));
         assertThat(result.get(2).getMailIdentifier(), is("https://lore.kernel.org/lkml/121554-8-6-4-4-777%40test.org"));
-        assertThat(result.get(2).getNumOccurrences(), is(2));
+        assertThat(result.get(2).getNumOccurrences(), is(1));
         
         assertThat(result.get(3).getVariable(), is("CONFIG_ABC"));
         assertThat(result.get(3).getMailIdentifier(), is("https://lore.kernel.org/lkml/123%2F456%40test.org"));
         assertThat(result.get(3).getNumOccurrences(), is(1));
+        
+        // the variables are interned in a symbol table of this run only, regardless of earlier runs in this JVM
+        assertThat(result.get(0).getVariableId(), is(0));
+        assertThat(result.get(2).getVariableId(), is(1));
     }
     
     /**
@@ -146,13 +178,1252 @@ public class VariableInMailingListLocatorTest {
         assertThat(result.get(0).getMailIdentifier(), is("https://lore.kernel.org/lkml/1215-4-7-1-5-4-7%40test.org"));
         assertThat(result.get(0).getNumOccurrences(), is(1));
         
-        assertThat(result.get(1).getVariable(), is("CONFIG_DEF"));
+        assertThat(result.get(1).getVariable(), is("CONFIG_ABC"));
+        assertThat(result.get(1).getMailIdentifier(), is("https://lore.kernel.org/lkml/121554-8-6-4-4-777%40test.org"));
+        assertThat(result.get(1).getNumOccurrences(), is(2));
+        
+        assertThat(result.get(2).getVariable(), is("CONFIG_DEF"));
+        assertThat(result.get(2).getMailIdentifier(), is("https://lore.kernel.org/lkml/121554-8-6-4-4-777%40test.org"));
+        assertThat(result.get(2).getNumOccurrences(), is(1));
+        
+        assertThat(result.get(3).getVariable(), is("CONFIG_ABC"));
+        assertThat(result.get(3).getMailIdentifier(), is("https://lore.kernel.org/lkml/123%2F456%40test.org"));
+        assertThat(result.get(3).getNumOccurrences(), is(1));
+    }
+    
+    /**
+     * Tests that a remote repository is cloned into the clone cache and re-used by the next run.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testRemoteMockedRepoCloneCache() throws SetUpException, IOException {
+        File cacheDir = new File(TESTDATA, "cloneCache");
+        assertThat(cacheDir.exists(), is(false));
+        
+        try {
+            for (int i = 0; i < 2; i++) {
+                TestConfiguration config = new TestConfiguration(new Properties());
+                
+                config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+                config.setValue(VariableInMailingListLocator.MAIL_SOURCES,
+                        Arrays.asList("file://" + MOCKED_REPO.getAbsolutePath()));
+                
+                config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+                config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+                
+                config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+                config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+                
+                config.registerSetting(VariableInMailingListLocator.CLONE_CACHE_DIR);
+                config.setValue(VariableInMailingListLocator.CLONE_CACHE_DIR, cacheDir);
+                
+                List<@NonNull VariableMailLocation> result = AnalysisComponentExecuter.executeComponent(
+                        VariableInMailingListLocator.class, config);
+                
+                assertMockedRepoResult(result);
+                assertThat(cacheDir.listFiles((dir, name) -> !name.endsWith(".lock")).length, is(1));
+            }
+            
+        } finally {
+            Util.deleteFolder(cacheDir);
+        }
+    }
+    
+    /**
+     * Tests with a remote repository that is cloned as a bare partial clone and read without any git process.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testRemoteMockedRepoPartialClone() throws SetUpException, IOException {
+        ProcessBuilder builder = new ProcessBuilder("git", "config", "uploadpack.allowFilter", "true");
+        builder.directory(MOCKED_REPO);
+        assertThat(Util.executeProcess(builder, "git", new ByteArrayOutputStream(), new ByteArrayOutputStream(), 0),
+                is(true));
+        
+        TestConfiguration config = new TestConfiguration(new Properties());
+        
+        config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+        config.setValue(VariableInMailingListLocator.MAIL_SOURCES,
+                Arrays.asList("file://" + MOCKED_REPO.getAbsolutePath()));
+        
+        config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+        config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+        
+        config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+        config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+        
+        config.registerSetting(VariableInMailingListLocator.MAIL_READER);
+        config.setValue(VariableInMailingListLocator.MAIL_READER, MailReader.IN_PROCESS);
+        
+        config.registerSetting(VariableInMailingListLocator.CLONE_TYPE);
+        config.setValue(VariableInMailingListLocator.CLONE_TYPE, CloneType.BARE);
+        
+        config.registerSetting(VariableInMailingListLocator.CLONE_FILTER);
+        config.setValue(VariableInMailingListLocator.CLONE_FILTER, "blob:none");
+        
+        List<@NonNull VariableMailLocation> result = AnalysisComponentExecuter.executeComponent(
+                VariableInMailingListLocator.class, config);
+        
+        assertMockedRepoResult(result);
+    }
+    
+    /**
+     * Tests with a locally checked out, small test repository that is read without any git process.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testLocalMockedRepoInProcess() throws SetUpException, IOException {
+        TestConfiguration config = new TestConfiguration(new Properties());
+        
+        config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+        config.setValue(VariableInMailingListLocator.MAIL_SOURCES, Arrays.asList(MOCKED_REPO.getAbsolutePath()));
+        
+        config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+        config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+        
+        config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+        config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+        
+        config.registerSetting(VariableInMailingListLocator.MAIL_READER);
+        config.setValue(VariableInMailingListLocator.MAIL_READER, MailReader.IN_PROCESS);
+        
+        List<@NonNull VariableMailLocation> result = AnalysisComponentExecuter.executeComponent(
+                VariableInMailingListLocator.class, config);
+        
+        assertMockedRepoResult(result);
+    }
+    
+    /**
+     * Tests with a locally checked out, small test repository that is read from a single git log stream.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testLocalMockedRepoLogStream() throws SetUpException, IOException {
+        TestConfiguration config = new TestConfiguration(new Properties());
+        
+        config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+        config.setValue(VariableInMailingListLocator.MAIL_SOURCES, Arrays.asList(MOCKED_REPO.getAbsolutePath()));
+        
+        config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+        config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+        
+        config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+        config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+        
+        config.registerSetting(VariableInMailingListLocator.MAIL_READER);
+        config.setValue(VariableInMailingListLocator.MAIL_READER, MailReader.LOG_STREAM);
+        
+        List<@NonNull VariableMailLocation> result = AnalysisComponentExecuter.executeComponent(
+                VariableInMailingListLocator.class, config);
+        
+        assertMockedRepoResult(result);
+    }
+    
+    /**
+     * Tests with a locally checked out, small test repository whose mails are found through the changed paths of
+     * each commit.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testLocalMockedRepoChangedPaths() throws SetUpException, IOException {
+        TestConfiguration config = new TestConfiguration(new Properties());
+        
+        config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+        config.setValue(VariableInMailingListLocator.MAIL_SOURCES, Arrays.asList(MOCKED_REPO.getAbsolutePath()));
+        
+        config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+        config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+        
+        config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+        config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+        
+        config.registerSetting(VariableInMailingListLocator.MAIL_READER);
+        config.setValue(VariableInMailingListLocator.MAIL_READER, MailReader.CHANGED_PATHS);
+        
+        List<@NonNull VariableMailLocation> result = AnalysisComponentExecuter.executeComponent(
+                VariableInMailingListLocator.class, config);
+        
+        assertMockedRepoResult(result);
+    }
+    
+    /**
+     * Tests an archive in the public-inbox v1 layout, where each commit adds the mails as files of their own.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testOneFilePerMail() throws SetUpException, IOException {
+        File repo = new File(TESTDATA, "v1Archive");
+        try {
+            new File(repo, "ab").mkdirs();
+            new File(repo, "12").mkdirs();
+            runGit(repo, "git", "init", "-q", "-b", "master");
+            
+            Files.write(new File(repo, "ab/cdef").toPath(), "Message-ID: <first@test.org>\n\nCONFIG_A\n".getBytes());
+            runGit(repo, "git", "add", ".");
+            runGit(repo, "git", "-c", "user.name=Test", "-c", "user.email=test@test.org", "commit", "-q", "-m", "1");
+            
+            Files.write(new File(repo, "12/3456").toPath(), "Message-ID: <second@test.org>\n\nCONFIG_B\n".getBytes());
+            Files.write(new File(repo, "ab/ffff").toPath(), "Message-ID: <third@test.org>\n\nCONFIG_C\n".getBytes());
+            // neither top-level files other than m nor dotfiles are mails
+            Files.write(new File(repo, "README").toPath(), "Message-ID: <readme@test.org>\n\nCONFIG_D\n".getBytes());
+            Files.write(new File(repo, "ab/.meta").toPath(), "Message-ID: <meta@test.org>\n\nCONFIG_E\n".getBytes());
+            runGit(repo, "git", "add", ".");
+            runGit(repo, "git", "-c", "user.name=Test", "-c", "user.email=test@test.org", "commit", "-q", "-m", "2");
+            
+            // removing a mail does not produce a result
+            runGit(repo, "git", "rm", "-q", "ab/cdef");
+            runGit(repo, "git", "-c", "user.name=Test", "-c", "user.email=test@test.org", "commit", "-q", "-m", "3");
+            
+            TestConfiguration config = new TestConfiguration(new Properties());
+            
+            config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+            config.setValue(VariableInMailingListLocator.MAIL_SOURCES, Arrays.asList(repo.getAbsolutePath()));
+            
+            config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+            config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+            
+            config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+            config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+            
+            config.registerSetting(VariableInMailingListLocator.MAIL_READER);
+            config.setValue(VariableInMailingListLocator.MAIL_READER, MailReader.CHANGED_PATHS);
+            
+            List<@NonNull VariableMailLocation> result = AnalysisComponentExecuter.executeComponent(
+                    VariableInMailingListLocator.class, config);
+            
+            assertThat(result.size(), is(3));
+            assertThat(result.get(0).getVariable(), is("CONFIG_A"));
+            assertThat(result.get(0).getMailIdentifier(), is("https://lore.kernel.org/lkml/first%40test.org"));
+            assertThat(result.get(1).getVariable(), is("CONFIG_B"));
+            assertThat(result.get(2).getVariable(), is("CONFIG_C"));
+            
+            config.registerSetting(VariableInMailingListLocator.CHANGED_PATHS);
+            config.setValue(VariableInMailingListLocator.CHANGED_PATHS, Arrays.asList("README"));
+            
+            result = AnalysisComponentExecuter.executeComponent(VariableInMailingListLocator.class, config);
+            
+            assertThat(result.size(), is(1));
+            assertThat(result.get(0).getVariable(), is("CONFIG_D"));
+            
+        } finally {
+            Util.deleteFolder(repo);
+        }
+    }
+    
+    /**
+     * Tests that the metrics count the processed mails and results, and that the MBean is only registered while
+     * the crawl runs.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws JMException unwanted.
+     */
+    @Test
+    public void testMetrics() throws SetUpException, JMException {
+        TestConfiguration config = new TestConfiguration(new Properties());
+        
+        config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+        config.setValue(VariableInMailingListLocator.MAIL_SOURCES, Arrays.asList(MOCKED_REPO.getAbsolutePath()));
+        
+        config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+        config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+        
+        config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+        config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+        
+        config.registerSetting(VariableInMailingListLocator.JMX_METRICS);
+        config.setValue(VariableInMailingListLocator.JMX_METRICS, true);
+        
+        VariableInMailingListLocator locator = new VariableInMailingListLocator(config);
+        List<@NonNull VariableMailLocation> result = new ArrayList<>();
+        VariableMailLocation location;
+        while ((location = locator.getNextResult()) != null) {
+            result.add(location);
+        }
+        assertMockedRepoResult(result);
+        
+        long occurrences = 0;
+        for (VariableMailLocation row : result) {
+            occurrences += row.getNumOccurrences();
+        }
+        LocatorMetrics metrics = locator.getMetrics();
+        assertThat(metrics.getMails(), is(4L));
+        assertThat(metrics.getBytes(), is(499L + 464L + 610L + 489L));
+        assertThat(metrics.getResults(), is(4L));
+        assertThat(metrics.getMatches(), is(occurrences));
+        assertThat(metrics.getMailsWithoutMessageId(), is(0L));
+        assertThat(metrics.getCurrentSources().length, is(0));
+        assertThat(metrics.getQueueDepths().length, is(0));
+        
+        assertThat(ManagementFactory.getPlatformMBeanServer().queryNames(new ObjectName(
+                "net.ssehub.kernel_haven.entity_locator:type=VariableInMailingListLocator,*"), null).size(), is(0));
+    }
+    
+    /**
+     * Tests that the {@link MailScanner#BYTES} scanner yields the same result as the line reader, for each
+     * {@link MailReader}, with and without pipeline.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testByteScanner() throws SetUpException {
+        for (MailReader mailReader : MailReader.values()) {
+            for (int pipelineDepth : new int[] {0, 2}) {
+                TestConfiguration config = new TestConfiguration(new Properties());
+                
+                config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+                config.setValue(VariableInMailingListLocator.MAIL_SOURCES,
+                        Arrays.asList(MOCKED_REPO.getAbsolutePath()));
+                
+                config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+                config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+                
+                config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+                config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+                
+                config.registerSetting(VariableInMailingListLocator.MAIL_READER);
+                config.setValue(VariableInMailingListLocator.MAIL_READER, mailReader);
+                
+                config.registerSetting(VariableInMailingListLocator.MAIL_SCANNER);
+                config.setValue(VariableInMailingListLocator.MAIL_SCANNER, MailScanner.BYTES);
+                
+                config.registerSetting(VariableInMailingListLocator.PIPELINE_DEPTH);
+                config.setValue(VariableInMailingListLocator.PIPELINE_DEPTH, pipelineDepth);
+                
+                assertMockedRepoResult(AnalysisComponentExecuter.executeComponent(
+                        VariableInMailingListLocator.class, config));
+            }
+        }
+    }
+    
+    /**
+     * Tests that a variable dictionary yields the same result as the equivalent regular expression, for both
+     * {@link MailScanner}s.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testDictionary() throws SetUpException, IOException {
+        File dictionary = new File(TESTDATA, "dictionary.txt");
+        try {
+            Files.write(dictionary.toPath(), Arrays.asList("# variables of the test repository", "CONFIG_ABC",
+                    "CONFIG_DEF", "CONFIG_UNUSED"));
+            
+            for (MailScanner mailScanner : MailScanner.values()) {
+                TestConfiguration config = new TestConfiguration(new Properties());
+                
+                config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+                config.setValue(VariableInMailingListLocator.MAIL_SOURCES,
+                        Arrays.asList(MOCKED_REPO.getAbsolutePath()));
+                
+                config.registerSetting(VariableInMailingListLocator.VAR_DICTIONARY);
+                config.setValue(VariableInMailingListLocator.VAR_DICTIONARY, dictionary);
+                
+                config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+                config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+                
+                config.registerSetting(VariableInMailingListLocator.MAIL_SCANNER);
+                config.setValue(VariableInMailingListLocator.MAIL_SCANNER, mailScanner);
+                
+                assertMockedRepoResult(AnalysisComponentExecuter.executeComponent(
+                        VariableInMailingListLocator.class, config));
+            }
+        } finally {
+            dictionary.delete();
+        }
+    }
+    
+    /**
+     * Tests that specifying both a regular expression and a dictionary is rejected.
+     * 
+     * @throws SetUpException wanted.
+     */
+    @Test(expected = SetUpException.class)
+    public void testRegexAndDictionary() throws SetUpException {
+        TestConfiguration config = new TestConfiguration(new Properties());
+        
+        config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+        config.setValue(VariableInMailingListLocator.MAIL_SOURCES, Arrays.asList(MOCKED_REPO.getAbsolutePath()));
+        
+        config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+        config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+        
+        config.registerSetting(VariableInMailingListLocator.VAR_DICTIONARY);
+        config.setValue(VariableInMailingListLocator.VAR_DICTIONARY, new File(TESTDATA, "dictionary.txt"));
+        
+        new VariableInMailingListLocator(config);
+    }
+    
+    /**
+     * Tests the per-variable summaries for each {@link ResultGranularity}. The summary output is read first, so that
+     * it triggers the crawl; the main output must not crawl again.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testResultGranularity() throws SetUpException {
+        for (ResultGranularity granularity : ResultGranularity.values()) {
+            TestConfiguration config = new TestConfiguration(new Properties());
+            
+            config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+            config.setValue(VariableInMailingListLocator.MAIL_SOURCES, Arrays.asList(MOCKED_REPO.getAbsolutePath()));
+            
+            config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+            config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+            
+            config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+            config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+            
+            config.registerSetting(VariableInMailingListLocator.RESULT_GRANULARITY);
+            config.setValue(VariableInMailingListLocator.RESULT_GRANULARITY, granularity);
+            
+            VariableInMailingListLocator locator = new VariableInMailingListLocator(config);
+            AnalysisComponent<VariableMailSummary> summaryOutput = locator.getSummaryOutput();
+            
+            List<VariableMailSummary> summaries = new ArrayList<>();
+            VariableMailSummary summary;
+            while ((summary = summaryOutput.getNextResult()) != null) {
+                summaries.add(summary);
+            }
+            
+            List<@NonNull VariableMailLocation> locations = new ArrayList<>();
+            VariableMailLocation location;
+            while ((location = locator.getNextResult()) != null) {
+                locations.add(location);
+            }
+            
+            if (granularity == ResultGranularity.PER_VARIABLE) {
+                assertThat(locations.size(), is(0));
+            } else {
+                assertMockedRepoResult(locations);
+            }
+            
+            if (granularity == ResultGranularity.PER_MAIL) {
+                assertThat(summaries.size(), is(0));
+            } else {
+                assertThat(summaries.size(), is(2));
+                
+                assertThat(summaries.get(0).getVariable(), is("CONFIG_ABC"));
+                assertThat(summaries.get(0).getNumOccurrences(), is(4L));
+                assertThat(summaries.get(0).getNumMails(), is(3));
+                assertThat(summaries.get(0).getFirstMail(),
+                        is("https://lore.kernel.org/lkml/1215-4-7-1-5-4-7%40test.org"));
+                assertThat(summaries.get(0).getLastMail(), is("https://lore.kernel.org/lkml/123%2F456%40test.org"));
+                
+                assertThat(summaries.get(1).getVariable(), is("CONFIG_DEF"));
+                assertThat(summaries.get(1).getNumOccurrences(), is(1L));
+                assertThat(summaries.get(1).getNumMails(), is(1));
+                assertThat(summaries.get(1).getFirstMail(),
+                        is("https://lore.kernel.org/lkml/121554-8-6-4-4-777%40test.org"));
+                assertThat(summaries.get(1).getLastMail(),
+                        is("https://lore.kernel.org/lkml/121554-8-6-4-4-777%40test.org"));
+            }
+        }
+    }
+    
+    /**
+     * Tests that the inverted index written by the locator contains the same postings as the results.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testIndexFile() throws SetUpException, IOException {
+        File indexFile = new File(TESTDATA, "variables.index");
+        try {
+            TestConfiguration config = new TestConfiguration(new Properties());
+            
+            config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+            config.setValue(VariableInMailingListLocator.MAIL_SOURCES, Arrays.asList(MOCKED_REPO.getAbsolutePath()));
+            
+            config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+            config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+            
+            config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+            config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+            
+            config.registerSetting(VariableInMailingListLocator.INDEX_FILE);
+            config.setValue(VariableInMailingListLocator.INDEX_FILE, indexFile);
+            
+            assertMockedRepoResult(AnalysisComponentExecuter.executeComponent(
+                    VariableInMailingListLocator.class, config));
+            
+            try (InvertedIndex index = new InvertedIndex(indexFile)) {
+                assertThat(index.getNumVariables(), is(2));
+                assertThat(index.getNumMails(), is(3));
+                
+                Map<String, Integer> expected = new HashMap<>();
+                expected.put("https://lore.kernel.org/lkml/1215-4-7-1-5-4-7%40test.org", 1);
+                expected.put("https://lore.kernel.org/lkml/121554-8-6-4-4-777%40test.org", 2);
+                expected.put("https://lore.kernel.org/lkml/123%2F456%40test.org", 1);
+                assertThat(new HashMap<>(index.lookup("CONFIG_ABC")), is(expected));
+                
+                expected.clear();
+                expected.put("https://lore.kernel.org/lkml/121554-8-6-4-4-777%40test.org", 1);
+                assertThat(new HashMap<>(index.lookup("CONFIG_DEF")), is(expected));
+            }
+        } finally {
+            indexFile.delete();
+        }
+    }
+    
+    /**
+     * Tests that a second run with a scan cache produces the same result, for each {@link MailReader} and with and
+     * without pipeline.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testScanCache() throws SetUpException, IOException {
+        File cacheDir = new File(TESTDATA, "scanCache");
+        try {
+            for (MailReader mailReader : MailReader.values()) {
+                for (int pipelineDepth : new int[] {0, 2}) {
+                    TestConfiguration config = new TestConfiguration(new Properties());
+                    
+                    config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+                    config.setValue(VariableInMailingListLocator.MAIL_SOURCES,
+                            Arrays.asList(MOCKED_REPO.getAbsolutePath()));
+                    
+                    config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+                    config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+                    
+                    config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+                    config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+                    
+                    config.registerSetting(VariableInMailingListLocator.MAIL_READER);
+                    config.setValue(VariableInMailingListLocator.MAIL_READER, mailReader);
+                    
+                    config.registerSetting(VariableInMailingListLocator.PIPELINE_DEPTH);
+                    config.setValue(VariableInMailingListLocator.PIPELINE_DEPTH, pipelineDepth);
+                    
+                    config.registerSetting(VariableInMailingListLocator.SCAN_CACHE_DIR);
+                    config.setValue(VariableInMailingListLocator.SCAN_CACHE_DIR, cacheDir);
+                    
+                    // the first iteration fills the cache, all others read from it
+                    assertMockedRepoResult(AnalysisComponentExecuter.executeComponent(
+                            VariableInMailingListLocator.class, config));
+                    
+                    File[] cacheFiles = cacheDir.listFiles();
+                    assertThat(cacheFiles.length, is(1));
+                    String fingerprint = cacheFiles[0].getName().replace(".scancache", "");
+                    try (ScanCache cache = new ScanCache(cacheDir, fingerprint)) {
+                        assertThat(cache.size() >= 3, is(true));
+                    }
+                }
+            }
+        } finally {
+            Util.deleteFolder(cacheDir);
+        }
+    }
+    
+    /**
+     * Tests that a crawl is resumed from the checkpoint of an aborted run, for each {@link MailReader} and with and
+     * without pipeline: the per-mail results only cover the remaining mails, but the summaries and the index cover
+     * all mails.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     * @throws GitException unwanted.
+     */
+    @Test
+    public void testCheckpointResume() throws SetUpException, IOException, GitException {
+        File checkpointDir = new File(TESTDATA, "checkpoints");
+        File indexFile = new File(TESTDATA, "variables.index");
+        
+        GitRepository repo = new GitRepository(MOCKED_REPO);
+        String head = repo.resolveCommit("master");
+        int numCommits = 0;
+        try (ICommitIterator commits = repo.iterateCommits(head, CommitOrder.AUTHOR_DATE)) {
+            while (commits.nextCommit() != null) {
+                numCommits++;
+            }
+        }
+        
+        try {
+            for (MailReader mailReader : MailReader.values()) {
+                for (int pipelineDepth : new int[] {0, 2}) {
+                    TestConfiguration config = createCheckpointConfig(checkpointDir, indexFile, mailReader,
+                            pipelineDepth);
+                    
+                    // pretend that the aborted run has processed all but the last two mails
+                    String firstMail = "https://lore.kernel.org/lkml/1215-4-7-1-5-4-7%40test.org";
+                    SymbolTable symbols = new SymbolTable();
+                    int variableId = symbols.intern("CONFIG_ABC");
+                    VariableStatistics statistics = new VariableStatistics(symbols);
+                    statistics.add(variableId, firstMail, 1);
+                    InvertedIndexWriter indexWriter = new InvertedIndexWriter(symbols);
+                    indexWriter.add(variableId, firstMail, 1);
+                    
+                    CrawlCheckpoint checkpoint = new CrawlCheckpoint(checkpointDir,
+                            new VariableInMailingListLocator(config).getCheckpointKey());
+                    String readerKey = VariableInMailingListLocator.getReaderKey(mailReader,
+                            VariableInMailingListLocator.DEFAULT_CHANGED_PATHS);
+                    checkpoint.startSource(CrawlState.createKey(MOCKED_REPO.getAbsolutePath(), "CONFIG_\\w+",
+                            "https://lore.kernel.org/lkml/", readerKey, MailScanner.LINE_READER.name()), head,
+                            head).advance(numCommits - 2, 1);
+                    checkpoint.write(statistics, indexWriter);
+                    
+                    VariableInMailingListLocator locator = new VariableInMailingListLocator(config);
+                    List<VariableMailSummary> summaries = new ArrayList<>();
+                    VariableMailSummary summary;
+                    while ((summary = locator.getSummaryOutput().getNextResult()) != null) {
+                        summaries.add(summary);
+                    }
+                    List<@NonNull VariableMailLocation> result = new ArrayList<>();
+                    VariableMailLocation location;
+                    while ((location = locator.getNextResult()) != null) {
+                        result.add(location);
+                    }
+                    
+                    assertThat(result.size(), is(3));
+                    assertThat(result.get(0).getMailIdentifier(),
+                            is("https://lore.kernel.org/lkml/121554-8-6-4-4-777%40test.org"));
+                    assertThat(result.get(2).getMailIdentifier(),
+                            is("https://lore.kernel.org/lkml/123%2F456%40test.org"));
+                    
+                    assertThat(summaries.size(), is(2));
+                    assertThat(summaries.get(0).getNumOccurrences(), is(4L));
+                    assertThat(summaries.get(0).getNumMails(), is(3));
+                    assertThat(summaries.get(0).getFirstMail(), is(firstMail));
+                    
+                    try (InvertedIndex index = new InvertedIndex(indexFile)) {
+                        assertThat(index.getNumMails(), is(3));
+                        assertThat(index.lookup("CONFIG_ABC").size(), is(3));
+                    }
+                    
+                    // the checkpoint is deleted after the crawl has completed
+                    assertThat(checkpointDir.list().length, is(0));
+                }
+            }
+        } finally {
+            Util.deleteFolder(checkpointDir);
+            indexFile.delete();
+        }
+    }
+    
+    /**
+     * Tests that checkpoints are rejected if mails may overtake each other in the pipeline.
+     * 
+     * @throws SetUpException wanted.
+     */
+    @Test(expected = SetUpException.class)
+    public void testCheckpointWithMatcherThreads() throws SetUpException {
+        TestConfiguration config = createCheckpointConfig(new File(TESTDATA, "checkpoints"),
+                new File(TESTDATA, "variables.index"), MailReader.GIT_PROCESS, 2);
+        config.registerSetting(VariableInMailingListLocator.MATCHER_THREADS);
+        config.setValue(VariableInMailingListLocator.MATCHER_THREADS, 2);
+        
+        new VariableInMailingListLocator(config);
+    }
+    
+    /**
+     * Creates the configuration for the checkpoint tests, with both per-mail and per-variable results, an index file
+     * and a checkpoint after each mail.
+     * 
+     * @param checkpointDir The checkpoint directory.
+     * @param indexFile The index file.
+     * @param mailReader The {@link MailReader} to use.
+     * @param pipelineDepth The pipeline depth.
+     * 
+     * @return The configuration.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    private static TestConfiguration createCheckpointConfig(File checkpointDir, File indexFile,
+            MailReader mailReader, int pipelineDepth) throws SetUpException {
+        
+        TestConfiguration config = new TestConfiguration(new Properties());
+        
+        config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+        config.setValue(VariableInMailingListLocator.MAIL_SOURCES, Arrays.asList(MOCKED_REPO.getAbsolutePath()));
+        
+        config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+        config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+        
+        config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+        config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+        
+        config.registerSetting(VariableInMailingListLocator.MAIL_READER);
+        config.setValue(VariableInMailingListLocator.MAIL_READER, mailReader);
+        
+        config.registerSetting(VariableInMailingListLocator.PIPELINE_DEPTH);
+        config.setValue(VariableInMailingListLocator.PIPELINE_DEPTH, pipelineDepth);
+        
+        config.registerSetting(VariableInMailingListLocator.RESULT_GRANULARITY);
+        config.setValue(VariableInMailingListLocator.RESULT_GRANULARITY, ResultGranularity.BOTH);
+        
+        config.registerSetting(VariableInMailingListLocator.INDEX_FILE);
+        config.setValue(VariableInMailingListLocator.INDEX_FILE, indexFile);
+        
+        config.registerSetting(VariableInMailingListLocator.CHECKPOINT_DIR);
+        config.setValue(VariableInMailingListLocator.CHECKPOINT_DIR, checkpointDir);
+        
+        config.registerSetting(VariableInMailingListLocator.CHECKPOINT_INTERVAL);
+        config.setValue(VariableInMailingListLocator.CHECKPOINT_INTERVAL, 0);
+        
+        return config;
+    }
+    
+    /**
+     * Tests that only the mails in the configured date range are searched, for each {@link MailReader}.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testDateRange() throws SetUpException {
+        for (MailReader mailReader : MailReader.values()) {
+            TestConfiguration config = new TestConfiguration(new Properties());
+            
+            config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+            config.setValue(VariableInMailingListLocator.MAIL_SOURCES, Arrays.asList(MOCKED_REPO.getAbsolutePath()));
+            
+            config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+            config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+            
+            config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+            config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+            
+            config.registerSetting(VariableInMailingListLocator.MAIL_READER);
+            config.setValue(VariableInMailingListLocator.MAIL_READER, mailReader);
+            
+            config.registerSetting(VariableInMailingListLocator.SINCE);
+            config.setValue(VariableInMailingListLocator.SINCE, "2019-06-04T13:08:30+02:00");
+            
+            List<@NonNull VariableMailLocation> result = AnalysisComponentExecuter.executeComponent(
+                    VariableInMailingListLocator.class, config);
+            assertThat(result.size(), is(3));
+            assertThat(result.get(0).getMailIdentifier(),
+                    is("https://lore.kernel.org/lkml/121554-8-6-4-4-777%40test.org"));
+            assertThat(result.get(2).getMailIdentifier(), is("https://lore.kernel.org/lkml/123%2F456%40test.org"));
+            
+            config.registerSetting(VariableInMailingListLocator.UNTIL);
+            config.setValue(VariableInMailingListLocator.UNTIL, "2019-06-04T13:09:00+02:00");
+            assertThat(AnalysisComponentExecuter.executeComponent(VariableInMailingListLocator.class, config).size(),
+                    is(0));
+        }
+    }
+    
+    /**
+     * Tests that an invalid date range is rejected.
+     * 
+     * @throws SetUpException wanted.
+     */
+    @Test(expected = SetUpException.class)
+    public void testInvalidDateRange() throws SetUpException {
+        TestConfiguration config = new TestConfiguration(new Properties());
+        
+        config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+        config.setValue(VariableInMailingListLocator.MAIL_SOURCES, Arrays.asList(MOCKED_REPO.getAbsolutePath()));
+        
+        config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+        config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+        
+        config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+        config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+        
+        config.registerSetting(VariableInMailingListLocator.SINCE);
+        config.setValue(VariableInMailingListLocator.SINCE, "last tuesday");
+        
+        new VariableInMailingListLocator(config);
+    }
+    
+    /**
+     * Tests that the mails are processed newest first, if configured.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testNewestFirst() throws SetUpException, IOException {
+        TestConfiguration config = new TestConfiguration(new Properties());
+        
+        config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+        config.setValue(VariableInMailingListLocator.MAIL_SOURCES, Arrays.asList(MOCKED_REPO.getAbsolutePath()));
+        
+        config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+        config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+        
+        config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+        config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+        
+        config.registerSetting(VariableInMailingListLocator.COMMIT_ORDER);
+        config.setValue(VariableInMailingListLocator.COMMIT_ORDER, CommitOrder.NEWEST_FIRST);
+        
+        List<@NonNull VariableMailLocation> result = AnalysisComponentExecuter.executeComponent(
+                VariableInMailingListLocator.class, config);
+        
+        assertThat(result.size(), is(4));
+        assertThat(result.get(0).getMailIdentifier(), is("https://lore.kernel.org/lkml/123%2F456%40test.org"));
+        assertThat(result.get(3).getMailIdentifier(), is("https://lore.kernel.org/lkml/1215-4-7-1-5-4-7%40test.org"));
+    }
+    
+    /**
+     * Tests crawling multiple mail sources in parallel.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testParallel() throws SetUpException, IOException {
+        TestConfiguration config = new TestConfiguration(new Properties());
+        
+        config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+        config.setValue(VariableInMailingListLocator.MAIL_SOURCES, Arrays.asList(MOCKED_REPO.getAbsolutePath(),
+                "file://" + MOCKED_REPO.getAbsolutePath(), MOCKED_REPO.getAbsolutePath()));
+        
+        config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+        config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+        
+        config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+        config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+        
+        config.registerSetting(VariableInMailingListLocator.NUM_THREADS);
+        config.setValue(VariableInMailingListLocator.NUM_THREADS, 3);
+        
+        List<@NonNull VariableMailLocation> result = AnalysisComponentExecuter.executeComponent(
+                VariableInMailingListLocator.class, config);
+        
+        assertThat(result.size(), is(12));
+        
+        // the order of the sources is not deterministic, but all rows of one mail are adjacent
+        Map<String, Integer> rowsPerMail = new HashMap<>();
+        for (int i = 0; i < result.size(); i++) {
+            String mail = result.get(i).getMailIdentifier();
+            rowsPerMail.put(mail, rowsPerMail.getOrDefault(mail, 0) + 1);
+            if (mail.equals("https://lore.kernel.org/lkml/121554-8-6-4-4-777%40test.org")) {
+                boolean previousIsSame = i > 0 && result.get(i - 1).getMailIdentifier().equals(mail);
+                boolean nextIsSame = i + 1 < result.size() && result.get(i + 1).getMailIdentifier().equals(mail);
+                assertThat(previousIsSame || nextIsSame, is(true));
+            }
+        }
+        assertThat(rowsPerMail.get("https://lore.kernel.org/lkml/1215-4-7-1-5-4-7%40test.org"), is(3));
+        assertThat(rowsPerMail.get("https://lore.kernel.org/lkml/121554-8-6-4-4-777%40test.org"), is(6));
+        assertThat(rowsPerMail.get("https://lore.kernel.org/lkml/123%2F456%40test.org"), is(3));
+    }
+    
+    /**
+     * Runs the given git command in the given directory.
+     * 
+     * @param directory The directory to run the command in.
+     * @param command The git command line.
+     * 
+     * @throws IOException If the command fails.
+     */
+    private static void runGit(File directory, String... command) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.directory(directory);
+        assertThat(Util.executeProcess(builder, "git", new ByteArrayOutputStream(), new ByteArrayOutputStream(), 0),
+                is(true));
+    }
+    
+    /**
+     * Creates a public-inbox v2 archive with two epochs. The first epoch is a copy of the test repository, the second
+     * one contains a single, newer mail.
+     * 
+     * @param root The root directory of the archive.
+     * 
+     * @throws IOException If creating the archive fails.
+     */
+    private static void createPublicInbox(File root) throws IOException {
+        File epochs = new File(root, "git");
+        epochs.mkdirs();
+        runGit(epochs, "git", "clone", "-q", "--bare", MOCKED_REPO.getAbsolutePath(), "0.git");
+        
+        File work = new File(root, "work");
+        work.mkdirs();
+        runGit(work, "git", "init", "-q", "-b", "master");
+        Files.write(new File(work, "m").toPath(),
+                "Message-ID: <epoch1@test.org>\n\nThis uses CONFIG_XYZ.\n".getBytes("UTF-8"));
+        runGit(work, "git", "add", "m");
+        runGit(work, "git", "-c", "user.name=Test", "-c", "user.email=test@test.org", "commit", "-q", "-m", "mail");
+        runGit(epochs, "git", "clone", "-q", "--bare", work.getAbsolutePath(), "1.git");
+        Util.deleteFolder(work);
+    }
+    
+    /**
+     * Tests that the epochs of a public-inbox archive are crawled in parallel, but their results are emitted in the
+     * order of the epochs, also if only one epoch may be crawled at a time.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testPublicInbox() throws SetUpException, IOException {
+        File inbox = new File(TESTDATA, "inbox");
+        try {
+            createPublicInbox(inbox);
+            
+            for (CommitOrder commitOrder : CommitOrder.values()) {
+                for (int epochsInFlight : new int[] {1, 2}) {
+                    TestConfiguration config = new TestConfiguration(new Properties());
+                    
+                    config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+                    config.setValue(VariableInMailingListLocator.MAIL_SOURCES, Arrays.asList(inbox.getAbsolutePath()));
+                    
+                    config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+                    config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+                    
+                    config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+                    config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+                    
+                    config.registerSetting(VariableInMailingListLocator.COMMIT_ORDER);
+                    config.setValue(VariableInMailingListLocator.COMMIT_ORDER, commitOrder);
+                    
+                    config.registerSetting(VariableInMailingListLocator.NUM_THREADS);
+                    config.setValue(VariableInMailingListLocator.NUM_THREADS, 2);
+                    
+                    config.registerSetting(VariableInMailingListLocator.EPOCHS_IN_FLIGHT);
+                    config.setValue(VariableInMailingListLocator.EPOCHS_IN_FLIGHT, epochsInFlight);
+                    
+                    List<@NonNull VariableMailLocation> result = AnalysisComponentExecuter.executeComponent(
+                            VariableInMailingListLocator.class, config);
+                    
+                    assertThat(result.size(), is(5));
+                    int epoch1Row = commitOrder == CommitOrder.NEWEST_FIRST ? 0 : 4;
+                    int oldestRow = commitOrder == CommitOrder.NEWEST_FIRST ? 4 : 0;
+                    assertThat(result.get(epoch1Row).getMailIdentifier(),
+                            is("https://lore.kernel.org/lkml/epoch1%40test.org"));
+                    assertThat(result.get(epoch1Row).getVariable(), is("CONFIG_XYZ"));
+                    assertThat(result.get(oldestRow).getMailIdentifier(),
+                            is("https://lore.kernel.org/lkml/1215-4-7-1-5-4-7%40test.org"));
+                }
+            }
+            
+        } finally {
+            Util.deleteFolder(inbox);
+        }
+    }
+    
+    /**
+     * Tests that the crawl state of an epoch is only stored once its results are emitted: if the run is aborted after
+     * the epoch has been searched, but before its results were released, the next run reports the epoch again.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testPublicInboxAbortedBeforeRelease() throws SetUpException, IOException {
+        File inbox = new File(TESTDATA, "inbox");
+        File stateFile = new File(TESTDATA, "crawl_state.properties");
+        File abortedState = new File(TESTDATA, "aborted_crawl_state.properties");
+        try {
+            createPublicInbox(inbox);
+            
+            TestConfiguration config = createPublicInboxStateConfig(inbox, stateFile);
+            VariableInMailingListLocator locator = new VariableInMailingListLocator(config);
+            locator.setSearchedListener((mailSource) -> {
+                if (mailSource.endsWith("1.git")) {
+                    // this is the crawl state that a run that is killed now leaves behind
+                    try {
+                        abortedState.delete();
+                        if (stateFile.isFile()) {
+                            Files.copy(stateFile.toPath(), abortedState.toPath());
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+            int numResults = 0;
+            while (locator.getNextResult() != null) {
+                numResults++;
+            }
+            assertThat(numResults, is(5));
+            
+            List<@NonNull VariableMailLocation> result = AnalysisComponentExecuter.executeComponent(
+                    VariableInMailingListLocator.class, createPublicInboxStateConfig(inbox, abortedState));
+            assertThat(result.size() > 0, is(true));
+            assertThat(result.get(result.size() - 1).getMailIdentifier(),
+                    is("https://lore.kernel.org/lkml/epoch1%40test.org"));
+            
+        } finally {
+            Util.deleteFolder(inbox);
+            stateFile.delete();
+            abortedState.delete();
+        }
+    }
+    
+    /**
+     * Creates the configuration for crawling the given public-inbox archive in parallel, with a crawl state file.
+     * 
+     * @param inbox The root directory of the archive.
+     * @param stateFile The crawl state file.
+     * 
+     * @return The configuration.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    private static TestConfiguration createPublicInboxStateConfig(File inbox, File stateFile) throws SetUpException {
+        TestConfiguration config = new TestConfiguration(new Properties());
+        
+        config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+        config.setValue(VariableInMailingListLocator.MAIL_SOURCES, Arrays.asList(inbox.getAbsolutePath()));
+        
+        config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+        config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+        
+        config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+        config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+        
+        config.registerSetting(VariableInMailingListLocator.NUM_THREADS);
+        config.setValue(VariableInMailingListLocator.NUM_THREADS, 2);
+        
+        config.registerSetting(VariableInMailingListLocator.CRAWL_STATE_FILE);
+        config.setValue(VariableInMailingListLocator.CRAWL_STATE_FILE, stateFile);
+        
+        return config;
+    }
+    
+    /**
+     * Tests that crawling many sources and partitions with a limit of a single git process neither deadlocks nor
+     * loses results. Virtual threads are requested, but the test also passes on JVMs that don't support them.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test(timeout = 60000)
+    public void testProcessLimit() throws SetUpException {
+        TestConfiguration config = new TestConfiguration(new Properties());
+        
+        config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+        config.setValue(VariableInMailingListLocator.MAIL_SOURCES, Arrays.asList(MOCKED_REPO.getAbsolutePath(),
+                "file://" + MOCKED_REPO.getAbsolutePath(), MOCKED_REPO.getAbsolutePath()));
+        
+        config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+        config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+        
+        config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+        config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+        
+        config.registerSetting(VariableInMailingListLocator.NUM_THREADS);
+        config.setValue(VariableInMailingListLocator.NUM_THREADS, 3);
+        
+        config.registerSetting(VariableInMailingListLocator.NUM_PARTITIONS);
+        config.setValue(VariableInMailingListLocator.NUM_PARTITIONS, 2);
+        
+        config.registerSetting(VariableInMailingListLocator.VIRTUAL_THREADS);
+        config.setValue(VariableInMailingListLocator.VIRTUAL_THREADS, true);
+        
+        config.registerSetting(VariableInMailingListLocator.MAX_GIT_PROCESSES);
+        config.setValue(VariableInMailingListLocator.MAX_GIT_PROCESSES, 1);
+        
+        List<@NonNull VariableMailLocation> result = AnalysisComponentExecuter.executeComponent(
+                VariableInMailingListLocator.class, config);
+        
+        assertThat(result.size(), is(12));
+    }
+    
+    /**
+     * Tests that partitioning the commits of a single mail source yields the same result in the same order, for each
+     * {@link MailReader}.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testPartitions() throws SetUpException, IOException {
+        for (MailReader mailReader : MailReader.values()) {
+            TestConfiguration config = new TestConfiguration(new Properties());
+            
+            config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+            config.setValue(VariableInMailingListLocator.MAIL_SOURCES, Arrays.asList(MOCKED_REPO.getAbsolutePath()));
+            
+            config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+            config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+            
+            config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+            config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+            
+            config.registerSetting(VariableInMailingListLocator.MAIL_READER);
+            config.setValue(VariableInMailingListLocator.MAIL_READER, mailReader);
+            
+            config.registerSetting(VariableInMailingListLocator.NUM_PARTITIONS);
+            config.setValue(VariableInMailingListLocator.NUM_PARTITIONS, 3);
+            
+            List<@NonNull VariableMailLocation> result = AnalysisComponentExecuter.executeComponent(
+                    VariableInMailingListLocator.class, config);
+            
+            assertMockedRepoResult(result);
+        }
+    }
+    
+    /**
+     * Tests that the pipeline yields the same result in the same order as direct processing, for each
+     * {@link MailReader}, and the same rows if the stages use multiple threads.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testPipeline() throws SetUpException {
+        for (MailReader mailReader : MailReader.values()) {
+            assertMockedRepoResult(runPipeline(mailReader, 1));
+            
+            List<@NonNull VariableMailLocation> result = runPipeline(mailReader, 2);
+            assertThat(result.size(), is(4));
+            Map<String, Integer> occurrencesPerMail = new HashMap<>();
+            for (VariableMailLocation location : result) {
+                occurrencesPerMail.put(location.getMailIdentifier(),
+                        occurrencesPerMail.getOrDefault(location.getMailIdentifier(), 0)
+                        + location.getNumOccurrences());
+            }
+            assertThat(occurrencesPerMail.get("https://lore.kernel.org/lkml/1215-4-7-1-5-4-7%40test.org"), is(1));
+            assertThat(occurrencesPerMail.get("https://lore.kernel.org/lkml/121554-8-6-4-4-777%40test.org"), is(3));
+            assertThat(occurrencesPerMail.get("https://lore.kernel.org/lkml/123%2F456%40test.org"), is(1));
+        }
+    }
+    
+    /**
+     * Runs the locator on the mocked repository with a pipeline of depth 2.
+     * 
+     * @param mailReader The {@link MailReader} to use.
+     * @param numThreads The number of header and matcher threads.
+     * 
+     * @return The result of the locator.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    private static List<@NonNull VariableMailLocation> runPipeline(MailReader mailReader, int numThreads)
+            throws SetUpException {
+        
+        TestConfiguration config = new TestConfiguration(new Properties());
+        
+        config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+        config.setValue(VariableInMailingListLocator.MAIL_SOURCES, Arrays.asList(MOCKED_REPO.getAbsolutePath()));
+        
+        config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+        config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+        
+        config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+        config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+        
+        config.registerSetting(VariableInMailingListLocator.MAIL_READER);
+        config.setValue(VariableInMailingListLocator.MAIL_READER, mailReader);
+        
+        config.registerSetting(VariableInMailingListLocator.PIPELINE_DEPTH);
+        config.setValue(VariableInMailingListLocator.PIPELINE_DEPTH, 2);
+        
+        config.registerSetting(VariableInMailingListLocator.HEADER_THREADS);
+        config.setValue(VariableInMailingListLocator.HEADER_THREADS, numThreads);
+        
+        config.registerSetting(VariableInMailingListLocator.MATCHER_THREADS);
+        config.setValue(VariableInMailingListLocator.MATCHER_THREADS, numThreads);
+        
+        return AnalysisComponentExecuter.executeComponent(VariableInMailingListLocator.class, config);
+    }
+    
+    /**
+     * Tests that a crawl state file causes subsequent runs to only process new mails, for each {@link MailReader}.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testIncremental() throws SetUpException, IOException {
+        File stateFile = new File(TESTDATA, "crawl_state.properties");
+        assertThat(stateFile.exists(), is(false));
+        
+        try {
+            for (MailReader mailReader : MailReader.values()) {
+                // first run processes all mails
+                assertMockedRepoResult(runIncremental(stateFile, mailReader));
+                assertThat(stateFile.isFile(), is(true));
+                
+                // second run has nothing new
+                assertThat(runIncremental(stateFile, mailReader).size(), is(0));
+                
+                // another reader has its own state, since it may see different mails
+                MailReader otherReader = MailReader.values()[(mailReader.ordinal() + 1) % MailReader.values().length];
+                assertMockedRepoResult(runIncremental(stateFile, otherReader));
+                
+                // pretend the last run was before the last two mails were added
+                CrawlState state = new CrawlState(stateFile);
+                String readerKey = VariableInMailingListLocator.getReaderKey(mailReader,
+                        VariableInMailingListLocator.DEFAULT_CHANGED_PATHS);
+                state.setLastCommit(CrawlState.createKey(MOCKED_REPO.getAbsolutePath(), "CONFIG_\\w+",
+                        "https://lore.kernel.org/lkml/", readerKey, MailScanner.LINE_READER.name()),
+                        "8761998b60bf12146be97ce4854ceddc7fd0bfc9");
+                
+                List<@NonNull VariableMailLocation> result = runIncremental(stateFile, mailReader);
+                assertThat(result.size(), is(3));
+                assertThat(result.get(0).getMailIdentifier(),
+                        is("https://lore.kernel.org/lkml/121554-8-6-4-4-777%40test.org"));
+                assertThat(result.get(1).getMailIdentifier(),
+                        is("https://lore.kernel.org/lkml/121554-8-6-4-4-777%40test.org"));
+                assertThat(result.get(2).getMailIdentifier(), is("https://lore.kernel.org/lkml/123%2F456%40test.org"));
+                
+                stateFile.delete();
+            }
+            
+        } finally {
+            stateFile.delete();
+        }
+    }
+    
+    /**
+     * Runs the {@link VariableInMailingListLocator} on the mocked test repository with the given crawl state file.
+     * 
+     * @param stateFile The crawl state file.
+     * @param mailReader The {@link MailReader} to use.
+     * 
+     * @return The result of the {@link VariableInMailingListLocator}.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    private static List<@NonNull VariableMailLocation> runIncremental(File stateFile, MailReader mailReader)
+            throws SetUpException {
+        
+        TestConfiguration config = new TestConfiguration(new Properties());
+        
+        config.registerSetting(VariableInMailingListLocator.MAIL_SOURCES);
+        config.setValue(VariableInMailingListLocator.MAIL_SOURCES, Arrays.asList(MOCKED_REPO.getAbsolutePath()));
+        
+        config.registerSetting(VariableInMailingListLocator.VAR_REGEX);
+        config.setValue(VariableInMailingListLocator.VAR_REGEX, Pattern.compile("CONFIG_\\w+"));
+        
+        config.registerSetting(VariableInMailingListLocator.URL_PREFIX);
+        config.setValue(VariableInMailingListLocator.URL_PREFIX, "https://lore.kernel.org/lkml/");
+        
+        config.registerSetting(VariableInMailingListLocator.MAIL_READER);
+        config.setValue(VariableInMailingListLocator.MAIL_READER, mailReader);
+        
+        config.registerSetting(VariableInMailingListLocator.CRAWL_STATE_FILE);
+        config.setValue(VariableInMailingListLocator.CRAWL_STATE_FILE, stateFile);
+        
+        return AnalysisComponentExecuter.executeComponent(VariableInMailingListLocator.class, config);
+    }
+    
+    /**
+     * Asserts that the given result is the expected result for the mocked test repository.
+     * 
+     * @param result The result of the {@link VariableInMailingListLocator}.
+     */
+    private static void assertMockedRepoResult(List<@NonNull VariableMailLocation> result) {
+        assertThat(result.size(), is(4));
+        
+        assertThat(result.get(0).getVariable(), is("CONFIG_ABC"));
+        assertThat(result.get(0).getMailIdentifier(), is("https://lore.kernel.org/lkml/1215-4-7-1-5-4-7%40test.org"));
+        assertThat(result.get(0).getNumOccurrences(), is(1));
+        
+        assertThat(result.get(1).getVariable(), is("CONFIG_ABC"));
         assertThat(result.get(1).getMailIdentifier(), is("https://lore.kernel.org/lkml/121554-8-6-4-4-777%40test.org"));
-        assertThat(result.get(1).getNumOccurrences(), is(1));
+        assertThat(result.get(1).getNumOccurrences(), is(2));
         
-        assertThat(result.get(2).getVariable(), is("CONFIG_ABC"));
+        assertThat(result.get(2).getVariable(), is("CONFIG_DEF"));
         assertThat(result.get(2).getMailIdentifier(), is("https://lore.kernel.org/lkml/121554-8-6-4-4-777%40test.org"));
-        assertThat(result.get(2).getNumOccurrences(), is(2));
+        assertThat(result.get(2).getNumOccurrences(), is(1));
         
         assertThat(result.get(3).getVariable(), is("CONFIG_ABC"));
         assertThat(result.get(3).getMailIdentifier(), is("https://lore.kernel.org/lkml/123%2F456%40test.org"));